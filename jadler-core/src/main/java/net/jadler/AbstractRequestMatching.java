@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.predicates.BodyPredicate;
+import net.jadler.predicates.HeaderPatternPredicate;
+import net.jadler.predicates.HeaderPredicate;
+import net.jadler.predicates.HostPredicate;
+import net.jadler.predicates.LocalPortPredicate;
+import net.jadler.predicates.MatcherPredicate;
+import net.jadler.predicates.MethodPredicate;
+import net.jadler.predicates.ParameterPredicate;
+import net.jadler.predicates.QueryStringPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.URIPatternPredicate;
+import net.jadler.predicates.URIPredicate;
+import org.apache.commons.lang.Validate;
+import org.hamcrest.Matcher;
+
+import static net.jadler.matchers.QueryStringRequestMatcher.requestQueryString;
+import static net.jadler.matchers.MethodRequestMatcher.requestMethod;
+import static net.jadler.matchers.BodyRequestMatcher.requestBody;
+import static net.jadler.matchers.URIRequestMatcher.requestURI;
+import static net.jadler.matchers.HeaderRequestMatcher.requestHeader;
+import static net.jadler.matchers.ParameterRequestMatcher.requestParameter;
+
+
+/**
+ * Base implementation of {@link RequestMatching} collecting the defined predicates.
+ * @param <T> type of the ongoing request matching returned by the predicate methods
+ */
+public abstract class AbstractRequestMatching<T extends RequestMatching<T>> implements RequestMatching<T> {
+
+    /**
+     * predicates defined so far
+     */
+    protected final List<RequestPredicate> predicates = new ArrayList<>();
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T that(final Matcher<? super HttpServletRequest> predicate) {
+        Validate.notNull(predicate, "predicate cannot be null");
+        
+        this.predicates.add(new MatcherPredicate(predicate));
+        return this.self();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T that(final RequestPredicate predicate) {
+        Validate.notNull(predicate, "predicate cannot be null");
+        
+        this.predicates.add(predicate);
+        return this.self();
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T havingMethodEqualTo(final String method) {
+        return that(new MethodPredicate(method));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingMethod(final Matcher<? super String> predicate) {
+        return that(requestMethod(predicate));
+    }
+    
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingBodyEqualTo(final String requestBody) {
+        return that(new BodyPredicate(requestBody));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingBody(final Matcher<? super String> predicate) {
+        return that(requestBody(predicate));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingURIEqualTo(final String uri) {
+        Validate.isTrue(!uri.contains("?"), "URI must not contain query parameters.");
+        return that(new URIPredicate(uri));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingURI(final Matcher<? super String> predicate) {
+        return that(requestURI(predicate));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingURIMatching(final String regex) {
+        return that(new URIPatternPredicate(regex));
+    }
+    
+    
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingQueryStringEqualTo(final String queryString) {
+        return that(new QueryStringPredicate(queryString));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingQueryString(final Matcher<? super String> predicate) {
+        return that(requestQueryString(predicate));
+    }
+    
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingParameterEqualTo(final String name, final String value) {
+        return that(new ParameterPredicate(name, value));
+    }
+    
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingParameter(final String name, final Matcher<? super List<String>> predicate) {
+        return that(requestParameter(name, predicate));
+    }
+    
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingParameter(final String name) {
+        return that(new ParameterPredicate(name, null));
+    }
+    
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingParameters(String... names) {
+        
+        for (final String name: names) {
+            havingParameter(name);
+        }
+        
+        return this.self();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingHeaderEqualTo(final String name, final String value) {
+        return that(new HeaderPredicate(name, value));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingHeader(final String name, final Matcher<? super List<String>> predicate) {
+        return that(requestHeader(name, predicate));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingHeaderMatching(final String name, final String regex) {
+        return that(new HeaderPatternPredicate(name, regex));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingHeader(final String name) {
+        return that(new HeaderPredicate(name, null));
+    }
+    
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingHeaders(String... names) {
+        for (final String name: names) {
+            havingHeader(name);
+        }
+
+        return this.self();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingLocalPortEqualTo(final int port) {
+        return that(new LocalPortPredicate(port));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */    
+    @Override
+    public T havingHostEqualTo(final String host) {
+        return that(new HostPredicate(host));
+    }
+
+
+    /**
+     * @return this instance as the ongoing request matching
+     */
+    @SuppressWarnings("unchecked")
+    protected T self() {
+        return (T) this;
+    }
+}
@@ -4,13 +4,30 @@
  */
 package net.jadler;
 
+import java.io.File;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import net.jadler.stubbing.RequestStubbing;
 import net.jadler.httpmocker.HttpMocker;
 import net.jadler.httpmocker.HttpMockerImpl;
+import net.jadler.journal.RequestJournal;
+import net.jadler.journal.RequestLog;
+import net.jadler.journal.RequestJournal.EvictionPolicy;
+import net.jadler.proxy.RecordedRules;
+import net.jadler.proxy.Recorder;
+import net.jadler.proxy.UpstreamClient;
+import net.jadler.server.ExecutionMode;
+import net.jadler.server.SelfSignedKeyStore;
 import net.jadler.server.StubHttpServer;
+import net.jadler.server.jetty.JettyServerTuning;
 import net.jadler.server.jetty.JettyStubHttpServer;
+import net.jadler.server.jetty.NamespacedStubHttpServer;
+import net.jadler.server.jetty.PassThroughProxy;
+import net.jadler.server.jetty.SharedStubHttpServer;
 import net.jadler.stubbing.ResponseStubbing;
+import net.jadler.stubbing.StubRule;
+import net.jadler.verification.Verifying;
 import org.apache.commons.collections.MultiMap;
 import org.apache.commons.collections.map.MultiValueMap;
 import org.apache.commons.lang.Validate;
@@ -89,6 +106,24 @@ public final class Jadler {
     }
     
     
+    /**
+     * Starts new verification of the requests received by the stub server so far. The requests are looked up
+     * in the request journal which keeps the last {@link HttpMockerImpl#DEFAULT_JOURNAL_CAPACITY} requests
+     * by default. The verification fails with an {@link IllegalStateException} once the journal has evicted
+     * any request, so if more requests are expected, configure a larger journal using
+     * {@link OngoingConfiguration#recordsRequests(int, EvictionPolicy)}.
+     * @return verifying object for ongoing verification
+     */
+    public static Verifying verifyThatRequest() {
+        final HttpMocker mocker = mockerContainer.get();
+        if (mocker == null) {
+            throw new IllegalStateException("The HttpMocker instance has not been created yet, "
+                    + "there are no requests to verify.");
+        }
+        return mocker.verifyThatRequest();
+    }
+    
+    
     private static void createMockerIfNotExists() {
         if (mockerContainer.get() == null) {
         
@@ -110,6 +145,15 @@ public final class Jadler {
         private Integer defaultStatus;
         private MultiMap defaultHeaders = new MultiValueMap();
         private Charset defaultEncoding;
+        private ExecutionMode executionMode;
+        private PassThroughProxy passThroughProxy;
+        private final List<File> stubDefinitions = new ArrayList<>();
+        private RequestJournal requestJournal;
+        private RequestLog requestLog;
+        private Recorder recorder;
+        private UpstreamClient recordingClient;
+        private File recordingDirectory;
+        private List<StubRule> replayedRules;
         
         
         /**
@@ -127,6 +171,88 @@ public final class Jadler {
         }
         
         
+        /**
+         * Configures the new HttpMocker instance to use the default mock server implementation (jetty based)
+         * tuned using the given parameters. Use this variant if the default Jetty configuration (number of acceptors,
+         * worker threads, buffer sizes, ...) doesn't fit your needs, load tests for example.
+         * 
+         * @param port port the http mock server will be listening on
+         * @param tuning connector and worker pool parameters of the mock server
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration usesStandardServerListeningOn(final int port, final JettyServerTuning tuning) {
+            Validate.notNull(tuning, "tuning cannot be null");
+            
+            this.mockHttpServer = new JettyStubHttpServer(port, tuning);
+            return this;
+        }
+        
+        
+        /**
+         * Configures the new HttpMocker instance to use the default mock server implementation (jetty based)
+         * listening on all the given ports. All ports share one worker pool and one set of stub rules, use
+         * {@link net.jadler.stubbing.RequestStubbing#havingLocalPortEqualTo(int)} and
+         * {@link net.jadler.stubbing.RequestStubbing#havingHostEqualTo(java.lang.String)} to define rules
+         * of a single port or virtual host. Use this variant to mock several upstream services by one mocker.
+         * 
+         * @param ports ports the http mock server will be listening on
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration usesStandardServerListeningOnPorts(final int... ports) {
+            this.mockHttpServer = new JettyStubHttpServer(ports, new JettyServerTuning());
+            return this;
+        }
+        
+        
+        /**
+         * Configures the new HttpMocker instance to use the default mock server implementation (jetty based)
+         * listening on the given port using https. The server uses the self-signed key material
+         * of {@link SelfSignedKeyStore#get()}, use {@link SelfSignedKeyStore#createClientContext()} to configure
+         * a client trusting the server certificate.
+         * 
+         * @param port port the https mock server will be listening on
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration usesStandardHttpsServerListeningOn(final int port) {
+            this.mockHttpServer = new JettyStubHttpServer(new int[] {port}, new JettyServerTuning(),
+                    SelfSignedKeyStore.get().createServerContext());
+            return this;
+        }
+        
+        
+        /**
+         * Configures the new HttpMocker instance to use a Jetty mock server shared with all other HttpMocker
+         * instances configured to use the same port (see {@link SharedStubHttpServer}). The shared Jetty instance
+         * is started just once and keeps running, starting and stopping the HttpMocker instance just attaches
+         * and detaches its stub rules. Use this variant to avoid starting a new Jetty server for every test.
+         * 
+         * @param port port the shared http mock server will be listening on
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration usesSharedServerListeningOn(final int port) {
+            this.mockHttpServer = new SharedStubHttpServer(port);
+            return this;
+        }
+
+
+        /**
+         * Configures the new HttpMocker instance to serve requests of the given namespace of a running
+         * {@link NamespacedStubHttpServer}. Many HttpMocker instances (each with its own stub rules) can share
+         * one namespaced server this way, starting and stopping the HttpMocker instance just attaches and detaches
+         * its stub rules to/from the namespace.
+         *
+         * @param server namespaced stub server
+         * @param namespace namespace key the HttpMocker instance will be serving
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration usesNamespaceOf(final NamespacedStubHttpServer server, final String namespace) {
+            Validate.notNull(server, "server cannot be null");
+
+            this.mockHttpServer = server.namespace(namespace);
+            return this;
+        }
+        
+        
         /**
          * Configures the new HttpMocker instance to use a custom mock server implementation. Godspeed you, brave developer!
          * 
@@ -195,10 +321,169 @@ public final class Jadler {
         }
         
         
+        /**
+         * Defines which threads handle incoming requests of the standard mock server. Use
+         * {@link ExecutionMode#VIRTUAL_THREADS} if lots of concurrent delayed responses
+         * (see {@link ResponseStubbing#withTimeout(long, java.util.concurrent.TimeUnit)}) are expected,
+         * a delayed response doesn't hold a server worker thread then.
+         * 
+         * The execution mode can be set only if the standard mock server is used
+         * (see {@link #usesStandardServerListeningOn(int)}).
+         * @param executionMode execution mode of the request handlers
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration executesRequestsUsing(final ExecutionMode executionMode) {
+            Validate.notNull(executionMode, "executionMode cannot be null");
+            
+            this.executionMode = executionMode;
+            return this;
+        }
+        
+        
+        /**
+         * Defines how many received requests are kept for verification (see {@link HttpMocker#getRequestJournal()}).
+         * The last {@link HttpMockerImpl#DEFAULT_JOURNAL_CAPACITY} requests are kept by default. The capacity
+         * must cover all requests received during a test if they are to be verified
+         * (see {@link Jadler#verifyThatRequest()}), all recorded requests (including their bodies) are kept
+         * in memory though.
+         * @param capacity max number of recorded requests, <tt>0</tt> disables recording
+         * @param evictionPolicy policy applied once the given number of requests has been recorded
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration recordsRequests(final int capacity, final EvictionPolicy evictionPolicy) {
+            this.requestJournal = new RequestJournal(capacity, evictionPolicy);
+            return this;
+        }
+        
+        
+        /**
+         * Appends all received requests along with the responses sent to the given persistent log
+         * (see {@link net.jadler.journal.RequestLogReader} to read it). The log must be closed by the caller
+         * once the stub server has been stopped.
+         * @param requestLog log to append the requests and responses to
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration logsRequestsTo(final RequestLog requestLog) {
+            Validate.notNull(requestLog, "requestLog cannot be null");
+            
+            this.requestLog = requestLog;
+            return this;
+        }
+        
+        
+        /**
+         * Forwards all requests no stub rule has been found for to the given upstream service and records
+         * the exchanges to a request log in the given directory. Run the tests once against a real service
+         * this way and replay the recorded exchanges in the following runs
+         * (see {@link #replaysRecordingsFrom(java.io.File)}). The log is opened when the mocker is started and
+         * closed when it's stopped, a directory must not be recorded to by several mockers running at the same time.
+         * @param upstream base url of the upstream service (<tt>http://localhost:8080</tt> for example)
+         * @param directory directory to record the exchanges to
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration recordsUnmatchedRequests(final String upstream, final File directory) {
+            Validate.notNull(directory, "directory cannot be null");
+            
+            this.recordingClient = new UpstreamClient(upstream);
+            this.recordingDirectory = directory;
+            this.recorder = null;
+            return this;
+        }
+
+
+        /**
+         * Forwards all requests no stub rule has been found for to the given recorder.
+         * @param recorder recorder to forward the unmatched requests to
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration recordsUnmatchedRequests(final Recorder recorder) {
+            Validate.notNull(recorder, "recorder cannot be null");
+            
+            this.recordingClient = null;
+            this.recordingDirectory = null;
+            this.recorder = recorder;
+            return this;
+        }
+
+
+        /**
+         * Adds stub rules replaying the exchanges recorded in the given directory
+         * (see {@link #recordsUnmatchedRequests(java.lang.String, java.io.File)}). The replayed rules are
+         * applied after all rules defined using {@link HttpMocker#onRequest()}.
+         * @param directory directory the exchanges have been recorded to
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration replaysRecordingsFrom(final File directory) {
+            this.replayedRules = RecordedRules.load(directory);
+            return this;
+        }
+        
+        
+        /**
+         * Loads stub rules from the given definition file (see {@link net.jadler.stubbing.StubDefinitions}
+         * for the supported formats).
+         * Use it instead of the fluent stubbing API to define thousands of stubs quickly. The loaded rules are
+         * applied after all rules defined using {@link HttpMocker#onRequest()}, the defaults defined by this
+         * configuration are applied to the responses defined in JSON files.
+         * @param file stub definition file
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration loadsStubsFrom(final File file) {
+            Validate.notNull(file, "file cannot be null");
+            
+            this.stubDefinitions.add(file);
+            return this;
+        }
+        
+        
+        /**
+         * Forwards all requests no stub rule has been found for to the given upstream service, so just some
+         * endpoints of a real service can be stubbed. The upstream responses are streamed back without being
+         * recorded (see {@link #recordsUnmatchedRequests(java.lang.String, java.io.File)} for recording).
+         * 
+         * The proxy can be set only if the standard mock server is used
+         * (see {@link #usesStandardServerListeningOn(int)}).
+         * @param upstream base url of the upstream service (<tt>http://localhost:8080</tt> for example)
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration proxiesUnmatchedRequestsTo(final String upstream) {
+            return this.proxiesUnmatchedRequestsTo(new PassThroughProxy(upstream));
+        }
+        
+        
+        /**
+         * Forwards all requests no stub rule has been found for to the given proxy.
+         * 
+         * The proxy can be set only if the standard mock server is used
+         * (see {@link #usesStandardServerListeningOn(int)}).
+         * @param proxy proxy to forward the unmatched requests to
+         * @return this ongoing configuration
+         */
+        public OngoingConfiguration proxiesUnmatchedRequestsTo(final PassThroughProxy proxy) {
+            Validate.notNull(proxy, "proxy cannot be null");
+            
+            this.passThroughProxy = proxy;
+            return this;
+        }
+        
+        
         /**
          * @return a newly constructed HttpMocker instance.
          */
         public HttpMocker build() {
+            if (this.executionMode != null) {
+                if (!(this.mockHttpServer instanceof JettyStubHttpServer)) {
+                    throw new IllegalStateException("The execution mode can be set for the standard server only");
+                }
+                ((JettyStubHttpServer) this.mockHttpServer).setExecutionMode(this.executionMode);
+            }
+            if (this.passThroughProxy != null) {
+                if (!(this.mockHttpServer instanceof JettyStubHttpServer)) {
+                    throw new IllegalStateException("The proxy can be set for the standard server only");
+                }
+                ((JettyStubHttpServer) this.mockHttpServer).setPassThroughProxy(this.passThroughProxy);
+            }
+            
             final HttpMockerImpl res = new HttpMockerImpl(this.mockHttpServer);
             this.mockHttpServer.registerResponseProvider(res);
 
@@ -209,6 +494,24 @@ public final class Jadler {
                 res.setDefaultStatus(this.defaultStatus);
             }
             res.setDefaultHeaders(this.defaultHeaders);
+            if (this.requestJournal != null) {
+                res.setRequestJournal(this.requestJournal);
+            }
+            if (this.requestLog != null) {
+                res.setRequestLog(this.requestLog);
+            }
+            if (this.recorder != null) {
+                res.setRecorder(this.recorder);
+            }
+            if (this.recordingDirectory != null) {
+                res.setRecorder(this.recordingClient, this.recordingDirectory);
+            }
+            if (this.replayedRules != null) {
+                res.addRules(this.replayedRules);
+            }
+            for (final File file : this.stubDefinitions) {
+                res.loadStubDefinitions(file);
+            }
 
             return res;
         }
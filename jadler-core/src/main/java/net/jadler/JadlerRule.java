@@ -1,7 +1,8 @@
 package net.jadler;
 
 import net.jadler.httpmocker.HttpMocker;
-import net.jadler.portallocator.PortAllocator;
+import net.jadler.server.jetty.JettyServerTuning;
+import net.jadler.server.jetty.SharedStubHttpServer;
 import org.junit.Assert;
 import org.junit.rules.ExternalResource;
 import org.slf4j.Logger;
@@ -13,7 +14,9 @@ import static net.jadler.Jadler.*;
  * JUnit rule which simplyfies setup of Jadler.
  * If this rule is declared in JUnit test then {@link net.jadler.httpmocker.HttpMocker} is automatically
  * start in Before phase and stop in After phase.
- * Port on which the mocker is listening can be random or explicitly configured.
+ * Port on which the mocker is listening can be random or explicitly configured. A random port is chosen
+ * by the operating system when the mocker starts (the server is bound to the port <tt>0</tt>), so there is
+ * no race with other processes allocating ports.
  *
  * <p>
  *      This class is not thread-safe. However, since new instance of rule is created for each junit test this is no issue.
@@ -23,22 +26,24 @@ public class JadlerRule extends ExternalResource {
 
     private static final Logger logger = LoggerFactory.getLogger(JadlerRule.class);
 
-    private final PortAllocator portAllocator = new PortAllocator();
-
     private final int mockerPort;
     private Jadler.OngoingConfiguration ongoingConfiguration;
     private HttpMocker httpMocker;
     private final JadlerConfiguration commonConfiguration;
+    private final JettyServerTuning serverTuning;
+    private final boolean sharedServer;
 
 
     /**
      * Builder for JadlerRule-s. If no attributes are explicitly set then create new JadlerRule
-     * which allocates random port for {@link HttpMocker} and uses no client specific configuration of HttpMocker
+     * which binds {@link HttpMocker} to a random (ephemeral) port and uses no client specific configuration of HttpMocker
      * for tests.
      */
     public static class Builder {
         private int mockerPort = -1;
         private JadlerRule.JadlerConfiguration commonConfiguration;
+        private JettyServerTuning serverTuning;
+        private boolean sharedServer;
 
         /**
          * Specifies explicit port for HttpMocker.
@@ -66,8 +71,29 @@ public class JadlerRule extends ExternalResource {
             return this;
         }
 
+        /**
+         * Specifies connector and worker pool parameters of the underlying stub server.
+         * If not set, the default Jetty configuration is used.
+         *
+         * @param serverTuning stub server tuning parameters
+         */
+        public Builder withServerTuning(JettyServerTuning serverTuning) {
+            this.serverTuning = serverTuning;
+            return this;
+        }
+
+        /**
+         * Makes all rules created this way share one running stub server (per port) instead of starting and
+         * stopping a new one for every test (see {@link SharedStubHttpServer}). If no explicit port is set,
+         * all such rules share one port allocated once per JVM.
+         */
+        public Builder withSharedServer() {
+            this.sharedServer = true;
+            return this;
+        }
+
         public JadlerRule createJadlerRule() {
-            return new JadlerRule(mockerPort, commonConfiguration);
+            return new JadlerRule(mockerPort, commonConfiguration, serverTuning, sharedServer);
         }
     }
 
@@ -77,14 +103,19 @@ public class JadlerRule extends ExternalResource {
      *
      * @param mockerPort port on which the HttpMocker will be listening.
      * @param commonConfiguration mocker configuration shared by all unit tests
+     * @param serverTuning stub server tuning parameters, {@code null} for the default configuration
+     * @param sharedServer true if the rule should use a shared stub server
      */
-    private JadlerRule(int mockerPort, JadlerConfiguration commonConfiguration) {
+    private JadlerRule(int mockerPort, JadlerConfiguration commonConfiguration, JettyServerTuning serverTuning,
+            boolean sharedServer) {
         if (mockerPort <= 0) {
-            this.mockerPort = portAllocator.allocatePort();
+            this.mockerPort = sharedServer ? SharedStubHttpServer.defaultPort() : 0;
         } else {
             this.mockerPort = mockerPort;
         }
         this.commonConfiguration = commonConfiguration;
+        this.serverTuning = serverTuning;
+        this.sharedServer = sharedServer;
     }
 
 
@@ -123,9 +154,13 @@ public class JadlerRule extends ExternalResource {
     }
 
     /**
-     * @return port on which the jadler mocker server is listening.
+     * @return port on which the jadler mocker server is listening. If a random port is used, the actual port
+     * is known once the mocker has been started.
      */
     public int getMockerPort() {
+        if (httpMocker != null && httpMocker.isStarted()) {
+            return httpMocker.getStubHttpServerPort();
+        }
         return mockerPort;
     }
 
@@ -196,6 +231,14 @@ public class JadlerRule extends ExternalResource {
     //-------------------------------------- PRIVATE METHODS -----------------------------------------------------------
 
     private OngoingConfiguration createConfiguration() {
+        if (sharedServer) {
+            return new OngoingConfiguration().usesCustomServer(serverTuning != null
+                    ? new SharedStubHttpServer(mockerPort, serverTuning)
+                    : new SharedStubHttpServer(mockerPort));
+        }
+        if (serverTuning != null) {
+            return new OngoingConfiguration().usesStandardServerListeningOn(mockerPort, serverTuning);
+        }
         return new OngoingConfiguration().usesStandardServerListeningOn(mockerPort);
     }
 
@@ -203,7 +246,7 @@ public class JadlerRule extends ExternalResource {
         if (httpMocker != null && !httpMocker.isStarted()) {
             try {
                 httpMocker.start();
-                logger.debug("HTTP mocker has been started on port=", getMockerPort());
+                logger.debug("HTTP mocker has been started on port={}", getMockerPort());
 
             } catch (Exception e) {
                 logger.error("Cannot start mocker on port=" + getMockerPort(), e);
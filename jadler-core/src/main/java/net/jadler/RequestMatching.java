@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler;
+
+import org.hamcrest.Matcher;
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.stubbing.RequestStubbing;
+
+
+/**
+ * Request predicate vocabulary shared by the http stubbing (see {@link RequestStubbing}) and the verification
+ * of received requests (see {@link net.jadler.verification.Verifying}). The methods of this interface add
+ * predicates an http request must fulfill.
+ * @param <T> type of the ongoing request matching returned by the methods of this interface
+ */
+public interface RequestMatching<T extends RequestMatching<T>> {
+
+    /**
+     * Adds a request predicate.
+     * @param predicate request predicate to be added
+     * @return this ongoing request matching
+     */
+    T that(Matcher<? super HttpServletRequest> predicate);
+    
+    
+    /**
+     * Adds a native request predicate. Native predicates are evaluated against a pre-parsed request view
+     * and avoid the overhead of Hamcrest matchers.
+     * @param predicate request predicate to be added
+     * @return this ongoing request matching
+     */
+    T that(RequestPredicate predicate);
+
+
+    /**
+     * Adds a request method predicate. The request method must be equal (case insensitive) to the given value. 
+     * @param method expected http method of the incoming http request
+     * @return this ongoing request matching 
+     */
+    T havingMethodEqualTo(String method);
+
+
+    /**
+     * Adds a request method predicate.
+     * @param predicate request method predicate
+     * @return this ongoing request matching
+     */
+    T havingMethod(Matcher<? super String> predicate);
+
+
+    /**
+     * Adds a request body predicate. The request body must be equal to the given value. 
+     * @param requestBody expected body of the incoming http request
+     * @return this ongoing request matching 
+     */
+    T havingBodyEqualTo(String requestBody);
+
+    
+    /**
+     * Adds a request body predicate.
+     * @param predicate request body predicate
+     * @return this ongoing request matching
+     */
+    T havingBody(Matcher<? super String> predicate);
+
+
+    /**
+     * Adds a request URI (as retrieved by {@link HttpServletRequest#getRequestURI()}) predicate.
+     * The request URI must be equal to the given value. 
+     * @param uri expected URI of the incoming http request
+     * @return this ongoing request matching
+     */
+    T havingURIEqualTo(String uri);
+
+
+    /**
+     * Adds a request URI (as retrieved by {@link HttpServletRequest#getRequestURI()}) predicate.
+     * @param predicate request URI predicate
+     * @return this ongoing request matching
+     */
+    T havingURI(Matcher<? super String> predicate);
+
+
+    /**
+     * Adds a request URI (as retrieved by {@link HttpServletRequest#getRequestURI()}) predicate.
+     * The whole request URI must match the given regular expression.
+     * 
+     * Regular expressions of all stub rules are compiled into one automaton, so all these predicates are
+     * evaluated in a single pass over the request URI. Prefer this method to {@link #havingURI(Matcher)}
+     * when defining a large number of pattern based rules.
+     * @param regex regular expression (in the <tt>java.util.regex</tt> syntax) the request URI must match
+     * @return this ongoing request matching
+     */
+    T havingURIMatching(String regex);
+    
+    
+    /**
+     * Adds a query string (as retrieved by {@link HttpServletRequest#getQueryString()}) predicate.
+     * The query string value must be equal to the given value. 
+     * @param queryString expected query string of the incoming http request
+     * @return this ongoing request matching 
+     */
+    T havingQueryStringEqualTo(String queryString);
+
+
+    /**
+     * Adds a query string (as retrieved by {@link HttpServletRequest#getQueryString()}) predicate.
+     * @param predicate query string predicate
+     * @return this ongoing request matching
+     */
+    T havingQueryString(Matcher<? super String> predicate);
+    
+
+    /**
+     * Adds a request parameter predicate. The given http parameter must be present
+     * in the request body and at least one of its values must be equal to the given value.
+     * @param name parameter name
+     * @param value expected parameter value
+     * @return this ongoing request matching 
+     */
+    T havingParameterEqualTo(String name, String value);
+
+    
+    /**
+     * Adds a request parameter predicate. 
+     * @param name parameter name
+     * @param predicate parameter predicate
+     * @return this ongoing request matching
+     */
+    T havingParameter(String name, Matcher<? super List<String>> predicate);
+
+
+    /**
+     * Adds a request parameter existence predicate. The given http parameter must be present
+     * in the request body
+     * @param name parameter name
+     * @return this ongoing request matching
+     */
+    T havingParameter(String name);
+
+
+    /**
+     * Adds a request parameters existence predicate. All of the given http parameters must be present
+     * in the request body.
+     * @param names parameter names
+     * @return this ongoing request matching
+     */
+    T havingParameters(String... names);
+
+
+    /**
+     * Adds a request header predicate. The given http header must be present
+     * in the request body and at least one of its values must be equal to the given value.
+     * @param name header name
+     * @param value expected header value
+     * @return this ongoing request matching 
+     */
+    T havingHeaderEqualTo(String name, String value);
+
+
+    /**
+     * Adds a request header predicate. 
+     * @param name header name
+     * @param predicate header predicate
+     * @return this ongoing request matching
+     */
+    T havingHeader(String name, Matcher<? super List<String>> predicate);
+
+
+    /**
+     * Adds a request header predicate. The given http header must be present in the request
+     * and at least one of its values must match the given regular expression (as a whole).
+     * 
+     * Regular expressions of all stub rules for the same header are compiled into one automaton, so all
+     * these predicates are evaluated in a single pass over the header values.
+     * @param name header name
+     * @param regex regular expression (in the <tt>java.util.regex</tt> syntax) a header value must match
+     * @return this ongoing request matching
+     */
+    T havingHeaderMatching(String name, String regex);
+
+
+    /**
+     * Adds a request header existence predicate. The given http header must be present
+     * in the request body
+     * @param name header name
+     * @return this ongoing request matching
+     */
+    T havingHeader(String name);
+
+
+    /**
+     * Adds a request headers existence predicate. All of the given http headers must be present
+     * in the request body.
+     * @param names headers names
+     * @return this ongoing request matching
+     */
+    T havingHeaders(String... names);
+
+
+    /**
+     * Adds a local port predicate. The request must have been received on the given port of the stub server.
+     * Useful if the stub server is listening on several ports (one port per mocked upstream service, for example).
+     * @param port expected local port
+     * @return this ongoing request matching
+     */
+    T havingLocalPortEqualTo(int port);
+
+
+    /**
+     * Adds a virtual host predicate. The host name of the <tt>Host</tt> header (without the port) must be equal
+     * (case insensitive) to the given value.
+     * @param host expected host name
+     * @return this ongoing request matching
+     */
+    T havingHostEqualTo(String host);
+}
@@ -4,8 +4,15 @@
  */
 package net.jadler.httpmocker;
 
+import java.io.File;
+import java.util.List;
 import net.jadler.Jadler;
+import net.jadler.exception.JadlerException;
+import net.jadler.journal.RequestJournal;
+import net.jadler.verification.Verifying;
+import net.jadler.server.ConnectionStatistics;
 import net.jadler.stubbing.RequestStubbing;
+import net.jadler.stubbing.RuleStatistics;
 
 
 /**
@@ -45,4 +52,56 @@ public interface HttpMocker {
      * @return true, if the mock server has already been started, otherwise false
      */
     boolean isStarted();
+    
+    
+    /**
+     * @return port the underlying mock http server is listening on. This is the actual port the server is bound
+     * to, even if it has been configured to use an ephemeral port (port <tt>0</tt>).
+     * @throws IllegalStateException if the mock server hasn't been started yet.
+     */
+    int getStubHttpServerPort();
+    
+    
+    /**
+     * @return current connection statistics of the underlying mock http server. Use them to check whether
+     * a client reuses its connections (see {@link ConnectionStatistics#getReuseRatio()}).
+     * @throws IllegalStateException if the mock server hasn't been started yet or it doesn't track
+     * its connections
+     */
+    ConnectionStatistics getConnectionStatistics();
+    
+    
+    /**
+     * @return journal of the requests received by the mock server so far. Use it to verify which requests
+     * a client has sent (the journal is bounded, see {@link RequestJournal#getEvictedCount()}).
+     */
+    RequestJournal getRequestJournal();
+    
+    
+    /**
+     * Starts a verification of the requests received by the mock server so far (see {@link #getRequestJournal()}).
+     * @return verifying object for ongoing verification
+     */
+    Verifying verifyThatRequest();
+    
+    
+    /**
+     * Writes a snapshot of the active stub rules (including the position in their response sequences) to the given
+     * file. Load the snapshot in another mocker (possibly in another JVM) using
+     * {@link Jadler.OngoingConfiguration#loadsStubsFrom(java.io.File)} to continue with the same rules.
+     * Rules containing a predicate created from a general hamcrest matcher cannot be stored, they're skipped.
+     * @param file file to write the snapshot to (overwritten if it exists)
+     * @return number of rules written
+     * @throws JadlerException when the file cannot be written
+     */
+    int exportRules(File file);
+    
+    
+    /**
+     * @return statistics of the active stub rules (number of matching requests, near misses, match and write time
+     * histograms) in the order of precedence, so the index of the statistics is the id of the rule recorded in
+     * the request journal. The rules are created once the first request has been received, an empty list is
+     * returned before.
+     */
+    List<RuleStatistics> getRuleStatistics();
 }
@@ -4,16 +4,30 @@
  */
 package net.jadler.httpmocker;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import net.jadler.journal.RequestJournal;
+import net.jadler.journal.RequestLog;
+import net.jadler.journal.RequestJournal.EvictionPolicy;
+import net.jadler.proxy.Recorder;
+import net.jadler.proxy.UpstreamClient;
+import net.jadler.verification.Verifying;
 import net.jadler.stubbing.RequestStubbing;
+import net.jadler.stubbing.RuleSet;
+import net.jadler.stubbing.RuleStatistics;
+import net.jadler.stubbing.StubDefinitions;
 import net.jadler.stubbing.StubbingFactory;
 import net.jadler.stubbing.Stubbing;
 import net.jadler.stubbing.StubResponse;
 import net.jadler.stubbing.StubRule;
 import net.jadler.exception.JadlerException;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ConnectionStatisticsAware;
 import net.jadler.server.StubHttpServer;
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.collections.MultiMap;
@@ -29,21 +43,39 @@ import org.slf4j.LoggerFactory;
  * 
  * This class is stateful and thread-safe.
  */
-public class HttpMockerImpl implements HttpMocker, ResponseProvider {
+public class HttpMockerImpl implements HttpMocker, RuleAwareResponseProvider {
 
     private final StubHttpServer server;
     private final StubbingFactory stubbingFactory;
     private final List<Stubbing> stubbings;
-    private List<StubRule> httpMockRules;
+    private volatile RuleSet ruleSet;
+    private RequestJournal requestJournal;
+    private RequestLog requestLog;
+    private Recorder recorder;
+      //the recorder logs to this directory if set, the log is opened on start and closed on stop
+    private File recordingDirectory;
+    private UpstreamClient recordingClient;
+    private List<StubRule> predefinedRules;
+      //rules created from the stubbings once the first request has been received
+    private List<StubRule> stubbingRules;
     
     private MultiMap defaultHeaders;
     private int defaultStatus;
     private Charset defaultEncoding;
     
     private boolean started = false;
-    private boolean configurable = true;
+      //read without locking on the request path, the rule set is compiled before this is set to false
+    private volatile boolean configurable = true;
+      //incremented by every replacement of the predefined rules, so a slower compilation cannot overwrite a newer one
+    private long rulesGeneration;
     
     private static final Logger logger = LoggerFactory.getLogger(HttpMockerImpl.class);
+    
+    /**
+     * Number of requests kept in the request journal by default. Larger journals must be requested explicitly
+     * (see {@link #setRequestJournal(RequestJournal)}) since all recorded requests are kept on the heap.
+     */
+    public static final int DEFAULT_JOURNAL_CAPACITY = 1024;
 
     
     /**
@@ -68,6 +100,7 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
         this.server = server;
         
         this.stubbings = new ArrayList<>();
+        this.predefinedRules = new ArrayList<>();
         this.defaultHeaders = new MultiValueMap();
         this.defaultStatus = HttpServletResponse.SC_OK;
         this.defaultEncoding =  Charset.forName("UTF-8");
@@ -75,7 +108,8 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
         Validate.notNull(stubbingFactory, "stubbingFactory cannot be null");
         this.stubbingFactory = stubbingFactory;
         
-        this.httpMockRules = new ArrayList<>();
+        this.ruleSet = RuleSet.compile(new ArrayList<StubRule>());
+        this.requestJournal = new RequestJournal(DEFAULT_JOURNAL_CAPACITY, EvictionPolicy.OVERWRITE_OLDEST);
     }
     
     
@@ -90,9 +124,11 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
         
         logger.debug("starting the underlying mock server...");
 
+        this.openRecordingLog();
         try {
             server.start();
         } catch (final Exception ex) {
+            this.closeRecordingLog();
             throw new JadlerException("Mock http server start failure", ex);
         }
         this.started = true;
@@ -115,6 +151,10 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
         } catch (final Exception ex) {
             throw new JadlerException("Mock http server shutdown failure", ex);
         }
+        finally {
+              //no request is being handled anymore (or the server is broken), the log can be closed
+            this.closeRecordingLog();
+        }
         this.started = false;
     }
     
@@ -128,6 +168,217 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getStubHttpServerPort() {
+        if (!this.started) {
+            throw new IllegalStateException("The mock server hasn't been started yet.");
+        }
+        
+        return this.server.getPort();
+    }
+
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionStatistics getConnectionStatistics() {
+        if (!this.started) {
+            throw new IllegalStateException("The mock server hasn't been started yet.");
+        }
+        
+        final ConnectionStatistics res = this.server instanceof ConnectionStatisticsAware
+                ? ((ConnectionStatisticsAware) this.server).getConnectionStatistics()
+                : null;
+        if (res == null) {
+            throw new IllegalStateException("The mock server doesn't track its connections.");
+        }
+        return res;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RequestJournal getRequestJournal() {
+        return this.requestJournal;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Verifying verifyThatRequest() {
+        return new Verifying(this.requestJournal);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int exportRules(final File file) {
+        Validate.notNull(file, "file cannot be null");
+        
+        final List<StubRule> rules;
+        synchronized(this) {
+              //the rules haven't been compiled yet if no request has been received
+            rules = this.configurable
+                    ? concat(this.createStubbingRules(), this.predefinedRules) : this.ruleSet.getRules();
+        }
+        
+        final int res = StubDefinitions.writeSnapshot(rules, file);
+        if (res < rules.size()) {
+            logger.warn("{} rule(s) defined using general matchers cannot be exported", rules.size() - res);
+        }
+        return res;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<RuleStatistics> getRuleStatistics() {
+        final List<StubRule> rules = this.ruleSet.getRules();
+        final List<RuleStatistics> res = new ArrayList<>(rules.size());
+        for (final StubRule rule : rules) {
+            res.add(rule.getMetrics().snapshot());
+        }
+        return res;
+    }
+
+
+    /**
+     * Defines the journal all received requests are recorded to (a journal of
+     * {@link #DEFAULT_JOURNAL_CAPACITY} requests overwriting the oldest ones is used by default)
+     * @param requestJournal journal to record all received requests to
+     */
+    public void setRequestJournal(final RequestJournal requestJournal) {
+        Validate.notNull(requestJournal, "requestJournal cannot be null");
+        this.checkConfigurable();
+        this.requestJournal = requestJournal;
+    }
+
+
+    /**
+     * Defines the persistent log all received requests and the responses sent are appended to (no log is used
+     * by default). The log is not closed by this mocker.
+     * @param requestLog log to append all received requests and responses to
+     */
+    public void setRequestLog(final RequestLog requestLog) {
+        Validate.notNull(requestLog, "requestLog cannot be null");
+        this.checkConfigurable();
+        this.requestLog = requestLog;
+    }
+
+
+    /**
+     * Defines the recorder all requests no stub rule has been found for are forwarded to. The recorder's response
+     * is returned for such requests. Without a recorder no response is provided for them (see
+     * {@link ResponseProvider#provideResponseFor(javax.servlet.http.HttpServletRequest)}), how this is handled
+     * is up to the stub server (most of them respond with the <tt>500</tt> status).
+     * @param recorder recorder to forward the unmatched requests to
+     */
+    public void setRecorder(final Recorder recorder) {
+        Validate.notNull(recorder, "recorder cannot be null");
+        this.checkConfigurable();
+        this.recorder = recorder;
+        this.recordingDirectory = null;
+        this.recordingClient = null;
+    }
+
+
+    /**
+     * Defines a recorder forwarding all requests no stub rule has been found for to the given upstream client
+     * and recording the exchanges to a request log in the given directory (see
+     * {@link #setRecorder(net.jadler.proxy.Recorder)}). Unlike a recorder set directly, the log is owned by this
+     * mocker, it's opened when the mocker is started and closed when it's stopped. A directory must not be
+     * recorded to by several mockers running at the same time.
+     * @param client client forwarding the requests to the upstream
+     * @param directory directory of the request log
+     */
+    public void setRecorder(final UpstreamClient client, final File directory) {
+        Validate.notNull(client, "client cannot be null");
+        Validate.notNull(directory, "directory cannot be null");
+        this.checkConfigurable();
+        this.recorder = null;
+        this.recordingDirectory = directory;
+        this.recordingClient = client;
+    }
+
+
+    /**
+     * Adds already created stub rules (loaded using {@link net.jadler.proxy.RecordedRules#load(java.io.File)} for
+     * example). These rules are applied after all rules defined using {@link #onRequest()}.
+     * @param rules stub rules to be added
+     */
+    public void addRules(final Collection<StubRule> rules) {
+        Validate.notNull(rules, "rules cannot be null");
+        Validate.noNullElements(rules, "rules cannot contain null");
+        
+        synchronized(this) {
+            this.checkConfigurable();
+            this.predefinedRules.addAll(rules);
+        }
+    }
+
+
+    /**
+     * Replaces all rules added using {@link #addRules(java.util.Collection)} (or loaded from definition files)
+     * with the given rules. Contrary to other configuration methods, this one can be called at any time, even
+     * while requests are being served. The rule set is recompiled without blocking the requests being served and
+     * swapped atomically, a request being served at the moment of the swap is finished using the previous rules.
+     * The rules defined using {@link #onRequest()} are kept (including the position in their response sequences)
+     * and applied before the given rules.
+     * @param rules new stub rules
+     */
+    public void replaceRules(final Collection<StubRule> rules) {
+        Validate.notNull(rules, "rules cannot be null");
+        Validate.noNullElements(rules, "rules cannot contain null");
+        
+        final List<StubRule> predefined = new ArrayList<>(rules);
+        final List<StubRule> stubbing;
+        final long generation;
+        synchronized(this) {
+            this.predefinedRules = predefined;
+            if (this.configurable) {
+                  //compiled once the first request has been received
+                return;
+            }
+            stubbing = this.stubbingRules;
+            generation = ++this.rulesGeneration;
+        }
+        
+          //compiled outside of the lock, the requests are being served using the previous rules meanwhile
+        final RuleSet compiled = RuleSet.compile(concat(stubbing, predefined));
+        synchronized(this) {
+            if (generation == this.rulesGeneration) {
+                this.ruleSet = compiled;
+            }
+        }
+    }
+
+
+    /**
+     * Adds stub rules read from the given definition file (see {@link StubDefinitions} for the supported formats).
+     * The default status, headers and encoding of this mocker are applied to the responses defined in a JSON
+     * file, so they must be defined before calling this method. These rules are applied after all rules defined
+     * using {@link #onRequest()}.
+     * @param file stub definition file
+     */
+    public void loadStubDefinitions(final File file) {
+        Validate.notNull(file, "file cannot be null");
+        this.checkConfigurable();
+        this.addRules(new StubDefinitions(this.defaultEncoding, this.defaultStatus, this.defaultHeaders).load(file));
+    }
+
+
     /**
      * Defines default headers to be added to every mock http response
      * @param defaultHeaders default headers to be added to every mock http response 
@@ -183,37 +434,56 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
      */
     @Override
     public StubResponse provideResponseFor(final HttpServletRequest req) {
+        final MatchedResponse matched = this.provideMatchedResponseFor(req);
+        return matched != null ? matched.getResponse() : null;
+    }
+    
+    
+    /**
+     * {@inheritDoc} 
+     */
+    @Override
+    public MatchedResponse provideMatchedResponseFor(final HttpServletRequest req) {
         
-        synchronized(this) {
-            if (this.configurable) {
-                this.configurable = false;
-                this.httpMockRules = this.createRules();
+        if (this.configurable) {
+            synchronized(this) {
+                if (this.configurable) {
+                    this.stubbingRules = this.createStubbingRules();
+                    this.ruleSet = RuleSet.compile(concat(this.stubbingRules, this.predefinedRules));
+                    this.configurable = false;
+                }
             }
         }
         
-        for (final StubRule rule : this.httpMockRules) {
-            if (rule.matchedBy(req)) {
-                final StringBuilder sb = new StringBuilder();
-                sb.append("Following rule will be applied:\n");
-                sb.append(rule);
-                logger.debug(sb.toString());
-                
-                return rule.nextResponse();
-            }
+        final RuleSet rules = this.ruleSet;
+        final long matchStart = System.nanoTime();
+        final int matchingIndex = rules.findMatchingRuleIndex(req);
+        final long matchTime = System.nanoTime() - matchStart;
+        this.record(req, matchingIndex);
+        
+        if (matchingIndex >= 0) {
+            final StubRule matching = rules.getRules().get(matchingIndex);
+            matching.getMetrics().recordHit(matchTime);
+            final StringBuilder sb = new StringBuilder();
+            sb.append("Following rule will be applied:\n");
+            sb.append(matching);
+            logger.debug(sb.toString());
+
+            final StubResponse response = matching.nextResponse();
+            this.log(req, matchingIndex, response);
+            return new MatchedResponse(response, matching.getMetrics());
         }
         
-        final StringBuilder sb = new StringBuilder();
-        sb.append("No suitable rule found. Reason:\n");
-        for (final StubRule rule: this.httpMockRules) {
-            sb.append("The rule '");
-            sb.append(rule);
-            sb.append("' cannot be applied. Mismatch:\n");
-            sb.append(rule.describeMismatch(req));
-            sb.append("\n");
+          //the mismatch reasons are described by the same evaluation which finds the closest rules
+        final StringBuilder sb = logger.isInfoEnabled() ? new StringBuilder("No suitable rule found. Reason:\n") : null;
+        rules.recordNearMisses(req, sb);
+        if (sb != null) {
+            logger.info(sb.toString());
         }
-        logger.info(sb.toString());
         
-        return null;
+        final StubResponse response = this.forward(req);
+        this.log(req, matchingIndex, response);
+        return response != null ? new MatchedResponse(response, null) : null;
     }
 
     
@@ -222,11 +492,74 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
      * @return list of created http mock rules
      */
     List<StubRule> getHttpMockRules() {
-        return httpMockRules;
+        return this.ruleSet.getRules();
+    }
+    
+    
+    private void record(final HttpServletRequest req, final int matchedRuleId) {
+        try {
+            this.requestJournal.record(req, matchedRuleId);
+        }
+        catch (final IOException ex) {
+            throw new JadlerException("Cannot record the request to the request journal", ex);
+        }
+    }
+    
+    
+    private void openRecordingLog() {
+        if (this.recordingDirectory == null) {
+            return;
+        }
+        try {
+            this.recorder = new Recorder(this.recordingClient, new RequestLog(this.recordingDirectory));
+        }
+        catch (final IOException ex) {
+            throw new JadlerException("Cannot open the request log in " + this.recordingDirectory, ex);
+        }
+    }
+    
+    
+    private void closeRecordingLog() {
+        if (this.recordingDirectory == null || this.recorder == null) {
+            return;
+        }
+        final RequestLog log = this.recorder.getLog();
+        this.recorder = null;
+        try {
+            log.close();
+        }
+        catch (final IOException ex) {
+            throw new JadlerException("Cannot close the request log in " + this.recordingDirectory, ex);
+        }
+    }
+    
+    
+    private StubResponse forward(final HttpServletRequest req) {
+        if (this.recorder == null) {
+            return null;
+        }
+        try {
+            return this.recorder.forward(req);
+        }
+        catch (final IOException ex) {
+            throw new JadlerException("Cannot forward the request to the upstream", ex);
+        }
+    }
+    
+    
+    private void log(final HttpServletRequest req, final int matchedRuleId, final StubResponse response) {
+        if (this.requestLog != null) {
+            try {
+                this.requestLog.append(req, matchedRuleId, response);
+            }
+            catch (final IOException ex) {
+                throw new JadlerException("Cannot append the request to the request log", ex);
+            }
+        }
     }
     
     
-    private List<StubRule> createRules() {
+    private List<StubRule> createStubbingRules() {
         final List<StubRule> rules = new ArrayList<>();
         for (final Stubbing stub : stubbings) {
             rules.add(stub.createRule());
@@ -235,6 +568,14 @@ public class HttpMockerImpl implements HttpMocker, ResponseProvider {
     }
     
     
+    private static List<StubRule> concat(final List<StubRule> first, final List<StubRule> second) {
+        final List<StubRule> res = new ArrayList<>(first.size() + second.size());
+        res.addAll(first);
+        res.addAll(second);
+        return res;
+    }
+    
+    
     private synchronized void checkConfigurable() {
         if (!this.configurable) {
             throw new IllegalStateException("Once first http request has been served, "
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.httpmocker;
+
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.stubbing.RuleMetrics;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A stub response provided for a request along with the metrics of the stub rule it has been taken from,
+ * so the stub server can report the time spent by writing the response (see {@link RuleMetrics#recordWrite(long)}).
+ * Stub responses can be shared by several rules, so the rule is always given by the request being served,
+ * never by the response itself.
+ */
+public final class MatchedResponse {
+
+    private final StubResponse response;
+    private final RuleMetrics ruleMetrics;
+
+
+    /**
+     * @param response provided stub response
+     * @param ruleMetrics metrics of the stub rule the response has been taken from or <tt>null</tt> if the
+     * response doesn't belong to any rule
+     */
+    public MatchedResponse(final StubResponse response, final RuleMetrics ruleMetrics) {
+        Validate.notNull(response, "response cannot be null");
+
+        this.response = response;
+        this.ruleMetrics = ruleMetrics;
+    }
+
+
+    /**
+     * Provides a response for the given request. The rule metrics are provided by
+     * a {@link RuleAwareResponseProvider} only, responses of other providers come with no metrics.
+     * @param provider provider of the response
+     * @param req http request to return a mock response for
+     * @return response for the given request or <tt>null</tt> if no response is defined for this request
+     */
+    public static MatchedResponse provide(final ResponseProvider provider, final HttpServletRequest req) {
+        if (provider instanceof RuleAwareResponseProvider) {
+            return ((RuleAwareResponseProvider) provider).provideMatchedResponseFor(req);
+        }
+
+        final StubResponse res = provider.provideResponseFor(req);
+        return res != null ? new MatchedResponse(res, null) : null;
+    }
+
+
+    /**
+     * @return provided stub response
+     */
+    public StubResponse getResponse() {
+        return this.response;
+    }
+
+
+    /**
+     * @return metrics of the stub rule the response has been taken from or <tt>null</tt> if the response
+     * doesn't belong to any rule
+     */
+    public RuleMetrics getRuleMetrics() {
+        return this.ruleMetrics;
+    }
+}
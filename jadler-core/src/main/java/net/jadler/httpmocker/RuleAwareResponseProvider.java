@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.httpmocker;
+
+import javax.servlet.http.HttpServletRequest;
+
+
+/**
+ * A {@link ResponseProvider} which also tells the stub rule the provided response has been taken from,
+ * so the stub servers can report the write time to the rule metrics.
+ */
+public interface RuleAwareResponseProvider extends ResponseProvider {
+
+    /**
+     * @param req http request to return a mock response for
+     * @return mock response to be returned for the given request along with the metrics of its stub rule or null,
+     * if no response is defined for this request
+     */
+    MatchedResponse provideMatchedResponseFor(HttpServletRequest req);
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Request and response read from a request log, see {@link RequestLogReader}.
+ */
+public final class LoggedExchange {
+
+    private final RecordedRequest request;
+    private final int responseStatus;
+      //name1, value1, name2, value2, ...
+    private final String[] responseHeaders;
+    private final byte[] responseBody;
+
+
+    LoggedExchange(final RecordedRequest request, final int responseStatus, final String[] responseHeaders,
+            final byte[] responseBody) {
+        this.request = request;
+        this.responseStatus = responseStatus;
+        this.responseHeaders = responseHeaders;
+        this.responseBody = responseBody;
+    }
+
+
+    /**
+     * @return the logged request
+     */
+    public RecordedRequest getRequest() {
+        return this.request;
+    }
+
+
+    /**
+     * @return true if a stub response has been sent to the request, false if no rule has been found
+     */
+    public boolean hasResponse() {
+        return this.responseStatus != RequestLogFormat.NO_RESPONSE;
+    }
+
+
+    /**
+     * @return status of the response or <tt>-1</tt> if no response has been sent
+     */
+    public int getResponseStatus() {
+        return this.responseStatus;
+    }
+
+
+    /**
+     * @return distinct names of all response headers
+     */
+    public Set<String> getResponseHeaderNames() {
+        final Set<String> res = new LinkedHashSet<>();
+        for (int i = 0; i < this.responseHeaders.length; i += 2) {
+            res.add(this.responseHeaders[i]);
+        }
+        return Collections.unmodifiableSet(res);
+    }
+
+
+    /**
+     * @param name case insensitive header name
+     * @return all values of the given response header (an empty list if there is no such header)
+     */
+    public List<String> getResponseHeaderValues(final String name) {
+        Validate.notNull(name, "name cannot be null");
+
+        final List<String> res = new ArrayList<>(1);
+        for (int i = 0; i < this.responseHeaders.length; i += 2) {
+            if (name.equalsIgnoreCase(this.responseHeaders[i])) {
+                res.add(this.responseHeaders[i + 1]);
+            }
+        }
+        return Collections.unmodifiableList(res);
+    }
+
+
+    /**
+     * @return a copy of the encoded response body (an empty array if there is no body or no response)
+     */
+    public byte[] getResponseBody() {
+        return this.responseBody.clone();
+    }
+
+
+    @Override
+    public String toString() {
+        return this.request + " -> " + (this.hasResponse() ? this.responseStatus : "no response");
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.server.BasicHttpServletRequest;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Immutable snapshot of a request received by a stub server, see {@link RequestJournal}. Headers are kept
+ * in one flat array of names and values and the body as a byte array, so a snapshot takes just a few objects.
+ */
+public final class RecordedRequest {
+
+    private static final String[] NO_HEADERS = new String[0];
+    private static final byte[] NO_BODY = new byte[0];
+    private static final Charset DEFAULT_ENCODING = Charset.forName("ISO-8859-1");
+
+    private final long sequence;
+    private final long timestamp;
+    private final String method;
+    private final String requestURI;
+    private final String queryString;
+      //name1, value1, name2, value2, ...
+    private final String[] headers;
+    private final byte[] body;
+    private final String characterEncoding;
+    private final int localPort;
+    private final int matchedRuleId;
+
+
+    RecordedRequest(final long sequence, final long timestamp, final String method,
+            final String requestURI, final String queryString, final String[] headers, final byte[] body,
+            final String characterEncoding, final int localPort, final int matchedRuleId) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.method = method;
+        this.requestURI = requestURI;
+        this.queryString = queryString;
+        this.headers = headers;
+        this.body = body;
+        this.characterEncoding = characterEncoding;
+        this.localPort = localPort;
+        this.matchedRuleId = matchedRuleId;
+    }
+
+
+    /**
+     * Creates a snapshot of the given request. The body is read from the request input stream,
+     * so the request must support multiple reads (see {@link net.jadler.server.MultipleReadsHttpServletRequest}).
+     * @param sequence sequence number of the request
+     * @param timestamp time the request was received at (in milliseconds since the epoch)
+     * @param req request to take a snapshot of
+     * @param matchedRuleId id of the stub rule matched by the request or <tt>-1</tt> if no rule has been matched
+     * @return snapshot of the given request
+     * @throws IOException when the request body cannot be read
+     */
+    public static RecordedRequest of(final long sequence, final long timestamp, final HttpServletRequest req,
+            final int matchedRuleId) throws IOException {
+        Validate.notNull(req, "req cannot be null");
+
+        return new RecordedRequest(sequence, timestamp, req.getMethod(), req.getRequestURI(), req.getQueryString(),
+                readHeaders(req), readBody(req), req.getCharacterEncoding(),
+                req.getLocalPort(), matchedRuleId);
+    }
+
+
+    /**
+     * @param sequence sequence number of the new snapshot
+     * @return copy of this snapshot with the given sequence number (the header and body arrays are shared)
+     */
+    RecordedRequest withSequence(final long sequence) {
+        return new RecordedRequest(sequence, this.timestamp, this.method, this.requestURI, this.queryString,
+                this.headers, this.body, this.characterEncoding, this.localPort, this.matchedRuleId);
+    }
+
+
+    /**
+     * @return sequence number of the request (requests are numbered from <tt>0</tt> in the order they were
+     * recorded in)
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+
+    /**
+     * @return time the request was received at in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+
+    /**
+     * @return http method of the request
+     */
+    public String getMethod() {
+        return this.method;
+    }
+
+
+    /**
+     * @return request URI (without the query string)
+     */
+    public String getRequestURI() {
+        return this.requestURI;
+    }
+
+
+    /**
+     * @return query string of the request or <tt>null</tt> if there is no query string
+     */
+    public String getQueryString() {
+        return this.queryString;
+    }
+
+
+    /**
+     * @return local port the request was received on
+     */
+    public int getLocalPort() {
+        return this.localPort;
+    }
+
+
+    /**
+     * @return distinct names of all request headers in the order of their first occurrence
+     */
+    public Set<String> getHeaderNames() {
+        final Set<String> res = new LinkedHashSet<>();
+        for (int i = 0; i < this.headers.length; i += 2) {
+            res.add(this.headers[i]);
+        }
+        return Collections.unmodifiableSet(res);
+    }
+
+
+    /**
+     * @param name case insensitive header name
+     * @return all values of the given header (an empty list if there is no such header)
+     */
+    public List<String> getHeaderValues(final String name) {
+        Validate.notNull(name, "name cannot be null");
+
+        final List<String> res = new ArrayList<>(1);
+        for (int i = 0; i < this.headers.length; i += 2) {
+            if (name.equalsIgnoreCase(this.headers[i])) {
+                res.add(this.headers[i + 1]);
+            }
+        }
+        return Collections.unmodifiableList(res);
+    }
+
+
+    /**
+     * @param name case insensitive header name
+     * @return first value of the given header or <tt>null</tt> if there is no such header
+     */
+    public String getHeader(final String name) {
+        Validate.notNull(name, "name cannot be null");
+
+        for (int i = 0; i < this.headers.length; i += 2) {
+            if (name.equalsIgnoreCase(this.headers[i])) {
+                return this.headers[i + 1];
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * @return a copy of the request body (an empty array if there is no body)
+     */
+    public byte[] getBody() {
+        return this.body.clone();
+    }
+
+
+    /**
+     * @return length of the request body in bytes
+     */
+    public int getBodyLength() {
+        return this.body.length;
+    }
+
+
+    /**
+     * @return the request body decoded using the request encoding (<tt>ISO-8859-1</tt>, the servlet default,
+     * if the request doesn't define any)
+     */
+    public String getBodyAsString() {
+        return new String(this.body, this.characterEncoding != null && Charset.isSupported(this.characterEncoding)
+                ? Charset.forName(this.characterEncoding) : DEFAULT_ENCODING);
+    }
+
+
+    /**
+     * @return character encoding of the request or <tt>null</tt> if the request doesn't define any
+     */
+    public String getCharacterEncoding() {
+        return this.characterEncoding;
+    }
+
+
+    /**
+     * @return id of the stub rule matched by the request (the index of the rule in the order of definition)
+     * or <tt>-1</tt> if the request didn't match any rule
+     */
+    public int getMatchedRuleId() {
+        return this.matchedRuleId;
+    }
+
+
+    /**
+     * @return true if the request matched a stub rule
+     */
+    public boolean isMatched() {
+        return this.matchedRuleId >= 0;
+    }
+
+
+    /**
+     * package private getter used by the request log
+     * @return request headers as a flat array of names and values
+     */
+    String[] getHeaderArray() {
+        return this.headers;
+    }
+
+
+    /**
+     * package private getter used by the request log
+     * @return request body (not copied)
+     */
+    byte[] getBodyArray() {
+        return this.body;
+    }
+
+
+    /**
+     * @return a new http request with the values of this snapshot. Use it to evaluate request predicates
+     * (see {@link net.jadler.predicates.RequestPredicate}) against the recorded request.
+     */
+    public HttpServletRequest toHttpServletRequest() {
+        final BasicHttpServletRequest res =
+                new BasicHttpServletRequest(this.method, this.requestURI, this.queryString, null, this.body);
+        for (int i = 0; i < this.headers.length; i += 2) {
+            res.addHeader(this.headers[i], this.headers[i + 1]);
+        }
+        if (this.localPort >= 0 && this.localPort <= 0xFFFF) {
+            res.setLocalAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.localPort));
+        }
+        if (this.characterEncoding != null && Charset.isSupported(this.characterEncoding)) {
+            try {
+                res.setCharacterEncoding(this.characterEncoding);
+            }
+            catch (final UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return res;
+    }
+
+
+    @Override
+    public String toString() {
+        return "#" + this.sequence + " " + this.method + " " + this.requestURI
+                + (this.queryString != null ? "?" + this.queryString : "")
+                + (this.isMatched() ? " (rule " + this.matchedRuleId + ")" : " (no rule)");
+    }
+
+
+    private static byte[] readBody(final HttpServletRequest req) throws IOException {
+        final InputStream body = req.getInputStream();
+        return body != null ? IOUtils.toByteArray(body) : NO_BODY;
+    }
+
+
+    private static String[] readHeaders(final HttpServletRequest req) {
+        final Enumeration<String> names = req.getHeaderNames();
+        if (names == null || !names.hasMoreElements()) {
+            return NO_HEADERS;
+        }
+
+        final List<String> res = new ArrayList<>();
+        while (names.hasMoreElements()) {
+            final String name = names.nextElement();
+            final Enumeration<String> values = req.getHeaders(name);
+            while (values != null && values.hasMoreElements()) {
+                res.add(name);
+                res.add(values.nextElement());
+            }
+        }
+        return res.toArray(new String[res.size()]);
+    }
+}
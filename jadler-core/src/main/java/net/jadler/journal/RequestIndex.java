@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Secondary indexes of the requests kept in a {@link RequestJournal} by method, URI and matched rule id.
+ *
+ * The indexes are maintained by queries only, so recording a request costs nothing extra. Every query indexes
+ * the requests recorded since the previous one and drops the evicted ones first, so a query costs time
+ * proportional to the number of new requests and the number of requests found.
+ *
+ * Every index entry is a queue of requests ordered by their sequence numbers. Requests are evicted in the order
+ * of their sequence numbers too, so an evicted request is always at the head of all its queues.
+ *
+ * This class is not thread-safe, {@link RequestJournal} serializes the queries.
+ */
+class RequestIndex {
+
+    private final ArrayDeque<RecordedRequest> all = new ArrayDeque<>();
+    private final Map<String, ArrayDeque<RecordedRequest>> byMethod = new HashMap<>();
+    private final Map<String, ArrayDeque<RecordedRequest>> byURI = new HashMap<>();
+    private final Map<Integer, ArrayDeque<RecordedRequest>> byRule = new HashMap<>();
+      //sequence number of the next request to be indexed
+    private long next = 0;
+
+
+    /**
+     * @return sequence number of the next request to be indexed
+     */
+    long getNext() {
+        return this.next;
+    }
+
+
+    /**
+     * Adds the given request to the indexes.
+     * @param req request to be indexed, must have a higher sequence number than all requests indexed so far
+     */
+    void add(final RecordedRequest req) {
+        this.all.addLast(req);
+        add(this.byMethod, normalizeMethod(req.getMethod()), req);
+        add(this.byURI, req.getRequestURI(), req);
+        add(this.byRule, req.getMatchedRuleId(), req);
+        this.next = req.getSequence() + 1;
+    }
+
+
+    /**
+     * Marks all requests up to the given sequence number as indexed. Used to skip the requests
+     * which have been evicted before being indexed.
+     * @param sequence sequence number of the next request to be indexed
+     */
+    void skipTo(final long sequence) {
+        this.next = Math.max(this.next, sequence);
+    }
+
+
+    /**
+     * Removes all requests with a sequence number lower than the given one from the indexes.
+     * @param sequence sequence number of the oldest request kept in the journal
+     */
+    void evictBefore(final long sequence) {
+        while (!this.all.isEmpty() && this.all.peekFirst().getSequence() < sequence) {
+            final RecordedRequest req = this.all.pollFirst();
+            removeFirst(this.byMethod, normalizeMethod(req.getMethod()));
+            removeFirst(this.byURI, req.getRequestURI());
+            removeFirst(this.byRule, req.getMatchedRuleId());
+        }
+    }
+
+
+    /**
+     * @param method request method (case insensitive) or <tt>null</tt> for any method
+     * @param uri request URI or <tt>null</tt> for any URI
+     * @param matchedRuleId matched rule id or <tt>null</tt> for any rule
+     * @return indexed requests with the given method, URI and matched rule id ordered by their sequence numbers
+     */
+    List<RecordedRequest> find(final String method, final String uri, final Integer matchedRuleId) {
+          //the smallest of the queried indexes is scanned, the remaining conditions are checked for each request
+        ArrayDeque<RecordedRequest> candidates = this.all;
+        if (method != null) {
+            candidates = smaller(candidates, this.byMethod.get(normalizeMethod(method)));
+        }
+        if (uri != null) {
+            candidates = smaller(candidates, this.byURI.get(uri));
+        }
+        if (matchedRuleId != null) {
+            candidates = smaller(candidates, this.byRule.get(matchedRuleId));
+        }
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        final List<RecordedRequest> res = new ArrayList<>(candidates.size());
+        for (final RecordedRequest req : candidates) {
+            if ((method == null || method.equalsIgnoreCase(req.getMethod()))
+                    && (uri == null || uri.equals(req.getRequestURI()))
+                    && (matchedRuleId == null || matchedRuleId == req.getMatchedRuleId())) {
+                res.add(req);
+            }
+        }
+        return res;
+    }
+
+
+    private static ArrayDeque<RecordedRequest> smaller(final ArrayDeque<RecordedRequest> current,
+            final ArrayDeque<RecordedRequest> other) {
+        if (current == null || other == null) {
+            return null;
+        }
+        return other.size() < current.size() ? other : current;
+    }
+
+
+    private static <K> void add(final Map<K, ArrayDeque<RecordedRequest>> index, final K key,
+            final RecordedRequest req) {
+        ArrayDeque<RecordedRequest> entry = index.get(key);
+        if (entry == null) {
+            entry = new ArrayDeque<>();
+            index.put(key, entry);
+        }
+        entry.addLast(req);
+    }
+
+
+    private static <K> void removeFirst(final Map<K, ArrayDeque<RecordedRequest>> index, final K key) {
+        final ArrayDeque<RecordedRequest> entry = index.get(key);
+        entry.pollFirst();
+        if (entry.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+
+    private static String normalizeMethod(final String method) {
+        return method != null ? method.toUpperCase(Locale.ENGLISH) : "";
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Bounded journal of requests received by a stub server, used to verify the requests later on.
+ *
+ * The journal is a ring buffer of {@link RecordedRequest} snapshots. Recording a request never blocks:
+ * a sequence number is claimed atomically and the snapshot is stored into the slot given by the sequence number,
+ * so concurrent stub server threads don't contend on any lock. Once the journal is full, the behavior is given
+ * by its {@link EvictionPolicy}. The ring buffer is allocated lazily in chunks as the requests arrive, so a journal
+ * of a large capacity costs almost nothing until it's actually filled.
+ *
+ * The journal can be queried by method, URI and matched rule id (see {@link #findRequests(String, String, Integer)})
+ * using secondary indexes. The indexes are updated by the queries, so they don't slow down recording.
+ */
+public class RequestJournal {
+
+    /**
+     * Defines what happens with new requests once the journal is full.
+     */
+    public enum EvictionPolicy {
+
+        /**
+         * The oldest request is overwritten by the new one, so the journal contains the last requests received.
+         */
+        OVERWRITE_OLDEST,
+
+        /**
+         * The new request is not recorded, so the journal contains the first requests received.
+         */
+        DROP_NEWEST
+    }
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int capacity;
+    private final EvictionPolicy evictionPolicy;
+    private final AtomicReferenceArray<AtomicReferenceArray<RecordedRequest>> chunks;
+    private final AtomicLong sequence = new AtomicLong();
+    private final RequestIndex index = new RequestIndex();
+
+
+    /**
+     * @param capacity max number of requests kept in the journal, <tt>0</tt> disables recording
+     * @param evictionPolicy policy applied once the journal is full
+     */
+    public RequestJournal(final int capacity, final EvictionPolicy evictionPolicy) {
+        Validate.isTrue(capacity >= 0, "capacity cannot be negative");
+        Validate.notNull(evictionPolicy, "evictionPolicy cannot be null");
+
+        this.capacity = capacity;
+        this.evictionPolicy = evictionPolicy;
+        this.chunks = new AtomicReferenceArray<>((capacity + CHUNK_MASK) >>> CHUNK_BITS);
+    }
+
+
+    /**
+     * Records the given request.
+     * @param req request to be recorded (must support multiple reads of its body)
+     * @param matchedRuleId id of the stub rule matched by the request or <tt>-1</tt> if no rule has been matched
+     * @return the snapshot stored in the journal or <tt>null</tt> if the request hasn't been recorded
+     * (the journal is disabled or full and set to drop new requests)
+     * @throws IOException when the request body cannot be read
+     */
+    public RecordedRequest record(final HttpServletRequest req, final int matchedRuleId) throws IOException {
+        Validate.notNull(req, "req cannot be null");
+
+        if (this.capacity == 0 || this.isDropped(this.sequence.get())) {
+            this.sequence.getAndIncrement();
+            return null;
+        }
+
+          //the snapshot is taken before the sequence number is claimed, a request failing to be read
+          //must not leave a hole the index update would stop at
+        final RecordedRequest snapshot = RecordedRequest.of(-1, System.currentTimeMillis(), req, matchedRuleId);
+        final long seq = this.sequence.getAndIncrement();
+        if (this.isDropped(seq)) {
+            return null;
+        }
+
+        final RecordedRequest res = snapshot.withSequence(seq);
+        final int slot = (int) (seq % this.capacity);
+        final AtomicReferenceArray<RecordedRequest> chunk = this.allocatedChunkOf(slot);
+
+          //a slower writer of an older request must not overwrite a newer request already stored in the slot
+        RecordedRequest current;
+        do {
+            current = chunk.get(slot & CHUNK_MASK);
+            if (current != null && current.getSequence() > seq) {
+                return null;
+            }
+        } while (!chunk.compareAndSet(slot & CHUNK_MASK, current, res));
+
+        return res;
+    }
+
+
+    /**
+     * @return snapshot of all requests kept in the journal ordered by their sequence numbers. Requests being
+     * recorded at the moment of the call might be missing.
+     */
+    public List<RecordedRequest> getRequests() {
+        final long total = this.sequence.get();
+        final long first = this.first(total);
+        final long last = this.last(total);
+
+        final List<RecordedRequest> res = new ArrayList<>((int) (last - first));
+        for (long seq = first; seq < last; seq++) {
+            final RecordedRequest req = this.slotAt((int) (seq % this.capacity));
+              //the slot might not have been written yet or might have been overwritten meanwhile
+            if (req != null && req.getSequence() == seq) {
+                res.add(req);
+            }
+        }
+        return Collections.unmodifiableList(res);
+    }
+
+
+    /**
+     * Finds recorded requests by their method, URI and matched rule id. Unlike {@link #getRequests()} this method
+     * doesn't scan the whole journal, it looks the requests up in indexes updated with the requests recorded
+     * since the previous query. Requests being recorded at the moment of the call might be missing.
+     * @param method request method (case insensitive) or <tt>null</tt> for any method
+     * @param uri request URI (without the query string) or <tt>null</tt> for any URI
+     * @param matchedRuleId id of the rule matched by the requests (<tt>-1</tt> for requests which didn't match any
+     * rule) or <tt>null</tt> for any rule
+     * @return recorded requests with the given method, URI and matched rule id ordered by their sequence numbers
+     */
+    public List<RecordedRequest> findRequests(final String method, final String uri, final Integer matchedRuleId) {
+        if (this.capacity == 0) {
+            return Collections.emptyList();
+        }
+
+        synchronized (this.index) {
+            this.updateIndex();
+            return Collections.unmodifiableList(this.index.find(method, uri, matchedRuleId));
+        }
+    }
+
+
+    /**
+     * @return number of all requests received since the journal has been created or cleared
+     * (including the evicted and dropped ones)
+     */
+    public long getTotalCount() {
+        return this.sequence.get();
+    }
+
+
+    /**
+     * @return number of requests evicted from the journal or dropped because the journal was full
+     */
+    public long getEvictedCount() {
+        return Math.max(0, this.sequence.get() - this.capacity);
+    }
+
+
+    /**
+     * @return max number of requests kept in the journal
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+
+    /**
+     * @return policy applied once the journal is full
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return this.evictionPolicy;
+    }
+
+
+    private void updateIndex() {
+        final long total = this.sequence.get();
+        final long first = this.first(total);
+        final long last = this.last(total);
+
+        this.index.evictBefore(first);
+        this.index.skipTo(first);
+        for (long seq = this.index.getNext(); seq < last; seq++) {
+            final RecordedRequest req = this.slotAt((int) (seq % this.capacity));
+            if (req == null || req.getSequence() < seq) {
+                  //still being recorded, the next query continues from here
+                break;
+            }
+            if (req.getSequence() == seq) {
+                this.index.add(req);
+            }
+            else {
+                  //overwritten before indexed
+                this.index.skipTo(seq + 1);
+            }
+        }
+    }
+
+
+    /**
+     * @param slot index of a slot
+     * @return request stored in the given slot or <tt>null</tt> if the slot is empty
+     */
+    private RecordedRequest slotAt(final int slot) {
+        final AtomicReferenceArray<RecordedRequest> chunk = this.chunks.get(slot >>> CHUNK_BITS);
+        return chunk != null ? chunk.get(slot & CHUNK_MASK) : null;
+    }
+
+
+    /**
+     * @param slot index of a slot
+     * @return chunk of the given slot, allocated if necessary
+     */
+    private AtomicReferenceArray<RecordedRequest> allocatedChunkOf(final int slot) {
+        final int index = slot >>> CHUNK_BITS;
+        final AtomicReferenceArray<RecordedRequest> res = this.chunks.get(index);
+        if (res != null) {
+            return res;
+        }
+        this.chunks.compareAndSet(index, null, new AtomicReferenceArray<RecordedRequest>(
+                Math.min(CHUNK_MASK + 1, this.capacity)));
+        return this.chunks.get(index);
+    }
+
+
+    /**
+     * @param seq sequence number of a request
+     * @return true if the request is not to be recorded because the journal is full and set to drop new requests
+     */
+    private boolean isDropped(final long seq) {
+        return this.evictionPolicy == EvictionPolicy.DROP_NEWEST && seq >= this.capacity;
+    }
+
+
+    /**
+     * @param total number of requests received so far
+     * @return sequence number of the oldest request kept in the journal
+     */
+    private long first(final long total) {
+        return this.evictionPolicy == EvictionPolicy.DROP_NEWEST ? 0 : Math.max(0, total - this.capacity);
+    }
+
+
+    /**
+     * @param total number of requests received so far
+     * @return sequence number following the newest request kept in the journal
+     */
+    private long last(final long total) {
+        return this.evictionPolicy == EvictionPolicy.DROP_NEWEST ? Math.min(total, this.capacity) : total;
+    }
+
+
+    @Override
+    public String toString() {
+        return "RequestJournal{capacity=" + this.capacity + ", evictionPolicy=" + this.evictionPolicy
+                + ", total=" + this.getTotalCount() + '}';
+    }
+}
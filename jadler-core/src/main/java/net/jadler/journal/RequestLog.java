@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Persistent append-only log of the requests received by a stub server along with the responses sent. Unlike
+ * {@link RequestJournal} the log keeps the traffic off the heap, so it's suitable for long running tests.
+ * Use {@link RequestLogReader} to read the log once the test has finished.
+ *
+ * The log is a sequence of memory mapped segment files of a fixed size in the given directory. Every record
+ * is encoded first, then a range of the current segment is claimed atomically and the record is copied there,
+ * so concurrent stub server threads writing to the log don't contend on any lock. Once a segment is full
+ * the thread whose claim crossed its end maps the next segment, the other threads wait for the new segment
+ * meanwhile. If the number of segments is limited, the oldest segment is deleted when a new one is created.
+ *
+ * The records are written by the operating system from the mapped memory to the files, so they survive a crash
+ * of the JVM (not of the operating system, see {@link #flush()}).
+ *
+ * This class is thread-safe.
+ */
+public class RequestLog implements Closeable {
+
+    /**
+     * Default segment size (64 MB)
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestLog.class);
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReference<Segment> current = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<File> segments = new ConcurrentLinkedQueue<>();
+    private volatile IOException failure;
+    private volatile boolean closed = false;
+
+
+    /**
+     * Creates a log with segments of {@link #DEFAULT_SEGMENT_SIZE} bytes and no limit of the number of segments.
+     * @param directory directory the segments are stored in (created if it doesn't exist)
+     * @throws IOException when the first segment cannot be created
+     */
+    public RequestLog(final File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, 0);
+    }
+
+
+    /**
+     * @param directory directory the segments are stored in (created if it doesn't exist). Segments already
+     * present in the directory are kept, new segments are added after them.
+     * @param segmentSize size of a segment in bytes (a bigger segment is created for a request not fitting
+     * into a segment of this size)
+     * @param maxSegments max number of segments kept in the directory, <tt>0</tt> for no limit
+     * @throws IOException when the first segment cannot be created
+     */
+    public RequestLog(final File directory, final int segmentSize, final int maxSegments) throws IOException {
+        Validate.notNull(directory, "directory cannot be null");
+        Validate.isTrue(segmentSize > RequestLogFormat.HEADER_SIZE, "segmentSize is too small");
+        Validate.isTrue(maxSegments >= 0, "maxSegments cannot be negative");
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the request log directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        final List<File> existing = RequestLogFormat.listSegments(directory);
+        this.segments.addAll(existing);
+        final long firstIndex = existing.isEmpty()
+                ? 0 : RequestLogFormat.segmentIndex(existing.get(existing.size() - 1)) + 1;
+        this.current.set(this.createSegment(firstIndex, segmentSize));
+    }
+
+
+    /**
+     * Appends the given request and response to this log.
+     * @param req received request (must support multiple reads of its body)
+     * @param matchedRuleId id of the stub rule matched by the request or <tt>-1</tt> if no rule has been matched
+     * @param response response sent or <tt>null</tt> if no rule has been matched
+     * @throws IOException when the request body cannot be read or a new segment cannot be created
+     * @throws IllegalStateException if this log has been closed already
+     */
+    public void append(final HttpServletRequest req, final int matchedRuleId, final StubResponse response)
+            throws IOException {
+        Validate.notNull(req, "req cannot be null");
+
+        final RecordedRequest snapshot = RecordedRequest.of(this.sequence.getAndIncrement(),
+                System.currentTimeMillis(), req, matchedRuleId);
+        this.write(RequestLogFormat.encode(snapshot, response));
+    }
+
+
+    /**
+     * @return number of requests appended to this log so far
+     */
+    public long getCount() {
+        return this.sequence.get();
+    }
+
+
+    /**
+     * @return directory the segments are stored in
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+
+    /**
+     * Forces the content of the current segment to be written to the storage device.
+     */
+    public void flush() {
+        this.current.get().buffer.force();
+    }
+
+
+    /**
+     * Closes this log. Requests being appended at the moment might be missing in the log.
+     * @throws IOException when the current segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        final Segment segment = this.current.get();
+        segment.buffer.force();
+        segment.channel.close();
+    }
+
+
+    private void write(final byte[] payload) throws IOException {
+        final int length = RequestLogFormat.LENGTH_SIZE + payload.length;
+
+        while (true) {
+            if (this.closed) {
+                throw new IllegalStateException("The request log has been closed already.");
+            }
+            if (this.failure != null) {
+                throw new IOException("The request log cannot create a new segment", this.failure);
+            }
+
+            final Segment segment = this.current.get();
+            final long position = segment.position.getAndAdd(length);
+
+            if (position + length <= segment.size) {
+                final ByteBuffer target = segment.buffer.duplicate();
+                target.position((int) position + RequestLogFormat.LENGTH_SIZE);
+                target.put(payload);
+                  //the length is written last, a record with a zero length hasn't been written completely
+                segment.buffer.putInt((int) position, payload.length);
+                return;
+            }
+
+            if (position <= segment.size) {
+                  //this claim crossed the end of the segment, so this thread is responsible for the rotation
+                this.rotate(segment, length);
+            }
+            else {
+                while (this.current.get() == segment && this.failure == null && !this.closed) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+
+    private void rotate(final Segment full, final int recordLength) throws IOException {
+        final Segment next;
+        try {
+            next = this.createSegment(full.index + 1,
+                    Math.max(this.segmentSize, RequestLogFormat.HEADER_SIZE + recordLength));
+        }
+        catch (final IOException e) {
+            this.failure = e;
+            throw e;
+        }
+        this.current.set(next);
+
+          //threads with a pending claim in the full segment keep writing into its mapped memory,
+          //which stays valid after the channel has been closed
+        try {
+            full.channel.close();
+        }
+        catch (final IOException e) {
+            logger.debug("cannot close the request log segment " + full.index, e);
+        }
+
+        while (this.maxSegments > 0 && this.segments.size() > this.maxSegments) {
+            final File oldest = this.segments.poll();
+            if (oldest != null && !oldest.delete()) {
+                logger.warn("cannot delete the request log segment {}", oldest);
+            }
+        }
+    }
+
+
+    private Segment createSegment(final long index, final int size) throws IOException {
+        final File file = new File(this.directory, RequestLogFormat.segmentName(index));
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        final FileChannel channel = raf.getChannel();
+        final MappedByteBuffer buffer;
+        try {
+            raf.setLength(size);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        catch (final IOException e) {
+            raf.close();
+            throw e;
+        }
+        buffer.putInt(0, RequestLogFormat.MAGIC);
+        buffer.putInt(4, RequestLogFormat.VERSION);
+
+        this.segments.add(file);
+        logger.debug("request log segment {} created", file);
+        return new Segment(index, channel, buffer, size);
+    }
+
+
+    private static class Segment {
+        private final long index;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long size;
+        private final AtomicLong position = new AtomicLong(RequestLogFormat.HEADER_SIZE);
+
+        Segment(final long index, final FileChannel channel, final MappedByteBuffer buffer, final long size) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.size = size;
+        }
+    }
+}
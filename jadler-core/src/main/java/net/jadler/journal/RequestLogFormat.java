@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.jadler.server.StubResponseWriter;
+import net.jadler.stubbing.StubResponse;
+
+
+/**
+ * Binary format of the request log segments (see {@link RequestLog}).
+ *
+ * A segment starts with a header (magic number and format version). The header is followed by records, every
+ * record is an <tt>int</tt> length followed by the record payload. A zero length (the initial content of a new
+ * segment) terminates the segment. The payload contains the request snapshot (sequence number, timestamp,
+ * matched rule id, local port, method, URI, query string, encoding, headers and body) followed by the response
+ * (status or <tt>-1</tt> if there is no response, headers and body). Strings are written as UTF-8 bytes preceded
+ * by their length (<tt>-1</tt> for <tt>null</tt>), all numbers are big endian.
+ */
+final class RequestLogFormat {
+
+    static final int MAGIC = 0x4A444C47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int LENGTH_SIZE = 4;
+    static final int NO_RESPONSE = -1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Pattern SEGMENT_NAME = Pattern.compile("requests-(\\d{6,})\\.log");
+
+
+    private RequestLogFormat() {
+    }
+
+
+    /**
+     * @param index segment index
+     * @return file name of the segment with the given index
+     */
+    static String segmentName(final long index) {
+        return String.format("requests-%06d.log", index);
+    }
+
+
+    /**
+     * @param directory log directory
+     * @return segment files of the given directory ordered by their indexes
+     */
+    static List<File> listSegments(final File directory) {
+        final List<File> res = new ArrayList<>();
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return res;
+        }
+        for (final File file : files) {
+            if (SEGMENT_NAME.matcher(file.getName()).matches()) {
+                res.add(file);
+            }
+        }
+          //the indexes have the same number of digits up to a million segments only, so sort them numerically
+        Collections.sort(res, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                return Long.compare(segmentIndex(f1), segmentIndex(f2));
+            }
+        });
+        return res;
+    }
+
+
+    /**
+     * @param segment segment file
+     * @return index of the given segment
+     */
+    static long segmentIndex(final File segment) {
+        final Matcher m = SEGMENT_NAME.matcher(segment.getName());
+        if (!m.matches()) {
+            throw new IllegalArgumentException(segment + " is not a request log segment");
+        }
+        return Long.parseLong(m.group(1));
+    }
+
+
+    /**
+     * Encodes a record payload.
+     * @param req request snapshot
+     * @param response response sent to the request or <tt>null</tt> if no response has been found
+     * @return record payload
+     * @throws IOException never thrown actually
+     */
+    static byte[] encode(final RecordedRequest req, final StubResponse response) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + req.getBodyLength());
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeLong(req.getSequence());
+        out.writeLong(req.getTimestamp());
+        out.writeInt(req.getMatchedRuleId());
+        out.writeInt(req.getLocalPort());
+        writeString(out, req.getMethod());
+        writeString(out, req.getRequestURI());
+        writeString(out, req.getQueryString());
+        writeString(out, req.getCharacterEncoding());
+        final String[] headers = req.getHeaderArray();
+        out.writeInt(headers.length / 2);
+        for (final String h : headers) {
+            writeString(out, h);
+        }
+        writeBytes(out, req.getBodyArray());
+
+        if (response == null) {
+            out.writeInt(NO_RESPONSE);
+        }
+        else {
+            out.writeInt(response.getStatus());
+            final List<String> responseHeaders = flatten(response);
+            out.writeInt(responseHeaders.size() / 2);
+            for (final String h : responseHeaders) {
+                writeString(out, h);
+            }
+            writeBytes(out, StubResponseWriter.encodeBody(response));
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Decodes a record payload.
+     * @param buffer buffer positioned at the beginning of the payload
+     * @return decoded exchange
+     */
+    static LoggedExchange decode(final ByteBuffer buffer) {
+        final long sequence = buffer.getLong();
+        final long timestamp = buffer.getLong();
+        final int matchedRuleId = buffer.getInt();
+        final int localPort = buffer.getInt();
+        final String method = readString(buffer);
+        final String uri = readString(buffer);
+        final String queryString = readString(buffer);
+        final String encoding = readString(buffer);
+        final String[] headers = readStrings(buffer, buffer.getInt() * 2);
+        final byte[] body = readBytes(buffer);
+
+        final RecordedRequest req = new RecordedRequest(sequence, timestamp, method, uri, queryString, headers,
+                body, encoding, localPort, matchedRuleId);
+
+        final int status = buffer.getInt();
+        if (status == NO_RESPONSE) {
+            return new LoggedExchange(req, NO_RESPONSE, new String[0], new byte[0]);
+        }
+        final String[] responseHeaders = readStrings(buffer, buffer.getInt() * 2);
+        return new LoggedExchange(req, status, responseHeaders, readBytes(buffer));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static List<String> flatten(final StubResponse response) {
+        final List<String> res = new ArrayList<>();
+        for (final Iterator<Entry<String, Collection<String>>> it
+                = response.getHeaders().entrySet().iterator(); it.hasNext(); ) {
+            final Entry<String, Collection<String>> e = it.next();
+            for (final String value : e.getValue()) {
+                res.add(e.getKey());
+                res.add(value);
+            }
+        }
+        return res;
+    }
+
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        }
+        else {
+            writeBytes(out, value.getBytes(UTF_8));
+        }
+    }
+
+
+    private static void writeBytes(final DataOutputStream out, final byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+
+    private static String[] readStrings(final ByteBuffer buffer, final int count) {
+        final String[] res = new String[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = readString(buffer);
+        }
+        return res;
+    }
+
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+
+    private static byte[] readBytes(final ByteBuffer buffer) {
+        final byte[] res = new byte[buffer.getInt()];
+        buffer.get(res);
+        return res;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import net.jadler.exception.JadlerException;
+import net.jadler.httpmocker.ResponseProvider;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Reads a request log written by {@link RequestLog}. The segments are memory mapped one by one while iterating,
+ * so logs much bigger than the heap can be read.
+ *
+ * A segment ends with the first incomplete record (if the JVM writing the log crashed while writing it),
+ * the following records of the segment are skipped.
+ */
+public class RequestLogReader implements Iterable<LoggedExchange> {
+
+    private final File directory;
+
+
+    /**
+     * @param directory directory of the request log
+     */
+    public RequestLogReader(final File directory) {
+        Validate.notNull(directory, "directory cannot be null");
+        Validate.isTrue(directory.isDirectory(), directory + " is not a directory");
+        this.directory = directory;
+    }
+
+
+    /**
+     * Returns an iterator over all logged exchanges in the order they've been written in. The order corresponds
+     * to the order of the sequence numbers of the requests except for concurrently received requests.
+     * @return iterator over all logged exchanges
+     * @throws JadlerException (thrown by the iterator) when a segment cannot be read
+     */
+    @Override
+    public Iterator<LoggedExchange> iterator() {
+        return new ExchangeIterator(RequestLogFormat.listSegments(this.directory));
+    }
+
+
+    /**
+     * Replays all logged requests, every request is passed to the given response provider (a new
+     * {@link net.jadler.httpmocker.HttpMockerImpl} with changed stub rules for example).
+     * @param provider response provider to pass the requests to
+     * @return number of replayed requests
+     */
+    public long replay(final ResponseProvider provider) {
+        Validate.notNull(provider, "provider cannot be null");
+
+        long res = 0;
+        for (final LoggedExchange exchange : this) {
+            provider.provideResponseFor(exchange.getRequest().toHttpServletRequest());
+            res++;
+        }
+        return res;
+    }
+
+
+    private static class ExchangeIterator implements Iterator<LoggedExchange> {
+
+        private final Iterator<File> segments;
+        private MappedByteBuffer buffer;
+        private LoggedExchange next;
+
+
+        ExchangeIterator(final List<File> segments) {
+            this.segments = segments.iterator();
+            this.next = this.advance();
+        }
+
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+
+        @Override
+        public LoggedExchange next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            final LoggedExchange res = this.next;
+            this.next = this.advance();
+            return res;
+        }
+
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The request log is read only");
+        }
+
+
+        private LoggedExchange advance() {
+            while (true) {
+                if (this.buffer != null && this.buffer.remaining() >= RequestLogFormat.LENGTH_SIZE) {
+                    final int length = this.buffer.getInt();
+                    if (length > 0 && length <= this.buffer.remaining()) {
+                        final int end = this.buffer.position() + length;
+                        final LoggedExchange res = RequestLogFormat.decode(this.buffer);
+                        this.buffer.position(end);
+                        return res;
+                    }
+                }
+
+                if (!this.segments.hasNext()) {
+                    this.buffer = null;
+                    return null;
+                }
+                this.buffer = map(this.segments.next());
+            }
+        }
+
+
+        private static MappedByteBuffer map(final File segment) {
+            try (final RandomAccessFile raf = new RandomAccessFile(segment, "r")) {
+                final MappedByteBuffer res = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                if (res.remaining() < RequestLogFormat.HEADER_SIZE || res.getInt() != RequestLogFormat.MAGIC) {
+                    throw new JadlerException(segment + " is not a request log segment");
+                }
+                final int version = res.getInt();
+                if (version != RequestLogFormat.VERSION) {
+                    throw new JadlerException("Unsupported version " + version + " of the request log segment "
+                            + segment);
+                }
+                return res;
+            }
+            catch (final IOException e) {
+                throw new JadlerException("Cannot read the request log segment " + segment, e);
+            }
+        }
+    }
+}
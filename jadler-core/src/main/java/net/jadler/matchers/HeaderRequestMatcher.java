@@ -28,6 +28,14 @@ public class HeaderRequestMatcher extends RequestMatcher<List<String>> {
     }
 
 
+    /**
+     * @return name of the header this matcher retrieves values of
+     */
+    public String getHeaderName() {
+        return this.headerName;
+    }
+
+
     @Override
     protected List<String> retrieveValue(final HttpServletRequest req) throws Exception {
         
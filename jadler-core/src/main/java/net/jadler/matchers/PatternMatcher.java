@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.matchers;
+
+import java.util.regex.Pattern;
+import org.apache.commons.lang.Validate;
+import org.hamcrest.Description;
+import org.hamcrest.Factory;
+import org.hamcrest.TypeSafeMatcher;
+
+
+/**
+ * A matcher of strings matching (as a whole) the given regular expression.
+ */
+public class PatternMatcher extends TypeSafeMatcher<String> {
+
+    private final Pattern pattern;
+
+
+    /**
+     * @param regex regular expression (in the <tt>java.util.regex</tt> syntax) the whole string must match
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is malformed
+     */
+    public PatternMatcher(final String regex) {
+        Validate.notNull(regex, "regex cannot be null");
+        this.pattern = Pattern.compile(regex);
+    }
+
+
+    /**
+     * @return the regular expression of this matcher
+     */
+    public String getRegex() {
+        return this.pattern.pattern();
+    }
+
+
+    @Override
+    protected boolean matchesSafely(final String item) {
+        return this.pattern.matcher(item).matches();
+    }
+
+
+    @Override
+    public void describeTo(final Description description) {
+        description.appendText("matching pattern ").appendValue(this.pattern.pattern());
+    }
+
+
+    @Factory
+    public static PatternMatcher matchingPattern(final String regex) {
+        return new PatternMatcher(regex);
+    }
+}
@@ -10,6 +10,12 @@ import org.apache.commons.lang.math.RandomUtils;
 import java.io.IOException;
 import java.net.ServerSocket;
 
+/**
+ * Finds a free port by probing ports sequentially. Note the port is just probed and released, so another process
+ * can take it before a server binds it. Prefer binding a stub server to the port <tt>0</tt> (an ephemeral port
+ * chosen by the operating system) and reading the actual port afterwards
+ * (see {@link net.jadler.httpmocker.HttpMocker#getStubHttpServerPort()}).
+ */
 public class PortAllocator {
     private static final int RANDOM_PORTS_MAX_RANGE = 32000;
     private final int basePort;
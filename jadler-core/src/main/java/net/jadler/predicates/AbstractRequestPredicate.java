@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.hamcrest.Description;
+import org.hamcrest.StringDescription;
+
+
+/**
+ * Convenient base class for request predicates checking a single value retrieved from a request.
+ * @param <T> type of the value retrieved from a request
+ */
+public abstract class AbstractRequestPredicate<T> implements RequestPredicate {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(final RequestView req) {
+        return this.test(this.retrieveValue(req));
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void describeTo(final Description description) {
+        description.appendText(this.provideDescription());
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void describeMismatch(final RequestView req, final Description description) {
+        description.appendText("REQUIRED: ");
+        description.appendDescriptionOf(this);
+        description.appendText(" BUT was ");
+        description.appendValue(this.retrieveValue(req));
+    }
+
+
+    /**
+     * Reads a value of the given request (method, header values, body,...).
+     * @param req request to read a value from
+     * @return value read from the given request
+     */
+    protected abstract T retrieveValue(RequestView req);
+
+
+    /**
+     * @param value value retrieved from a request
+     * @return true if the value satisfies this predicate
+     */
+    protected abstract boolean test(T value);
+
+
+    protected abstract String provideDescription();
+
+
+    @Override
+    public String toString() {
+        return StringDescription.toString(this);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the request body is equal to the given value.
+ */
+public class BodyPredicate extends AbstractRequestPredicate<String> {
+
+    private final String body;
+    private final String desc;
+
+
+    public BodyPredicate(final String body) {
+        Validate.notNull(body, "body cannot be null");
+        this.body = body;
+        this.desc = "body is \"" + body + "\"";
+    }
+
+
+    /**
+     * @return expected request body
+     */
+    public String getBody() {
+        return this.body;
+    }
+
+
+    @Override
+    protected String retrieveValue(final RequestView req) {
+        return req.getBody();
+    }
+
+
+    @Override
+    protected boolean test(final String value) {
+        return this.body.equals(value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import java.util.List;
+import net.jadler.regex.MultiPattern;
+
+
+/**
+ * A pattern compiled as one of many patterns of a shared {@link MultiPattern} automaton.
+ * Results of the automaton are cached in the request view so the automaton runs at most once
+ * per request no matter how many predicates share it.
+ */
+final class CompiledPattern {
+
+    private final MultiPattern automaton;
+    private final int id;
+
+
+    CompiledPattern(final MultiPattern automaton, final int id) {
+        this.automaton = automaton;
+        this.id = id;
+    }
+
+
+    /**
+     * @param req request the values were retrieved from
+     * @param values values to be matched
+     * @return true if at least one of the given values matches this pattern
+     */
+    boolean matches(final RequestView req, final List<String> values) {
+        return req.matchPatterns(this.automaton, values).get(this.id);
+    }
+}
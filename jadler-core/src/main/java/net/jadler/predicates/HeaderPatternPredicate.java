@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import net.jadler.regex.MultiPattern;
+import net.jadler.server.HeaderIndex;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking at least one value of the given request header matches (as a whole) the given
+ * regular expression.
+ *
+ * The pattern can be compiled (together with patterns of other stub rules for the same header) into a single
+ * {@link MultiPattern} automaton, see {@link #compileInto(net.jadler.regex.MultiPattern, int)}.
+ */
+public class HeaderPatternPredicate extends AbstractRequestPredicate<List<String>> {
+
+    private final String name;
+    private final String foldedName;
+    private final Pattern pattern;
+    private final String desc;
+    private volatile CompiledPattern compiled;
+
+
+    /**
+     * @param name header name (case insensitive)
+     * @param regex regular expression (in the <tt>java.util.regex</tt> syntax) a header value must match
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is malformed
+     */
+    public HeaderPatternPredicate(final String name, final String regex) {
+        Validate.notEmpty(name, "name cannot be empty");
+        Validate.notNull(regex, "regex cannot be null");
+        this.name = name;
+        this.foldedName = HeaderIndex.intern(name);
+        this.pattern = Pattern.compile(regex);
+        this.desc = "header " + name + " contains a value matching pattern \"" + regex + "\"";
+    }
+
+
+    /**
+     * @return header name
+     */
+    public String getHeaderName() {
+        return this.name;
+    }
+
+
+    /**
+     * @return the regular expression a header value must match
+     */
+    public String getRegex() {
+        return this.pattern.pattern();
+    }
+
+
+    /**
+     * Binds this predicate to a pattern of a shared automaton. Called by the rule set compiler.
+     * @param automaton automaton containing the regular expression of this predicate
+     * @param id id of the regular expression of this predicate in the automaton
+     */
+    public void compileInto(final MultiPattern automaton, final int id) {
+        this.compiled = new CompiledPattern(automaton, id);
+    }
+
+
+    @Override
+    public boolean matches(final RequestView req) {
+        final CompiledPattern pattern = this.compiled;
+        final List<String> values = req.getFoldedHeaderValues(this.foldedName);
+
+        if (pattern == null || values.isEmpty()) {
+            return this.test(values);
+        }
+        return pattern.matches(req, values);
+    }
+
+
+    @Override
+    protected List<String> retrieveValue(final RequestView req) {
+        return req.getFoldedHeaderValues(this.foldedName);
+    }
+
+
+    @Override
+    protected boolean test(final List<String> values) {
+        for (int i = 0; i < values.size(); i++) {
+            if (this.pattern.matcher(values.get(i)).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import java.util.List;
+import net.jadler.server.HeaderIndex;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the given request header is present and (optionally) one of its values
+ * is equal to the given value.
+ */
+public class HeaderPredicate extends AbstractRequestPredicate<List<String>> {
+
+    private final String name;
+    private final String foldedName;
+    private final String value;
+    private final String desc;
+
+
+    /**
+     * @param name header name (case insensitive)
+     * @param value expected header value, <tt>null</tt> if just the presence of the header is required
+     */
+    public HeaderPredicate(final String name, final String value) {
+        Validate.notEmpty(name, "name cannot be empty");
+        this.name = name;
+        this.foldedName = HeaderIndex.intern(name);
+        this.value = value;
+        this.desc = value == null
+                ? "header " + name + " is present"
+                : "header " + name + " contains \"" + value + "\"";
+    }
+
+
+    /**
+     * @return header name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+
+    /**
+     * @return expected header value or <tt>null</tt> if just the presence of the header is required
+     */
+    public String getValue() {
+        return this.value;
+    }
+
+
+    @Override
+    protected List<String> retrieveValue(final RequestView req) {
+        return req.getFoldedHeaderValues(this.foldedName);
+    }
+
+
+    @Override
+    protected boolean test(final List<String> values) {
+        return this.value == null ? !values.isEmpty() : values.contains(this.value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the host name of the <tt>Host</tt> request header (without the port) is equal
+ * (case insensitive) to the given value. Used to define stub rules of virtual hosts.
+ */
+public class HostPredicate extends AbstractRequestPredicate<String> {
+
+    private final String host;
+    private final String desc;
+
+
+    public HostPredicate(final String host) {
+        Validate.notEmpty(host, "host cannot be empty");
+        this.host = host;
+        this.desc = "host is equal to \"" + host + "\" ignoring case";
+    }
+
+
+    /**
+     * @param hostHeader value of the <tt>Host</tt> header
+     * @return host name part of the given header value (without the port) or <tt>null</tt> if the header
+     * value is blank
+     */
+    public static String hostName(final String hostHeader) {
+        if (StringUtils.isBlank(hostHeader)) {
+            return null;
+        }
+
+        final int colon = hostHeader.lastIndexOf(':');
+          //an IPv6 literal contains colons as well
+        return colon > hostHeader.lastIndexOf(']') ? hostHeader.substring(0, colon) : hostHeader;
+    }
+
+
+    /**
+     * @return expected host name
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+
+    @Override
+    protected String retrieveValue(final RequestView req) {
+        return req.getHost();
+    }
+
+
+    @Override
+    protected boolean test(final String value) {
+        return this.host.equalsIgnoreCase(value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
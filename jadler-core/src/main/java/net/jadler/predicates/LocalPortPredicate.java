@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the request has been received on the given local port (useful if the stub server
+ * is listening on several ports).
+ */
+public class LocalPortPredicate extends AbstractRequestPredicate<Integer> {
+
+    private final int port;
+    private final String desc;
+
+
+    public LocalPortPredicate(final int port) {
+        Validate.isTrue(port > 0, "port must be positive");
+        this.port = port;
+        this.desc = "local port is " + port;
+    }
+
+
+    /**
+     * @return expected local port
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+
+    @Override
+    protected Integer retrieveValue(final RequestView req) {
+        return req.getLocalPort();
+    }
+
+
+    @Override
+    protected boolean test(final Integer value) {
+        return value == this.port;
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
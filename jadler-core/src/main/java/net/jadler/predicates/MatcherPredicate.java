@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang.Validate;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+
+
+/**
+ * An adapter of a user supplied Hamcrest matcher to the {@link RequestPredicate} interface. The matcher
+ * is evaluated against the underlying servlet request.
+ */
+public class MatcherPredicate implements RequestPredicate {
+
+    private final Matcher<? super HttpServletRequest> matcher;
+
+
+    /**
+     * @param matcher Hamcrest matcher to be adapted
+     */
+    public MatcherPredicate(final Matcher<? super HttpServletRequest> matcher) {
+        Validate.notNull(matcher, "matcher cannot be null");
+        this.matcher = matcher;
+    }
+
+
+    /**
+     * @return the adapted matcher
+     */
+    public Matcher<? super HttpServletRequest> getMatcher() {
+        return this.matcher;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(final RequestView req) {
+        return this.matcher.matches(req.getServletRequest());
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void describeMismatch(final RequestView req, final Description description) {
+        this.matcher.describeMismatch(req.getServletRequest(), description);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void describeTo(final Description description) {
+        description.appendDescriptionOf(this.matcher);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the request method is equal (case insensitive) to the given value.
+ */
+public class MethodPredicate extends AbstractRequestPredicate<String> {
+
+    private final String method;
+    private final String desc;
+
+
+    public MethodPredicate(final String method) {
+        Validate.notEmpty(method, "method cannot be empty");
+        this.method = method;
+        this.desc = "method is equal to \"" + method + "\" ignoring case";
+    }
+
+
+    /**
+     * @return expected request method
+     */
+    public String getMethod() {
+        return this.method;
+    }
+
+
+    @Override
+    protected String retrieveValue(final RequestView req) {
+        return req.getMethod();
+    }
+
+
+    @Override
+    protected boolean test(final String value) {
+        return this.method.equalsIgnoreCase(value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
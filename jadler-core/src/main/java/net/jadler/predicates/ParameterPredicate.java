@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import java.util.List;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the given request parameter is present and (optionally) one of its values
+ * is equal to the given value.
+ */
+public class ParameterPredicate extends AbstractRequestPredicate<List<String>> {
+
+    private final String name;
+    private final String value;
+    private final String desc;
+
+
+    /**
+     * @param name parameter name
+     * @param value expected parameter value, <tt>null</tt> if just the presence of the parameter is required
+     */
+    public ParameterPredicate(final String name, final String value) {
+        Validate.notEmpty(name, "name cannot be empty");
+        this.name = name;
+        this.value = value;
+        this.desc = value == null
+                ? "parameter " + name + " is present"
+                : "parameter " + name + " contains \"" + value + "\"";
+    }
+
+
+    /**
+     * @return parameter name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+
+    /**
+     * @return expected parameter value or <tt>null</tt> if just the presence of the parameter is required
+     */
+    public String getValue() {
+        return this.value;
+    }
+
+
+    @Override
+    protected List<String> retrieveValue(final RequestView req) {
+        return req.getParameterValues(this.name);
+    }
+
+
+    @Override
+    protected boolean test(final List<String> values) {
+        return this.value == null ? !values.isEmpty() : values.contains(this.value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.apache.commons.lang.ObjectUtils;
+
+
+/**
+ * A predicate checking the query string of a request is equal to the given value.
+ */
+public class QueryStringPredicate extends AbstractRequestPredicate<String> {
+
+    private final String queryString;
+    private final String desc;
+
+
+    /**
+     * @param queryString expected query string, <tt>null</tt> if the request must not contain a query string
+     */
+    public QueryStringPredicate(final String queryString) {
+        this.queryString = queryString;
+        this.desc = queryString == null ? "query string is null" : "query string is \"" + queryString + "\"";
+    }
+
+
+    /**
+     * @return expected query string
+     */
+    public String getQueryString() {
+        return this.queryString;
+    }
+
+
+    @Override
+    protected String retrieveValue(final RequestView req) {
+        return req.getQueryString();
+    }
+
+
+    @Override
+    protected boolean test(final String value) {
+        return ObjectUtils.equals(this.queryString, value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
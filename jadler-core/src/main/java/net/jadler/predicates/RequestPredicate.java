@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.hamcrest.Description;
+import org.hamcrest.SelfDescribing;
+
+
+/**
+ * A lightweight request predicate evaluated against a pre-parsed {@link RequestView}. Predicates defined
+ * using the built-in <tt>havingXXX</tt> methods of {@link net.jadler.stubbing.RequestStubbing} are
+ * compiled to instances of this interface, Hamcrest matchers are used for user supplied predicates
+ * only (see {@link MatcherPredicate}).
+ * 
+ * Implementations must be thread-safe.
+ */
+public interface RequestPredicate extends SelfDescribing {
+    
+    /**
+     * @param req request to be checked
+     * @return true if the given request satisfies this predicate, otherwise false
+     */
+    boolean matches(RequestView req);
+    
+    
+    /**
+     * Describes why the given request doesn't satisfy this predicate. Called only if
+     * {@link #matches(net.jadler.predicates.RequestView)} returned false for the request.
+     * @param req request which doesn't satisfy this predicate
+     * @param description description to append the mismatch reason to
+     */
+    void describeMismatch(RequestView req, Description description);
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.exception.JadlerException;
+import net.jadler.regex.MultiPattern;
+import net.jadler.server.HeaderIndex;
+import net.jadler.server.MultipleReadsHttpServletRequest;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A pre-parsed view of an http request all {@link RequestPredicate} instances are evaluated against.
+ * A view is created just once per request, all values are read from the underlying request at most once
+ * and cached.
+ *
+ * Instances of this class are not thread-safe, a request is supposed to be evaluated by a single thread.
+ */
+public final class RequestView {
+
+    private static final String ATTRIBUTE = RequestView.class.getName();
+    private static final String HOST_HEADER = HeaderIndex.intern("Host");
+
+    private final HttpServletRequest request;
+    private final String method;
+    private final String uri;
+    private final String queryString;
+
+    private HeaderIndex headers;
+    private Map<String, List<String>> parameters;
+    private String body;
+    private Map<MultiPattern, BitSet> patternMatches;
+
+
+    /**
+     * Creates a new view of the given request. Consider using {@link #of(HttpServletRequest)} which
+     * returns the view already created for the request, if any.
+     * @param request request to create a view of
+     */
+    public RequestView(final HttpServletRequest request) {
+        Validate.notNull(request, "request cannot be null");
+
+        this.request = request;
+        this.method = request.getMethod();
+        this.uri = request.getRequestURI();
+        this.queryString = request.getQueryString();
+    }
+
+
+    /**
+     * @param request http request
+     * @return the view of the given request. The view is created during the first call for the request,
+     * all subsequent calls return the same instance.
+     */
+    public static RequestView of(final HttpServletRequest request) {
+        if (request instanceof MultipleReadsHttpServletRequest) {
+            return ((MultipleReadsHttpServletRequest) request).getRequestView();
+        }
+
+        final Object cached = request.getAttribute(ATTRIBUTE);
+        if (cached instanceof RequestView) {
+            return (RequestView) cached;
+        }
+
+        final RequestView res = new RequestView(request);
+        request.setAttribute(ATTRIBUTE, res);
+        return res;
+    }
+
+
+    /**
+     * @return the underlying request
+     */
+    public HttpServletRequest getServletRequest() {
+        return this.request;
+    }
+
+
+    /**
+     * @return http method of the request
+     */
+    public String getMethod() {
+        return this.method;
+    }
+
+
+    /**
+     * @return request URI (as retrieved by {@link HttpServletRequest#getRequestURI()})
+     */
+    public String getURI() {
+        return this.uri;
+    }
+
+
+    /**
+     * @return query string of the request or <tt>null</tt> if there is no query string
+     */
+    public String getQueryString() {
+        return this.queryString;
+    }
+
+
+    /**
+     * @return local port the request has been received on
+     */
+    public int getLocalPort() {
+        return this.request.getLocalPort();
+    }
+
+
+    /**
+     * @return host name of the <tt>Host</tt> header (without the port) or <tt>null</tt> if the header
+     * is not present
+     */
+    public String getHost() {
+        final List<String> values = this.getFoldedHeaderValues(HOST_HEADER);
+        return values.isEmpty() ? null : HostPredicate.hostName(values.get(0));
+    }
+
+
+    /**
+     * @param name header name (case insensitive)
+     * @return all values of the given header or an empty list if the header is not present
+     */
+    public List<String> getHeaderValues(final String name) {
+        return this.getHeaderIndex().get(name);
+    }
+
+
+    /**
+     * @param foldedName header name folded by {@link HeaderIndex#intern(java.lang.String)}
+     * @return all values of the given header or an empty list if the header is not present
+     */
+    public List<String> getFoldedHeaderValues(final String foldedName) {
+        return this.getHeaderIndex().getFolded(foldedName);
+    }
+
+
+    private HeaderIndex getHeaderIndex() {
+        if (this.headers == null) {
+            this.headers = this.request instanceof MultipleReadsHttpServletRequest
+                    ? ((MultipleReadsHttpServletRequest) this.request).getHeaderIndex()
+                    : HeaderIndex.of(this.request);
+        }
+        return this.headers;
+    }
+
+
+    /**
+     * @param name parameter name
+     * @return all values of the given parameter or an empty list if the parameter is not present
+     */
+    public List<String> getParameterValues(final String name) {
+        if (this.parameters == null) {
+            this.parameters = new HashMap<>();
+        }
+
+        List<String> res = this.parameters.get(name);
+        if (res == null) {
+            final String[] values = this.request.getParameterValues(name);
+            res = values == null
+                    ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(Arrays.asList(values));
+            this.parameters.put(name, res);
+        }
+        return res;
+    }
+
+
+    /**
+     * @return request body decoded using the request encoding
+     */
+    public String getBody() {
+        if (this.body == null) {
+            try {
+                this.body = IOUtils.toString(this.request.getReader());
+            }
+            catch (final IOException e) {
+                throw new JadlerException("An error occurred while reading the request body", e);
+            }
+        }
+        return this.body;
+    }
+
+
+    /**
+     * Runs the given automaton over the given values unless it has already been run for this request.
+     * @param automaton automaton to run
+     * @param values values to run the automaton over
+     * @return ids of all patterns of the automaton matching at least one of the values
+     */
+    public BitSet matchPatterns(final MultiPattern automaton, final List<String> values) {
+        if (this.patternMatches == null) {
+            this.patternMatches = new IdentityHashMap<>();
+        }
+
+        BitSet res = this.patternMatches.get(automaton);
+        if (res == null) {
+            res = new BitSet(automaton.size());
+            for (final String value : values) {
+                automaton.match(value, res);
+            }
+            this.patternMatches.put(automaton, res);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+import net.jadler.regex.MultiPattern;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the request URI matches (as a whole) the given regular expression.
+ *
+ * The pattern can be compiled (together with patterns of other stub rules) into a single {@link MultiPattern}
+ * automaton, see {@link #compileInto(net.jadler.regex.MultiPattern, int)}. Once compiled, the automaton
+ * is run only once per request for all URI patterns.
+ */
+public class URIPatternPredicate extends AbstractRequestPredicate<String> {
+
+    private final Pattern pattern;
+    private final String desc;
+    private volatile CompiledPattern compiled;
+
+
+    /**
+     * @param regex regular expression (in the <tt>java.util.regex</tt> syntax) the whole URI must match
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is malformed
+     */
+    public URIPatternPredicate(final String regex) {
+        Validate.notNull(regex, "regex cannot be null");
+        this.pattern = Pattern.compile(regex);
+        this.desc = "URI matches pattern \"" + regex + "\"";
+    }
+
+
+    /**
+     * @return the regular expression the request URI must match
+     */
+    public String getRegex() {
+        return this.pattern.pattern();
+    }
+
+
+    /**
+     * Binds this predicate to a pattern of a shared automaton. Called by the rule set compiler.
+     * @param automaton automaton containing the regular expression of this predicate
+     * @param id id of the regular expression of this predicate in the automaton
+     */
+    public void compileInto(final MultiPattern automaton, final int id) {
+        this.compiled = new CompiledPattern(automaton, id);
+    }
+
+
+    @Override
+    public boolean matches(final RequestView req) {
+        final CompiledPattern pattern = this.compiled;
+        final String uri = req.getURI();
+
+        if (uri == null) {
+            return false;
+        }
+        if (pattern == null) {
+            return this.pattern.matcher(uri).matches();
+        }
+        return pattern.matches(req, Collections.singletonList(uri));
+    }
+
+
+    @Override
+    protected String retrieveValue(final RequestView req) {
+        return req.getURI();
+    }
+
+
+    @Override
+    protected boolean test(final String value) {
+        return value != null && this.pattern.matcher(value).matches();
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A predicate checking the request URI is equal to the given value.
+ */
+public class URIPredicate extends AbstractRequestPredicate<String> {
+
+    private final String uri;
+    private final String desc;
+
+
+    public URIPredicate(final String uri) {
+        Validate.notNull(uri, "uri cannot be null");
+        this.uri = uri;
+        this.desc = "URI is \"" + uri + "\"";
+    }
+
+
+    /**
+     * @return expected request URI
+     */
+    public String getURI() {
+        return this.uri;
+    }
+
+
+    @Override
+    protected String retrieveValue(final RequestView req) {
+        return req.getURI();
+    }
+
+
+    @Override
+    protected boolean test(final String value) {
+        return this.uri.equals(value);
+    }
+
+
+    @Override
+    protected String provideDescription() {
+        return this.desc;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.proxy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import net.jadler.journal.LoggedExchange;
+import net.jadler.journal.RecordedRequest;
+import net.jadler.journal.RequestLogReader;
+import net.jadler.predicates.BodyPredicate;
+import net.jadler.predicates.MethodPredicate;
+import net.jadler.predicates.QueryStringPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.URIPredicate;
+import net.jadler.stubbing.StubResponse;
+import net.jadler.stubbing.StubRule;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Creates stub rules from the exchanges recorded by a {@link Recorder}.
+ *
+ * Every distinct request (method, URI, query string and body) becomes a rule matching exactly this request.
+ * If the same request has been recorded several times, the rule returns the recorded responses in the order
+ * they have been recorded in (the last one repeatedly). The rules use native predicates only, so they're
+ * compiled into the rule set index like hand written rules (see {@link net.jadler.stubbing.RuleSet}). The response
+ * bodies are kept in the encoded form, so the replayed responses are sent without any encoding.
+ */
+public final class RecordedRules {
+
+    private RecordedRules() {
+    }
+
+
+    /**
+     * @param directory directory of the request log the exchanges have been recorded to
+     * @return stub rules replaying the recorded exchanges in the order of the first occurrence of their requests
+     */
+    public static List<StubRule> load(final File directory) {
+        Validate.notNull(directory, "directory cannot be null");
+
+        final Map<String, List<LoggedExchange>> exchanges = new LinkedHashMap<>();
+        for (final LoggedExchange exchange : new RequestLogReader(directory)) {
+            if (!exchange.hasResponse()) {
+                continue;
+            }
+            final String key = keyOf(exchange.getRequest());
+            List<LoggedExchange> same = exchanges.get(key);
+            if (same == null) {
+                same = new ArrayList<>();
+                exchanges.put(key, same);
+            }
+            same.add(exchange);
+        }
+
+        final List<StubRule> res = new ArrayList<>(exchanges.size());
+        for (final List<LoggedExchange> same : exchanges.values()) {
+            final List<StubResponse> responses = new ArrayList<>(same.size());
+            for (final LoggedExchange exchange : same) {
+                responses.add(responseOf(exchange));
+            }
+            res.add(StubRule.of(predicatesOf(same.get(0).getRequest()), responses));
+        }
+        return res;
+    }
+
+
+    private static List<RequestPredicate> predicatesOf(final RecordedRequest req) {
+        return Arrays.<RequestPredicate>asList(
+                new MethodPredicate(req.getMethod()),
+                new URIPredicate(req.getRequestURI()),
+                new QueryStringPredicate(req.getQueryString()),
+                new BodyPredicate(req.getBodyAsString()));
+    }
+
+
+    private static StubResponse responseOf(final LoggedExchange exchange) {
+        final StubResponse res = new StubResponse();
+        res.setStatus(exchange.getResponseStatus());
+        for (final String name : exchange.getResponseHeaderNames()) {
+            for (final String value : exchange.getResponseHeaderValues(name)) {
+                res.addHeader(name, value);
+            }
+        }
+        final List<String> contentType = exchange.getResponseHeaderValues("Content-Type");
+        res.setEncoding(UpstreamClient.charsetOf(contentType.isEmpty() ? null : contentType.get(0)));
+        res.setEncodedBody(exchange.getResponseBody());
+        return res;
+    }
+
+
+    private static String keyOf(final RecordedRequest req) {
+        return req.getMethod().toUpperCase(Locale.ENGLISH) + ' ' + req.getRequestURI() + '?' + req.getQueryString()
+                + '\n' + req.getBodyAsString();
+    }
+}
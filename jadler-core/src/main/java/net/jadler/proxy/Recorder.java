@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.proxy;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.journal.RequestLog;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Forwards requests no stub rule has been found for to an upstream service and records the exchanges
+ * to a request log. The recorded exchanges can be replayed as stub rules later on, see {@link RecordedRules}.
+ *
+ * This class is thread-safe.
+ */
+public class Recorder {
+
+    private final UpstreamClient client;
+    private final RequestLog log;
+
+
+    /**
+     * @param client client of the upstream service
+     * @param log log the exchanges are recorded to (see {@link RecordedRules#load(java.io.File)})
+     */
+    public Recorder(final UpstreamClient client, final RequestLog log) {
+        Validate.notNull(client, "client cannot be null");
+        Validate.notNull(log, "log cannot be null");
+
+        this.client = client;
+        this.log = log;
+    }
+
+
+    /**
+     * Forwards the given request to the upstream service and records the exchange.
+     * @param req request no stub rule has been found for (must support multiple reads of its body)
+     * @return the upstream response
+     * @throws IOException when the upstream cannot be reached or the exchange cannot be recorded
+     */
+    public StubResponse forward(final HttpServletRequest req) throws IOException {
+        final StubResponse res = this.client.forward(req);
+        this.log.append(req, -1, res);
+        return res;
+    }
+
+
+    /**
+     * @return log the exchanges are recorded to
+     */
+    public RequestLog getLog() {
+        return this.log;
+    }
+}
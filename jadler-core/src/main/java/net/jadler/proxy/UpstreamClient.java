@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Forwards requests received by the stub server to an upstream http service and returns the upstream responses
+ * as stub responses.
+ *
+ * The requests are sent using {@link HttpURLConnection}. The response body is always read completely and
+ * the stream closed, so the JDK returns the connection to its keep-alive cache and reuses it for the next request
+ * to the same upstream. The number of idle connections kept per upstream is given by the <tt>http.maxConnections</tt>
+ * system property (5 by default).
+ *
+ * Hop-by-hop headers (<tt>Connection</tt>, <tt>Transfer-Encoding</tt> etc.) and the <tt>Content-Length</tt>
+ * header are not forwarded in any direction, the body lengths are set by the JDK client and the stub server.
+ *
+ * This class is thread-safe.
+ */
+public class UpstreamClient {
+
+    /**
+     * Default connect timeout (in millis)
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Default read timeout (in millis)
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    private static final Set<String> SKIPPED_HEADERS = lowerCase(Arrays.asList("Connection", "Keep-Alive",
+            "Proxy-Authenticate", "Proxy-Authorization", "Proxy-Connection", "TE", "Trailer", "Transfer-Encoding",
+            "Upgrade", "Host", "Content-Length"));
+
+      //default charset of http bodies
+    private static final Charset DEFAULT_CHARSET = Charset.forName("ISO-8859-1");
+
+    private final URL upstream;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+
+    /**
+     * @param upstream base url of the upstream service (<tt>http://localhost:8080</tt> for example), the request URI
+     * and query string are appended to it
+     */
+    public UpstreamClient(final String upstream) {
+        this(upstream, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+
+    /**
+     * @param upstream base url of the upstream service (<tt>http://localhost:8080</tt> for example), the request URI
+     * and query string are appended to it
+     * @param connectTimeout connect timeout in millis
+     * @param readTimeout read timeout in millis
+     */
+    public UpstreamClient(final String upstream, final int connectTimeout, final int readTimeout) {
+        Validate.notEmpty(upstream, "upstream cannot be empty");
+        Validate.isTrue(connectTimeout >= 0, "connectTimeout cannot be negative");
+        Validate.isTrue(readTimeout >= 0, "readTimeout cannot be negative");
+
+        try {
+            this.upstream = new URL(upstream.endsWith("/") ? upstream.substring(0, upstream.length() - 1) : upstream);
+        }
+        catch (final MalformedURLException e) {
+            throw new IllegalArgumentException("upstream is not a valid url: " + upstream, e);
+        }
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+
+    /**
+     * Forwards the given request to the upstream service.
+     * @param req request to be forwarded (must support multiple reads of its body)
+     * @return the upstream response with the body already encoded (see {@link StubResponse#getEncodedBody()})
+     * @throws IOException when the upstream cannot be reached
+     */
+    public StubResponse forward(final HttpServletRequest req) throws IOException {
+        Validate.notNull(req, "req cannot be null");
+
+        final HttpURLConnection conn = (HttpURLConnection) this.targetOf(req).openConnection();
+        conn.setConnectTimeout(this.connectTimeout);
+        conn.setReadTimeout(this.readTimeout);
+        conn.setInstanceFollowRedirects(false);
+        conn.setUseCaches(false);
+        conn.setRequestMethod(req.getMethod());
+
+        for (final Enumeration<String> names = req.getHeaderNames(); names != null && names.hasMoreElements(); ) {
+            final String name = names.nextElement();
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ENGLISH))) {
+                for (final Enumeration<String> values = req.getHeaders(name); values.hasMoreElements(); ) {
+                    conn.addRequestProperty(name, values.nextElement());
+                }
+            }
+        }
+
+        final byte[] body = IOUtils.toByteArray(req.getInputStream());
+        if (body.length > 0) {
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(body.length);
+            try (final OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        final StubResponse res = new StubResponse();
+        res.setStatus(conn.getResponseCode());
+        for (final Entry<String, List<String>> e : conn.getHeaderFields().entrySet()) {
+              //the null key is the status line
+            if (e.getKey() != null && !SKIPPED_HEADERS.contains(e.getKey().toLowerCase(Locale.ENGLISH))) {
+                  //the JDK returns the values in the reverse order
+                final List<String> values = new ArrayList<>(e.getValue());
+                Collections.reverse(values);
+                for (final String value : values) {
+                    res.addHeader(e.getKey(), value);
+                }
+            }
+        }
+        res.setEncoding(charsetOf(conn.getContentType()));
+        res.setEncodedBody(readBody(conn));
+        return res;
+    }
+
+
+    /**
+     * @return base url of the upstream service
+     */
+    public URL getUpstream() {
+        return this.upstream;
+    }
+
+
+    private URL targetOf(final HttpServletRequest req) throws MalformedURLException {
+        final String query = req.getQueryString();
+        return new URL(this.upstream + req.getRequestURI() + (query != null ? "?" + query : ""));
+    }
+
+
+    private static byte[] readBody(final HttpURLConnection conn) throws IOException {
+        InputStream in;
+        try {
+            in = conn.getInputStream();
+        }
+        catch (final IOException e) {
+              //error statuses, the body is available using the error stream
+            in = conn.getErrorStream();
+            if (in == null) {
+                if (conn.getResponseCode() > 0) {
+                    return new byte[0];
+                }
+                throw e;
+            }
+        }
+
+        try {
+            return IOUtils.toByteArray(in);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+
+    /**
+     * @param contentType value of a <tt>Content-Type</tt> header (can be null)
+     * @return charset defined by the given content type (<tt>ISO-8859-1</tt> if not defined)
+     */
+    static Charset charsetOf(final String contentType) {
+        if (contentType != null) {
+            for (final String part : contentType.split(";")) {
+                final String trimmed = part.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    final String name = StringUtils.strip(trimmed.substring(8).trim(), "\"");
+                    if (Charset.isSupported(name)) {
+                        return Charset.forName(name);
+                    }
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+
+    private static Set<String> lowerCase(final List<String> names) {
+        final Set<String> res = new TreeSet<>();
+        for (final String name : names) {
+            res.add(name.toLowerCase(Locale.ENGLISH));
+        }
+        return Collections.unmodifiableSet(res);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * An immutable set of code points represented as sorted, non-overlapping ranges.
+ * Membership of ASCII code points is resolved using a bit mask.
+ */
+final class CharClass {
+
+    static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+    static final CharClass DIGIT = new CharClass(new int[] {'0', '9'});
+    static final CharClass WORD = new CharClass(new int[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'});
+    static final CharClass SPACE = new CharClass(new int[] {'\t', '\r', ' ', ' '});
+      //java.util.regex '.' without the DOTALL flag: anything but line terminators
+    static final CharClass DOT = new CharClass(
+            new int[] {'\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029}).negate();
+
+    private final int[] ranges;
+    private final long asciiLow;
+    private final long asciiHigh;
+
+
+    private CharClass(final int[] ranges) {
+        this.ranges = ranges;
+
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int c = ranges[i]; c <= Math.min(ranges[i + 1], 127); c++) {
+                if (c < 64) {
+                    low |= 1L << c;
+                }
+                else {
+                    high |= 1L << (c - 64);
+                }
+            }
+        }
+        this.asciiLow = low;
+        this.asciiHigh = high;
+    }
+
+
+    /**
+     * @param c a single code point
+     * @return a class containing the given code point only
+     */
+    static CharClass of(final int c) {
+        return new CharClass(new int[] {c, c});
+    }
+
+
+    /**
+     * @param from first code point of the range (inclusive)
+     * @param to last code point of the range (inclusive)
+     * @return a class containing all code points of the given range
+     */
+    static CharClass range(final int from, final int to) {
+        return new CharClass(new int[] {from, to});
+    }
+
+
+    /**
+     * @param c code point to be checked
+     * @return true if the given code point belongs to this class
+     */
+    boolean contains(final int c) {
+        if (c < 64) {
+            return (this.asciiLow & (1L << c)) != 0;
+        }
+        if (c < 128) {
+            return (this.asciiHigh & (1L << (c - 64))) != 0;
+        }
+
+          //binary search over the range bounds
+        int lo = 0;
+        int hi = this.ranges.length / 2 - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (c < this.ranges[2 * mid]) {
+                hi = mid - 1;
+            }
+            else if (c > this.ranges[2 * mid + 1]) {
+                lo = mid + 1;
+            }
+            else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return a class containing all code points not contained in this class
+     */
+    CharClass negate() {
+        final List<Integer> res = new ArrayList<>();
+        int next = 0;
+        for (int i = 0; i < this.ranges.length; i += 2) {
+            if (this.ranges[i] > next) {
+                res.add(next);
+                res.add(this.ranges[i] - 1);
+            }
+            next = this.ranges[i + 1] + 1;
+        }
+        if (next <= MAX_CODE_POINT) {
+            res.add(next);
+            res.add(MAX_CODE_POINT);
+        }
+        return new CharClass(toArray(res));
+    }
+
+
+    /**
+     * @param other class to be merged with this one
+     * @return a class containing code points of both this and the given class
+     */
+    CharClass union(final CharClass other) {
+        final int[] all = Arrays.copyOf(this.ranges, this.ranges.length + other.ranges.length);
+        System.arraycopy(other.ranges, 0, all, this.ranges.length, other.ranges.length);
+        return normalize(all);
+    }
+
+
+    private static CharClass normalize(final int[] unsorted) {
+        final int count = unsorted.length / 2;
+        final long[] pairs = new long[count];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = ((long) unsorted[2 * i] << 32) | unsorted[2 * i + 1];
+        }
+        Arrays.sort(pairs);
+
+        final List<Integer> res = new ArrayList<>();
+        for (final long pair : pairs) {
+            final int from = (int) (pair >>> 32);
+            final int to = (int) pair;
+            final int last = res.size() - 1;
+
+            if (last > 0 && from <= res.get(last) + 1) {
+                res.set(last, Math.max(res.get(last), to));
+            }
+            else {
+                res.add(from);
+                res.add(to);
+            }
+        }
+        return new CharClass(toArray(res));
+    }
+
+
+    private static int[] toArray(final List<Integer> list) {
+        final int[] res = new int[list.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = list.get(i);
+        }
+        return res;
+    }
+}
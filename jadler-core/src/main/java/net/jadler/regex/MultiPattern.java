@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A set of regular expressions compiled into one automaton. A single pass over an input reports all patterns
+ * matching the whole input (the semantics of {@link java.util.regex.Matcher#matches()}).
+ *
+ * All patterns are compiled into one Thompson NFA which is lazily converted into a DFA while matching,
+ * so once the automaton is warmed up, every input character costs a single table lookup no matter how many
+ * patterns there are. Patterns using constructs unsupported by the automaton (see {@link RegexParser})
+ * are evaluated one by one using <tt>java.util.regex</tt>.
+ *
+ * Instances of this class are immutable (apart from the internal DFA cache) and thread-safe.
+ */
+public final class MultiPattern {
+
+      //max number of NFA states a single pattern can be compiled into
+    private static final int MAX_PATTERN_STATES = 10000;
+      //max number of cached DFA states, once reached, new states are computed on the fly
+    private static final int MAX_DFA_STATES = 2048;
+    private static final int ASCII = 128;
+
+    private final int patternCount;
+    private final Nfa nfa;
+    private final int[] fallbackIds;
+    private final Pattern[] fallbackPatterns;
+    private final ConcurrentMap<StateSet, DState> dfaStates;
+    private final DState start;
+
+
+    private MultiPattern(final List<String> regexes) {
+        this.patternCount = regexes.size();
+        this.nfa = new Nfa();
+        this.dfaStates = new ConcurrentHashMap<>();
+
+        final List<Integer> entries = new ArrayList<>();
+        final List<Integer> fallbackIds = new ArrayList<>();
+        final List<Pattern> fallbackPatterns = new ArrayList<>();
+
+        for (int id = 0; id < regexes.size(); id++) {
+            final String regex = regexes.get(id);
+              //validates the pattern, throws PatternSyntaxException if malformed
+            final Pattern pattern = Pattern.compile(regex);
+
+            final int mark = this.nfa.size();
+            this.nfa.setLimit(mark + MAX_PATTERN_STATES);
+            try {
+                final RegexNode node = RegexParser.parse(regex);
+                entries.add(node.compile(this.nfa, this.nfa.addAccept(id)));
+            }
+            catch (final UnsupportedPatternException e) {
+                this.nfa.truncate(mark);
+                fallbackIds.add(id);
+                fallbackPatterns.add(pattern);
+            }
+        }
+
+        this.fallbackIds = new int[fallbackIds.size()];
+        for (int i = 0; i < this.fallbackIds.length; i++) {
+            this.fallbackIds[i] = fallbackIds.get(i);
+        }
+        this.fallbackPatterns = fallbackPatterns.toArray(new Pattern[fallbackPatterns.size()]);
+
+        final boolean[] marks = new boolean[this.nfa.size()];
+        final List<Integer> startStates = new ArrayList<>();
+        for (final int entry : entries) {
+            this.closure(entry, marks, startStates);
+        }
+        this.start = this.stateFor(startStates);
+    }
+
+
+    /**
+     * Compiles the given regular expressions into one automaton.
+     * @param regexes regular expressions (in the <tt>java.util.regex</tt> syntax). The index of a regular
+     * expression in this list is its id reported by {@link #match(java.lang.CharSequence)}.
+     * @return compiled automaton
+     * @throws java.util.regex.PatternSyntaxException if any of the given expressions is malformed
+     */
+    public static MultiPattern compile(final List<String> regexes) {
+        Validate.notNull(regexes, "regexes cannot be null");
+        Validate.noNullElements(regexes, "regexes cannot contain null");
+        return new MultiPattern(regexes);
+    }
+
+
+    /**
+     * @return number of patterns compiled in this automaton
+     */
+    public int size() {
+        return this.patternCount;
+    }
+
+
+    /**
+     * @return number of patterns which couldn't be compiled into the automaton and are evaluated
+     * using <tt>java.util.regex</tt> instead
+     */
+    public int fallbackCount() {
+        return this.fallbackIds.length;
+    }
+
+
+    /**
+     * Matches the given input against all patterns in one pass.
+     * @param input input to be matched
+     * @return a bit set with the ids of all patterns matching the whole input
+     */
+    public BitSet match(final CharSequence input) {
+        final BitSet res = new BitSet(this.patternCount);
+        this.match(input, res);
+        return res;
+    }
+
+
+    /**
+     * Matches the given input against all patterns in one pass and adds ids of the matching patterns
+     * to the given bit set.
+     * @param input input to be matched
+     * @param result bit set to add ids of all patterns matching the whole input to
+     */
+    public void match(final CharSequence input, final BitSet result) {
+        Validate.notNull(input, "input cannot be null");
+        Validate.notNull(result, "result cannot be null");
+
+        DState state = this.start;
+        final int length = input.length();
+        for (int i = 0; i < length && state.states.length > 0;) {
+            final char c = input.charAt(i);
+
+            if (c < ASCII) {
+                DState next = state.next[c];
+                if (next == null) {
+                    next = this.step(state, c);
+                    if (next.cached) {
+                        state.next[c] = next;
+                    }
+                }
+                state = next;
+                i++;
+            }
+            else {
+                final int cp = Character.codePointAt(input, i);
+                state = this.step(state, cp);
+                i += Character.charCount(cp);
+            }
+        }
+        result.or(state.accepts);
+
+        for (int i = 0; i < this.fallbackIds.length; i++) {
+            if (this.fallbackPatterns[i].matcher(input).matches()) {
+                result.set(this.fallbackIds[i]);
+            }
+        }
+    }
+
+
+    private DState step(final DState state, final int cp) {
+        final boolean[] marks = new boolean[this.nfa.size()];
+        final List<Integer> next = new ArrayList<>();
+
+        for (final int s : state.states) {
+            if (this.nfa.type(s) == Nfa.CHAR && this.nfa.charClass(s).contains(cp)) {
+                this.closure(this.nfa.first(s), marks, next);
+            }
+        }
+        return this.stateFor(next);
+    }
+
+
+    private void closure(final int state, final boolean[] marks, final List<Integer> res) {
+        final List<Integer> stack = new ArrayList<>();
+        stack.add(state);
+
+        while (!stack.isEmpty()) {
+            final int s = stack.remove(stack.size() - 1);
+            if (marks[s]) {
+                continue;
+            }
+            marks[s] = true;
+
+            if (this.nfa.type(s) == Nfa.SPLIT) {
+                stack.add(this.nfa.second(s));
+                stack.add(this.nfa.first(s));
+            }
+            else {
+                res.add(s);
+            }
+        }
+    }
+
+
+    private DState stateFor(final List<Integer> nfaStates) {
+        final int[] states = new int[nfaStates.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = nfaStates.get(i);
+        }
+        Arrays.sort(states);
+
+        final StateSet key = new StateSet(states);
+        final DState existing = this.dfaStates.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        final BitSet accepts = new BitSet(this.patternCount);
+        for (final int s : states) {
+            if (this.nfa.type(s) == Nfa.ACCEPT) {
+                accepts.set(this.nfa.first(s));
+            }
+        }
+
+        if (this.dfaStates.size() >= MAX_DFA_STATES) {
+            return new DState(states, accepts, false);
+        }
+
+        final DState created = new DState(states, accepts, true);
+        final DState raced = this.dfaStates.putIfAbsent(key, created);
+        return raced != null ? raced : created;
+    }
+
+
+    /**
+     * A DFA state (a set of NFA states). ASCII transitions are cached in the <tt>next</tt> table. The table
+     * is written without synchronization, this is safe since a DState is immutable otherwise (all its fields
+     * are final) and a lost write just means the transition is computed once more.
+     */
+    private static final class DState {
+        private final int[] states;
+        private final BitSet accepts;
+        private final boolean cached;
+        private final DState[] next;
+
+        DState(final int[] states, final BitSet accepts, final boolean cached) {
+            this.states = states;
+            this.accepts = accepts;
+            this.cached = cached;
+            this.next = new DState[ASCII];
+        }
+    }
+
+
+    /**
+     * Sorted NFA state ids used as a key of the DFA states cache.
+     */
+    private static final class StateSet {
+        private final int[] states;
+        private final int hash;
+
+        StateSet(final int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof StateSet && Arrays.equals(this.states, ((StateSet) o).states);
+        }
+    }
+}
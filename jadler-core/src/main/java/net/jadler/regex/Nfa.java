@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+import java.util.Arrays;
+
+
+/**
+ * A Thompson NFA shared by all patterns of a {@link MultiPattern}. States are stored in parallel arrays,
+ * a state is either a character test, an epsilon split or an accepting state of a single pattern.
+ */
+final class Nfa {
+
+    static final int CHAR = 0;
+    static final int SPLIT = 1;
+    static final int ACCEPT = 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] out1 = new int[INITIAL_CAPACITY];
+    private int[] out2 = new int[INITIAL_CAPACITY];
+    private CharClass[] classes = new CharClass[INITIAL_CAPACITY];
+    private int size = 0;
+    private int limit = Integer.MAX_VALUE;
+
+
+    /**
+     * Adds a character test state.
+     * @param cls class of code points accepted by the state
+     * @param next state to continue with once the code point has been accepted
+     * @return id of the new state
+     */
+    int addChar(final CharClass cls, final int next) {
+        final int state = this.allocate(CHAR);
+        this.classes[state] = cls;
+        this.out1[state] = next;
+        return state;
+    }
+
+
+    /**
+     * Adds an epsilon split state.
+     * @param first first epsilon transition (can be set later using {@link #setFirst(int, int)})
+     * @param second second epsilon transition
+     * @return id of the new state
+     */
+    int addSplit(final int first, final int second) {
+        final int state = this.allocate(SPLIT);
+        this.out1[state] = first;
+        this.out2[state] = second;
+        return state;
+    }
+
+
+    /**
+     * Adds an accepting state.
+     * @param patternId id of the pattern accepted in this state
+     * @return id of the new state
+     */
+    int addAccept(final int patternId) {
+        final int state = this.allocate(ACCEPT);
+        this.out1[state] = patternId;
+        return state;
+    }
+
+
+    void setFirst(final int state, final int first) {
+        this.out1[state] = first;
+    }
+
+
+    int type(final int state) {
+        return this.types[state];
+    }
+
+
+    /**
+     * @return the following state of a char or split state, the pattern id of an accepting state
+     */
+    int first(final int state) {
+        return this.out1[state];
+    }
+
+
+    int second(final int state) {
+        return this.out2[state];
+    }
+
+
+    CharClass charClass(final int state) {
+        return this.classes[state];
+    }
+
+
+    int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Limits the number of states this automaton can grow to. Used to reject patterns expanding
+     * to huge automata (such as <tt>a{1000}{1000}</tt>).
+     * @param limit maximal number of states
+     */
+    void setLimit(final int limit) {
+        this.limit = limit;
+    }
+
+
+    /**
+     * Drops all states added after the given mark.
+     * @param mark number of states to be kept
+     */
+    void truncate(final int mark) {
+        Arrays.fill(this.classes, mark, this.size, null);
+        this.size = mark;
+    }
+
+
+    private int allocate(final int type) {
+        if (this.size >= this.limit) {
+            throw new UnsupportedPatternException("the pattern is too large");
+        }
+
+        if (this.size == this.types.length) {
+            final int capacity = this.size * 2;
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.out1 = Arrays.copyOf(this.out1, capacity);
+            this.out2 = Arrays.copyOf(this.out2, capacity);
+            this.classes = Arrays.copyOf(this.classes, capacity);
+        }
+
+        this.types[this.size] = type;
+        return this.size++;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+import java.util.List;
+
+
+/**
+ * A node of a parsed regular expression. Every node knows how to compile itself into {@link Nfa} states.
+ */
+abstract class RegexNode {
+
+    static final int UNBOUNDED = -1;
+
+
+    /**
+     * Compiles this node into the given automaton.
+     * @param nfa automaton to add states to
+     * @param next state to continue with once this node has been matched
+     * @return the entry state of this node
+     */
+    abstract int compile(Nfa nfa, int next);
+
+
+    /**
+     * A single code point from the given class.
+     */
+    static final class Chars extends RegexNode {
+        private final CharClass cls;
+
+        Chars(final CharClass cls) {
+            this.cls = cls;
+        }
+
+        @Override
+        int compile(final Nfa nfa, final int next) {
+            return nfa.addChar(this.cls, next);
+        }
+    }
+
+
+    /**
+     * A concatenation of nodes (an empty sequence matches the empty string).
+     */
+    static final class Sequence extends RegexNode {
+        private final List<RegexNode> items;
+
+        Sequence(final List<RegexNode> items) {
+            this.items = items;
+        }
+
+        @Override
+        int compile(final Nfa nfa, final int next) {
+            int res = next;
+            for (int i = this.items.size() - 1; i >= 0; i--) {
+                res = this.items.get(i).compile(nfa, res);
+            }
+            return res;
+        }
+    }
+
+
+    /**
+     * An alternation of nodes.
+     */
+    static final class Alternation extends RegexNode {
+        private final List<RegexNode> alternatives;
+
+        Alternation(final List<RegexNode> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        @Override
+        int compile(final Nfa nfa, final int next) {
+            final int last = this.alternatives.size() - 1;
+            int res = this.alternatives.get(last).compile(nfa, next);
+            for (int i = last - 1; i >= 0; i--) {
+                res = nfa.addSplit(this.alternatives.get(i).compile(nfa, next), res);
+            }
+            return res;
+        }
+    }
+
+
+    /**
+     * A repetition of a node (<tt>*</tt>, <tt>+</tt>, <tt>?</tt> and <tt>{min,max}</tt> quantifiers).
+     */
+    static final class Repetition extends RegexNode {
+        private final RegexNode item;
+        private final int min;
+        private final int max;
+
+        Repetition(final RegexNode item, final int min, final int max) {
+            this.item = item;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        int compile(final Nfa nfa, final int next) {
+            int res;
+
+            if (this.max == UNBOUNDED) {
+                final int loop = nfa.addSplit(-1, next);
+                nfa.setFirst(loop, this.item.compile(nfa, loop));
+                res = loop;
+            }
+            else {
+                  //optional occurrences nested from the last one: (x(x)?)?
+                res = next;
+                for (int i = this.min; i < this.max; i++) {
+                    final int split = nfa.addSplit(-1, next);
+                    nfa.setFirst(split, this.item.compile(nfa, res));
+                    res = split;
+                }
+            }
+
+            for (int i = 0; i < this.min; i++) {
+                res = this.item.compile(nfa, res);
+            }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A parser of the subset of the <tt>java.util.regex</tt> syntax which can be compiled into a finite automaton
+ * without changing the semantics of {@link java.util.regex.Matcher#matches()}:
+ * literals, escaped characters, <tt>.</tt>, character classes (without unions and intersections),
+ * predefined classes <tt>\d \w \s</tt> (and their negations), capturing and non-capturing groups,
+ * alternations, greedy and reluctant quantifiers and a leading <tt>^</tt> and trailing <tt>$</tt>.
+ *
+ * Every other construct (backreferences, lookarounds, possessive quantifiers, embedded flags, boundaries,...)
+ * results in {@link UnsupportedPatternException}. The parser expects a syntactically valid pattern.
+ */
+final class RegexParser {
+
+    private static final int MAX_REPETITION = 1000;
+
+    private final String regex;
+    private final int end;
+    private int pos;
+    private int lastEscapedChar;
+
+
+    private RegexParser(final String regex, final int start, final int end) {
+        this.regex = regex;
+        this.pos = start;
+        this.end = end;
+    }
+
+
+    /**
+     * @param regex a valid regular expression
+     * @return parsed regular expression
+     * @throws UnsupportedPatternException if the regular expression uses an unsupported construct
+     */
+    static RegexNode parse(final String regex) {
+        final int start = regex.startsWith("^") ? 1 : 0;
+        final int end = endsWithAnchor(regex) ? regex.length() - 1 : regex.length();
+        if (start > end) {
+            throw new UnsupportedPatternException("dangling anchor");
+        }
+
+        final RegexParser parser = new RegexParser(regex, start, end);
+        final RegexNode res = parser.parseAlternation();
+        if (parser.pos != end) {
+            throw new UnsupportedPatternException("unexpected character at index " + parser.pos);
+        }
+        return res;
+    }
+
+
+    private static boolean endsWithAnchor(final String regex) {
+        if (!regex.endsWith("$")) {
+            return false;
+        }
+
+          //the dollar sign must not be escaped
+        int backslashes = 0;
+        for (int i = regex.length() - 2; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 0;
+    }
+
+
+    private RegexNode parseAlternation() {
+        final List<RegexNode> alternatives = new ArrayList<>();
+        alternatives.add(this.parseSequence());
+
+        while (this.pos < this.end && this.regex.charAt(this.pos) == '|') {
+            this.pos++;
+            alternatives.add(this.parseSequence());
+        }
+
+        return alternatives.size() == 1 ? alternatives.get(0) : new RegexNode.Alternation(alternatives);
+    }
+
+
+    private RegexNode parseSequence() {
+        final List<RegexNode> items = new ArrayList<>();
+
+        while (this.pos < this.end) {
+            final char c = this.regex.charAt(this.pos);
+            if (c == '|' || c == ')') {
+                break;
+            }
+            items.add(this.parseQuantifier(this.parseAtom()));
+        }
+
+        return items.size() == 1 ? items.get(0) : new RegexNode.Sequence(items);
+    }
+
+
+    private RegexNode parseAtom() {
+        final char c = this.regex.charAt(this.pos);
+
+        switch (c) {
+            case '(':
+                this.pos++;
+                if (this.peek() == '?') {
+                    if (this.pos + 1 < this.end && this.regex.charAt(this.pos + 1) == ':') {
+                        this.pos += 2;
+                    }
+                    else {
+                        throw new UnsupportedPatternException("special groups are not supported");
+                    }
+                }
+
+                final RegexNode group = this.parseAlternation();
+                if (this.peek() != ')') {
+                    throw new UnsupportedPatternException("unclosed group");
+                }
+                this.pos++;
+                return group;
+
+            case '[':
+                return new RegexNode.Chars(this.parseClass());
+
+            case '.':
+                this.pos++;
+                return new RegexNode.Chars(CharClass.DOT);
+
+            case '\\':
+                return new RegexNode.Chars(this.parseEscape());
+
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+            case '^':
+            case '$':
+                throw new UnsupportedPatternException("unexpected " + c + " at index " + this.pos);
+
+            default:
+                this.pos++;
+                return new RegexNode.Chars(CharClass.of(this.literal(c)));
+        }
+    }
+
+
+    private RegexNode parseQuantifier(final RegexNode atom) {
+        final int min;
+        final int max;
+
+        switch (this.peek()) {
+            case '*':
+                this.pos++;
+                min = 0;
+                max = RegexNode.UNBOUNDED;
+                break;
+            case '+':
+                this.pos++;
+                min = 1;
+                max = RegexNode.UNBOUNDED;
+                break;
+            case '?':
+                this.pos++;
+                min = 0;
+                max = 1;
+                break;
+            case '{':
+                this.pos++;
+                min = this.parseNumber();
+                if (this.peek() == ',') {
+                    this.pos++;
+                    max = this.peek() == '}' ? RegexNode.UNBOUNDED : this.parseNumber();
+                }
+                else {
+                    max = min;
+                }
+                if (this.peek() != '}' || (max != RegexNode.UNBOUNDED && max < min)) {
+                    throw new UnsupportedPatternException("malformed repetition");
+                }
+                this.pos++;
+                break;
+            default:
+                return atom;
+        }
+
+          //reluctant quantifiers accept the same language, possessive ones do not
+        if (this.peek() == '?') {
+            this.pos++;
+        }
+        switch (this.peek()) {
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw new UnsupportedPatternException("possessive or stacked quantifiers are not supported");
+            default:
+                return new RegexNode.Repetition(atom, min, max);
+        }
+    }
+
+
+    private int parseNumber() {
+        final int start = this.pos;
+        while (this.pos < this.end && Character.isDigit(this.regex.charAt(this.pos))
+                && this.regex.charAt(this.pos) < 128) {
+            this.pos++;
+        }
+
+        if (this.pos == start || this.pos - start > 4) {
+            throw new UnsupportedPatternException("unsupported repetition bound");
+        }
+
+        final int res = Integer.parseInt(this.regex.substring(start, this.pos));
+        if (res > MAX_REPETITION) {
+            throw new UnsupportedPatternException("repetition bound too large");
+        }
+        return res;
+    }
+
+
+    private CharClass parseClass() {
+        this.pos++; //[
+
+        boolean negated = false;
+        if (this.peek() == '^') {
+            negated = true;
+            this.pos++;
+        }
+          //the handling of a leading ']' differs among JDK versions
+        if (this.peek() == ']') {
+            throw new UnsupportedPatternException("leading ] in a character class");
+        }
+
+        CharClass res = null;
+        boolean first = true;
+
+        while (true) {
+            if (this.pos >= this.end) {
+                throw new UnsupportedPatternException("unclosed character class");
+            }
+
+            final char c = this.regex.charAt(this.pos);
+            if (c == ']') {
+                this.pos++;
+                break;
+            }
+            if (c == '[' || (c == '&' && this.peekAt(this.pos + 1) == '&')) {
+                throw new UnsupportedPatternException("class unions and intersections are not supported");
+            }
+
+            final CharClass item;
+            if (c == '-') {
+                if (!first && this.peekAt(this.pos + 1) != ']') {
+                    throw new UnsupportedPatternException("ambiguous - in a character class");
+                }
+                this.pos++;
+                item = CharClass.of('-');
+            }
+            else if (c == '\\' && this.isClassEscape(this.peekAt(this.pos + 1))) {
+                item = this.parseEscape();
+                if (this.peek() == '-' && this.peekAt(this.pos + 1) != ']') {
+                    throw new UnsupportedPatternException("ranges of predefined classes are not supported");
+                }
+            }
+            else {
+                final int from = this.parseClassChar();
+
+                if (this.peek() == '-' && this.peekAt(this.pos + 1) != ']') {
+                    this.pos++;
+                    final int next = this.peek();
+                    if (next == '[' || (next == '\\' && this.isClassEscape(this.peekAt(this.pos + 1)))) {
+                        throw new UnsupportedPatternException("unsupported range bound");
+                    }
+                    final int to = this.parseClassChar();
+                    if (to < from) {
+                        throw new UnsupportedPatternException("illegal range");
+                    }
+                    item = CharClass.range(from, to);
+                }
+                else {
+                    item = CharClass.of(from);
+                }
+            }
+
+            res = res == null ? item : res.union(item);
+            first = false;
+        }
+
+        if (res == null) {
+            throw new UnsupportedPatternException("empty character class");
+        }
+        return negated ? res.negate() : res;
+    }
+
+
+    private int parseClassChar() {
+        final char c = this.regex.charAt(this.pos);
+        if (c == '\\') {
+              //predefined classes are handled by the caller, this must be a single char escape
+            this.parseEscape();
+            return this.lastEscapedChar;
+        }
+        this.pos++;
+        return this.literal(c);
+    }
+
+
+    private CharClass parseEscape() {
+        this.pos++; //backslash
+        if (this.pos >= this.end) {
+            throw new UnsupportedPatternException("trailing backslash");
+        }
+
+        final char c = this.regex.charAt(this.pos++);
+        switch (c) {
+            case 'd':
+                return CharClass.DIGIT;
+            case 'D':
+                return CharClass.DIGIT.negate();
+            case 'w':
+                return CharClass.WORD;
+            case 'W':
+                return CharClass.WORD.negate();
+            case 's':
+                return CharClass.SPACE;
+            case 'S':
+                return CharClass.SPACE.negate();
+            case 't':
+                return this.escapedChar('\t');
+            case 'n':
+                return this.escapedChar('\n');
+            case 'r':
+                return this.escapedChar('\r');
+            case 'f':
+                return this.escapedChar('\f');
+            case 'a':
+                return this.escapedChar(0x07);
+            case 'e':
+                return this.escapedChar(0x1B);
+            case 'x':
+                return this.escapedChar(this.parseHex(2));
+            case 'u':
+                final int unicode = this.parseHex(4);
+                if (Character.isSurrogate((char) unicode)) {
+                    throw new UnsupportedPatternException("surrogates are not supported");
+                }
+                return this.escapedChar(unicode);
+            default:
+                if (Character.isLetterOrDigit(c) || c >= 128) {
+                    throw new UnsupportedPatternException("unsupported escape sequence \\" + c);
+                }
+                return this.escapedChar(c);
+        }
+    }
+
+
+    private CharClass escapedChar(final int c) {
+        this.lastEscapedChar = c;
+        return CharClass.of(c);
+    }
+
+
+    private int parseHex(final int digits) {
+        if (this.pos + digits > this.end) {
+            throw new UnsupportedPatternException("malformed hexadecimal escape");
+        }
+
+        int res = 0;
+        for (int i = 0; i < digits; i++) {
+            final int d = Character.digit(this.regex.charAt(this.pos++), 16);
+            if (d < 0) {
+                throw new UnsupportedPatternException("malformed hexadecimal escape");
+            }
+            res = res * 16 + d;
+        }
+        return res;
+    }
+
+
+    private boolean isClassEscape(final int c) {
+        return c == 'd' || c == 'D' || c == 'w' || c == 'W' || c == 's' || c == 'S';
+    }
+
+
+    private int literal(final char c) {
+        if (Character.isSurrogate(c)) {
+            throw new UnsupportedPatternException("surrogates are not supported");
+        }
+        return c;
+    }
+
+
+    private int peek() {
+        return this.peekAt(this.pos);
+    }
+
+
+    private int peekAt(final int index) {
+        return index < this.end ? this.regex.charAt(index) : -1;
+    }
+}
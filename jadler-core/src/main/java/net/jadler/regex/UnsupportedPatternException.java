@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+
+/**
+ * Thrown when a (valid) regular expression uses a construct which cannot be compiled into
+ * the shared automaton. Such patterns are evaluated using <tt>java.util.regex</tt> instead.
+ */
+class UnsupportedPatternException extends RuntimeException {
+
+    UnsupportedPatternException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import net.jadler.exception.JadlerException;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A simple, container independent implementation of {@link HttpServletRequest} used by the non-servlet stub
+ * server backends to adapt their native request representation to the {@link net.jadler.httpmocker.ResponseProvider}
+ * contract. Only the features a stub server needs are supported (method, URI, query string, headers, body,
+ * parameters, attributes and addresses), sessions, security and dispatching are not.
+ *
+ * Instances of this class are not thread-safe.
+ */
+public class BasicHttpServletRequest implements HttpServletRequest {
+
+    private static final String DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final String method;
+    private final String requestURI;
+    private final String queryString;
+    private final String protocol;
+    private final byte[] body;
+      //lower-case name -> values
+    private final Map<String, List<String>> headers;
+      //original header names in the order of appearance
+    private final List<String> headerNames;
+    private final Map<String, Object> attributes;
+
+    private String scheme = "http";
+    private InetSocketAddress localAddress;
+    private InetSocketAddress remoteAddress;
+    private String characterEncoding;
+    private Map<String, String[]> parameters;
+
+
+    /**
+     * @param method http method
+     * @param requestURI request URI (without the query string)
+     * @param queryString query string or <tt>null</tt> if there is no query string
+     * @param protocol protocol (<tt>HTTP/1.1</tt> for example)
+     * @param body request body (cannot be null, use an empty array instead)
+     */
+    public BasicHttpServletRequest(final String method, final String requestURI, final String queryString,
+            final String protocol, final byte[] body) {
+        Validate.notEmpty(method, "method cannot be empty");
+        Validate.notNull(requestURI, "requestURI cannot be null");
+        Validate.notNull(body, "body cannot be null, use an empty array instead");
+
+        this.method = method;
+        this.requestURI = requestURI;
+        this.queryString = queryString;
+        this.protocol = protocol;
+        this.body = body;
+        this.headers = new HashMap<>();
+        this.headerNames = new ArrayList<>();
+        this.attributes = new HashMap<>();
+    }
+
+
+    /**
+     * Adds a request header. Can be called repeatedly to add multiple values of the same header.
+     * @param name header name
+     * @param value header value
+     */
+    public void addHeader(final String name, final String value) {
+        Validate.notEmpty(name, "name cannot be empty");
+
+        final String key = name.toLowerCase(Locale.ENGLISH);
+        List<String> values = this.headers.get(key);
+        if (values == null) {
+            values = new ArrayList<>();
+            this.headers.put(key, values);
+            this.headerNames.add(name);
+        }
+        values.add(value);
+    }
+
+
+    /**
+     * @param scheme request scheme (<tt>http</tt> or <tt>https</tt>)
+     */
+    public void setScheme(final String scheme) {
+        Validate.notEmpty(scheme, "scheme cannot be empty");
+        this.scheme = scheme;
+    }
+
+
+    /**
+     * @param localAddress address the request was received on
+     */
+    public void setLocalAddress(final InetSocketAddress localAddress) {
+        this.localAddress = localAddress;
+    }
+
+
+    /**
+     * @param remoteAddress address of the client
+     */
+    public void setRemoteAddress(final InetSocketAddress remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+
+    @Override
+    public String getMethod() {
+        return this.method;
+    }
+
+
+    @Override
+    public String getRequestURI() {
+        return this.requestURI;
+    }
+
+
+    @Override
+    public StringBuffer getRequestURL() {
+        final StringBuffer res = new StringBuffer(this.scheme).append("://").append(this.getServerName());
+        final int port = this.getServerPort();
+        if (port > 0) {
+            res.append(':').append(port);
+        }
+        return res.append(this.requestURI);
+    }
+
+
+    @Override
+    public String getQueryString() {
+        return this.queryString;
+    }
+
+
+    @Override
+    public String getProtocol() {
+        return this.protocol;
+    }
+
+
+    @Override
+    public String getScheme() {
+        return this.scheme;
+    }
+
+
+    @Override
+    public boolean isSecure() {
+        return "https".equalsIgnoreCase(this.scheme);
+    }
+
+
+    @Override
+    public String getHeader(final String name) {
+        final List<String> values = this.headers.get(name.toLowerCase(Locale.ENGLISH));
+        return values == null ? null : values.get(0);
+    }
+
+
+    @Override
+    public Enumeration<String> getHeaders(final String name) {
+        final List<String> values = this.headers.get(name.toLowerCase(Locale.ENGLISH));
+        return Collections.enumeration(values == null ? Collections.<String>emptyList() : values);
+    }
+
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(this.headerNames);
+    }
+
+
+    @Override
+    public int getIntHeader(final String name) {
+        final String value = this.getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value.trim());
+    }
+
+
+    @Override
+    public long getDateHeader(final String name) {
+        final String value = this.getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+
+        final SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value).getTime();
+        }
+        catch (final ParseException e) {
+            throw new IllegalArgumentException("Cannot parse date header " + name + ": " + value, e);
+        }
+    }
+
+
+    @Override
+    public String getContentType() {
+        return this.getHeader("Content-Type");
+    }
+
+
+    @Override
+    public int getContentLength() {
+        return this.body.length;
+    }
+
+
+    @Override
+    public String getCharacterEncoding() {
+        if (this.characterEncoding == null) {
+            final String contentType = this.getContentType();
+            if (contentType != null) {
+                for (final String part : contentType.split(";")) {
+                    final String trimmed = part.trim();
+                    if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                        this.characterEncoding = StringUtils.strip(trimmed.substring(8).trim(), "\"");
+                    }
+                }
+            }
+        }
+        return this.characterEncoding;
+    }
+
+
+    @Override
+    public void setCharacterEncoding(final String env) throws UnsupportedEncodingException {
+        if (!Charset.isSupported(env)) {
+            throw new UnsupportedEncodingException(env);
+        }
+        this.characterEncoding = env;
+    }
+
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        final InputStream res = new ByteArrayInputStream(this.body);
+
+        return new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return res.read();
+            }
+        };
+    }
+
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(this.getInputStream(), this.getEncodingInternal()));
+    }
+
+
+    @Override
+    public String getParameter(final String name) {
+        final String[] values = this.getParameterValues(name);
+        return values == null ? null : values[0];
+    }
+
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(this.getParameters().keySet());
+    }
+
+
+    @Override
+    public String[] getParameterValues(final String name) {
+        return this.getParameters().get(name);
+    }
+
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(this.getParameters());
+    }
+
+
+    @Override
+    public Object getAttribute(final String name) {
+        return this.attributes.get(name);
+    }
+
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(this.attributes.keySet());
+    }
+
+
+    @Override
+    public void setAttribute(final String name, final Object o) {
+        if (o == null) {
+            this.attributes.remove(name);
+        }
+        else {
+            this.attributes.put(name, o);
+        }
+    }
+
+
+    @Override
+    public void removeAttribute(final String name) {
+        this.attributes.remove(name);
+    }
+
+
+    @Override
+    public String getServerName() {
+        final String host = this.getHeader("Host");
+        if (host != null) {
+            final int idx = host.lastIndexOf(':');
+            return idx > host.lastIndexOf(']') ? host.substring(0, idx) : host;
+        }
+        return this.getLocalName();
+    }
+
+
+    @Override
+    public int getServerPort() {
+        final String host = this.getHeader("Host");
+        if (host != null) {
+            final int idx = host.lastIndexOf(':');
+            if (idx > host.lastIndexOf(']')) {
+                try {
+                    return Integer.parseInt(host.substring(idx + 1));
+                }
+                catch (final NumberFormatException e) {
+                    return this.getLocalPort();
+                }
+            }
+        }
+        return this.getLocalPort();
+    }
+
+
+    @Override
+    public String getRemoteAddr() {
+        return this.remoteAddress == null ? null : this.remoteAddress.getAddress().getHostAddress();
+    }
+
+
+    @Override
+    public String getRemoteHost() {
+        return this.getRemoteAddr();
+    }
+
+
+    @Override
+    public int getRemotePort() {
+        return this.remoteAddress == null ? -1 : this.remoteAddress.getPort();
+    }
+
+
+    @Override
+    public String getLocalName() {
+        return this.localAddress == null ? null : this.localAddress.getHostString();
+    }
+
+
+    @Override
+    public String getLocalAddr() {
+        return this.localAddress == null ? null : this.localAddress.getAddress().getHostAddress();
+    }
+
+
+    @Override
+    public int getLocalPort() {
+        return this.localAddress == null ? -1 : this.localAddress.getPort();
+    }
+
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+    }
+
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+
+    @Override
+    public String getPathInfo() {
+        return this.requestURI;
+    }
+
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+
+    @Override
+    public Cookie[] getCookies() {
+        return null;
+    }
+
+
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+
+    @Override
+    public boolean isUserInRole(final String role) {
+        return false;
+    }
+
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+
+    @Override
+    public HttpSession getSession(final boolean create) {
+        if (create) {
+            throw new UnsupportedOperationException("sessions are not supported");
+        }
+        return null;
+    }
+
+
+    @Override
+    public HttpSession getSession() {
+        return this.getSession(true);
+    }
+
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return false;
+    }
+
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return false;
+    }
+
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(final String path) {
+        return null;
+    }
+
+
+    @Override
+    @Deprecated
+    public String getRealPath(final String path) {
+        return null;
+    }
+
+
+    private Map<String, String[]> getParameters() {
+        if (this.parameters == null) {
+            try {
+                this.parameters = RequestParameters.read(this, this.body, this.getEncodingInternal());
+            }
+            catch (final UnsupportedEncodingException e) {
+                throw new JadlerException("Unsupported request encoding " + this.getEncodingInternal(), e);
+            }
+        }
+        return this.parameters;
+    }
+
+
+    private String getEncodingInternal() {
+        return this.getCharacterEncoding() == null ? Charset.defaultCharset().name() : this.getCharacterEncoding();
+    }
+}
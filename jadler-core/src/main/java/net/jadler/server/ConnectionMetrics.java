@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Collects connection metrics of a stub server. Stub server implementations report connection events
+ * to an instance of this class, {@link #snapshot()} provides the current values to the client.
+ *
+ * This class is thread-safe and lock-free.
+ */
+public class ConnectionMetrics {
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong idleClosed = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong reusedRequests = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger maxOpen = new AtomicInteger();
+
+
+    /**
+     * Reports a new accepted connection.
+     */
+    public void connectionOpened() {
+        this.accepted.incrementAndGet();
+
+        final int current = this.open.incrementAndGet();
+        int max;
+        while (current > (max = this.maxOpen.get()) && !this.maxOpen.compareAndSet(max, current)) {
+              //another thread updated the max, try again
+        }
+    }
+
+
+    /**
+     * Reports a new request.
+     * @param reused true if the request isn't the first one of its connection
+     */
+    public void requestReceived(final boolean reused) {
+        this.requests.incrementAndGet();
+        if (reused) {
+            this.reusedRequests.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * Reports a closed connection.
+     * @param idle true if the connection has been closed by the server because it's been idle
+     * for too long
+     */
+    public void connectionClosed(final boolean idle) {
+        this.open.decrementAndGet();
+        this.closed.incrementAndGet();
+        if (idle) {
+            this.idleClosed.incrementAndGet();
+        }
+    }
+
+
+    /**
+     * @return current values of the metrics. The values are read one by one while connections keep
+     * being opened and closed, so they might be slightly inconsistent under load.
+     */
+    public ConnectionStatistics snapshot() {
+        return new ConnectionStatistics(this.accepted.get(), this.closed.get(), this.idleClosed.get(),
+                this.open.get(), this.maxOpen.get(), this.requests.get(), this.reusedRequests.get());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+
+/**
+ * Immutable snapshot of connection metrics of a stub server (see {@link ConnectionMetrics}). Use it to check
+ * a client reuses its connections, a client with a well configured connection pool opens just a few connections
+ * and sends almost all its requests over connections kept alive.
+ */
+public class ConnectionStatistics {
+
+    private final long acceptedConnections;
+    private final long closedConnections;
+    private final long idleClosedConnections;
+    private final int openConnections;
+    private final int maxOpenConnections;
+    private final long requests;
+    private final long reusedRequests;
+
+
+    /**
+     * @param acceptedConnections number of connections accepted so far
+     * @param closedConnections number of connections closed so far
+     * @param idleClosedConnections number of connections closed by the server because of an idle timeout
+     * @param openConnections number of currently open connections
+     * @param maxOpenConnections max number of connections open at the same time
+     * @param requests number of requests received so far
+     * @param reusedRequests number of requests received over a connection which had served a request already
+     */
+    public ConnectionStatistics(final long acceptedConnections, final long closedConnections,
+            final long idleClosedConnections, final int openConnections, final int maxOpenConnections,
+            final long requests, final long reusedRequests) {
+        this.acceptedConnections = acceptedConnections;
+        this.closedConnections = closedConnections;
+        this.idleClosedConnections = idleClosedConnections;
+        this.openConnections = openConnections;
+        this.maxOpenConnections = maxOpenConnections;
+        this.requests = requests;
+        this.reusedRequests = reusedRequests;
+    }
+
+
+    /**
+     * @return number of connections accepted so far
+     */
+    public long getAcceptedConnections() {
+        return this.acceptedConnections;
+    }
+
+
+    /**
+     * @return number of connections closed so far (by either side)
+     */
+    public long getClosedConnections() {
+        return this.closedConnections;
+    }
+
+
+    /**
+     * @return number of connections closed by the server because they've been idle for longer than the idle
+     * timeout of the server. A client keeping idle connections in its pool for too long makes this number grow.
+     */
+    public long getIdleClosedConnections() {
+        return this.idleClosedConnections;
+    }
+
+
+    /**
+     * @return number of currently open connections
+     */
+    public int getOpenConnections() {
+        return this.openConnections;
+    }
+
+
+    /**
+     * @return max number of connections open at the same time
+     */
+    public int getMaxOpenConnections() {
+        return this.maxOpenConnections;
+    }
+
+
+    /**
+     * @return number of requests received so far
+     */
+    public long getRequests() {
+        return this.requests;
+    }
+
+
+    /**
+     * @return number of requests received over a connection which had served a request already
+     */
+    public long getReusedRequests() {
+        return this.reusedRequests;
+    }
+
+
+    /**
+     * @return average number of requests per accepted connection (<tt>0</tt> if no connection has been accepted)
+     */
+    public double getRequestsPerConnection() {
+        return this.acceptedConnections == 0 ? 0 : (double) this.requests / this.acceptedConnections;
+    }
+
+
+    /**
+     * @return ratio of requests received over a reused connection, between <tt>0</tt> (every request has its own
+     * connection) and <tt>1</tt> (<tt>0</tt> if no request has been received)
+     */
+    public double getReuseRatio() {
+        return this.requests == 0 ? 0 : (double) this.reusedRequests / this.requests;
+    }
+
+
+    @Override
+    public String toString() {
+        return "connections: accepted=" + this.acceptedConnections + ", closed=" + this.closedConnections
+                + ", idleClosed=" + this.idleClosedConnections + ", open=" + this.openConnections
+                + ", maxOpen=" + this.maxOpenConnections + ", requests=" + this.requests
+                + ", reusedRequests=" + this.reusedRequests;
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+
+/**
+ * Optional interface of a {@link StubHttpServer} which tracks its connections. Stub servers not implementing
+ * this interface don't provide any connection statistics.
+ */
+public interface ConnectionStatisticsAware {
+
+    /**
+     * @return current connection statistics of the server (accepted connections, connection reuse, ...)
+     * or <tt>null</tt> if they are not available at the moment
+     */
+    ConnectionStatistics getConnectionStatistics();
+}
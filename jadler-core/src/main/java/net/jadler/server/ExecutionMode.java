@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+
+/**
+ * Defines which threads are used to handle incoming requests of a stub server.
+ */
+public enum ExecutionMode {
+    
+    /**
+     * Requests are handled directly by the worker threads of the stub server. A stub response with a timeout
+     * (or a slow body) occupies a worker thread for the whole delay.
+     */
+    SERVER_THREADS,
+    
+    /**
+     * Requests are handed over from the worker threads of the stub server to a virtual thread per request,
+     * so a delayed stub response doesn't occupy a worker thread. A bounded pool of platform threads is used
+     * instead if the JVM doesn't support virtual threads (see {@link RequestExecutors}).
+     */
+    VIRTUAL_THREADS
+}
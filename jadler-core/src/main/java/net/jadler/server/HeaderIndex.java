@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * A compact, case insensitive index of all headers of an http request. The index is built once per request
+ * (see {@link MultipleReadsHttpServletRequest#getHeaderIndex()}) so header lookups of all stub rules don't
+ * have to go through the underlying request over and over again.
+ *
+ * The index is an open-addressing table keyed by lower-case header names. Header names used by stub rules
+ * are interned (see {@link #intern(java.lang.String)}) and request header names are folded to the interned
+ * instances, so a successful lookup is usually resolved by a reference comparison.
+ *
+ * Instances of this class are immutable and thread-safe.
+ */
+public final class HeaderIndex {
+
+      //lower-case header names used by stub rules
+    private static final ConcurrentMap<String, String> NAMES = new ConcurrentHashMap<>();
+      //stub rules of a long running server might be replaced many times (see net.jadler.standalone), so the pool
+      //is bounded. Names beyond the limit are not interned, their lookups are resolved by equals() instead.
+    static final int MAX_INTERNED_NAMES = 4096;
+    private static final int MIN_CAPACITY = 8;
+
+    private final String[] keys;
+    private final List<?>[] values;
+    private final int mask;
+
+
+    private HeaderIndex(final List<String> names, final List<List<String>> values) {
+        int capacity = MIN_CAPACITY;
+          //keep the load factor at most 0.5
+        while (capacity < names.size() * 2) {
+            capacity <<= 1;
+        }
+
+        this.keys = new String[capacity];
+        this.values = new List<?>[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < names.size(); i++) {
+            final String key = names.get(i);
+            int idx = spread(key.hashCode()) & this.mask;
+            while (this.keys[idx] != null) {
+                idx = (idx + 1) & this.mask;
+            }
+            this.keys[idx] = key;
+            this.values[idx] = Collections.unmodifiableList(values.get(i));
+        }
+    }
+
+
+    /**
+     * Builds an index of all headers of the given request.
+     * @param request request to build the index of
+     * @return header index of the given request
+     */
+    @SuppressWarnings("unchecked")
+    public static HeaderIndex of(final HttpServletRequest request) {
+        Validate.notNull(request, "request cannot be null");
+
+        final List<String> names = new ArrayList<>();
+        final List<List<String>> values = new ArrayList<>();
+
+        final Enumeration<String> headerNames = request.getHeaderNames();
+        while (headerNames != null && headerNames.hasMoreElements()) {
+            final String name = headerNames.nextElement();
+            final String key = fold(name);
+
+              //the same header might be reported several times using different cases
+            if (!names.contains(key)) {
+                names.add(key);
+                final Enumeration<String> headerValues = request.getHeaders(name);
+                values.add(headerValues == null ? new ArrayList<String>() : Collections.list(headerValues));
+            }
+        }
+
+        return new HeaderIndex(names, values);
+    }
+
+
+    /**
+     * Interns the given header name. Called for header names used by stub rules, request header names
+     * equal (case insensitive) to the interned ones are then folded to the very same instance. Once
+     * {@value #MAX_INTERNED_NAMES} names have been interned, new names are just folded to lower case.
+     * @param name header name
+     * @return interned lower-case header name
+     */
+    public static String intern(final String name) {
+        Validate.notNull(name, "name cannot be null");
+
+        final String lower = name.toLowerCase(Locale.ENGLISH);
+        final String interned = NAMES.get(lower);
+        if (interned != null) {
+            return interned;
+        }
+        if (NAMES.size() >= MAX_INTERNED_NAMES) {
+            return lower;
+        }
+        final String existing = NAMES.putIfAbsent(lower, lower);
+        return existing != null ? existing : lower;
+    }
+
+
+    /**
+     * Folds the given header name to lower case. Unlike {@link #intern(java.lang.String)} this method doesn't
+     * add new names to the pool of interned names (so arbitrary request headers cannot make the pool grow),
+     * an interned instance is returned only if the name has already been interned.
+     * @param name header name
+     * @return lower-case header name
+     */
+    public static String fold(final String name) {
+        final String lower = name.toLowerCase(Locale.ENGLISH);
+        final String interned = NAMES.get(lower);
+        return interned != null ? interned : lower;
+    }
+
+
+    /**
+     * @param name header name (case insensitive)
+     * @return all values of the given header or an empty list if the header is not present
+     */
+    public List<String> get(final String name) {
+        return this.getFolded(fold(name));
+    }
+
+
+    /**
+     * A faster alternative of {@link #get(java.lang.String)} for names already folded
+     * by {@link #intern(java.lang.String)} or {@link #fold(java.lang.String)}.
+     * @param foldedName lower-case header name
+     * @return all values of the given header or an empty list if the header is not present
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getFolded(final String foldedName) {
+        int idx = spread(foldedName.hashCode()) & this.mask;
+
+        String key;
+        while ((key = this.keys[idx]) != null) {
+            if (key == foldedName || key.equals(foldedName)) {
+                return (List<String>) this.values[idx];
+            }
+            idx = (idx + 1) & this.mask;
+        }
+        return Collections.emptyList();
+    }
+
+
+    /**
+     * @param name header name (case insensitive)
+     * @return the first value of the given header or <tt>null</tt> if the header is not present
+     */
+    public String getFirst(final String name) {
+        final List<String> res = this.get(name);
+        return res.isEmpty() ? null : res.get(0);
+    }
+
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -9,22 +9,15 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.nio.charset.Charset;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
-import org.apache.commons.collections.MultiMap;
-import org.apache.commons.collections.map.MultiValueMap;
+import net.jadler.predicates.RequestView;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
 
 
 public class MultipleReadsHttpServletRequest extends HttpServletRequestWrapper {
@@ -32,6 +25,10 @@ public class MultipleReadsHttpServletRequest extends HttpServletRequestWrapper {
     private byte[] body;
     
     private Map<String, String[]> parameters;
+    
+    private RequestView requestView;
+    
+    private HeaderIndex headerIndex;
 
     
     public MultipleReadsHttpServletRequest(HttpServletRequest request) throws IOException {
@@ -41,7 +38,7 @@ public class MultipleReadsHttpServletRequest extends HttpServletRequestWrapper {
 
           //parameters must be initialized after the request body is read
           //(since params can be read from the body as well)
-        this.parameters = this.readParameters();
+        this.parameters = RequestParameters.read(this, this.body, this.getEncodingInternal());
     }
     
 
@@ -92,77 +89,41 @@ public class MultipleReadsHttpServletRequest extends HttpServletRequestWrapper {
     }
     
     
-    private String getEncodingInternal() {
-        return this.getCharacterEncoding() == null ? Charset.defaultCharset().name() : this.getCharacterEncoding();
+    @Override
+    public String getHeader(final String name) {
+        return this.getHeaderIndex().getFirst(name);
     }
     
     
-    @SuppressWarnings("unchecked")
-    private Map<String, String[]> readParameters() throws IOException {
-        final MultiMap params = readParametersFromQueryString(); 
-        
-          //TODO: shitty attempt to check whether the body contains html form data. Please refactor.
-        if (!StringUtils.isBlank(this.getContentType()) &&
-            this.getContentType().contains("application/x-www-form-urlencoded")) {
-            
-            if ("POST".equalsIgnoreCase(this.getMethod()) || "PUT".equalsIgnoreCase(this.getMethod())) {
-                params.putAll(this.readParametersFromBody());
-            }
-        }
-        
-        final Map<String, String[]> res = new HashMap<>();
-        for(final Object o: params.entrySet()) {
-            final Entry<String, Collection<String>> e = (Entry) o;
-            res.put(e.getKey(), e.getValue().toArray(new String[0]));
-        }
-        
-        return res;
+    @Override
+    public Enumeration<String> getHeaders(final String name) {
+        return Collections.enumeration(this.getHeaderIndex().get(name));
     }
     
     
-    private MultiMap readParametersFromQueryString() {
-        return this.readParametersFromString(this.getQueryString());
+    /**
+     * @return case insensitive index of all headers of this request, built during the first call
+     */
+    public HeaderIndex getHeaderIndex() {
+        if (this.headerIndex == null) {
+            this.headerIndex = HeaderIndex.of((HttpServletRequest) this.getRequest());
+        }
+        return this.headerIndex;
     }
     
-
-    private MultiMap readParametersFromBody() throws IOException {
-        return this.readParametersFromString(new String(this.body, this.getEncodingInternal()));
+    
+    /**
+     * @return pre-parsed view of this request, created during the first call
+     */
+    public RequestView getRequestView() {
+        if (this.requestView == null) {
+            this.requestView = new RequestView(this);
+        }
+        return this.requestView;
     }
     
     
-    private MultiMap readParametersFromString(final String parametersString) {
-        final MultiMap res = new MultiValueMap();
-        
-        if (StringUtils.isBlank(parametersString)) {
-            return res;
-        }
-        
-        final String enc = this.getEncodingInternal();
-        final String[] pairs = parametersString.split("&");
-        
-        for (final String pair : pairs) {
-            final int idx = pair.indexOf('=');
-            if (idx > -1) {
-
-                try {
-                    final String name = URLDecoder.decode(StringUtils.substring(pair, 0, idx), enc);
-                    final String value = URLDecoder.decode(StringUtils.substring(pair, idx + 1), enc);
-                    res.put(name, value);
-                }
-                catch (final UnsupportedEncodingException ex) {
-                    //indeed
-                }
-            }
-            else {
-                try {
-                    res.put(URLDecoder.decode(pair, enc), "");
-                }
-                catch (final UnsupportedEncodingException ex) {
-                    //no way
-                }
-            }
-        }
-        
-        return res;
+    private String getEncodingInternal() {
+        return this.getCharacterEncoding() == null ? Charset.defaultCharset().name() : this.getCharacterEncoding();
     }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.predicates.HostPredicate;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Resolves the namespace an incoming http request belongs to. A namespaced stub server
+ * (see {@link net.jadler.server.jetty.NamespacedStubHttpServer}) uses the namespace to route the request
+ * to one of many registered response providers.
+ *
+ * Use one of the factory methods to get a standard resolver. Implementations must be thread-safe.
+ */
+public abstract class NamespaceResolver {
+
+    /**
+     * @return a resolver taking the first segment of the request URI as the namespace. The segment is stripped
+     * from the request URI before the request is handed over to the response provider of the namespace, so a request
+     * to <tt>/ns/accounts/1</tt> is seen as a request to <tt>/accounts/1</tt> by the <tt>ns</tt> namespace.
+     */
+    public static NamespaceResolver pathPrefix() {
+        return new PathPrefixResolver();
+    }
+
+
+    /**
+     * @return a resolver taking the host name of the <tt>Host</tt> header (without the port) as the namespace
+     */
+    public static NamespaceResolver hostHeader() {
+        return new HostHeaderResolver();
+    }
+
+
+    /**
+     * @param name name of the header carrying the namespace
+     * @return a resolver taking the first value of the given request header as the namespace
+     */
+    public static NamespaceResolver header(final String name) {
+        Validate.notEmpty(name, "name cannot be empty");
+        return new HeaderResolver(name);
+    }
+
+
+    /**
+     * @param req incoming http request
+     * @return namespace of the given request or <tt>null</tt> if the request doesn't belong to any namespace
+     */
+    public abstract String resolve(HttpServletRequest req);
+
+
+    /**
+     * Adapts the request before it's handed over to the response provider of its namespace. The request
+     * is returned unchanged by default.
+     * @param req incoming http request (with the body already read)
+     * @param namespace namespace resolved for the request
+     * @return the request as seen by the response provider of the namespace
+     * @throws IOException when an error occurred while adapting the request
+     */
+    public HttpServletRequest adapt(final MultipleReadsHttpServletRequest req, final String namespace)
+            throws IOException {
+        return req;
+    }
+
+
+    private static class PathPrefixResolver extends NamespaceResolver {
+
+        @Override
+        public String resolve(final HttpServletRequest req) {
+            final String uri = req.getRequestURI();
+            if (uri == null || uri.length() < 2 || uri.charAt(0) != '/') {
+                return null;
+            }
+
+            final int end = uri.indexOf('/', 1);
+            return end < 0 ? uri.substring(1) : uri.substring(1, end);
+        }
+
+        @Override
+        public HttpServletRequest adapt(final MultipleReadsHttpServletRequest req, final String namespace)
+                throws IOException {
+            final String rest = req.getRequestURI().substring(namespace.length() + 1);
+            return new UriOverridingRequest(req, rest.isEmpty() ? "/" : rest);
+        }
+    }
+
+
+    private static class HostHeaderResolver extends NamespaceResolver {
+
+        @Override
+        public String resolve(final HttpServletRequest req) {
+            return HostPredicate.hostName(req.getHeader("Host"));
+        }
+    }
+
+
+    private static class HeaderResolver extends NamespaceResolver {
+        private final String name;
+
+        HeaderResolver(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String resolve(final HttpServletRequest req) {
+            return req.getHeader(this.name);
+        }
+    }
+
+
+    /**
+     * A request with the request URI replaced. Extends {@link MultipleReadsHttpServletRequest} so the request view
+     * the stub rules are evaluated against is built from the replaced URI.
+     */
+    private static class UriOverridingRequest extends MultipleReadsHttpServletRequest {
+        private final String requestURI;
+
+        UriOverridingRequest(final HttpServletRequest request, final String requestURI) throws IOException {
+            super(request);
+            this.requestURI = requestURI;
+        }
+
+        @Override
+        public String getRequestURI() {
+            return this.requestURI;
+        }
+    }
+}
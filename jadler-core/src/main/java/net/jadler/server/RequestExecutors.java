@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Factory of executors running stub server request handlers. Virtual threads are used whenever the JVM
+ * supports them (they are looked up reflectively, so Jadler still runs on older JVMs), a bounded pool
+ * of daemon platform threads is used otherwise. On JVMs where virtual threads are just a preview feature
+ * (JDK 19 and 20 without <tt>--enable-preview</tt>), the factory method exists but fails, platform threads
+ * are used there as well.
+ */
+public final class RequestExecutors {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutors.class);
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    
+    private RequestExecutors() {
+        //gtfo
+    }
+    
+    
+    /**
+     * @return true if the running JVM supports virtual threads (and they're enabled)
+     */
+    public static boolean virtualThreadsSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+    
+    
+    /**
+     * Creates a new executor for request handlers. Uses a virtual thread per task executor if the JVM supports
+     * it, otherwise a bounded pool of platform threads (see {@link #newPlatformExecutor(java.lang.String, int)}).
+     * @param name name prefix of the executor threads
+     * @param maxThreads max number of platform threads (ignored if virtual threads are used)
+     * @return new executor
+     */
+    public static ExecutorService newExecutor(final String name, final int maxThreads) {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            }
+            catch (final Exception e) {
+                logger.debug("cannot create a virtual thread executor, using platform threads", e);
+            }
+        }
+        return newPlatformExecutor(name, maxThreads);
+    }
+    
+    
+    /**
+     * Creates a new bounded pool of daemon platform threads. Idle threads are released after a while,
+     * tasks are queued once all threads are busy.
+     * @param name name prefix of the executor threads
+     * @param maxThreads max number of threads
+     * @return new executor
+     */
+    public static ExecutorService newPlatformExecutor(final String name, final int maxThreads) {
+        Validate.notEmpty(name, "name cannot be empty");
+        Validate.isTrue(maxThreads > 0, "maxThreads must be positive");
+        
+        final ThreadPoolExecutor res = new ThreadPoolExecutor(maxThreads, maxThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory(name));
+        res.allowCoreThreadTimeOut(true);
+        return res;
+    }
+    
+    
+    private static Method findVirtualThreadExecutorFactory() {
+        final Method res;
+        try {
+            res = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (final NoSuchMethodException e) {
+            return null;
+        }
+        
+          //the method exists on JDK 19 and 20 even if preview features are disabled, it just fails there
+        try {
+            ((ExecutorService) res.invoke(null)).shutdown();
+            return res;
+        }
+        catch (final Exception e) {
+            logger.debug("virtual threads are not enabled, using platform threads", e);
+            return null;
+        }
+    }
+    
+    
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        DaemonThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread res = new Thread(r, this.name + "-" + this.counter.incrementAndGet());
+            res.setDaemon(true);
+            return res;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.collections.MultiMap;
+import org.apache.commons.collections.map.MultiValueMap;
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Reads request parameters from the query string and (in case of a form submission) from the request body.
+ * Shared by the request implementations of this package.
+ */
+final class RequestParameters {
+
+    private RequestParameters() {
+        //gtfo
+    }
+    
+    
+    /**
+     * @param req request to read parameters of
+     * @param body request body
+     * @param enc request encoding
+     * @return request parameters
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, String[]> read(final HttpServletRequest req, final byte[] body, final String enc)
+            throws UnsupportedEncodingException {
+        final MultiMap params = readParametersFromString(req.getQueryString(), enc); 
+        
+          //TODO: shitty attempt to check whether the body contains html form data. Please refactor.
+        if (!StringUtils.isBlank(req.getContentType()) &&
+            req.getContentType().contains("application/x-www-form-urlencoded")) {
+            
+            if ("POST".equalsIgnoreCase(req.getMethod()) || "PUT".equalsIgnoreCase(req.getMethod())) {
+                params.putAll(readParametersFromString(new String(body, enc), enc));
+            }
+        }
+        
+        final Map<String, String[]> res = new HashMap<>();
+        for(final Object o: params.entrySet()) {
+            final Entry<String, Collection<String>> e = (Entry) o;
+            res.put(e.getKey(), e.getValue().toArray(new String[0]));
+        }
+        
+        return res;
+    }
+    
+    
+    private static MultiMap readParametersFromString(final String parametersString, final String enc) {
+        final MultiMap res = new MultiValueMap();
+        
+        if (StringUtils.isBlank(parametersString)) {
+            return res;
+        }
+        
+        final String[] pairs = parametersString.split("&");
+        
+        for (final String pair : pairs) {
+            final int idx = pair.indexOf('=');
+            if (idx > -1) {
+
+                try {
+                    final String name = URLDecoder.decode(StringUtils.substring(pair, 0, idx), enc);
+                    final String value = URLDecoder.decode(StringUtils.substring(pair, idx + 1), enc);
+                    res.put(name, value);
+                }
+                catch (final UnsupportedEncodingException ex) {
+                    //indeed
+                }
+            }
+            else {
+                try {
+                    res.put(URLDecoder.decode(pair, enc), "");
+                }
+                catch (final UnsupportedEncodingException ex) {
+                    //no way
+                }
+            }
+        }
+        
+        return res;
+    }
+}
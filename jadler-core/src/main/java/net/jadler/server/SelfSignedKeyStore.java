@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import net.jadler.exception.JadlerException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Self-signed key material (a key pair and a certificate issued to <tt>localhost</tt> and <tt>127.0.0.1</tt>)
+ * of the https stub servers. The key material is generated just once per JVM and cached in a key store file
+ * in the <tt>.jadler</tt> directory of the user's home, so following test runs don't pay for the key generation
+ * again. A cached key store is replaced if its certificate expires in less than a day. The key store password
+ * is well-known, so the key store file (and the directory if created by this class) is readable by its owner only.
+ *
+ * The JDK provides no public API for issuing certificates, the key store is therefore generated by the
+ * <tt>keytool</tt> utility of the running JVM.
+ *
+ * Both the server and the client SSL contexts created by this class cache TLS sessions, so a client reconnecting
+ * using the same client context resumes the previous session instead of doing a full handshake.
+ */
+public final class SelfSignedKeyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SelfSignedKeyStore.class);
+    private static final String ALIAS = "jadler";
+    private static final String TYPE = "JKS";
+    private static final char[] PASSWORD = "jadler".toCharArray();
+    private static final String PROTOCOL = "TLS";
+    private static final int VALIDITY_DAYS = 3650;
+    private static final long MIN_VALIDITY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int SESSION_CACHE_SIZE = 10000;
+    private static final int SESSION_TIMEOUT_SECONDS = (int) TimeUnit.HOURS.toSeconds(24);
+    private static final String OWNER_ONLY_FILE = "rw-------";
+    private static final String OWNER_ONLY_DIRECTORY = "rwx------";
+
+    private static SelfSignedKeyStore instance;
+
+    private final Path path;
+    private final KeyStore keyStore;
+
+
+    private SelfSignedKeyStore(final Path path, final KeyStore keyStore) {
+        this.path = path;
+        this.keyStore = keyStore;
+    }
+
+
+    /**
+     * @return key material cached in the default location (<tt>.jadler/stub-server.jks</tt> in the user's home
+     * directory). The key store is loaded (or generated) on the first call only.
+     */
+    public static synchronized SelfSignedKeyStore get() {
+        if (instance == null) {
+            instance = load(Paths.get(System.getProperty("user.home"), ".jadler", "stub-server.jks"));
+        }
+        return instance;
+    }
+
+
+    /**
+     * Loads key material cached in the given file, the file is generated first if it doesn't exist or its
+     * certificate is about to expire. A generated file (and its directory if it doesn't exist) is accessible
+     * by its owner only.
+     * @param path key store file
+     * @return key material stored in the given file
+     */
+    public static SelfSignedKeyStore load(final Path path) {
+        Validate.notNull(path, "path cannot be null");
+
+        try {
+            KeyStore keyStore = Files.isRegularFile(path) ? readKeyStore(path) : null;
+            if (keyStore == null || !isValid(keyStore)) {
+                generate(path);
+                keyStore = readKeyStore(path);
+            }
+            return new SelfSignedKeyStore(path, keyStore);
+        }
+        catch (final IOException | GeneralSecurityException e) {
+            throw new JadlerException("Cannot load the key store " + path, e);
+        }
+    }
+
+
+    /**
+     * @return a new server SSL context using the key material. TLS sessions are cached by the context.
+     */
+    public SSLContext createServerContext() {
+        try {
+            final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(this.keyStore, PASSWORD);
+
+            final SSLContext res = SSLContext.getInstance(PROTOCOL);
+            res.init(kmf.getKeyManagers(), null, null);
+            res.getServerSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+            res.getServerSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            return res;
+        }
+        catch (final GeneralSecurityException e) {
+            throw new JadlerException("Cannot create a server SSL context", e);
+        }
+    }
+
+
+    /**
+     * @return a new client SSL context trusting the certificate. TLS sessions are cached by the context, so share
+     * one instance among connections to let them resume the TLS session.
+     */
+    public SSLContext createClientContext() {
+        try {
+            final TrustManagerFactory tmf =
+                    TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(this.keyStore);
+
+            final SSLContext res = SSLContext.getInstance(PROTOCOL);
+            res.init(null, tmf.getTrustManagers(), null);
+            res.getClientSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+            res.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            return res;
+        }
+        catch (final GeneralSecurityException e) {
+            throw new JadlerException("Cannot create a client SSL context", e);
+        }
+    }
+
+
+    /**
+     * @return the self-signed certificate
+     */
+    public X509Certificate getCertificate() {
+        try {
+            return (X509Certificate) this.keyStore.getCertificate(ALIAS);
+        }
+        catch (final GeneralSecurityException e) {
+            throw new JadlerException("Cannot read the certificate", e);
+        }
+    }
+
+
+    /**
+     * @return the key store file (of the <tt>JKS</tt> type), usable as a trust store of clients
+     * configured by system properties
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+
+    /**
+     * @return password of both the key store and the key
+     */
+    public char[] getPassword() {
+        return PASSWORD.clone();
+    }
+
+
+    private static KeyStore readKeyStore(final Path path) throws IOException, GeneralSecurityException {
+        final KeyStore res = KeyStore.getInstance(TYPE);
+        try (final InputStream in = Files.newInputStream(path)) {
+            res.load(in, PASSWORD);
+        }
+        catch (final IOException e) {
+            logger.debug("cannot read the cached key store {}, it will be generated again", path, e);
+            return null;
+        }
+        return res;
+    }
+
+
+    private static boolean isValid(final KeyStore keyStore) throws GeneralSecurityException {
+        final X509Certificate cert = (X509Certificate) keyStore.getCertificate(ALIAS);
+        return cert != null && cert.getNotAfter().after(new Date(System.currentTimeMillis() + MIN_VALIDITY_MILLIS));
+    }
+
+
+    private static void generate(final Path path) throws IOException {
+        logger.info("generating a self-signed key store {}", path);
+
+        final Path dir = path.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir);
+            restrictToOwner(dir, OWNER_ONLY_DIRECTORY);
+        }
+
+          //generated next to the target and moved, so concurrent JVMs never read a half-written file
+        final Path tmp = Files.createTempFile(dir, "jadler-", ".tmp");
+        Files.delete(tmp);
+        try {
+            final Process process = new ProcessBuilder(keytool(), "-genkeypair",
+                    "-alias", ALIAS, "-keyalg", "EC", "-keysize", "256",
+                    "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                    "-validity", String.valueOf(VALIDITY_DAYS),
+                    "-storetype", TYPE, "-keystore", tmp.toString(),
+                    "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                    .redirectErrorStream(true)
+                    .start();
+            final String output = IOUtils.toString(process.getInputStream());
+
+            final int exitCode;
+            try {
+                exitCode = process.waitFor();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroy();
+                throw new IOException("Interrupted while generating the key store", e);
+            }
+            if (exitCode != 0) {
+                throw new IOException("keytool failed with the exit code " + exitCode + ": " + output);
+            }
+            restrictToOwner(tmp, OWNER_ONLY_FILE);
+
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+
+    private static void restrictToOwner(final Path path, final String posixPermissions) throws IOException {
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(posixPermissions));
+            return;
+        }
+
+          //no posix permissions (Windows), at least revoke the access of others
+        final File file = path.toFile();
+        final boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+                && file.setWritable(false, false) && file.setWritable(true, true);
+        if (!restricted) {
+            logger.warn("cannot restrict the access to {} to its owner", path);
+        }
+    }
+
+
+    private static String keytool() {
+        final File bin = new File(System.getProperty("java.home"), "bin");
+        final File exe = new File(bin, "keytool.exe");
+        return (exe.isFile() ? exe : new File(bin, "keytool")).getAbsolutePath();
+    }
+}
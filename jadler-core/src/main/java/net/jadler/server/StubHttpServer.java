@@ -14,7 +14,10 @@ import net.jadler.httpmocker.ResponseProvider;
  * according to a {@link ResponseProvider} instance.
  * 
  * Jadler provides a default implementation of this interface {@link JettyStubHttpServer} based on
- * an embedded jetty server.
+ * an embedded jetty server and a lightweight implementation {@link net.jadler.server.jdk.JdkStubHttpServer}
+ * based on the http server built in the JDK.
+ * 
+ * A stub server tracking its connections implements {@link ConnectionStatisticsAware} as well.
  */
 public interface StubHttpServer {
 
@@ -37,4 +40,11 @@ public interface StubHttpServer {
      * @throws Exception when an error occurred while stopping the server
      */
     void stop() throws Exception;
+    
+    /**
+     * @return port the server is listening on. If the server has been configured to listen on the port <tt>0</tt>
+     * (an ephemeral port chosen by the operating system), the actual port is returned once the server has been
+     * started.
+     */
+    int getPort();
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.stubbing.RuleMetrics;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.lang.StringUtils;
+
+
+/**
+ * Writes a {@link StubResponse} to a server specific response representation. The stub response is processed
+ * the same way by all stub server backends: headers are set first, then the response is delayed
+ * (see {@link StubResponse#getTimeout()}) and finally the status and the body (encoded using
+ * {@link StubResponse#getEncoding()}) are sent. The time spent by writing the response (not including the delay)
+ * is reported to the metrics of the rule the response has been provided by (see
+ * {@link net.jadler.httpmocker.MatchedResponse#getRuleMetrics()}).
+ * 
+ * @param <T> server specific response representation
+ */
+public abstract class StubResponseWriter<T> {
+    
+    /**
+     * Writes the given stub response.
+     * @param stubResponse stub response to be written
+     * @param ruleMetrics metrics of the rule the stub response has been provided by, the write time is reported
+     * to them (<tt>null</tt> if the response doesn't belong to any rule)
+     * @param target server specific response to write the stub response to
+     * @throws IOException when an error occurred while writing the response
+     */
+    public void write(final StubResponse stubResponse, final RuleMetrics ruleMetrics, final T target)
+            throws IOException {
+        final long start = System.nanoTime();
+        final byte[] body = encodeBody(stubResponse);
+        
+        for (@SuppressWarnings("unchecked") final Iterator<Entry<String, Collection<String>>> it 
+                = stubResponse.getHeaders().entrySet().iterator(); it.hasNext(); ) {
+            
+            final Entry<String, Collection<String>> e = it.next();
+            
+            for (final String value: e.getValue()) {
+                this.addHeader(target, e.getKey(), value);
+            }
+        }
+        
+        long writeTime = System.nanoTime() - start;
+        
+        delay(stubResponse.getTimeout());
+        final long bodyStart = System.nanoTime();
+        this.writeStatusAndBody(target, stubResponse.getStatus(), body);
+        writeTime += System.nanoTime() - bodyStart;
+        
+        if (ruleMetrics != null) {
+            ruleMetrics.recordWrite(writeTime);
+        }
+    }
+    
+    
+    /**
+     * @param stubResponse stub response
+     * @return body of the given stub response encoded using the stub response encoding
+     * (encoded just once, see {@link StubResponse#getEncodedBody()})
+     */
+    public static byte[] encodeBody(final StubResponse stubResponse) {
+        return stubResponse.getEncodedBody();
+    }
+    
+    
+    /**
+     * Blocks the current thread for the given time.
+     * @param timeout time to wait for (in millis), nothing happens if not positive
+     */
+    public static void delay(final long timeout) {
+        if (timeout > 0) {
+            try {
+                Thread.sleep(timeout);
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    
+    /**
+     * @param request http request no stub rule was found for
+     * @return a message describing the request
+     */
+    public static String noRuleFoundMessage(final HttpServletRequest request) {
+        final String queryString = StringUtils.isNotBlank(request.getQueryString())
+                ? "?" + request.getQueryString()
+                : "";
+        
+        return "No suitable rule found for request: " + request.getMethod() + " " + request.getRequestURI()
+                + queryString;
+    }
+    
+    
+    /**
+     * Adds a response header.
+     * @param target server specific response
+     * @param name header name
+     * @param value header value
+     */
+    protected abstract void addHeader(T target, String name, String value);
+    
+    
+    /**
+     * Sends the response status and body.
+     * @param target server specific response
+     * @param status http status
+     * @param body encoded response body (an empty array if there is no body)
+     * @throws IOException when an error occurred while writing the response
+     */
+    protected abstract void writeStatusAndBody(T target, int status, byte[] body) throws IOException;
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jdk;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.RequestExecutors;
+import net.jadler.server.StubHttpServer;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Stub http server implementation based on the http server built in the JDK (<tt>com.sun.net.httpserver</tt>).
+ * Compared to {@link net.jadler.server.jetty.JettyStubHttpServer} it starts in a few milliseconds, so it's
+ * well suited for tests starting a new stub server for every single test. Use it via
+ * {@link net.jadler.Jadler.OngoingConfiguration#usesCustomServer(net.jadler.server.StubHttpServer)}.
+ *
+ * Requests are handled by virtual threads if the JVM supports them, by a bounded pool of platform threads
+ * otherwise (see {@link RequestExecutors}). A custom executor can be provided as well.
+ */
+public class JdkStubHttpServer implements StubHttpServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdkStubHttpServer.class);
+    private static final int DEFAULT_MAX_THREADS = 200;
+      //0 stands for the system default
+    private static final int BACKLOG = 0;
+
+    private final int port;
+    private final ExecutorService customExecutor;
+    private ResponseProvider responseProvider;
+    private HttpServer server;
+    private ExecutorService executor;
+
+
+    /**
+     * @param port port the server will be listening on, <tt>0</tt> for an ephemeral port
+     */
+    public JdkStubHttpServer(final int port) {
+        this(port, null);
+    }
+
+
+    /**
+     * @param port port the server will be listening on
+     * @param executor executor to run request handlers by (or <tt>null</tt> to use the default one). The executor
+     * is not shut down when the server stops.
+     */
+    public JdkStubHttpServer(final int port, final ExecutorService executor) {
+        Validate.isTrue(port >= 0, "port cannot be negative");
+
+        this.port = port;
+        this.customExecutor = executor;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerResponseProvider(final ResponseProvider responseProvider) {
+        Validate.notNull(responseProvider, "responseProvider cannot be null");
+        this.responseProvider = responseProvider;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() throws Exception {
+        if (this.responseProvider == null) {
+            throw new IllegalStateException("No response provider has been registered.");
+        }
+        if (this.server != null) {
+            throw new IllegalStateException("The server has been started already.");
+        }
+
+        logger.debug("starting jdk http server");
+        this.executor = this.customExecutor != null
+                ? this.customExecutor
+                : RequestExecutors.newExecutor("jadler-jdk", DEFAULT_MAX_THREADS);
+
+        this.server = HttpServer.create(new InetSocketAddress(this.port), BACKLOG);
+        this.server.createContext("/", new StubExchangeHandler(this.responseProvider));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        logger.debug("jdk http server started");
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() throws Exception {
+        if (this.server == null) {
+            throw new IllegalStateException("The server hasn't been started yet.");
+        }
+
+        logger.debug("stopping jdk http server");
+        this.server.stop(0);
+        this.server = null;
+
+        if (this.customExecutor == null) {
+            this.executor.shutdownNow();
+        }
+        this.executor = null;
+        logger.debug("jdk http server stopped");
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPort() {
+        final HttpServer running = this.server;
+        return running != null ? running.getAddress().getPort() : this.port;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jdk;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map.Entry;
+import net.jadler.httpmocker.MatchedResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.BasicHttpServletRequest;
+import net.jadler.server.MultipleReadsHttpServletRequest;
+import net.jadler.server.StubResponseWriter;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Handles all requests of {@link JdkStubHttpServer}. Every request is adapted to a
+ * {@link javax.servlet.http.HttpServletRequest} and the response is defined by the registered
+ * {@link ResponseProvider}. If there is no response defined for a request, <tt>500</tt> is returned.
+ */
+class StubExchangeHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubExchangeHandler.class);
+    private static final StubResponseWriter<HttpExchange> WRITER = new ExchangeResponseWriter();
+    private static final int INTERNAL_SERVER_ERROR = 500;
+      //no response body (see HttpExchange#sendResponseHeaders(int, long))
+    private static final int NO_BODY = -1;
+      //response code of an exchange no response headers have been sent for (see HttpExchange#getResponseCode())
+    private static final int NO_RESPONSE_CODE = -1;
+
+    private final ResponseProvider ruleProvider;
+
+
+    StubExchangeHandler(final ResponseProvider ruleProvider) {
+        this.ruleProvider = ruleProvider;
+    }
+
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final MultipleReadsHttpServletRequest request = new MultipleReadsHttpServletRequest(adapt(exchange));
+            final MatchedResponse matched = MatchedResponse.provide(this.ruleProvider, request);
+
+            if (matched != null) {
+                WRITER.write(matched.getResponse(), matched.getRuleMetrics(), exchange);
+            }
+            else {
+                logger.warn(StubResponseWriter.noRuleFoundMessage(request));
+                exchange.sendResponseHeaders(INTERNAL_SERVER_ERROR, NO_BODY);
+            }
+        }
+        catch (final RuntimeException e) {
+            logger.error("An error occurred while handling a request", e);
+              //once the response headers have been sent, the exchange can only be closed
+            if (exchange.getResponseCode() == NO_RESPONSE_CODE) {
+                exchange.sendResponseHeaders(INTERNAL_SERVER_ERROR, NO_BODY);
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+
+    private static BasicHttpServletRequest adapt(final HttpExchange exchange) throws IOException {
+        final URI uri = exchange.getRequestURI();
+        final byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+
+        final BasicHttpServletRequest res = new BasicHttpServletRequest(exchange.getRequestMethod(),
+                uri.getRawPath(), uri.getRawQuery(), exchange.getProtocol(), body);
+
+        for (final Entry<String, List<String>> e : exchange.getRequestHeaders().entrySet()) {
+            for (final String value : e.getValue()) {
+                res.addHeader(e.getKey(), value);
+            }
+        }
+
+        res.setLocalAddress(exchange.getLocalAddress());
+        res.setRemoteAddress(exchange.getRemoteAddress());
+        if (exchange instanceof HttpsExchange) {
+            res.setScheme("https");
+        }
+        return res;
+    }
+
+
+    private static class ExchangeResponseWriter extends StubResponseWriter<HttpExchange> {
+
+        @Override
+        protected void addHeader(final HttpExchange target, final String name, final String value) {
+            target.getResponseHeaders().add(name, value);
+        }
+
+        @Override
+        protected void writeStatusAndBody(final HttpExchange target, final int status, final byte[] body)
+                throws IOException {
+              //the server refuses a body of a HEAD response
+            if (body.length == 0 || "HEAD".equalsIgnoreCase(target.getRequestMethod())) {
+                target.sendResponseHeaders(status, NO_BODY);
+                return;
+            }
+
+            target.sendResponseHeaders(status, body.length);
+            final OutputStream out = target.getResponseBody();
+            out.write(body);
+            out.flush();
+        }
+    }
+}
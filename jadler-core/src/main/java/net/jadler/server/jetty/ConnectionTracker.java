@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import net.jadler.server.ConnectionMetrics;
+import org.eclipse.jetty.io.ConnectedEndPoint;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpConnection;
+
+
+/**
+ * Reports connection events of the Jetty connectors of {@link JettyStubHttpServer} to {@link ConnectionMetrics}.
+ * The connectors call this class from their connection lifecycle callbacks.
+ *
+ * Jetty 7 doesn't tell why a connection has been closed. A connection is considered closed because of the idle
+ * timeout if it's been idle (waiting for the next request) for at least the max idle time of its connector when
+ * closed. Jetty checks idle connections periodically, so a tolerance of 10 % of the max idle time is applied.
+ */
+class ConnectionTracker {
+
+    private final ConnectionMetrics metrics;
+
+
+    ConnectionTracker(final ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+
+    void opened(final Connection connection) {
+        if (connection instanceof HttpConnection) {
+            ((HttpConnection) connection).setAssociatedObject(new ConnectionState());
+        }
+        this.metrics.connectionOpened();
+    }
+
+
+    void requestReceived(final EndPoint endpoint) {
+        final ConnectionState state = state(endpoint);
+        if (state != null) {
+            state.idleSince = 0;
+            this.metrics.requestReceived(state.requests++ > 0);
+        }
+        else {
+            this.metrics.requestReceived(false);
+        }
+    }
+
+
+    void persisted(final EndPoint endpoint) {
+        final ConnectionState state = state(endpoint);
+        if (state != null) {
+            state.idleSince = System.currentTimeMillis();
+        }
+    }
+
+
+    void closed(final Connection connection, final int maxIdleTime) {
+        boolean idle = false;
+        if (connection instanceof HttpConnection
+                && ((HttpConnection) connection).getAssociatedObject() instanceof ConnectionState) {
+            final long idleSince = ((ConnectionState) ((HttpConnection) connection).getAssociatedObject()).idleSince;
+            idle = idleSince > 0 && maxIdleTime > 0
+                    && (System.currentTimeMillis() - idleSince) * 10 >= maxIdleTime * 9L;
+        }
+        this.metrics.connectionClosed(idle);
+    }
+
+
+    private static ConnectionState state(final EndPoint endpoint) {
+        if (endpoint instanceof ConnectedEndPoint) {
+            final Connection connection = ((ConnectedEndPoint) endpoint).getConnection();
+            if (connection instanceof HttpConnection
+                    && ((HttpConnection) connection).getAssociatedObject() instanceof ConnectionState) {
+                return (ConnectionState) ((HttpConnection) connection).getAssociatedObject();
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * State of a single connection. A connection is handled by one thread at a time.
+     */
+    private static class ConnectionState {
+        private volatile int requests;
+        private volatile long idleSince = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.stubbing.StubResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A response provider attached to a shared Jetty instance (see {@link SharedStubHttpServer}
+ * and {@link NamespacedStubHttpServer}) along with the number of its requests in flight, so it can be drained
+ * once detached. A request is in flight until its response has been written (see {@link InFlightRequest}).
+ */
+class DrainableProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrainableProvider.class);
+
+    private final ResponseProvider ruleProvider;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+
+    /**
+     * @param ruleProvider response provider to be attached
+     */
+    DrainableProvider(final ResponseProvider ruleProvider) {
+        this.ruleProvider = ruleProvider;
+    }
+
+
+    /**
+     * Marks a request as being in flight. Must be followed by {@link InFlightRequest#exit()}.
+     * @param req request to be evaluated by the attached provider
+     * @return the in flight request
+     */
+    InFlightRequest enter(final HttpServletRequest req) {
+        this.inFlight.incrementAndGet();
+        return new InFlightRequest(this.ruleProvider, req, this);
+    }
+
+
+    /**
+     * Marks a request entered using {@link #enter(HttpServletRequest)} as handled.
+     */
+    void exit() {
+        this.inFlight.decrementAndGet();
+    }
+
+
+    /**
+     * Waits until all requests in flight are handled, for at most {@link SharedStubHttpServer#DRAIN_TIMEOUT_MILLIS}.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void drain() throws InterruptedException {
+        final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(SharedStubHttpServer.DRAIN_TIMEOUT_MILLIS);
+        while (this.inFlight.get() > 0) {
+            if (System.nanoTime() - deadline > 0) {
+                logger.warn("{} request(s) still in flight after {} ms, giving up draining",
+                        this.inFlight.get(), SharedStubHttpServer.DRAIN_TIMEOUT_MILLIS);
+                return;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+
+    /**
+     * @return response rejecting a request no provider is attached for (<tt>503</tt>, empty body)
+     */
+    static StubResponse rejection() {
+        final StubResponse res = new StubResponse();
+        res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        res.setEncoding(Charset.forName("UTF-8"));
+        res.setBody("");
+        return res;
+    }
+}
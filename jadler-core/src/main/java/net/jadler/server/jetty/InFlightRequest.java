@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.httpmocker.MatchedResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.stubbing.StubResponse;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationListener;
+
+
+/**
+ * A request being handled by {@link StubHandler} along with the response provider it's been routed to.
+ * If the provider is attached to a shared Jetty instance (see {@link DrainableProvider}), the request stays
+ * in flight until {@link #exit()} is called, so the handler keeps it in flight until the response (including
+ * a delayed one) has been written and the request completed.
+ */
+final class InFlightRequest {
+
+    private static final ResponseProvider REJECTING = new ResponseProvider() {
+        @Override
+        public StubResponse provideResponseFor(final HttpServletRequest req) {
+            return DrainableProvider.rejection();
+        }
+    };
+
+    private final ResponseProvider ruleProvider;
+    private final HttpServletRequest request;
+    private final DrainableProvider drainable;
+    private final AtomicBoolean exited = new AtomicBoolean();
+
+
+    /**
+     * @param ruleProvider provider of the response
+     * @param request request to be evaluated by the provider
+     * @param drainable provider the request has been entered to or <tt>null</tt> if the request is not tracked
+     */
+    InFlightRequest(final ResponseProvider ruleProvider, final HttpServletRequest request,
+            final DrainableProvider drainable) {
+        this.ruleProvider = ruleProvider;
+        this.request = request;
+        this.drainable = drainable;
+    }
+
+
+    /**
+     * @param ruleProvider response provider of the stub handler
+     * @param request request to be handled
+     * @return the request routed to an attached provider if the given provider routes requests to attached
+     * providers, an untracked request evaluated by the given provider otherwise
+     */
+    static InFlightRequest enter(final ResponseProvider ruleProvider, final HttpServletRequest request) {
+        if (ruleProvider instanceof RoutingResponseProvider) {
+            return ((RoutingResponseProvider) ruleProvider).enter(request);
+        }
+        return new InFlightRequest(ruleProvider, request, null);
+    }
+
+
+    /**
+     * @param request request no provider is attached for
+     * @return untracked request rejected using {@link DrainableProvider#rejection()}
+     */
+    static InFlightRequest rejected(final HttpServletRequest request) {
+        return new InFlightRequest(REJECTING, request, null);
+    }
+
+
+    /**
+     * @return response for this request or <tt>null</tt> if no response is defined for it
+     */
+    MatchedResponse provideMatchedResponse() {
+        return MatchedResponse.provide(this.ruleProvider, this.request);
+    }
+
+
+    /**
+     * Exits this request once the given continuation has been completed.
+     * @param continuation suspended continuation of this request
+     */
+    void exitOnCompletion(final Continuation continuation) {
+        continuation.addContinuationListener(new ContinuationListener() {
+            @Override
+            public void onComplete(final Continuation continuation) {
+                exit();
+            }
+
+            @Override
+            public void onTimeout(final Continuation continuation) {
+                exit();
+            }
+        });
+    }
+
+
+    /**
+     * Marks this request as handled. Calling this method more than once has no effect.
+     */
+    void exit() {
+        if (this.drainable != null && this.exited.compareAndSet(false, true)) {
+            this.drainable.exit();
+        }
+    }
+}
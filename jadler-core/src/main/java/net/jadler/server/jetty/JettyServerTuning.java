@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import org.apache.commons.lang.Validate;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+
+/**
+ * Tuning parameters of the Jetty based stub server (see {@link JettyStubHttpServer}). Every parameter not set
+ * explicitly keeps the Jetty default value, so a new instance of this class doesn't change the server
+ * configuration at all.
+ *
+ * Jetty 7 doesn't allow configuring the number of selectors independently, every acceptor thread drives one
+ * selector. Setting the number of selectors therefore raises the number of acceptors if necessary.
+ *
+ * Instances of this class are mutable and not thread-safe, they are supposed to be configured before
+ * the stub server is created.
+ */
+public class JettyServerTuning {
+
+    private Integer acceptors;
+    private Integer selectors;
+    private Integer acceptQueueSize;
+    private Integer maxIdleTime;
+    private Integer headerBufferSize;
+    private Integer requestBufferSize;
+    private Integer responseBufferSize;
+    private Integer minThreads;
+    private Integer maxThreads;
+    private Integer maxQueued;
+    private boolean daemonThreads;
+
+
+    /**
+     * @param acceptors number of threads accepting new connections
+     * @return this tuning instance
+     */
+    public JettyServerTuning withAcceptors(final int acceptors) {
+        Validate.isTrue(acceptors > 0, "acceptors must be positive");
+        this.acceptors = acceptors;
+        return this;
+    }
+
+
+    /**
+     * @param selectors number of selectors handling the connections (mapped onto the number of acceptors,
+     * see the class description)
+     * @return this tuning instance
+     */
+    public JettyServerTuning withSelectors(final int selectors) {
+        Validate.isTrue(selectors > 0, "selectors must be positive");
+        this.selectors = selectors;
+        return this;
+    }
+
+
+    /**
+     * @param acceptQueueSize length of the queue of incoming connections waiting to be accepted
+     * (the <tt>backlog</tt> parameter of the server socket)
+     * @return this tuning instance
+     */
+    public JettyServerTuning withAcceptQueueSize(final int acceptQueueSize) {
+        Validate.isTrue(acceptQueueSize >= 0, "acceptQueueSize cannot be negative");
+        this.acceptQueueSize = acceptQueueSize;
+        return this;
+    }
+
+
+    /**
+     * @param maxIdleTime time in milliseconds an idle connection is kept open for
+     * @return this tuning instance
+     */
+    public JettyServerTuning withMaxIdleTime(final int maxIdleTime) {
+        Validate.isTrue(maxIdleTime > 0, "maxIdleTime must be positive");
+        this.maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+
+    /**
+     * @param headerBufferSize size of the request and response header buffers in bytes (applied to both
+     * the request header size and the response header size of the connector)
+     * @return this tuning instance
+     */
+    public JettyServerTuning withHeaderBufferSize(final int headerBufferSize) {
+        Validate.isTrue(headerBufferSize > 0, "headerBufferSize must be positive");
+        this.headerBufferSize = headerBufferSize;
+        return this;
+    }
+
+
+    /**
+     * @param requestBufferSize size of the request body buffer in bytes
+     * @return this tuning instance
+     */
+    public JettyServerTuning withRequestBufferSize(final int requestBufferSize) {
+        Validate.isTrue(requestBufferSize > 0, "requestBufferSize must be positive");
+        this.requestBufferSize = requestBufferSize;
+        return this;
+    }
+
+
+    /**
+     * @param responseBufferSize size of the response body buffer in bytes
+     * @return this tuning instance
+     */
+    public JettyServerTuning withResponseBufferSize(final int responseBufferSize) {
+        Validate.isTrue(responseBufferSize > 0, "responseBufferSize must be positive");
+        this.responseBufferSize = responseBufferSize;
+        return this;
+    }
+
+
+    /**
+     * @param minThreads minimal number of threads of the worker pool
+     * @return this tuning instance
+     */
+    public JettyServerTuning withMinThreads(final int minThreads) {
+        Validate.isTrue(minThreads > 0, "minThreads must be positive");
+        this.minThreads = minThreads;
+        return this;
+    }
+
+
+    /**
+     * @param maxThreads maximal number of threads of the worker pool. Please note the acceptor threads
+     * are taken from the worker pool as well.
+     * @return this tuning instance
+     */
+    public JettyServerTuning withMaxThreads(final int maxThreads) {
+        Validate.isTrue(maxThreads > 0, "maxThreads must be positive");
+        this.maxThreads = maxThreads;
+        return this;
+    }
+
+
+    /**
+     * @param maxQueued maximal number of jobs waiting for a free worker thread
+     * @return this tuning instance
+     */
+    public JettyServerTuning withMaxQueued(final int maxQueued) {
+        Validate.isTrue(maxQueued >= 0, "maxQueued cannot be negative");
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+
+    /**
+     * @param daemonThreads true if the worker pool threads should be daemon threads, so a running stub server
+     * doesn't prevent the JVM from exiting
+     * @return this tuning instance
+     */
+    public JettyServerTuning withDaemonThreads(final boolean daemonThreads) {
+        this.daemonThreads = daemonThreads;
+        return this;
+    }
+
+
+    /**
+     * @return a new tuning instance with the same parameters as this one
+     */
+    JettyServerTuning copy() {
+        final JettyServerTuning res = new JettyServerTuning();
+        res.acceptors = this.acceptors;
+        res.selectors = this.selectors;
+        res.acceptQueueSize = this.acceptQueueSize;
+        res.maxIdleTime = this.maxIdleTime;
+        res.headerBufferSize = this.headerBufferSize;
+        res.requestBufferSize = this.requestBufferSize;
+        res.responseBufferSize = this.responseBufferSize;
+        res.minThreads = this.minThreads;
+        res.maxThreads = this.maxThreads;
+        res.maxQueued = this.maxQueued;
+        res.daemonThreads = this.daemonThreads;
+        return res;
+    }
+
+
+    /**
+     * @return effective number of acceptors or <tt>null</tt> if the Jetty default is to be used
+     */
+    Integer getEffectiveAcceptors() {
+        if (this.selectors == null) {
+            return this.acceptors;
+        }
+        return this.acceptors == null ? this.selectors : Math.max(this.acceptors, this.selectors);
+    }
+
+
+    /**
+     * Applies the connector related parameters to the given connector.
+     * @param connector connector to be tuned
+     */
+    void applyTo(final SelectChannelConnector connector) {
+        final Integer effectiveAcceptors = this.getEffectiveAcceptors();
+        if (effectiveAcceptors != null) {
+            connector.setAcceptors(effectiveAcceptors);
+        }
+        if (this.acceptQueueSize != null) {
+            connector.setAcceptQueueSize(this.acceptQueueSize);
+        }
+        if (this.maxIdleTime != null) {
+            connector.setMaxIdleTime(this.maxIdleTime);
+        }
+        if (this.headerBufferSize != null) {
+            connector.setRequestHeaderSize(this.headerBufferSize);
+            connector.setResponseHeaderSize(this.headerBufferSize);
+        }
+        if (this.requestBufferSize != null) {
+            connector.setRequestBufferSize(this.requestBufferSize);
+        }
+        if (this.responseBufferSize != null) {
+            connector.setResponseBufferSize(this.responseBufferSize);
+        }
+    }
+
+
+    /**
+     * @return a new worker pool configured using the pool related parameters or <tt>null</tt> if none
+     * of them has been set (the Jetty default pool is to be used then)
+     */
+    QueuedThreadPool createThreadPool() {
+        if (this.minThreads == null && this.maxThreads == null && this.maxQueued == null && !this.daemonThreads) {
+            return null;
+        }
+
+        if (this.minThreads != null && this.maxThreads != null) {
+            Validate.isTrue(this.minThreads <= this.maxThreads, "minThreads (" + this.minThreads
+                    + ") cannot exceed maxThreads (" + this.maxThreads + ")");
+        }
+
+        final QueuedThreadPool res = new QueuedThreadPool();
+        res.setName("jadler-jetty");
+        res.setDaemon(this.daemonThreads);
+        if (this.minThreads != null) {
+            res.setMinThreads(this.minThreads);
+        }
+        if (this.maxThreads != null) {
+            res.setMaxThreads(this.maxThreads);
+              //the default minimal number of threads cannot exceed the maximum (an explicit one has been validated)
+            res.setMinThreads(Math.min(res.getMinThreads(), this.maxThreads));
+        }
+        if (this.maxQueued != null) {
+            res.setMaxQueued(this.maxQueued);
+        }
+        return res;
+    }
+}
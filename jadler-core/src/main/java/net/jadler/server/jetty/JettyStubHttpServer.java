@@ -4,7 +4,15 @@
  */
 package net.jadler.server.jetty;
 
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import javax.net.ssl.SSLContext;
 import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.ConnectionMetrics;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ConnectionStatisticsAware;
+import net.jadler.server.ExecutionMode;
+import net.jadler.server.RequestExecutors;
 import net.jadler.server.StubHttpServer;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
@@ -14,29 +22,130 @@ import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.Validate;
-import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 
 /**
  * This class wraps Jetty server, performs all necessary configuration and
  * register HTTP rules which will be handled by the server.
  *
- * Jetty server created by this class runs in embedded mode.
+ * Jetty server created by this class runs in embedded mode. It can listen on several ports at once
+ * (see {@link #JettyStubHttpServer(int[], JettyServerTuning)}), all connectors share one worker pool and
+ * one response provider.
  */
-public class JettyStubHttpServer implements StubHttpServer {
+public class JettyStubHttpServer implements StubHttpServer, ConnectionStatisticsAware {
 
     private static final Logger logger = LoggerFactory.getLogger(JettyStubHttpServer.class);
+      //max number of platform threads handling requests if virtual threads are not supported
+    private static final int MAX_FALLBACK_THREADS = 256;
+    
     private final Server server;
+    private final SelectChannelConnector[] connectors;
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+    private ResponseProvider ruleProvider;
+    private ExecutionMode executionMode = ExecutionMode.SERVER_THREADS;
+    private ExecutorService executor;
+    private PassThroughProxy proxy;
 
 
+    /**
+     * Creates a new stub server listening on the given port.
+     * @param port port the server will be listening on, <tt>0</tt> for an ephemeral port chosen by the operating
+     * system when the server is started (see {@link #getPort()})
+     */
     public JettyStubHttpServer(final int port) {
+        this(port, new JettyServerTuning());
+    }
+
+
+    /**
+     * Creates a new stub server listening on the given port and tuned using the given parameters.
+     * @param port port the server will be listening on, <tt>0</tt> for an ephemeral port
+     * @param tuning connector and worker pool parameters
+     */
+    public JettyStubHttpServer(final int port, final JettyServerTuning tuning) {
+        this(new int[] {port}, tuning);
+    }
+
+
+    /**
+     * Creates a new stub server listening on all the given ports. Use
+     * {@link net.jadler.stubbing.RequestStubbing#havingLocalPortEqualTo(int)} to define stub rules
+     * of a single port.
+     * @param ports ports the server will be listening on, <tt>0</tt> for an ephemeral port
+     * @param tuning connector and worker pool parameters (applied to all connectors)
+     */
+    public JettyStubHttpServer(final int[] ports, final JettyServerTuning tuning) {
+        this(ports, tuning, null);
+    }
+
+
+    /**
+     * Creates a new stub server listening on all the given ports using https. Use
+     * {@link net.jadler.server.SelfSignedKeyStore} to get key material for testing, it's generated just once
+     * and its SSL contexts cache TLS sessions, so clients reconnecting to the server resume their sessions
+     * instead of doing full handshakes.
+     * @param ports ports the server will be listening on, <tt>0</tt> for an ephemeral port
+     * @param tuning connector and worker pool parameters (applied to all connectors)
+     * @param sslContext server SSL context of all connectors or <tt>null</tt> for plain http connectors
+     */
+    public JettyStubHttpServer(final int[] ports, final JettyServerTuning tuning, final SSLContext sslContext) {
+        Validate.notNull(ports, "ports cannot be null");
+        Validate.isTrue(ports.length > 0, "at least one port must be defined");
+        Validate.notNull(tuning, "tuning cannot be null");
+
         this.server = new Server();
-        final Connector connector = new SelectChannelConnector();
-        connector.setPort(port);
-        server.addConnector(connector);
+        this.connectors = new SelectChannelConnector[ports.length];
+        final ConnectionTracker tracker = new ConnectionTracker(this.connectionMetrics);
+        for (int i = 0; i < ports.length; i++) {
+            Validate.isTrue(ports[i] >= 0, "port cannot be negative");
+            
+            this.connectors[i] = sslContext != null
+                    ? new StubSslConnector(sslContext, tracker)
+                    : new StubConnector(tracker);
+            this.connectors[i].setPort(ports[i]);
+            tuning.applyTo(this.connectors[i]);
+            server.addConnector(this.connectors[i]);
+        }
+
+        final QueuedThreadPool threadPool = tuning.createThreadPool();
+        if (threadPool != null) {
+            server.setThreadPool(threadPool);
+        }
     }
 
     
+    /**
+     * Sets the threads incoming requests are handled by. {@link ExecutionMode#SERVER_THREADS} is used by default.
+     * Must be called before the server is started.
+     * @param executionMode execution mode of the request handlers
+     */
+    public void setExecutionMode(final ExecutionMode executionMode) {
+        Validate.notNull(executionMode, "executionMode cannot be null");
+        if (this.server.isStarted()) {
+            throw new IllegalStateException("The execution mode cannot be changed once the server has been started");
+        }
+        
+        this.executionMode = executionMode;
+    }
+    
+    
+    /**
+     * Defines the proxy all requests no stub rule has been found for are forwarded to (such requests are
+     * responded with status <tt>500</tt> by default). Must be called before the server is started,
+     * the proxy is started and stopped along with the server.
+     * @param proxy proxy to forward unmatched requests to
+     */
+    public void setPassThroughProxy(final PassThroughProxy proxy) {
+        Validate.notNull(proxy, "proxy cannot be null");
+        if (this.server.isStarted()) {
+            throw new IllegalStateException("The proxy cannot be changed once the server has been started");
+        }
+        
+        this.proxy = proxy;
+    }
+    
+    
     /**
      * {@inheritDoc}
      */
@@ -44,9 +153,7 @@ public class JettyStubHttpServer implements StubHttpServer {
     public void registerResponseProvider(final ResponseProvider ruleProvider) {
         Validate.notNull(ruleProvider, "ruleProvider cannot be null");
         
-        final HandlerList handlers = new HandlerList();
-        handlers.setHandlers(new Handler[] {new StubHandler(ruleProvider), new DefaultHandler() });
-        server.setHandler(handlers);
+        this.ruleProvider = ruleProvider;
     }
     
     
@@ -55,9 +162,26 @@ public class JettyStubHttpServer implements StubHttpServer {
      */
     @Override
     public void start() throws Exception {
+        if (this.ruleProvider == null) {
+            throw new IllegalStateException("No response provider has been registered yet");
+        }
+        
+        if (this.executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            this.executor = RequestExecutors.newExecutor("jadler-handler", MAX_FALLBACK_THREADS);
+        }
+        final StubHandler stubHandler = new StubHandler(this.ruleProvider, this.executor, this.proxy);
+        
+        final HandlerList handlers = new HandlerList();
+        handlers.setHandlers(new Handler[] {stubHandler, new DefaultHandler() });
+        server.setHandler(handlers);
+        
+        if (this.proxy != null) {
+            this.proxy.start();
+        }
+        
         logger.debug("starting jetty");
         server.start();
-        logger.debug("jetty started");
+        logger.debug("jetty started on port(s) {}", Arrays.toString(this.getPorts()));
     }
 
 
@@ -69,5 +193,55 @@ public class JettyStubHttpServer implements StubHttpServer {
         logger.debug("stopping jetty");
         server.stop();
         logger.debug("jetty stopped");
+        
+        if (this.proxy != null) {
+            this.proxy.stop();
+        }
+        
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+    
+    
+    /**
+     * @return port the server is listening on (the first one if listening on several ports). The actual bound port
+     * is returned while the server is running (even if the server has been configured to use an ephemeral port),
+     * the configured port otherwise.
+     */
+    @Override
+    public int getPort() {
+        return port(this.connectors[0]);
+    }
+    
+    
+    /**
+     * @return all ports the server is listening on in the order they were defined in. Actual bound ports
+     * are returned while the server is running, the configured ports otherwise.
+     */
+    public int[] getPorts() {
+        final int[] res = new int[this.connectors.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = port(this.connectors[i]);
+        }
+        return res;
+    }
+    
+    
+    /**
+     * {@inheritDoc} Connections of all ports are counted together. A connection is considered closed because
+     * of the idle timeout if it's been idle for about the max idle time of the connector when closed
+     * (see {@link JettyServerTuning#withMaxIdleTime(int)}).
+     */
+    @Override
+    public ConnectionStatistics getConnectionStatistics() {
+        return this.connectionMetrics.snapshot();
+    }
+    
+    
+    private static int port(final SelectChannelConnector connector) {
+        final int localPort = connector.getLocalPort();
+        return localPort > 0 ? localPort : connector.getPort();
     }
 }
\ No newline at end of file
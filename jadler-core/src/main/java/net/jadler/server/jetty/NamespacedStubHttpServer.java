@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.exception.JadlerException;
+import net.jadler.httpmocker.MatchedResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ConnectionStatisticsAware;
+import net.jadler.server.MultipleReadsHttpServletRequest;
+import net.jadler.server.NamespaceResolver;
+import net.jadler.server.StubHttpServer;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * One Jetty instance hosting many isolated stub servers (namespaces). Every incoming request is routed
+ * to the response provider registered for its namespace, the namespace is resolved from the request by
+ * a {@link NamespaceResolver} (a path prefix, the <tt>Host</tt> header or a custom header).
+ *
+ * A namespace is used as any other stub server (see {@link #namespace(java.lang.String)}), so every test
+ * can have its own {@link net.jadler.httpmocker.HttpMocker} with its own frozen rule set while all of them
+ * share a single listener and a single worker pool:
+ *
+ * <pre>
+ * server.start();
+ * ...
+ * initJadlerThat().usesNamespaceOf(server, "test-42");
+ * </pre>
+ *
+ * Requests of a namespace with no started stub server are rejected with the <tt>503</tt> status. When a namespace
+ * is stopped, requests already being evaluated by its response provider are drained first (for at most
+ * {@link SharedStubHttpServer#DRAIN_TIMEOUT_MILLIS}).
+ *
+ * This class is thread-safe.
+ */
+public class NamespacedStubHttpServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NamespacedStubHttpServer.class);
+
+    private final NamespaceResolver resolver;
+    private final JettyStubHttpServer server;
+    private final ConcurrentMap<String, DrainableProvider> namespaces = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param port port the server will be listening on
+     * @param resolver resolver of request namespaces
+     */
+    public NamespacedStubHttpServer(final int port, final NamespaceResolver resolver) {
+        this(port, resolver, new JettyServerTuning());
+    }
+
+
+    /**
+     * @param port port the server will be listening on
+     * @param resolver resolver of request namespaces
+     * @param tuning connector and worker pool parameters
+     */
+    public NamespacedStubHttpServer(final int port, final NamespaceResolver resolver,
+            final JettyServerTuning tuning) {
+        Validate.notNull(resolver, "resolver cannot be null");
+
+        this.resolver = resolver;
+        this.server = new JettyStubHttpServer(port, tuning);
+        this.server.registerResponseProvider(new Dispatcher());
+    }
+
+
+    /**
+     * Starts the underlying Jetty instance.
+     * @throws Exception when an error occurred while starting the server
+     */
+    public void start() throws Exception {
+        this.server.start();
+    }
+
+
+    /**
+     * Stops the underlying Jetty instance. Stub servers of all namespaces stay registered.
+     * @throws Exception when an error occurred while stopping the server
+     */
+    public void stop() throws Exception {
+        this.server.stop();
+    }
+
+
+    /**
+     * Creates a stub server serving requests of the given namespace. Registering a response provider
+     * and starting the returned instance attaches the provider to the namespace, stopping it detaches
+     * the provider. Only one stub server of a namespace can be started at a time.
+     * @param namespace namespace key
+     * @return stub server of the given namespace
+     */
+    public StubHttpServer namespace(final String namespace) {
+        Validate.notEmpty(namespace, "namespace cannot be empty");
+        return new NamespaceServer(namespace);
+    }
+
+
+    /**
+     * @return port the server is listening on (the actual bound port if it's running)
+     */
+    public int getPort() {
+        return this.server.getPort();
+    }
+
+
+    /**
+     * @return connection statistics of the underlying Jetty instance (connections of all namespaces are counted
+     * together)
+     */
+    public ConnectionStatistics getConnectionStatistics() {
+        return this.server.getConnectionStatistics();
+    }
+
+
+    /**
+     * @return namespaces with a started stub server
+     */
+    public Set<String> getActiveNamespaces() {
+        return this.namespaces.keySet();
+    }
+
+
+    /**
+     * Stub server of a single namespace.
+     */
+    private class NamespaceServer implements StubHttpServer, ConnectionStatisticsAware {
+        private final String key;
+        private ResponseProvider ruleProvider;
+        private DrainableProvider attached;
+
+        NamespaceServer(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void registerResponseProvider(final ResponseProvider ruleProvider) {
+            Validate.notNull(ruleProvider, "ruleProvider cannot be null");
+            this.ruleProvider = ruleProvider;
+        }
+
+        @Override
+        public void start() throws Exception {
+            if (this.ruleProvider == null) {
+                throw new IllegalStateException("No response provider has been registered yet");
+            }
+            if (this.attached != null) {
+                throw new IllegalStateException("The stub server has been started already");
+            }
+
+            final DrainableProvider namespace = new DrainableProvider(this.ruleProvider);
+            if (namespaces.putIfAbsent(this.key, namespace) != null) {
+                throw new IllegalStateException("Another stub server is using the namespace " + this.key
+                        + " already");
+            }
+            this.attached = namespace;
+        }
+
+        @Override
+        public void stop() throws Exception {
+            if (this.attached == null) {
+                throw new IllegalStateException("The stub server hasn't been started yet");
+            }
+
+            namespaces.remove(this.key, this.attached);
+            this.attached.drain();
+            this.attached = null;
+        }
+
+        @Override
+        public int getPort() {
+            return NamespacedStubHttpServer.this.getPort();
+        }
+
+        @Override
+        public ConnectionStatistics getConnectionStatistics() {
+            return NamespacedStubHttpServer.this.getConnectionStatistics();
+        }
+    }
+
+
+    /**
+     * Routes requests to the response providers of their namespaces.
+     */
+    private class Dispatcher implements RoutingResponseProvider {
+
+        @Override
+        public StubResponse provideResponseFor(final HttpServletRequest req) {
+            final MatchedResponse matched = this.provideMatchedResponseFor(req);
+            return matched != null ? matched.getResponse() : null;
+        }
+
+        @Override
+        public MatchedResponse provideMatchedResponseFor(final HttpServletRequest req) {
+            final InFlightRequest inFlight = this.enter(req);
+            try {
+                return inFlight.provideMatchedResponse();
+            }
+            finally {
+                inFlight.exit();
+            }
+        }
+
+        @Override
+        public InFlightRequest enter(final HttpServletRequest req) {
+            final String key = resolver.resolve(req);
+            final DrainableProvider namespace = key == null ? null : namespaces.get(key);
+
+            if (namespace != null) {
+                final InFlightRequest res = namespace.enter(adapt(req, key));
+                  //the namespace might have been stopped in the meantime, don't let it see the request
+                if (namespaces.get(key) == namespace) {
+                    return res;
+                }
+                res.exit();
+            }
+
+            logger.debug("no stub server attached to the namespace {}, rejecting the request", key);
+            return InFlightRequest.rejected(req);
+        }
+
+        private HttpServletRequest adapt(final HttpServletRequest req, final String key) {
+            if (!(req instanceof MultipleReadsHttpServletRequest)) {
+                return req;
+            }
+
+            try {
+                return resolver.adapt((MultipleReadsHttpServletRequest) req, key);
+            }
+            catch (final IOException e) {
+                throw new JadlerException("Cannot adapt the request to the namespace " + key, e);
+            }
+        }
+    }
+}
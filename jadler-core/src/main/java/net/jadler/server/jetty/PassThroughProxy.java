@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang.Validate;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpExchange;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.http.HttpHeaders;
+import org.eclipse.jetty.io.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Forwards requests no stub rule has been found for to an upstream http service, so just some endpoints of
+ * the upstream service can be stubbed while all other requests are passed through.
+ *
+ * The requests are sent using the non-blocking Jetty http client, the stub server request is suspended (using
+ * a continuation) while waiting for the upstream response, so no server thread is blocked. The connections to
+ * the upstream are kept alive and pooled, the pool size is bounded (requests exceeding it are queued).
+ * The upstream response body is streamed to the client chunk by chunk as it arrives, it's never buffered fully.
+ * (The request body has already been read by the stub server in order to be matched against the stub rules,
+ * it's streamed to the upstream from memory.)
+ *
+ * Hop-by-hop headers (<tt>Connection</tt>, <tt>Transfer-Encoding</tt> etc.) are not forwarded in any direction.
+ * If the upstream cannot be reached, status <tt>502</tt> is returned (<tt>504</tt> if it doesn't respond in time).
+ *
+ * An instance must be started before the first request is forwarded, see {@link JettyStubHttpServer}.
+ */
+public class PassThroughProxy {
+
+    /**
+     * Default max number of connections to the upstream
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 32;
+
+    /**
+     * Default timeout of an upstream exchange (in millis)
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private static final Logger logger = LoggerFactory.getLogger(PassThroughProxy.class);
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = lowerCase(Arrays.asList("Connection", "Keep-Alive",
+            "Proxy-Authenticate", "Proxy-Authorization", "Proxy-Connection", "TE", "Trailer", "Transfer-Encoding",
+            "Upgrade"));
+
+    private final String upstream;
+    private final String hostHeader;
+    private final HttpClient client;
+
+
+    /**
+     * @param upstream base url of the upstream service (<tt>http://localhost:8080</tt> for example), the request URI
+     * and query string are appended to it
+     */
+    public PassThroughProxy(final String upstream) {
+        this(upstream, DEFAULT_MAX_CONNECTIONS, DEFAULT_TIMEOUT);
+    }
+
+
+    /**
+     * @param upstream base url of the upstream service (<tt>http://localhost:8080</tt> for example), the request URI
+     * and query string are appended to it
+     * @param maxConnections max number of (pooled) connections to the upstream
+     * @param timeout timeout of an upstream exchange in millis
+     */
+    public PassThroughProxy(final String upstream, final int maxConnections, final long timeout) {
+        Validate.notEmpty(upstream, "upstream cannot be empty");
+        Validate.isTrue(maxConnections > 0, "maxConnections must be positive");
+        Validate.isTrue(timeout > 0, "timeout must be positive");
+
+        final URL url;
+        try {
+            url = new URL(upstream);
+        }
+        catch (final MalformedURLException e) {
+            throw new IllegalArgumentException("upstream is not a valid url: " + upstream, e);
+        }
+        this.upstream = upstream.endsWith("/") ? upstream.substring(0, upstream.length() - 1) : upstream;
+        this.hostHeader = url.getPort() >= 0 ? url.getHost() + ":" + url.getPort() : url.getHost();
+
+        this.client = new HttpClient();
+        this.client.setConnectorType(HttpClient.CONNECTOR_SELECT_CHANNEL);
+        this.client.setMaxConnectionsPerAddress(maxConnections);
+        this.client.setTimeout(timeout);
+    }
+
+
+    /**
+     * Starts the underlying http client.
+     * @throws Exception when the client cannot be started
+     */
+    public void start() throws Exception {
+        this.client.start();
+    }
+
+
+    /**
+     * Stops the underlying http client, all pooled connections are closed.
+     * @throws Exception when the client cannot be stopped
+     */
+    public void stop() throws Exception {
+        this.client.stop();
+    }
+
+
+    /**
+     * @return base url of the upstream service
+     */
+    public String getUpstream() {
+        return this.upstream;
+    }
+
+
+    /**
+     * Forwards the given request to the upstream. The method returns immediately, the response is written
+     * and the given (already suspended) continuation completed once the upstream exchange is finished.
+     * @param request request to be forwarded
+     * @param response response the upstream response is streamed to
+     * @param continuation suspended continuation of the request
+     * @throws IOException when the request cannot be sent
+     */
+    void forward(final HttpServletRequest request, final HttpServletResponse response,
+            final Continuation continuation) throws IOException {
+        final ProxyExchange exchange = new ProxyExchange(response, continuation);
+        exchange.setMethod(request.getMethod());
+        final String query = request.getQueryString();
+        exchange.setURL(this.upstream + request.getRequestURI() + (query != null ? "?" + query : ""));
+
+        for (final Enumeration<?> names = request.getHeaderNames(); names.hasMoreElements(); ) {
+            final String name = (String) names.nextElement();
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ENGLISH))
+                    && !HttpHeaders.HOST.equalsIgnoreCase(name)) {
+                for (final Enumeration<?> values = request.getHeaders(name); values.hasMoreElements(); ) {
+                    exchange.addRequestHeader(name, (String) values.nextElement());
+                }
+            }
+        }
+        exchange.setRequestHeader(HttpHeaders.HOST, this.hostHeader);
+
+        if (request.getContentLength() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+            exchange.setRequestContentSource(request.getInputStream());
+        }
+
+        this.client.send(exchange);
+    }
+
+
+    private static Set<String> lowerCase(final List<String> names) {
+        final Set<String> res = new TreeSet<>();
+        for (final String name : names) {
+            res.add(name.toLowerCase(Locale.ENGLISH));
+        }
+        return Collections.unmodifiableSet(res);
+    }
+
+
+    /**
+     * Streams the upstream response to the stub server response as the callbacks arrive.
+     */
+    private static class ProxyExchange extends HttpExchange {
+
+        private final HttpServletResponse response;
+        private final Continuation continuation;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+
+        ProxyExchange(final HttpServletResponse response, final Continuation continuation) {
+            this.response = response;
+            this.continuation = continuation;
+        }
+
+
+        @Override
+        protected void onResponseStatus(final Buffer version, final int status, final Buffer reason) {
+            this.response.setStatus(status);
+        }
+
+
+        @Override
+        protected void onResponseHeader(final Buffer name, final Buffer value) {
+            final String headerName = name.toString();
+            if (!HOP_BY_HOP_HEADERS.contains(headerName.toLowerCase(Locale.ENGLISH))) {
+                this.response.addHeader(headerName, value.toString());
+            }
+        }
+
+
+        @Override
+        protected void onResponseContent(final Buffer content) throws IOException {
+            content.writeTo(this.response.getOutputStream());
+        }
+
+
+        @Override
+        protected void onResponseComplete() {
+            this.complete();
+        }
+
+
+        @Override
+        protected void onConnectionFailed(final Throwable ex) {
+            logger.warn("cannot connect to the upstream", ex);
+            this.fail(HttpServletResponse.SC_BAD_GATEWAY);
+        }
+
+
+        @Override
+        protected void onException(final Throwable ex) {
+            logger.warn("an error occurred while proxying the request", ex);
+            this.fail(HttpServletResponse.SC_BAD_GATEWAY);
+        }
+
+
+        @Override
+        protected void onExpire() {
+            logger.warn("the upstream hasn't responded in time");
+            this.fail(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+        }
+
+
+        private void fail(final int status) {
+            if (!this.response.isCommitted()) {
+                this.response.reset();
+                this.response.setStatus(status);
+            }
+            this.complete();
+        }
+
+
+        private void complete() {
+            if (this.completed.compareAndSet(false, true)) {
+                this.continuation.complete();
+            }
+        }
+    }
+}
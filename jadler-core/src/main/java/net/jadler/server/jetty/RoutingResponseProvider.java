@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.httpmocker.RuleAwareResponseProvider;
+
+
+/**
+ * Response provider of a Jetty instance shared by several stub servers ({@link SharedStubHttpServer},
+ * {@link NamespacedStubHttpServer}) routing requests to the attached providers.
+ */
+interface RoutingResponseProvider extends RuleAwareResponseProvider {
+
+    /**
+     * Routes the given request to the attached provider and marks it as in flight there.
+     * @param req request to be routed
+     * @return the routed request (to be exited once handled) or a rejected request if no provider is attached
+     * for the given request
+     */
+    InFlightRequest enter(HttpServletRequest req);
+}
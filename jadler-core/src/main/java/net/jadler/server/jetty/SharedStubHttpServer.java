@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.exception.JadlerException;
+import net.jadler.httpmocker.MatchedResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ConnectionStatisticsAware;
+import net.jadler.server.StubHttpServer;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A stub server sharing one running Jetty instance per port with all other instances of this class configured
+ * to use the same port. The Jetty instance is started when the first instance of this class is started and
+ * it keeps running until the JVM exits (or until {@link #shutdownAll()} is called). Starting and stopping
+ * an instance of this class just attaches and detaches its response provider, which is way cheaper than starting
+ * and stopping a whole Jetty server for every test.
+ *
+ * Only one instance per port can be started at a time. When an instance is stopped, requests already being
+ * evaluated by its response provider are drained first (for at most {@link #DRAIN_TIMEOUT_MILLIS}), requests
+ * received while no response provider is attached are rejected with the <tt>503</tt> status.
+ */
+public class SharedStubHttpServer implements StubHttpServer, ConnectionStatisticsAware {
+
+    /**
+     * Max time in milliseconds {@link #stop()} waits for requests in flight to be handled.
+     */
+    public static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedStubHttpServer.class);
+    private static final ConcurrentMap<Integer, Backend> BACKENDS = new ConcurrentHashMap<>();
+    private static volatile Integer defaultPort;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("jadler-shared-server-shutdown") {
+            @Override
+            public void run() {
+                shutdownAll();
+            }
+        });
+    }
+
+    private final int port;
+    private final JettyServerTuning tuning;
+    private ResponseProvider ruleProvider;
+    private DrainableProvider generation;
+
+
+    /**
+     * @param port port of the shared Jetty instance
+     */
+    public SharedStubHttpServer(final int port) {
+        this(port, new JettyServerTuning());
+    }
+
+
+    /**
+     * @param port port of the shared Jetty instance
+     * @param tuning tuning parameters of the shared Jetty instance. Used only if the instance for the given
+     * port hasn't been created yet, the worker threads of a shared instance are always daemon threads.
+     */
+    public SharedStubHttpServer(final int port, final JettyServerTuning tuning) {
+        Validate.isTrue(port > 0, "port must be positive");
+        Validate.notNull(tuning, "tuning cannot be null");
+
+        this.port = port;
+        this.tuning = tuning;
+    }
+
+
+    /**
+     * @return port of a shared Jetty instance started once per JVM on an ephemeral port. Use this port if all
+     * shared stub servers should share just one Jetty instance.
+     */
+    public static int defaultPort() {
+        if (defaultPort == null) {
+            synchronized (SharedStubHttpServer.class) {
+                if (defaultPort == null) {
+                      //bound directly to an ephemeral port, so there is no window for another process to take it
+                    final Backend backend;
+                    try {
+                        backend = new Backend(0, new JettyServerTuning());
+                    }
+                    catch (final Exception e) {
+                        throw new JadlerException("Cannot start the default shared stub server", e);
+                    }
+                    BACKENDS.put(backend.port, backend);
+                    defaultPort = backend.port;
+                }
+            }
+        }
+        return defaultPort;
+    }
+
+
+    /**
+     * Stops all shared Jetty instances. Called automatically when the JVM exits.
+     */
+    public static void shutdownAll() {
+        for (final Integer backendPort : BACKENDS.keySet()) {
+            final Backend backend = BACKENDS.remove(backendPort);
+            if (backend != null) {
+                backend.shutdown();
+            }
+        }
+    }
+
+
+    /**
+     * @return port of the shared Jetty instance
+     */
+    @Override
+    public int getPort() {
+        return this.port;
+    }
+
+
+    /**
+     * @return connection statistics of the shared Jetty instance (connections of all stub servers sharing
+     * the instance are counted together) or <tt>null</tt> if the instance hasn't been started yet
+     */
+    @Override
+    public ConnectionStatistics getConnectionStatistics() {
+        final Backend backend = BACKENDS.get(this.port);
+        return backend != null ? backend.server.getConnectionStatistics() : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerResponseProvider(final ResponseProvider ruleProvider) {
+        Validate.notNull(ruleProvider, "ruleProvider cannot be null");
+
+        this.ruleProvider = ruleProvider;
+    }
+
+
+    /**
+     * Attaches the registered response provider to the shared Jetty instance (starting the instance if necessary).
+     * @throws IllegalStateException if no response provider has been registered or if another stub server
+     * is attached to the same port
+     */
+    @Override
+    public void start() throws Exception {
+        if (this.ruleProvider == null) {
+            throw new IllegalStateException("No response provider has been registered yet");
+        }
+        if (this.generation != null) {
+            throw new IllegalStateException("The stub server has been started already");
+        }
+
+        final DrainableProvider newGeneration = new DrainableProvider(this.ruleProvider);
+        backendFor(this.port, this.tuning).attach(newGeneration);
+        this.generation = newGeneration;
+    }
+
+
+    /**
+     * Detaches the registered response provider from the shared Jetty instance. The Jetty instance
+     * keeps running. Requests being handled by the response provider are drained first.
+     */
+    @Override
+    public void stop() throws Exception {
+        if (this.generation == null) {
+            throw new IllegalStateException("The stub server hasn't been started yet");
+        }
+
+        final Backend backend = BACKENDS.get(this.port);
+        if (backend != null) {
+            backend.detach(this.generation);
+        }
+        this.generation.drain();
+        this.generation = null;
+    }
+
+
+    private static Backend backendFor(final int port, final JettyServerTuning tuning) throws Exception {
+        Backend res = BACKENDS.get(port);
+        if (res == null) {
+            synchronized (BACKENDS) {
+                res = BACKENDS.get(port);
+                if (res == null) {
+                    res = new Backend(port, tuning);
+                    BACKENDS.put(port, res);
+                }
+            }
+        }
+        return res;
+    }
+
+
+    /**
+     * The shared Jetty instance dispatching requests to the currently attached response provider.
+     */
+    private static class Backend implements RoutingResponseProvider {
+        private final int port;
+        private final JettyStubHttpServer server;
+        private final AtomicReference<DrainableProvider> current = new AtomicReference<>();
+
+        Backend(final int port, final JettyServerTuning tuning) throws Exception {
+              //daemon threads so the shared server doesn't prevent the JVM from exiting
+            this.server = new JettyStubHttpServer(port, tuning.copy().withDaemonThreads(true));
+            this.server.registerResponseProvider(this);
+            this.server.start();
+            this.port = this.server.getPort();
+            logger.debug("shared stub server started on port {}", this.port);
+        }
+
+        void attach(final DrainableProvider generation) {
+            if (!this.current.compareAndSet(null, generation)) {
+                throw new IllegalStateException("Another stub server is using the shared server on port "
+                        + this.port + " already");
+            }
+        }
+
+        void detach(final DrainableProvider generation) {
+            this.current.compareAndSet(generation, null);
+        }
+
+        void shutdown() {
+            try {
+                this.server.stop();
+            }
+            catch (final Exception e) {
+                throw new JadlerException("Cannot stop the shared stub server on port " + this.port, e);
+            }
+        }
+
+        @Override
+        public StubResponse provideResponseFor(final HttpServletRequest req) {
+            final MatchedResponse matched = this.provideMatchedResponseFor(req);
+            return matched != null ? matched.getResponse() : null;
+        }
+
+        @Override
+        public MatchedResponse provideMatchedResponseFor(final HttpServletRequest req) {
+            final InFlightRequest inFlight = this.enter(req);
+            try {
+                return inFlight.provideMatchedResponse();
+            }
+            finally {
+                inFlight.exit();
+            }
+        }
+
+        @Override
+        public InFlightRequest enter(final HttpServletRequest req) {
+            final DrainableProvider generation = this.current.get();
+            if (generation != null) {
+                final InFlightRequest res = generation.enter(req);
+                  //the generation might have been detached in the meantime, don't let it see the request
+                if (this.current.get() == generation) {
+                    return res;
+                }
+                res.exit();
+            }
+
+            logger.debug("no stub server attached to the shared server on port {}, rejecting the request", this.port);
+            return InFlightRequest.rejected(req);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.io.IOException;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+
+
+/**
+ * Http connector of {@link JettyStubHttpServer} reporting connection events to a {@link ConnectionTracker}.
+ */
+class StubConnector extends SelectChannelConnector {
+
+    private final ConnectionTracker tracker;
+
+
+    StubConnector(final ConnectionTracker tracker) {
+        this.tracker = tracker;
+    }
+
+
+    @Override
+    protected void connectionOpened(final Connection connection) {
+        this.tracker.opened(connection);
+        super.connectionOpened(connection);
+    }
+
+
+    @Override
+    public void customize(final EndPoint endpoint, final Request request) throws IOException {
+        this.tracker.requestReceived(endpoint);
+        super.customize(endpoint, request);
+    }
+
+
+    @Override
+    public void persist(final EndPoint endpoint) throws IOException {
+        super.persist(endpoint);
+        this.tracker.persisted(endpoint);
+    }
+
+
+    @Override
+    protected void connectionClosed(final Connection connection) {
+        this.tracker.closed(connection, this.getMaxIdleTime());
+        super.connectionClosed(connection);
+    }
+}
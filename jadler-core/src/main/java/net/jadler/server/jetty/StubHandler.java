@@ -5,92 +5,210 @@
 package net.jadler.server.jetty;
 
 import net.jadler.stubbing.StubResponse;
+import net.jadler.httpmocker.MatchedResponse;
 import net.jadler.httpmocker.ResponseProvider;
 import net.jadler.server.MultipleReadsHttpServletRequest;
-import org.apache.commons.lang.StringUtils;
+import net.jadler.server.StubResponseWriter;
+import org.apache.commons.lang.Validate;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import org.apache.commons.collections.MultiMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 
 public class StubHandler extends AbstractHandler {
 
+    private static final Logger logger = LoggerFactory.getLogger(StubHandler.class);
+    private static final StubResponseWriter<HttpServletResponse> WRITER = new ServletResponseWriter();
+    
     private final ResponseProvider ruleProvider;
+    private final Executor executor;
+    private final PassThroughProxy proxy;
 
     public StubHandler(final ResponseProvider ruleProvider) {
+        this(ruleProvider, null, null);
+    }
+    
+    
+    /**
+     * Creates a handler which suspends every incoming request and handles it asynchronously using
+     * the given executor, so the Jetty worker thread is released immediately.
+     * @param ruleProvider response provider
+     * @param executor executor the requests are handled by
+     */
+    public StubHandler(final ResponseProvider ruleProvider, final Executor executor) {
+        this(ruleProvider, executor, null);
+        Validate.notNull(executor, "executor cannot be null");
+    }
+    
+    
+    /**
+     * Creates a handler forwarding requests no stub rule has been found for to the given proxy.
+     * @param ruleProvider response provider
+     * @param executor executor the requests are handled by (<tt>null</tt> to handle them in Jetty threads)
+     * @param proxy proxy to forward unmatched requests to (<tt>null</tt> to respond with an error instead)
+     */
+    public StubHandler(final ResponseProvider ruleProvider, final Executor executor, final PassThroughProxy proxy) {
         this.ruleProvider = ruleProvider;
+        this.executor = executor;
+        this.proxy = proxy;
     }
 
     /**
      * This method handles incoming HTTP request, then consults list of
      * registered rules and generates response.
      *
-     * @throws IllegalArgumentException when no suitable rule found
+     * @throws IllegalArgumentException when no suitable rule found (and no proxy has been defined)
      */
     @Override
     public void handle(String target, Request baseRequest,
-                       HttpServletRequest request, HttpServletResponse response)
+                       HttpServletRequest request, final HttpServletResponse response)
             throws IOException, ServletException {
 
+          //the body is read in the Jetty thread, the executor thread gets a fully read request
         final MultipleReadsHttpServletRequest multiReadsRequest = new MultipleReadsHttpServletRequest(request);
-        final StubResponse stubResponse = this.ruleProvider.provideResponseFor(multiReadsRequest);
-        if (stubResponse != null) {           
-            response.setCharacterEncoding(stubResponse.getEncoding().name());
-            setResponseHeaders(stubResponse.getHeaders(), response);
-            setStatus(stubResponse.getStatus(), response);
-            processTimeout(stubResponse.getTimeout());
-            writeResponseBody(stubResponse.getBody(), response);
-            
+        
+        if (this.executor == null) {
+            final InFlightRequest inFlight = InFlightRequest.enter(this.ruleProvider, multiReadsRequest);
+            boolean forwarded = false;
+            try {
+                if (!this.respond(inFlight, response)) {
+                    if (this.proxy == null) {
+                        throw new IllegalArgumentException(StubResponseWriter.noRuleFoundMessage(request));
+                    }
+                    final Continuation continuation = suspend(request);
+                    inFlight.exitOnCompletion(continuation);
+                    forwarded = true;
+                    this.forward(multiReadsRequest, response, continuation);
+                }
+            }
+            finally {
+                  //the response has been written already unless the request has been forwarded
+                if (!forwarded) {
+                    inFlight.exit();
+                }
+            }
             baseRequest.setHandled(true);
-        } else {
-            final String queryString;
-            if (StringUtils.isNotBlank(request.getQueryString())) {
-                queryString = "?" + request.getQueryString();
-            } else {
-                queryString = "";
+            return;
+        }
+        
+        final Continuation continuation = suspend(request);
+        baseRequest.setHandled(true);
+        
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    respondAsync(multiReadsRequest, response, continuation);
+                }
+            });
+        }
+        catch (final RejectedExecutionException e) {
+            logger.warn("cannot handle the request, the stub server is shutting down");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            continuation.complete();
+        }
+    }
+    
+    
+    private void respondAsync(final HttpServletRequest request, final HttpServletResponse response,
+            final Continuation continuation) {
+        boolean forwarded = false;
+        try {
+            final InFlightRequest inFlight = InFlightRequest.enter(this.ruleProvider, request);
+              //in flight until the response has been written and the continuation completed
+            inFlight.exitOnCompletion(continuation);
+            if (!this.respond(inFlight, response)) {
+                if (this.proxy != null) {
+                    forwarded = true;
+                    this.forward(request, response, continuation);
+                }
+                else {
+                    logger.warn(StubResponseWriter.noRuleFoundMessage(request));
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+            }
+        }
+        catch (final Exception e) {
+            logger.error("an error occurred while handling the request", e);
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+        finally {
+              //a forwarded request is completed by the proxy once the upstream response has been streamed
+            if (!forwarded) {
+                continuation.complete();
             }
-
-            throw new IllegalArgumentException("No suitable rule found for request: " + request.getMethod()
-                    + " " + request.getRequestURI() + queryString);
         }
     }
-
-    private void writeResponseBody(final String body, final HttpServletResponse response) throws IOException {
-        if (StringUtils.isNotBlank(body)) {
-            response.getWriter().print(body);
+    
+    
+    /**
+     * Forwards the given request to the proxy. If the request cannot be forwarded, status <tt>502</tt>
+     * is returned and the continuation completed, so the connection never hangs waiting for an upstream
+     * exchange which has not been started.
+     */
+    private void forward(final HttpServletRequest request, final HttpServletResponse response,
+            final Continuation continuation) {
+        try {
+            this.proxy.forward(request, response, continuation);
+        }
+        catch (final Exception e) {
+            logger.error("cannot forward the request to the upstream", e);
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+            }
+            continuation.complete();
         }
     }
-
-    private void setStatus(final int status, final HttpServletResponse response) {
-            response.setStatus(status);
+    
+    
+    private static Continuation suspend(final HttpServletRequest request) {
+        final Continuation res = ContinuationSupport.getContinuation(request);
+          //no timeout, the response is completed once the (possibly delayed) stub response has been written
+        res.setTimeout(0);
+        res.suspend();
+        return res;
     }
     
-    private void setResponseHeaders(final MultiMap headers, final HttpServletResponse response) {
-        for (@SuppressWarnings("unchecked") final Iterator<Entry<String, Collection<String>>> it 
-                = headers.entrySet().iterator(); it.hasNext(); ) {
-            
-            final Entry<String, Collection<String>> e = it.next();
-            
-            for (final String value: e.getValue()) {
-                response.addHeader(e.getKey(), value);
-            }
+    
+    private boolean respond(final InFlightRequest request, final HttpServletResponse response)
+            throws IOException {
+        final MatchedResponse matched = request.provideMatchedResponse();
+        if (matched == null) {
+            return false;
         }
+        
+        final StubResponse stubResponse = matched.getResponse();
+        response.setCharacterEncoding(stubResponse.getEncoding().name());
+        WRITER.write(stubResponse, matched.getRuleMetrics(), response);
+        return true;
     }
+    
+    
+    private static class ServletResponseWriter extends StubResponseWriter<HttpServletResponse> {
 
+        @Override
+        protected void addHeader(final HttpServletResponse target, final String name, final String value) {
+            target.addHeader(name, value);
+        }
 
-    private void processTimeout(long timeout) {
-        if (timeout > 0) {
-            try {
-                Thread.sleep(timeout);
-            } catch (InterruptedException ignored) {
+        @Override
+        protected void writeStatusAndBody(final HttpServletResponse target, final int status, final byte[] body)
+                throws IOException {
+            target.setStatus(status);
+            if (body.length > 0) {
+                target.getOutputStream().write(body);
             }
         }
     }
-}
\ No newline at end of file
+}
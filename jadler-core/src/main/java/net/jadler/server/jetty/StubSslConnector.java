@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.security.cert.X509Certificate;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.nio.SslSelectChannelEndPoint;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.ssl.ServletSSL;
+import org.eclipse.jetty.server.ssl.SslSelectChannelConnector;
+import org.eclipse.jetty.util.TypeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Https connector of {@link JettyStubHttpServer} using a preconfigured SSL context. Connection events are reported
+ * to a {@link ConnectionTracker}.
+ *
+ * Jetty 7 reads the peer certificate chain of every new TLS session using
+ * {@link SSLSession#getPeerCertificateChain()}, which throws an exception since Java 15 (Jetty logs a warning
+ * with the stack trace for every handshake). Client certificates are never requested by the stub server,
+ * so the connector stores the TLS session info Jetty caches in the session itself before Jetty reads it.
+ */
+class StubSslConnector extends SslSelectChannelConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubSslConnector.class);
+    private static final String CACHED_INFO_CLASS = "org.eclipse.jetty.server.ssl.SslCertificates$CachedInfo";
+    private static final Constructor<?> CACHED_INFO = findCachedInfoConstructor();
+
+    private final ConnectionTracker tracker;
+
+
+    StubSslConnector(final SSLContext sslContext, final ConnectionTracker tracker) {
+        this.setSslContext(sslContext);
+        this.tracker = tracker;
+    }
+
+
+    @Override
+    protected void connectionOpened(final Connection connection) {
+        this.tracker.opened(connection);
+        super.connectionOpened(connection);
+    }
+
+
+    @Override
+    public void customize(final EndPoint endpoint, final Request request) throws IOException {
+        this.tracker.requestReceived(endpoint);
+        if (CACHED_INFO != null) {
+            final SSLSession session = ((SslSelectChannelEndPoint) endpoint).getSSLEngine().getSession();
+            if (session.getValue(CACHED_INFO_CLASS) == null) {
+                try {
+                    session.putValue(CACHED_INFO_CLASS, CACHED_INFO.newInstance(
+                            ServletSSL.deduceKeyLength(session.getCipherSuite()), null,
+                            TypeUtil.toHexString(session.getId())));
+                }
+                catch (final ReflectiveOperationException e) {
+                    logger.debug("cannot cache the TLS session info", e);
+                }
+            }
+        }
+        super.customize(endpoint, request);
+    }
+
+
+    @Override
+    public void persist(final EndPoint endpoint) throws IOException {
+        super.persist(endpoint);
+        this.tracker.persisted(endpoint);
+    }
+
+
+    @Override
+    protected void connectionClosed(final Connection connection) {
+        this.tracker.closed(connection, this.getMaxIdleTime());
+        super.connectionClosed(connection);
+    }
+
+
+    private static Constructor<?> findCachedInfoConstructor() {
+        try {
+            final Constructor<?> res = Class.forName(CACHED_INFO_CLASS)
+                    .getDeclaredConstructor(Integer.class, X509Certificate[].class, String.class);
+            res.setAccessible(true);
+            return res;
+        }
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            logger.debug("TLS session info of Jetty not found, Jetty reads it by itself", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.uds;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import net.jadler.httpmocker.MatchedResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.BasicHttpServletRequest;
+import net.jadler.server.ConnectionMetrics;
+import net.jadler.server.MultipleReadsHttpServletRequest;
+import net.jadler.server.StubResponseWriter;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Serves HTTP/1.x requests of a single stream connection (a Unix domain socket connection) until the client
+ * closes it or asks for closing. Persistent connections and chunked request bodies are supported, pipelined
+ * requests are served one by one. A malformed request is answered with status <tt>400</tt> and the connection
+ * is closed.
+ */
+class Http1Connection implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Http1Connection.class);
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+    private static final StubResponseWriter<Response> WRITER = new Http1ResponseWriter();
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final SocketChannel channel;
+    private final ResponseProvider ruleProvider;
+    private final ConnectionMetrics metrics;
+
+
+    Http1Connection(final SocketChannel channel, final ResponseProvider ruleProvider,
+            final ConnectionMetrics metrics) {
+        this.channel = channel;
+        this.ruleProvider = ruleProvider;
+        this.metrics = metrics;
+    }
+
+
+    @Override
+    public void run() {
+        this.metrics.connectionOpened();
+        try {
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(this.channel), BUFFER_SIZE);
+            final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(this.channel), BUFFER_SIZE);
+
+            boolean keepAlive = true;
+            boolean reused = false;
+            while (keepAlive) {
+                final BasicHttpServletRequest request = readRequest(in);
+                if (request == null) {
+                    break;
+                }
+                this.metrics.requestReceived(reused);
+                reused = true;
+
+                keepAlive = isKeepAlive(request);
+                this.respond(request, new Response(out, request.getMethod(), keepAlive));
+                out.flush();
+            }
+        }
+        catch (final BadRequestException e) {
+            logger.debug("closing a connection after a malformed request", e);
+            this.rejectBadRequest();
+        }
+        catch (final IOException e) {
+            logger.debug("closing a connection after an error", e);
+        }
+        catch (final RuntimeException e) {
+            logger.error("closing a connection after an unexpected error", e);
+        }
+        finally {
+            IOUtils.closeQuietly(this.channel);
+              //there is no idle timeout, connections are closed by clients or after errors only
+            this.metrics.connectionClosed(false);
+        }
+    }
+
+
+    private void respond(final BasicHttpServletRequest request, final Response response) throws IOException {
+        try {
+            final MultipleReadsHttpServletRequest req = new MultipleReadsHttpServletRequest(request);
+            final MatchedResponse matched = MatchedResponse.provide(this.ruleProvider, req);
+
+            if (matched != null) {
+                WRITER.write(matched.getResponse(), matched.getRuleMetrics(), response);
+                return;
+            }
+            logger.warn(StubResponseWriter.noRuleFoundMessage(req));
+        }
+        catch (final RuntimeException e) {
+            logger.error("An error occurred while handling a request", e);
+        }
+        response.headers.clear();
+        response.writeHead(500, 0);
+    }
+
+
+    private void rejectBadRequest() {
+        try {
+            final OutputStream out = Channels.newOutputStream(this.channel);
+            new Response(out, null, false).writeHead(400, 0);
+            out.flush();
+        }
+        catch (final IOException e) {
+            logger.debug("cannot reject a malformed request", e);
+        }
+    }
+
+
+    /**
+     * @return the next request or <tt>null</tt> if the connection has been closed by the client
+     */
+    private static BasicHttpServletRequest readRequest(final InputStream in) throws IOException {
+        String requestLine;
+        do {
+            requestLine = readLine(in);
+            if (requestLine == null) {
+                return null;
+            }
+        } while (requestLine.isEmpty());  //tolerate empty lines between requests
+
+        final String[] parts = requestLine.split(" ");
+        if (parts.length != 3) {
+            throw new BadRequestException("Malformed request line: " + requestLine);
+        }
+
+        final String target = parts[1];
+        final int idx = target.indexOf('?');
+        final List<String[]> headers = readHeaders(in);
+
+        long contentLength = 0;
+        boolean chunked = false;
+        for (final String[] header : headers) {
+            if ("Content-Length".equalsIgnoreCase(header[0])) {
+                contentLength = parseContentLength(header[1]);
+            }
+            else if ("Transfer-Encoding".equalsIgnoreCase(header[0])
+                    && header[1].toLowerCase(Locale.ENGLISH).contains("chunked")) {
+                chunked = true;
+            }
+        }
+
+        final byte[] body = chunked ? readChunkedBody(in) : readBody(in, contentLength);
+        final BasicHttpServletRequest res = new BasicHttpServletRequest(parts[0],
+                idx < 0 ? target : target.substring(0, idx),
+                idx < 0 ? null : target.substring(idx + 1),
+                parts[2], body);
+        for (final String[] header : headers) {
+            res.addHeader(header[0], header[1]);
+        }
+        return res;
+    }
+
+
+    private static List<String[]> readHeaders(final InputStream in) throws IOException {
+        final List<String[]> res = new ArrayList<>();
+        String line;
+        while (!(line = requireLine(in)).isEmpty()) {
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new BadRequestException("Malformed header: " + line);
+            }
+            res.add(new String[] {line.substring(0, colon).trim(), line.substring(colon + 1).trim()});
+        }
+        return res;
+    }
+
+
+    private static byte[] readBody(final InputStream in, final long contentLength) throws IOException {
+        if (contentLength > Integer.MAX_VALUE) {
+            throw new BadRequestException("Request body too large: " + contentLength);
+        }
+        final byte[] res = new byte[(int) contentLength];
+        IOUtils.readFully(in, res);
+        return res;
+    }
+
+
+    private static byte[] readChunkedBody(final InputStream in) throws IOException {
+        final ByteArrayOutputStream res = new ByteArrayOutputStream();
+        while (true) {
+            final String sizeLine = requireLine(in);
+            final int ext = sizeLine.indexOf(';');
+            final int size = parseChunkSize((ext < 0 ? sizeLine : sizeLine.substring(0, ext)).trim());
+            if (size == 0) {
+                  //trailers
+                readHeaders(in);
+                return res.toByteArray();
+            }
+
+            if (size > Integer.MAX_VALUE - res.size()) {
+                throw new BadRequestException("Request body too large");
+            }
+            final byte[] chunk = new byte[size];
+            IOUtils.readFully(in, chunk);
+            res.write(chunk);
+            requireLine(in);
+        }
+    }
+
+
+    /**
+     * @return the given <tt>Content-Length</tt> value, a non-negative decimal number
+     * @throws BadRequestException if the value is not a non-negative decimal number fitting a <tt>long</tt>
+     */
+    private static long parseContentLength(final String value) throws BadRequestException {
+        if (value.isEmpty() || value.length() > 18) {
+            throw new BadRequestException("Invalid Content-Length: " + value);
+        }
+        long res = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new BadRequestException("Invalid Content-Length: " + value);
+            }
+            res = res * 10 + (c - '0');
+        }
+        return res;
+    }
+
+
+    /**
+     * @return the given chunk size, a non-negative hexadecimal number
+     * @throws BadRequestException if the value is not a hexadecimal number fitting an <tt>int</tt>
+     */
+    private static int parseChunkSize(final String value) throws BadRequestException {
+        if (value.isEmpty() || value.length() > 7) {
+            throw new BadRequestException("Invalid chunk size: " + value);
+        }
+        int res = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                throw new BadRequestException("Invalid chunk size: " + value);
+            }
+            res = res * 16 + digit;
+        }
+        return res;
+    }
+
+
+    private static boolean isKeepAlive(final BasicHttpServletRequest request) {
+        final String connection = request.getHeader("Connection");
+        if ("HTTP/1.0".equals(request.getProtocol())) {
+            return "keep-alive".equalsIgnoreCase(connection);
+        }
+        return !"close".equalsIgnoreCase(connection);
+    }
+
+
+    private static String requireLine(final InputStream in) throws IOException {
+        final String res = readLine(in);
+        if (res == null) {
+            throw new EOFException("Unexpected end of stream");
+        }
+        return res;
+    }
+
+
+    /**
+     * @return a line without the line terminator or <tt>null</tt> if the stream ended before any byte was read
+     */
+    private static String readLine(final InputStream in) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Unexpected end of stream");
+            }
+            if (line.size() >= MAX_LINE_LENGTH) {
+                throw new IOException("Line too long");
+            }
+            line.write(b);
+        }
+
+        final byte[] bytes = line.toByteArray();
+        final int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, ASCII);
+    }
+
+
+    /**
+     * Response being written to a connection.
+     */
+    private static class Response {
+        private final OutputStream out;
+        private final boolean head;
+        private final boolean keepAlive;
+        private final List<String[]> headers = new ArrayList<>();
+
+        Response(final OutputStream out, final String method, final boolean keepAlive) {
+            this.out = out;
+            this.head = "HEAD".equalsIgnoreCase(method);
+            this.keepAlive = keepAlive;
+        }
+
+        void writeHead(final int status, final int contentLength) throws IOException {
+            final StringBuilder sb = new StringBuilder(256);
+            sb.append("HTTP/1.1 ").append(status).append(' ').append(reasonPhrase(status)).append("\r\n");
+            for (final String[] header : this.headers) {
+                sb.append(header[0]).append(": ").append(header[1]).append("\r\n");
+            }
+            sb.append("Content-Length: ").append(contentLength).append("\r\n");
+            if (!this.keepAlive) {
+                sb.append("Connection: close\r\n");
+            }
+            sb.append("\r\n");
+            this.out.write(sb.toString().getBytes(ASCII));
+        }
+
+        /**
+         * @return reason phrase of the given status, an empty string for the less common ones (clients must
+         * not depend on the reason phrase anyway)
+         */
+        private static String reasonPhrase(final int status) {
+            switch (status) {
+                case 200: return "OK";
+                case 201: return "Created";
+                case 202: return "Accepted";
+                case 204: return "No Content";
+                case 301: return "Moved Permanently";
+                case 302: return "Found";
+                case 304: return "Not Modified";
+                case 400: return "Bad Request";
+                case 401: return "Unauthorized";
+                case 403: return "Forbidden";
+                case 404: return "Not Found";
+                case 405: return "Method Not Allowed";
+                case 409: return "Conflict";
+                case 500: return "Internal Server Error";
+                case 502: return "Bad Gateway";
+                case 503: return "Service Unavailable";
+                case 504: return "Gateway Timeout";
+                default: return "";
+            }
+        }
+    }
+
+
+    /**
+     * A request which cannot be parsed, answered with status <tt>400</tt>.
+     */
+    private static class BadRequestException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(final String message) {
+            super(message);
+        }
+    }
+
+
+    private static class Http1ResponseWriter extends StubResponseWriter<Response> {
+
+        @Override
+        protected void addHeader(final Response target, final String name, final String value) {
+              //the content length is always computed from the body
+            if (!"Content-Length".equalsIgnoreCase(name)) {
+                target.headers.add(new String[] {name, value});
+            }
+        }
+
+        @Override
+        protected void writeStatusAndBody(final Response target, final int status, final byte[] body)
+                throws IOException {
+            target.writeHead(status, body.length);
+            if (!target.head) {
+                target.out.write(body);
+            }
+        }
+    }
+}
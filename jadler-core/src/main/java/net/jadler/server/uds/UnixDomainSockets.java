@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.uds;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import net.jadler.exception.JadlerException;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Access to Unix domain sockets of the running JVM (available since Java 16). The API is looked up reflectively,
+ * so Jadler still runs on older JVMs, {@link #isSupported()} returns <tt>false</tt> there.
+ */
+public final class UnixDomainSockets {
+
+    private static final ProtocolFamily UNIX = findUnixFamily();
+    private static final Method OPEN_SERVER_CHANNEL = findMethod(ServerSocketChannel.class, "open",
+            ProtocolFamily.class);
+    private static final Method OPEN_CHANNEL = findMethod(SocketChannel.class, "open", ProtocolFamily.class);
+    private static final Method NEW_ADDRESS = findAddressFactory();
+
+
+    private UnixDomainSockets() {
+        //gtfo
+    }
+
+
+    /**
+     * @return true if the running JVM supports Unix domain socket channels
+     */
+    public static boolean isSupported() {
+        return UNIX != null && OPEN_SERVER_CHANNEL != null && OPEN_CHANNEL != null && NEW_ADDRESS != null;
+    }
+
+
+    /**
+     * Opens a server channel bound to the given socket path.
+     * @param path socket file path (must not exist)
+     * @param backlog max number of pending connections (<tt>0</tt> for the system default)
+     * @return bound server channel
+     * @throws IOException when the channel cannot be bound
+     */
+    public static ServerSocketChannel bind(final Path path, final int backlog) throws IOException {
+        checkSupported();
+
+        final ServerSocketChannel res = (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, UNIX);
+        try {
+            res.bind(address(path), backlog);
+        }
+        catch (final IOException e) {
+            res.close();
+            throw e;
+        }
+        return res;
+    }
+
+
+    /**
+     * Opens a client channel connected to the given socket path.
+     * @param path socket file path
+     * @return connected channel
+     * @throws IOException when the channel cannot be connected
+     */
+    public static SocketChannel connect(final Path path) throws IOException {
+        checkSupported();
+
+        final SocketChannel res = (SocketChannel) invoke(OPEN_CHANNEL, UNIX);
+        try {
+            res.connect(address(path));
+        }
+        catch (final IOException e) {
+            res.close();
+            throw e;
+        }
+        return res;
+    }
+
+
+    private static SocketAddress address(final Path path) throws IOException {
+        Validate.notNull(path, "path cannot be null");
+        return (SocketAddress) invoke(NEW_ADDRESS, path);
+    }
+
+
+    private static void checkSupported() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets are not supported by this JVM");
+        }
+    }
+
+
+    private static Object invoke(final Method method, final Object arg) throws IOException {
+        try {
+            return method.invoke(null, arg);
+        }
+        catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new JadlerException("Cannot call " + method, e.getCause());
+        }
+        catch (final IllegalAccessException e) {
+            throw new JadlerException("Cannot call " + method, e);
+        }
+    }
+
+
+    private static ProtocolFamily findUnixFamily() {
+        for (final StandardProtocolFamily family : StandardProtocolFamily.values()) {
+            if ("UNIX".equals(family.name())) {
+                return family;
+            }
+        }
+        return null;
+    }
+
+
+    private static Method findAddressFactory() {
+        try {
+            return findMethod(Class.forName("java.net.UnixDomainSocketAddress"), "of", Path.class);
+        }
+        catch (final ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+
+    private static Method findMethod(final Class<?> clazz, final String name, final Class<?>... params) {
+        try {
+            return clazz.getMethod(name, params);
+        }
+        catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
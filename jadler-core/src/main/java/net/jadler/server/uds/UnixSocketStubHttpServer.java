@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.uds;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.ConnectionMetrics;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ConnectionStatisticsAware;
+import net.jadler.server.RequestExecutors;
+import net.jadler.server.StubHttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Stub http server listening on a Unix domain socket, so clients able to speak HTTP over a Unix domain socket
+ * (sidecar clients for example) can be measured without the TCP loopback overhead. Optionally the server
+ * listens on a TCP port as well (served by another stub server, see
+ * {@link #UnixSocketStubHttpServer(java.nio.file.Path, net.jadler.server.StubHttpServer)}), both listeners
+ * share the same response provider.
+ *
+ * Requires a JVM supporting Unix domain socket channels (Java 16 or newer, see {@link UnixDomainSockets}).
+ * HTTP/1.0 and HTTP/1.1 (including persistent connections) are supported. Every connection is served by its own
+ * virtual thread if the JVM supports them, by a thread of a bounded pool otherwise (see {@link RequestExecutors}).
+ */
+public class UnixSocketStubHttpServer implements StubHttpServer, ConnectionStatisticsAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnixSocketStubHttpServer.class);
+    private static final int DEFAULT_MAX_THREADS = 200;
+      //0 stands for the system default
+    private static final int BACKLOG = 0;
+
+    private final Path socketPath;
+    private final StubHttpServer tcpServer;
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+    private ResponseProvider responseProvider;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService executor;
+    private Thread acceptor;
+
+
+    /**
+     * @param socketPath path of the socket file. An existing file is replaced when the server starts,
+     * the file is removed when the server stops.
+     */
+    public UnixSocketStubHttpServer(final Path socketPath) {
+        this(socketPath, null);
+    }
+
+
+    /**
+     * @param socketPath path of the socket file. An existing file is replaced when the server starts,
+     * the file is removed when the server stops.
+     * @param tcpServer stub server listening on a TCP port next to the Unix domain socket (or <tt>null</tt>).
+     * It's started, stopped and registered the response provider together with this server.
+     */
+    public UnixSocketStubHttpServer(final Path socketPath, final StubHttpServer tcpServer) {
+        Validate.notNull(socketPath, "socketPath cannot be null");
+
+        this.socketPath = socketPath;
+        this.tcpServer = tcpServer;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerResponseProvider(final ResponseProvider responseProvider) {
+        Validate.notNull(responseProvider, "responseProvider cannot be null");
+        this.responseProvider = responseProvider;
+
+        if (this.tcpServer != null) {
+            this.tcpServer.registerResponseProvider(responseProvider);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() throws Exception {
+        if (this.responseProvider == null) {
+            throw new IllegalStateException("No response provider has been registered.");
+        }
+        if (this.serverChannel != null) {
+            throw new IllegalStateException("The server has been started already.");
+        }
+
+        logger.debug("starting unix domain socket server on {}", this.socketPath);
+        Files.deleteIfExists(this.socketPath);
+        this.serverChannel = UnixDomainSockets.bind(this.socketPath, BACKLOG);
+        this.executor = RequestExecutors.newExecutor("jadler-uds", DEFAULT_MAX_THREADS);
+
+        final ServerSocketChannel channel = this.serverChannel;
+        final ExecutorService connectionExecutor = this.executor;
+        final ResponseProvider provider = this.responseProvider;
+        final ConnectionMetrics metrics = this.connectionMetrics;
+        this.acceptor = new Thread("jadler-uds-acceptor") {
+            @Override
+            public void run() {
+                accept(channel, connectionExecutor, provider, metrics);
+            }
+        };
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+
+        if (this.tcpServer != null) {
+            try {
+                this.tcpServer.start();
+            }
+            catch (final Exception e) {
+                this.stopListening();
+                throw e;
+            }
+        }
+        logger.debug("unix domain socket server started");
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() throws Exception {
+        if (this.serverChannel == null) {
+            throw new IllegalStateException("The server hasn't been started yet.");
+        }
+
+        logger.debug("stopping unix domain socket server");
+        this.stopListening();
+        if (this.tcpServer != null) {
+            this.tcpServer.stop();
+        }
+        logger.debug("unix domain socket server stopped");
+    }
+
+
+    /**
+     * @return port of the TCP listener or <tt>-1</tt> if the server listens on the Unix domain socket only
+     */
+    @Override
+    public int getPort() {
+        return this.tcpServer != null ? this.tcpServer.getPort() : -1;
+    }
+
+
+    /**
+     * @return connection statistics of the Unix domain socket listener (the TCP listener keeps its own
+     * statistics)
+     */
+    @Override
+    public ConnectionStatistics getConnectionStatistics() {
+        return this.connectionMetrics.snapshot();
+    }
+
+
+    /**
+     * @return path of the socket file
+     */
+    public Path getSocketPath() {
+        return this.socketPath;
+    }
+
+
+    private void stopListening() throws IOException, InterruptedException {
+        this.serverChannel.close();
+        this.acceptor.join();
+        this.executor.shutdownNow();
+        Files.deleteIfExists(this.socketPath);
+
+        this.serverChannel = null;
+        this.acceptor = null;
+        this.executor = null;
+    }
+
+
+    private static void accept(final ServerSocketChannel serverChannel, final ExecutorService executor,
+            final ResponseProvider provider, final ConnectionMetrics metrics) {
+        while (true) {
+            final SocketChannel connection;
+            try {
+                connection = serverChannel.accept();
+            }
+            catch (final ClosedChannelException e) {
+                return;
+            }
+            catch (final IOException e) {
+                if (!serverChannel.isOpen()) {
+                    return;
+                }
+                logger.warn("cannot accept a connection", e);
+                continue;
+            }
+
+            try {
+                executor.execute(new Http1Connection(connection, provider, metrics));
+            }
+            catch (final RejectedExecutionException e) {
+                logger.warn("cannot handle the connection, the stub server is shutting down");
+                IOUtils.closeQuietly(connection);
+            }
+        }
+    }
+}
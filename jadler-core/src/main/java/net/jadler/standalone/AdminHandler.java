@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.standalone;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import net.jadler.exception.JadlerException;
+import net.jadler.stubbing.StubDefinitions;
+import net.jadler.stubbing.StubRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Handles the remote stubbing requests of {@link StandaloneServer}:
+ * <ul>
+ *   <li><tt>POST /rules</tt> adds all stub definitions of the request body (a JSON array in the format described
+ *   in {@link StubDefinitions}). The body is parsed as it's being received and all rules are added in a single
+ *   rule set swap. Ids of the created rules are returned as a JSON array of numbers (<tt>201</tt>), the ids are
+ *   never reused during the server's lifetime. If the body is not valid (including unknown charsets and invalid
+ *   regular expressions), no rule is added and <tt>400</tt> is returned.</li>
+ *   <li><tt>DELETE /rules</tt> removes all rules added remotely (<tt>204</tt>).</li>
+ *   <li><tt>DELETE /rules/{id}</tt> removes the rule of the given id (<tt>204</tt>, <tt>404</tt> if there is
+ *   no such rule).</li>
+ * </ul>
+ */
+class AdminHandler implements HttpHandler {
+
+    static final String RULES_PATH = "/rules";
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminHandler.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+      //no response body (see HttpExchange#sendResponseHeaders(int, long))
+    private static final int NO_BODY = -1;
+
+    private final StandaloneServer server;
+    private final StubDefinitions definitions;
+
+
+    /**
+     * @param server server the rules are added to
+     * @param definitions reader of the stub definitions
+     */
+    AdminHandler(final StandaloneServer server, final StubDefinitions definitions) {
+        this.server = server;
+        this.definitions = definitions;
+    }
+
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            if (path.startsWith(RULES_PATH + "/")) {
+                this.handleRule(exchange, path.substring(RULES_PATH.length() + 1));
+                return;
+            }
+            if (!RULES_PATH.equals(path)) {
+                exchange.sendResponseHeaders(404, NO_BODY);
+                return;
+            }
+
+            switch (exchange.getRequestMethod()) {
+                case "POST":
+                    this.addRules(exchange);
+                    break;
+                case "DELETE":
+                    this.server.clearRemoteRules();
+                    exchange.sendResponseHeaders(204, NO_BODY);
+                    break;
+                default:
+                    exchange.getResponseHeaders().add("Allow", "POST, DELETE");
+                    exchange.sendResponseHeaders(405, NO_BODY);
+            }
+        }
+        catch (final RuntimeException e) {
+            logger.error("An error occurred while handling an admin request", e);
+            exchange.sendResponseHeaders(500, NO_BODY);
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+
+    private void handleRule(final HttpExchange exchange, final String id) throws IOException {
+        if (!"DELETE".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Allow", "DELETE");
+            exchange.sendResponseHeaders(405, NO_BODY);
+            return;
+        }
+
+          //ids are non-negative ints, anything else cannot identify a rule
+        final boolean removed = id.matches("\\d{1,9}") && this.server.removeRemoteRule(Integer.parseInt(id));
+        exchange.sendResponseHeaders(removed ? 204 : 404, NO_BODY);
+    }
+
+
+    private void addRules(final HttpExchange exchange) throws IOException {
+        final List<StubRule> rules;
+        try {
+            rules = this.definitions.readJson(new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), UTF_8), 64 * 1024));
+        }
+        catch (final JadlerException e) {
+            logger.warn("invalid remote stub definitions: {}", e.getMessage());
+            this.send(exchange, 400, "text/plain; charset=UTF-8", e.getMessage());
+            return;
+        }
+
+        final int[] ids = this.server.addRemoteRules(rules);
+        final StringBuilder sb = new StringBuilder(ids.length * 6 + 2);
+        sb.append('[');
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(ids[i]);
+        }
+        sb.append(']');
+        this.send(exchange, 201, "application/json; charset=UTF-8", sb.toString());
+    }
+
+
+    private void send(final HttpExchange exchange, final int status, final String contentType,
+            final String body) throws IOException {
+        final byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
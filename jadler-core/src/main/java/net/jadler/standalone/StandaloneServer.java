@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.standalone;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletResponse;
+import net.jadler.exception.JadlerException;
+import net.jadler.httpmocker.HttpMocker;
+import net.jadler.httpmocker.HttpMockerImpl;
+import net.jadler.server.jetty.JettyStubHttpServer;
+import net.jadler.stubbing.StubDefinitions;
+import net.jadler.stubbing.StubRule;
+import org.apache.commons.collections.map.MultiValueMap;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Runs Jadler as a standalone process serving stubs defined in a directory of stub definition files
+ * (see {@link StubDefinitions} for the format), so it can be used by tests not running in a JVM.
+ *
+ * The directory is watched for changes. Once a file has been created, modified or deleted, just this file
+ * is parsed again and the rule set is swapped atomically (see {@link HttpMockerImpl#replaceRules}), requests
+ * being served at the moment of the swap are finished using the previous rules. A file which cannot be parsed
+ * (an invalid file or a file being written) keeps its previous rules.
+ *
+ * If an admin port is given, stubs can be added remotely in batches as well (see {@link AdminHandler} for
+ * the protocol). The remote rules are applied before the rules of the directory in the order they have been
+ * added. Every remote rule gets an id which is never reused during the server's lifetime, so it can be used
+ * to remove the rule later. Use {@link #getRuleIndex(int)} to find the index of a remote rule in the rule set
+ * (as recorded in the request journal).
+ *
+ * Usage: <tt>java -cp ... net.jadler.standalone.StandaloneServer &lt;port&gt; &lt;stub directory&gt;
+ * [&lt;admin port&gt;]</tt>
+ */
+public class StandaloneServer implements Closeable {
+
+      //changes arriving within this period are processed together (editors usually write a file in several steps)
+    private static final long SETTLE_MILLIS = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(StandaloneServer.class);
+
+    private final HttpMockerImpl mocker;
+    private final StubDefinitions definitions;
+    private final StubDirectory stubs;
+    private final int adminPort;
+      //remote rules by their ids in the order they have been added, guarded by this
+    private final Map<Integer, StubRule> remoteRules = new LinkedHashMap<>();
+    private int nextRemoteId;
+    private WatchService watchService;
+    private Thread watcher;
+    private HttpServer adminServer;
+
+
+    /**
+     * @param port port the server will be listening on (<tt>0</tt> for an ephemeral port)
+     * @param directory directory containing the stub definition files
+     */
+    public StandaloneServer(final int port, final File directory) {
+        this(port, directory, -1);
+    }
+
+
+    /**
+     * @param port port the server will be listening on (<tt>0</tt> for an ephemeral port)
+     * @param directory directory containing the stub definition files
+     * @param adminPort port the remote stubbing endpoint will be listening on (<tt>0</tt> for an ephemeral port,
+     * <tt>-1</tt> to disable remote stubbing)
+     */
+    public StandaloneServer(final int port, final File directory, final int adminPort) {
+        Validate.isTrue(adminPort >= -1, "adminPort must be at least -1");
+
+        final JettyStubHttpServer server = new JettyStubHttpServer(port);
+        this.mocker = new HttpMockerImpl(server);
+        server.registerResponseProvider(this.mocker);
+
+        this.definitions = new StubDefinitions(Charset.forName("UTF-8"), HttpServletResponse.SC_OK,
+                new MultiValueMap());
+        this.stubs = new StubDirectory(directory, this.definitions);
+        this.adminPort = adminPort;
+    }
+
+
+    /**
+     * Loads all stub definition files, starts the server (and the admin server if enabled) and starts watching
+     * the directory.
+     * @throws JadlerException when a stub definition file cannot be read or the server cannot be started
+     */
+    public void start() {
+        synchronized(this) {
+            this.stubs.loadAll();
+            this.swapRules();
+        }
+        this.mocker.start();
+
+        final Path dir = this.stubs.getDirectory().toPath();
+        try {
+            this.watchService = dir.getFileSystem().newWatchService();
+            dir.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        catch (final IOException e) {
+            this.mocker.stop();
+            throw new JadlerException("Cannot watch the stub directory " + dir, e);
+        }
+
+        this.watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "jadler-stub-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+
+        if (this.adminPort >= 0) {
+            try {
+                this.adminServer = HttpServer.create(new InetSocketAddress(this.adminPort), 0);
+            }
+            catch (final IOException e) {
+                try {
+                    this.close();
+                }
+                catch (final IOException ce) {
+                    logger.warn("cannot stop the stub directory watcher", ce);
+                }
+                throw new JadlerException("Cannot start the admin server", e);
+            }
+            this.adminServer.createContext(AdminHandler.RULES_PATH, new AdminHandler(this, this.definitions));
+            this.adminServer.start();
+            logger.info("jadler accepting remote stubs on port {}", this.getAdminPort());
+        }
+        logger.info("jadler serving stubs from {} on port {}", dir, this.mocker.getStubHttpServerPort());
+    }
+
+
+    /**
+     * Stops watching the directory and stops the server.
+     * @throws IOException when the directory watcher cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.adminServer != null) {
+            this.adminServer.stop(0);
+        }
+        try {
+            if (this.watchService != null) {
+                this.watchService.close();
+                this.watcher.interrupt();
+            }
+        }
+        finally {
+            this.mocker.stop();
+        }
+    }
+
+
+    /**
+     * @return port the server is listening on
+     */
+    public int getPort() {
+        return this.mocker.getStubHttpServerPort();
+    }
+
+
+    /**
+     * @return port the remote stubbing endpoint is listening on
+     * @throws IllegalStateException if remote stubbing is disabled or the server hasn't been started yet
+     */
+    public int getAdminPort() {
+        if (this.adminServer == null) {
+            throw new IllegalStateException("The admin server isn't running.");
+        }
+        return this.adminServer.getAddress().getPort();
+    }
+
+
+    /**
+     * Adds the given rules to the remote rules in a single atomic swap of the rule set.
+     * @param rules rules to be added
+     * @return ids of the added rules
+     */
+    synchronized int[] addRemoteRules(final List<StubRule> rules) {
+        final int[] res = new int[rules.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = this.nextRemoteId++;
+            this.remoteRules.put(res[i], rules.get(i));
+        }
+        this.swapRules();
+        return res;
+    }
+
+
+    /**
+     * Removes the remote rule of the given id.
+     * @param id id of the remote rule
+     * @return true if the rule has been removed, false if there is no remote rule of the given id
+     */
+    synchronized boolean removeRemoteRule(final int id) {
+        if (this.remoteRules.remove(id) == null) {
+            return false;
+        }
+        this.swapRules();
+        return true;
+    }
+
+
+    /**
+     * Removes all remote rules.
+     */
+    synchronized void clearRemoteRules() {
+        this.remoteRules.clear();
+        this.swapRules();
+    }
+
+
+    /**
+     * Returns the index of a remote rule in the current rule set. This is the matched rule id recorded
+     * in the request journal (see {@link net.jadler.journal.RecordedRequest#getMatchedRuleId()}) for requests
+     * received since the rule set has changed last time. Removing a remote rule shifts the indexes
+     * of the remote rules added after it.
+     * @param id id of a remote rule (as returned by the remote stubbing endpoint)
+     * @return index of the remote rule in the current rule set or <tt>-1</tt> if there is no remote rule
+     * of the given id
+     */
+    public synchronized int getRuleIndex(final int id) {
+        int res = 0;
+        for (final Integer remoteId : this.remoteRules.keySet()) {
+            if (remoteId == id) {
+                return res;
+            }
+            res++;
+        }
+        return -1;
+    }
+
+
+    /**
+     * @return the underlying mocker (use it to access the request journal, for example)
+     */
+    public HttpMocker getMocker() {
+        return this.mocker;
+    }
+
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                final Set<String> changed = new HashSet<>();
+                boolean overflow = false;
+                while (key != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        }
+                        else {
+                            changed.add(((Path) event.context()).getFileName().toString());
+                        }
+                    }
+                    key.reset();
+                    key = this.watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                try {
+                    if (overflow) {
+                        this.reloadAll();
+                    }
+                    else {
+                        synchronized(this) {
+                            if (this.stubs.reload(changed)) {
+                                this.swapRules();
+                            }
+                        }
+                    }
+                }
+                catch (final RuntimeException e) {
+                      //the watcher must survive whatever goes wrong, following changes would be ignored otherwise
+                    logger.error("cannot apply the changes of the stub directory", e);
+                }
+            }
+        }
+        catch (final ClosedWatchServiceException | InterruptedException e) {
+            logger.debug("stub directory watcher stopped");
+        }
+    }
+
+
+    private synchronized void reloadAll() {
+        try {
+            this.stubs.loadAll();
+            this.swapRules();
+        }
+        catch (final RuntimeException e) {
+            logger.warn("cannot reload the stub directory, keeping the previous rules", e);
+        }
+    }
+
+
+    private void swapRules() {
+        final List<StubRule> rules = new ArrayList<>(this.remoteRules.values());
+        rules.addAll(this.stubs.getRules());
+        this.mocker.replaceRules(rules);
+    }
+
+
+    /**
+     * Starts a standalone server.
+     * @param args port, stub directory and optionally admin port
+     */
+    public static void main(final String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: java " + StandaloneServer.class.getName()
+                    + " <port> <stub directory> [<admin port>]");
+            System.exit(1);
+        }
+        Validate.isTrue(args[0].matches("\\d+"), "port must be a number");
+        Validate.isTrue(args.length == 2 || args[2].matches("\\d+"), "admin port must be a number");
+
+        final StandaloneServer server = new StandaloneServer(Integer.parseInt(args[0]), new File(args[1]),
+                args.length == 3 ? Integer.parseInt(args[2]) : -1);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.close();
+                }
+                catch (final IOException e) {
+                    logger.warn("cannot stop the stub directory watcher", e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.standalone;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import net.jadler.exception.JadlerException;
+import net.jadler.stubbing.StubDefinitions;
+import net.jadler.stubbing.StubRule;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Stub definition files of a directory (see {@link StubDefinitions}). Every file is parsed separately and its rules
+ * are kept, so just the changed files need to be parsed again once the directory content changes. The rules
+ * of all files are applied in the order of the file names.
+ *
+ * Only files with the <tt>.json</tt> and <tt>.bin</tt> extensions are read, hidden files are ignored. The files
+ * can be rewritten in place at any time, so the response bodies of binary files are copied to the heap instead
+ * of being kept in the memory mapped files (see {@link StubDefinitions#load(File, boolean)}).
+ *
+ * This class is not thread-safe.
+ */
+class StubDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubDirectory.class);
+
+    private final File directory;
+    private final StubDefinitions definitions;
+    private SortedMap<String, List<StubRule>> rulesByFile = new TreeMap<>();
+
+
+    /**
+     * @param directory directory containing the stub definition files
+     * @param definitions reader of the stub definition files
+     */
+    StubDirectory(final File directory, final StubDefinitions definitions) {
+        Validate.notNull(directory, "directory cannot be null");
+        Validate.isTrue(directory.isDirectory(), directory + " is not a directory");
+        Validate.notNull(definitions, "definitions cannot be null");
+
+        this.directory = directory;
+        this.definitions = definitions;
+    }
+
+
+    /**
+     * Reads all stub definition files of the directory. The rules are replaced only if all files have been read,
+     * the previous rules are kept otherwise.
+     * @throws JadlerException when a file cannot be read or it's not a valid stub definition file
+     */
+    void loadAll() {
+        final String[] names = this.directory.list();
+        if (names == null) {
+            throw new JadlerException("Cannot list the stub directory " + this.directory);
+        }
+        final SortedMap<String, List<StubRule>> loaded = new TreeMap<>();
+        for (final String name : names) {
+            if (isStubFile(name)) {
+                loaded.put(name, this.definitions.load(new File(this.directory, name), false));
+            }
+        }
+        this.rulesByFile = loaded;
+        logger.info("{} stub file(s) loaded from {}", loaded.size(), this.directory);
+    }
+
+
+    /**
+     * Reads the given files again. The rules of a deleted file are removed. If a file cannot be read
+     * (it's not valid or it's just being written), its previous rules are kept.
+     * @param names names of the changed files
+     * @return true if the rules of at least one file have changed
+     */
+    boolean reload(final Collection<String> names) {
+        boolean res = false;
+        for (final String name : names) {
+            if (!isStubFile(name)) {
+                continue;
+            }
+
+            final File file = new File(this.directory, name);
+            if (!file.isFile()) {
+                if (this.rulesByFile.remove(name) != null) {
+                    logger.info("stub file {} removed", name);
+                    res = true;
+                }
+                continue;
+            }
+
+            try {
+                this.rulesByFile.put(name, this.definitions.load(file, false));
+                logger.info("stub file {} reloaded", name);
+                res = true;
+            }
+            catch (final RuntimeException e) {
+                  //not just JadlerException, an invalid definition can fail on an unknown charset or a bad regex
+                logger.warn("cannot reload the stub file " + name + ", keeping its previous version", e);
+            }
+        }
+        return res;
+    }
+
+
+    /**
+     * @return rules of all files in the order of the file names
+     */
+    List<StubRule> getRules() {
+        final List<StubRule> res = new ArrayList<>();
+        for (final Map.Entry<String, List<StubRule>> e : this.rulesByFile.entrySet()) {
+            res.addAll(e.getValue());
+        }
+        return res;
+    }
+
+
+    /**
+     * @return directory containing the stub definition files
+     */
+    File getDirectory() {
+        return this.directory;
+    }
+
+
+    private static boolean isStubFile(final String name) {
+        return !name.startsWith(".") && (name.endsWith(".json") || name.endsWith(".bin"));
+    }
+}
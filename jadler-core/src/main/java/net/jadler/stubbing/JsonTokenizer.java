@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import net.jadler.exception.JadlerException;
+
+
+/**
+ * Minimal streaming (pull) JSON parser used to read stub definitions. The document is read token by token,
+ * no tree of the whole document is ever built, so huge definition files can be read in constant memory.
+ *
+ * This class is not thread-safe.
+ */
+final class JsonTokenizer {
+
+    /**
+     * JSON tokens
+     */
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    private enum Context {
+        EMPTY_DOCUMENT, NONEMPTY_DOCUMENT, EMPTY_ARRAY, NONEMPTY_ARRAY, EMPTY_OBJECT, NONEMPTY_OBJECT, DANGLING_NAME
+    }
+
+    private final Reader reader;
+    private final Deque<Context> stack = new ArrayDeque<>();
+    private final StringBuilder buffer = new StringBuilder();
+    private int pushedBack = -2;
+    private int line = 1;
+
+    private Token peeked;
+    private String peekedValue;
+
+
+    /**
+     * @param reader reader of the JSON document (should be buffered)
+     */
+    JsonTokenizer(final Reader reader) {
+        this.reader = reader;
+        this.stack.push(Context.EMPTY_DOCUMENT);
+    }
+
+
+    /**
+     * @return type of the next token (the token is not consumed)
+     */
+    Token peek() {
+        if (this.peeked == null) {
+            this.advance();
+        }
+        return this.peeked;
+    }
+
+
+    /**
+     * @return true if the current array or object has more elements
+     */
+    boolean hasNext() {
+        final Token token = this.peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END;
+    }
+
+
+    void beginObject() {
+        this.consume(Token.BEGIN_OBJECT);
+        this.stack.push(Context.EMPTY_OBJECT);
+    }
+
+
+    void endObject() {
+        this.consume(Token.END_OBJECT);
+        this.stack.pop();
+    }
+
+
+    void beginArray() {
+        this.consume(Token.BEGIN_ARRAY);
+        this.stack.push(Context.EMPTY_ARRAY);
+    }
+
+
+    void endArray() {
+        this.consume(Token.END_ARRAY);
+        this.stack.pop();
+    }
+
+
+    String nextName() {
+        return this.consume(Token.NAME);
+    }
+
+
+    /**
+     * @return value of the next string token or <tt>null</tt> if the next token is <tt>null</tt>
+     */
+    String nextString() {
+        if (this.peek() == Token.NULL) {
+            this.consume(Token.NULL);
+            return null;
+        }
+        return this.consume(Token.STRING);
+    }
+
+
+    long nextLong() {
+        final String value = this.consume(Token.NUMBER);
+        try {
+            return Long.parseLong(value);
+        }
+        catch (final NumberFormatException e) {
+            throw this.syntaxError("integer expected, found " + value);
+        }
+    }
+
+
+    int nextInt() {
+        final long value = this.nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw this.syntaxError(value + " is out of the int range");
+        }
+        return (int) value;
+    }
+
+
+    /**
+     * @param message error description
+     * @return exception describing a syntax error at the current line
+     */
+    JadlerException syntaxError(final String message) {
+        return new JadlerException("Invalid stub definitions (line " + this.line + "): " + message);
+    }
+
+
+    JadlerException syntaxError(final String message, final Throwable cause) {
+        return new JadlerException("Invalid stub definitions (line " + this.line + "): " + message, cause);
+    }
+
+
+    private String consume(final Token expected) {
+        final Token token = this.peek();
+        if (token != expected) {
+            throw this.syntaxError(expected + " expected, found " + token);
+        }
+        this.peeked = null;
+        return this.peekedValue;
+    }
+
+
+    private void advance() {
+        this.peekedValue = null;
+        final Context context = this.stack.peek();
+        switch (context) {
+            case EMPTY_DOCUMENT:
+                this.replaceTop(Context.NONEMPTY_DOCUMENT);
+                this.readValue(this.nextNonWhitespace());
+                return;
+
+            case NONEMPTY_DOCUMENT:
+                if (this.nextNonWhitespace() != -1) {
+                    throw this.syntaxError("end of the document expected");
+                }
+                this.peeked = Token.END;
+                return;
+
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                int c = this.nextNonWhitespace();
+                if (c == ']') {
+                    this.peeked = Token.END_ARRAY;
+                    return;
+                }
+                if (context == Context.NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw this.syntaxError("',' or ']' expected");
+                    }
+                    c = this.nextNonWhitespace();
+                }
+                this.replaceTop(Context.NONEMPTY_ARRAY);
+                this.readValue(c);
+                return;
+
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                int n = this.nextNonWhitespace();
+                if (n == '}') {
+                    this.peeked = Token.END_OBJECT;
+                    return;
+                }
+                if (context == Context.NONEMPTY_OBJECT) {
+                    if (n != ',') {
+                        throw this.syntaxError("',' or '}' expected");
+                    }
+                    n = this.nextNonWhitespace();
+                }
+                if (n != '"') {
+                    throw this.syntaxError("name expected");
+                }
+                this.peekedValue = this.readString();
+                if (this.nextNonWhitespace() != ':') {
+                    throw this.syntaxError("':' expected");
+                }
+                this.replaceTop(Context.DANGLING_NAME);
+                this.peeked = Token.NAME;
+                return;
+
+            case DANGLING_NAME:
+                this.replaceTop(Context.NONEMPTY_OBJECT);
+                this.readValue(this.nextNonWhitespace());
+                return;
+
+            default:
+                throw new IllegalStateException("unknown context " + context);
+        }
+    }
+
+
+    private void readValue(final int c) {
+        switch (c) {
+            case '{':
+                this.peeked = Token.BEGIN_OBJECT;
+                break;
+            case '[':
+                this.peeked = Token.BEGIN_ARRAY;
+                break;
+            case '"':
+                this.peekedValue = this.readString();
+                this.peeked = Token.STRING;
+                break;
+            case 't':
+                this.readLiteral("rue");
+                this.peeked = Token.TRUE;
+                break;
+            case 'f':
+                this.readLiteral("alse");
+                this.peeked = Token.FALSE;
+                break;
+            case 'n':
+                this.readLiteral("ull");
+                this.peeked = Token.NULL;
+                break;
+            case -1:
+                throw this.syntaxError("unexpected end of the document");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    this.peekedValue = this.readNumber(c);
+                    this.peeked = Token.NUMBER;
+                    break;
+                }
+                throw this.syntaxError("unexpected character '" + (char) c + "'");
+        }
+    }
+
+
+    private String readString() {
+        this.buffer.setLength(0);
+        while (true) {
+            final int c = this.read();
+            switch (c) {
+                case -1:
+                    throw this.syntaxError("unterminated string");
+                case '"':
+                    return this.buffer.toString();
+                case '\\':
+                    this.buffer.append(this.readEscaped());
+                    break;
+                default:
+                    if (c == '\n') {
+                        this.line++;
+                    }
+                    this.buffer.append((char) c);
+            }
+        }
+    }
+
+
+    private char readEscaped() {
+        final int c = this.read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int res = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(this.read(), 16);
+                    if (digit < 0) {
+                        throw this.syntaxError("invalid unicode escape sequence");
+                    }
+                    res = (res << 4) | digit;
+                }
+                return (char) res;
+            default:
+                throw this.syntaxError("invalid escape sequence");
+        }
+    }
+
+
+    private String readNumber(final int first) {
+        this.buffer.setLength(0);
+        this.buffer.append((char) first);
+        while (true) {
+            final int c = this.read();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                this.buffer.append((char) c);
+            }
+            else {
+                this.pushedBack = c;
+                return this.buffer.toString();
+            }
+        }
+    }
+
+
+    private void readLiteral(final String rest) {
+        for (int i = 0; i < rest.length(); i++) {
+            if (this.read() != rest.charAt(i)) {
+                throw this.syntaxError("invalid literal");
+            }
+        }
+    }
+
+
+    private int nextNonWhitespace() {
+        while (true) {
+            final int c = this.read();
+            switch (c) {
+                case '\n':
+                    this.line++;
+                    break;
+                case ' ':
+                case '\t':
+                case '\r':
+                    break;
+                default:
+                    return c;
+            }
+        }
+    }
+
+
+    private int read() {
+        if (this.pushedBack != -2) {
+            final int res = this.pushedBack;
+            this.pushedBack = -2;
+            return res;
+        }
+        try {
+            return this.reader.read();
+        }
+        catch (final IOException e) {
+            throw new JadlerException("Cannot read the stub definitions", e);
+        }
+    }
+
+
+    private void replaceTop(final Context context) {
+        this.stack.pop();
+        this.stack.push(context);
+    }
+}
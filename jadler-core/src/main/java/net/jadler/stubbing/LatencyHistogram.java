@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Log-linear histogram of latencies (in nanoseconds) in the spirit of HdrHistogram. Values below 32 ns are
+ * counted exactly, every following power of two is split into 16 buckets of the same width. So every value
+ * is kept with the precision of 1/16 of its magnitude using less than 600 counters. Values greater than
+ * {@link #MAX_VALUE} are counted as {@link #MAX_VALUE}.
+ *
+ * Recording a value is a single atomic increment, the counters are allocated once the first value has been
+ * recorded. The queries read the counters one by one, so they're approximate while values keep being recorded.
+ *
+ * This class is thread-safe and lock-free.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Highest trackable value (about 18 minutes)
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_MAGNITUDE = 63 - Long.numberOfLeadingZeros(MAX_VALUE);
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+    private final AtomicReference<AtomicLongArray> counts;
+
+
+    LatencyHistogram() {
+        this.counts = new AtomicReference<>();
+    }
+
+
+    private LatencyHistogram(final AtomicLongArray counts) {
+        this.counts = new AtomicReference<>(counts);
+    }
+
+
+    /**
+     * Records a value.
+     * @param nanos value to be recorded (a negative value is recorded as <tt>0</tt>)
+     */
+    void record(final long nanos) {
+        AtomicLongArray buckets = this.counts.get();
+        if (buckets == null) {
+            this.counts.compareAndSet(null, new AtomicLongArray(BUCKETS));
+            buckets = this.counts.get();
+        }
+        buckets.incrementAndGet(indexOf(Math.min(Math.max(nanos, 0), MAX_VALUE)));
+    }
+
+
+    /**
+     * @return a copy of this histogram (values recorded to this histogram later are not reflected in the copy)
+     */
+    LatencyHistogram copy() {
+        final AtomicLongArray buckets = this.counts.get();
+        if (buckets == null) {
+            return new LatencyHistogram();
+        }
+
+        final AtomicLongArray res = new AtomicLongArray(BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            res.set(i, buckets.get(i));
+        }
+        return new LatencyHistogram(res);
+    }
+
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        final AtomicLongArray buckets = this.counts.get();
+        long res = 0;
+        if (buckets != null) {
+            for (int i = 0; i < BUCKETS; i++) {
+                res += buckets.get(i);
+            }
+        }
+        return res;
+    }
+
+
+    /**
+     * @param percentile percentile to be returned (from <tt>0</tt> to <tt>100</tt>)
+     * @return value (in nanoseconds) the given percentage of the recorded values is lower than or equal to
+     * (the highest value of its bucket), <tt>0</tt> if no value has been recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        Validate.isTrue(percentile >= 0 && percentile <= 100, "percentile must be from 0 to 100");
+
+        final AtomicLongArray buckets = this.counts.get();
+        if (buckets == null) {
+            return 0;
+        }
+
+        final long total = this.getCount();
+        final long target = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return highestValueOf(i);
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * @return highest recorded value in nanoseconds (the highest value of its bucket),
+     * <tt>0</tt> if no value has been recorded
+     */
+    public long getMax() {
+        final AtomicLongArray buckets = this.counts.get();
+        if (buckets != null) {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (buckets.get(i) > 0) {
+                    return highestValueOf(i);
+                }
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * @return mean of the recorded values in nanoseconds (computed from the bucket midpoints),
+     * <tt>0</tt> if no value has been recorded
+     */
+    public double getMean() {
+        final AtomicLongArray buckets = this.counts.get();
+        if (buckets == null) {
+            return 0;
+        }
+
+        double sum = 0;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            final long count = buckets.get(i);
+            if (count > 0) {
+                sum += count * ((lowestValueOf(i) + highestValueOf(i)) / 2.0);
+                total += count;
+            }
+        }
+        return total > 0 ? sum / total : 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return "count=" + this.getCount() + ", p50=" + this.getValueAtPercentile(50)
+                + "ns, p99=" + this.getValueAtPercentile(99) + "ns, max=" + this.getMax() + "ns";
+    }
+
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+          //the top SUB_BUCKET_BITS bits of the value (from HALF_SUB_BUCKETS to SUB_BUCKETS - 1)
+        final int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS + 1));
+        return SUB_BUCKETS + (magnitude - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS;
+    }
+
+
+    static long lowestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int k = index - SUB_BUCKETS;
+        final int shift = k / HALF_SUB_BUCKETS + 1;
+        return (long) (k % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+    }
+
+
+    static long highestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        return lowestValueOf(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+
+/**
+ * Collects metrics of a single stub rule (see {@link StubRule#getMetrics()}). The mocker reports every request
+ * matching the rule (and the time spent by finding the rule) and every unmatched request the rule was one of
+ * the closest candidates for, the stub servers report the time spent by writing the rule responses.
+ * {@link #snapshot()} provides the current values to the client.
+ *
+ * This class is thread-safe and lock-free, it's updated on the request path.
+ */
+public class RuleMetrics {
+
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter nearMisses = new StripedCounter();
+    private final LatencyHistogram matchTime = new LatencyHistogram();
+    private final LatencyHistogram writeTime = new LatencyHistogram();
+
+
+    /**
+     * Reports a request matching the rule.
+     * @param matchNanos time spent by finding the rule (in nanoseconds)
+     */
+    public void recordHit(final long matchNanos) {
+        this.hits.increment();
+        this.matchTime.record(matchNanos);
+    }
+
+
+    /**
+     * Reports a response of the rule has been written.
+     * @param writeNanos time spent by writing the response (in nanoseconds, not including the response delay)
+     */
+    public void recordWrite(final long writeNanos) {
+        this.writeTime.record(writeNanos);
+    }
+
+
+    /**
+     * Reports an unmatched request which the rule was one of the closest candidates for.
+     */
+    void recordNearMiss() {
+        this.nearMisses.increment();
+    }
+
+
+    /**
+     * @return current values of the metrics. The values are read one by one while requests keep being
+     * served, so they might be slightly inconsistent under load.
+     */
+    public RuleStatistics snapshot() {
+        return new RuleStatistics(this.hits.sum(), this.nearMisses.sum(), this.matchTime.copy(),
+                this.writeTime.copy());
+    }
+}
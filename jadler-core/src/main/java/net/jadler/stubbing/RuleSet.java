@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.matchers.HeaderRequestMatcher;
+import net.jadler.predicates.HeaderPatternPredicate;
+import net.jadler.predicates.LocalPortPredicate;
+import net.jadler.predicates.MatcherPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.RequestView;
+import net.jadler.predicates.URIPatternPredicate;
+import net.jadler.regex.MultiPattern;
+import net.jadler.server.HeaderIndex;
+import org.apache.commons.lang.Validate;
+import org.hamcrest.Description;
+import org.hamcrest.StringDescription;
+
+
+/**
+ * An immutable, compiled list of stub rules. 
+ * 
+ * Regular expression predicates of all rules are compiled into shared automata (one for the request URI and
+ * one per request header name), so every request runs each automaton at most once no matter how many rules
+ * use regular expressions (see {@link MultiPattern}). Header names used by the rules are interned so header
+ * lookups are resolved by reference comparisons (see {@link HeaderIndex}).
+ * 
+ * If the stub server listens on several ports, rules bound to a local port (see {@link LocalPortPredicate}) are
+ * indexed by the port, so a request is checked against rules of its own port and port independent rules only.
+ * 
+ * Instances of this class are thread-safe.
+ */
+public class RuleSet {
+    
+    private final List<StubRule> rules;
+    private final StubRule[] ruleArray;
+      //local port -> indexes of rules of the port along with port independent rules (in the order of precedence)
+    private final Map<Integer, int[]> rulesByPort = new HashMap<>();
+    private int[] portIndependentRules;
+
+    
+    private RuleSet(final List<StubRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.ruleArray = rules.toArray(new StubRule[rules.size()]);
+    }
+    
+    
+    /**
+     * Compiles the given stub rules.
+     * @param rules stub rules in the order of precedence
+     * @return compiled rule set
+     */
+    public static RuleSet compile(final List<StubRule> rules) {
+        Validate.notNull(rules, "rules cannot be null");
+        Validate.noNullElements(rules, "rules cannot contain null");
+        
+        final RuleSet res = new RuleSet(rules);
+        res.compilePredicates();
+        res.indexPorts();
+        return res;
+    }
+    
+    
+    /**
+     * @return all rules of this set in the order of precedence
+     */
+    public List<StubRule> getRules() {
+        return this.rules;
+    }
+    
+    
+    /**
+     * @param req http request to find a rule for
+     * @return the first rule matched by the given request or <tt>null</tt> if there is no such rule
+     */
+    public StubRule findMatchingRule(final HttpServletRequest req) {
+        final int index = this.findMatchingRuleIndex(req);
+        return index < 0 ? null : this.ruleArray[index];
+    }
+    
+    
+    /**
+     * @param req http request to find a rule for
+     * @return index of the first rule matched by the given request (in the list of {@link #getRules()})
+     * or <tt>-1</tt> if there is no such rule
+     */
+    public int findMatchingRuleIndex(final HttpServletRequest req) {
+        int[] candidates = this.portIndependentRules;
+        if (!this.rulesByPort.isEmpty()) {
+            final int[] portRules = this.rulesByPort.get(req.getLocalPort());
+            if (portRules != null) {
+                candidates = portRules;
+            }
+        }
+        
+        for (final int index : candidates) {
+              //rules evaluate a shared request view (see RequestView#of), the request is parsed just once
+            if (this.ruleArray[index].matchedBy(req)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    
+    /**
+     * Reports a near miss to the metrics of the rules closest to the given unmatched request, the rules with
+     * the lowest number of mismatching predicates (at least one predicate of such a rule must match). This method
+     * evaluates all predicates of all rules, so it should be called for unmatched requests only. The mismatch
+     * reasons of all rules can be described during the same evaluation.
+     * @param req http request no rule has been found for
+     * @param description the mismatch reasons of all rules (see {@link StubRule#describeMismatch(HttpServletRequest)})
+     * are appended to, <tt>null</tt> if they are not needed
+     */
+    public void recordNearMisses(final HttpServletRequest req, final StringBuilder description) {
+        final RequestView view = RequestView.of(req);
+        final Description desc = description != null ? new StringDescription(description) : null;
+        final int[] mismatches = new int[this.ruleArray.length];
+        int closest = Integer.MAX_VALUE;
+        
+        for (int i = 0; i < this.ruleArray.length; i++) {
+            final StubRule rule = this.ruleArray[i];
+            if (desc != null) {
+                desc.appendText("The rule '").appendText(rule.toString())
+                        .appendText("' cannot be applied. Mismatch:\n");
+            }
+            final int count = rule.countMismatches(view, desc);
+            if (desc != null) {
+                desc.appendText("\n");
+            }
+              //a rule none of whose predicates matched is not close at all
+            mismatches[i] = count < rule.getPredicateCount() ? count : Integer.MAX_VALUE;
+            closest = Math.min(closest, mismatches[i]);
+        }
+        
+        if (closest == Integer.MAX_VALUE) {
+            return;
+        }
+        for (int i = 0; i < this.ruleArray.length; i++) {
+            if (mismatches[i] == closest) {
+                this.ruleArray[i].getMetrics().recordNearMiss();
+            }
+        }
+    }
+    
+    
+    private void indexPorts() {
+        final List<Integer> independent = new ArrayList<>();
+        final Integer[] ports = new Integer[this.ruleArray.length];
+        final Set<Integer> boundPorts = new LinkedHashSet<>();
+        
+        for (int i = 0; i < this.ruleArray.length; i++) {
+            ports[i] = localPortOf(this.ruleArray[i]);
+            if (ports[i] == null) {
+                independent.add(i);
+            }
+            else {
+                boundPorts.add(ports[i]);
+            }
+        }
+        
+          //a request received on a port can match rules of this port or port independent rules only
+        for (final Integer port : boundPorts) {
+            final List<Integer> candidates = new ArrayList<>();
+            for (int i = 0; i < ports.length; i++) {
+                if (ports[i] == null || ports[i].equals(port)) {
+                    candidates.add(i);
+                }
+            }
+            this.rulesByPort.put(port, toArray(candidates));
+        }
+        this.portIndependentRules = toArray(independent);
+    }
+    
+    
+    private static int[] toArray(final List<Integer> indexes) {
+        final int[] res = new int[indexes.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = indexes.get(i);
+        }
+        return res;
+    }
+    
+    
+    private static Integer localPortOf(final StubRule rule) {
+        for (final RequestPredicate predicate : rule.getPredicates()) {
+            if (predicate instanceof LocalPortPredicate) {
+                return ((LocalPortPredicate) predicate).getPort();
+            }
+        }
+        return null;
+    }
+    
+    
+    private void compilePredicates() {
+        final PatternGroup<URIPatternPredicate> uriPatterns = new PatternGroup<>();
+          //header names are case insensitive
+        final Map<String, PatternGroup<HeaderPatternPredicate>> headerPatterns = new LinkedHashMap<>();
+        
+        for (final StubRule rule : this.rules) {
+            for (final RequestPredicate predicate : rule.getPredicates()) {
+                
+                if (predicate instanceof URIPatternPredicate) {
+                    final URIPatternPredicate p = (URIPatternPredicate) predicate;
+                    uriPatterns.add(p.getRegex(), p);
+                }
+                else if (predicate instanceof HeaderPatternPredicate) {
+                    final HeaderPatternPredicate p = (HeaderPatternPredicate) predicate;
+                    final String name = HeaderIndex.intern(p.getHeaderName());
+                    
+                    PatternGroup<HeaderPatternPredicate> group = headerPatterns.get(name);
+                    if (group == null) {
+                        group = new PatternGroup<>();
+                        headerPatterns.put(name, group);
+                    }
+                    group.add(p.getRegex(), p);
+                }
+                else if (predicate instanceof MatcherPredicate
+                        && ((MatcherPredicate) predicate).getMatcher() instanceof HeaderRequestMatcher) {
+                      //header lookups of the request wrapper are faster for interned names
+                    HeaderIndex.intern(((HeaderRequestMatcher) ((MatcherPredicate) predicate).getMatcher())
+                            .getHeaderName());
+                }
+            }
+        }
+        
+        if (!uriPatterns.isEmpty()) {
+            final MultiPattern automaton = MultiPattern.compile(uriPatterns.regexes);
+            for (final Map.Entry<URIPatternPredicate, Integer> e : uriPatterns.predicates.entrySet()) {
+                e.getKey().compileInto(automaton, e.getValue());
+            }
+        }
+        
+        for (final PatternGroup<HeaderPatternPredicate> group : headerPatterns.values()) {
+            final MultiPattern automaton = MultiPattern.compile(group.regexes);
+            for (final Map.Entry<HeaderPatternPredicate, Integer> e : group.predicates.entrySet()) {
+                e.getKey().compileInto(automaton, e.getValue());
+            }
+        }
+    }
+    
+    
+    /**
+     * Distinct regular expressions matched against the same value together with the predicates using them.
+     */
+    private static class PatternGroup<T> {
+        private final List<String> regexes = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final Map<T, Integer> predicates = new LinkedHashMap<>();
+        
+        void add(final String regex, final T predicate) {
+            Integer id = this.ids.get(regex);
+            if (id == null) {
+                id = this.regexes.size();
+                this.regexes.add(regex);
+                this.ids.put(regex, id);
+            }
+            this.predicates.put(predicate, id);
+        }
+        
+        boolean isEmpty() {
+            return this.regexes.isEmpty();
+        }
+    }
+}
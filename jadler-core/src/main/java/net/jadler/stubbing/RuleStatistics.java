@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+
+/**
+ * Immutable snapshot of metrics of a stub rule (see {@link RuleMetrics}). Use it to find out which stubs
+ * are actually used by the tested code, which stubs were almost (but not quite) matched by unmatched requests
+ * and how much time the stub server spent by serving them.
+ */
+public class RuleStatistics {
+
+    private final long hits;
+    private final long nearMisses;
+    private final LatencyHistogram matchTime;
+    private final LatencyHistogram writeTime;
+
+
+    /**
+     * @param hits number of requests matching the rule
+     * @param nearMisses number of unmatched requests the rule was one of the closest candidates for
+     * @param matchTime histogram of the time spent by finding the rule for the matching requests
+     * @param writeTime histogram of the time spent by writing the rule responses
+     */
+    RuleStatistics(final long hits, final long nearMisses, final LatencyHistogram matchTime,
+            final LatencyHistogram writeTime) {
+        this.hits = hits;
+        this.nearMisses = nearMisses;
+        this.matchTime = matchTime;
+        this.writeTime = writeTime;
+    }
+
+
+    /**
+     * @return number of requests matching the rule
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+
+    /**
+     * @return number of unmatched requests the rule was one of the closest candidates for (the rule had the
+     * lowest number of mismatching predicates of all rules, at least one of its predicates matched)
+     */
+    public long getNearMisses() {
+        return this.nearMisses;
+    }
+
+
+    /**
+     * @return histogram of the time spent by finding the rule for the matching requests
+     */
+    public LatencyHistogram getMatchTime() {
+        return this.matchTime;
+    }
+
+
+    /**
+     * @return histogram of the time spent by writing the rule responses (not including the response delays)
+     */
+    public LatencyHistogram getWriteTime() {
+        return this.writeTime;
+    }
+
+
+    @Override
+    public String toString() {
+        return "hits=" + this.hits + ", nearMisses=" + this.nearMisses + ", matchTime=(" + this.matchTime
+                + "), writeTime=(" + this.writeTime + ")";
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Lock-free counter which stays cheap under contention. It's a single atomic long until two threads collide
+ * on it for the first time, then the increments are spread over several stripes (each on its own cache line)
+ * selected by the current thread, the value is the sum of all stripes. The stripes are allocated lazily, so
+ * counters which are never contended (most of them) take just a few bytes.
+ *
+ * This class is thread-safe and lock-free.
+ */
+final class StripedCounter {
+
+      //longs per stripe, so every stripe occupies its own 64 byte cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripes();
+      //the stripe index is taken from the top bits of the hash
+    private static final int SHIFT = Long.numberOfLeadingZeros(STRIPES - 1);
+
+    private final AtomicLong base = new AtomicLong();
+    private final AtomicReference<AtomicLongArray> cells = new AtomicReference<>();
+
+
+    void increment() {
+        AtomicLongArray stripes = this.cells.get();
+        if (stripes == null) {
+            final long value = this.base.get();
+            if (this.base.compareAndSet(value, value + 1)) {
+                return;
+            }
+              //contended, switch to stripes (a concurrent allocation might win, use whatever is there)
+            this.cells.compareAndSet(null, new AtomicLongArray(STRIPES * PADDING));
+            stripes = this.cells.get();
+        }
+        stripes.incrementAndGet(stripe() * PADDING);
+    }
+
+
+    /**
+     * @return current value (the stripes are summed one by one, so concurrent increments may be missed)
+     */
+    long sum() {
+        long res = this.base.get();
+        final AtomicLongArray stripes = this.cells.get();
+        if (stripes != null) {
+            for (int i = 0; i < STRIPES; i++) {
+                res += stripes.get(i * PADDING);
+            }
+        }
+        return res;
+    }
+
+
+    private static int stripe() {
+        final long id = Thread.currentThread().getId();
+          //fibonacci hashing, thread ids are sequential
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> SHIFT);
+    }
+
+
+    private static int stripes() {
+          //a power of two at least twice the number of cpus, but not more than 64
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        return Math.min(Integer.highestOneBit(cpus * 2 - 1) * 2, 64);
+    }
+}
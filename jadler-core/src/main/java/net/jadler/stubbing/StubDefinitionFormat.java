@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import net.jadler.exception.JadlerException;
+import net.jadler.predicates.BodyPredicate;
+import net.jadler.predicates.HeaderPatternPredicate;
+import net.jadler.predicates.HeaderPredicate;
+import net.jadler.predicates.HostPredicate;
+import net.jadler.predicates.LocalPortPredicate;
+import net.jadler.predicates.MethodPredicate;
+import net.jadler.predicates.ParameterPredicate;
+import net.jadler.predicates.QueryStringPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.URIPatternPredicate;
+import net.jadler.predicates.URIPredicate;
+
+
+/**
+ * Compact binary format of stub definitions (see {@link StubDefinitions}).
+ *
+ * The file starts with a header (magic number, format version, number of rules and the offset of the body
+ * section). The header is followed by the rules, every rule is a list of predicates (a type tag followed by
+ * the predicate arguments), the index of the response to be returned next (so a snapshot of running rules
+ * continues where the rules stopped) and a list of responses (status, timeout, encoding, headers and a reference
+ * to the body). The encoded response bodies are stored in the body section at the end of the file and referenced
+ * by their offset and length, so they're kept in the memory mapped file until they're sent for the first time.
+ * Strings are written as UTF-8 bytes preceded by their length (<tt>-1</tt> for <tt>null</tt>), all numbers
+ * are big endian.
+ */
+final class StubDefinitionFormat {
+
+    static final int MAGIC = 0x4A445344;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte METHOD = 1;
+    private static final byte URI = 2;
+    private static final byte URI_PATTERN = 3;
+    private static final byte QUERY_STRING = 4;
+    private static final byte HEADER = 5;
+    private static final byte HEADER_PATTERN = 6;
+    private static final byte PARAMETER = 7;
+    private static final byte BODY = 8;
+    private static final byte HOST = 9;
+    private static final byte LOCAL_PORT = 10;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+
+    private StubDefinitionFormat() {
+    }
+
+
+    /**
+     * @param file file to be checked
+     * @return true if the given file starts with the magic number of this format
+     * @throws IOException when the file cannot be read
+     */
+    static boolean isBinary(final File file) throws IOException {
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= HEADER_SIZE && raf.readInt() == MAGIC;
+        }
+    }
+
+
+    /**
+     * @param rule rule to be checked
+     * @return true if all predicates of the given rule can be stored (none of them has been created from
+     * a general hamcrest matcher)
+     */
+    static boolean isStorable(final StubRule rule) {
+        for (final RequestPredicate predicate : rule.getPredicates()) {
+            if (typeOf(predicate) == UNKNOWN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Writes the given rules.
+     * @param rules rules to be written
+     * @param file file to write the rules to (overwritten if it exists)
+     * @throws IOException when the file cannot be written
+     * @throws IllegalArgumentException if a rule contains a predicate which cannot be stored (a predicate
+     * created from a general hamcrest matcher)
+     */
+    static void write(final List<StubRule> rules, final File file) throws IOException {
+          //the rule section is written first to learn the offset of the body section
+        final ByteArrayOutputStream ruleBytes = new ByteArrayOutputStream(rules.size() * 128);
+        final DataOutputStream ruleOut = new DataOutputStream(ruleBytes);
+        final List<byte[]> bodies = new ArrayList<>();
+        long bodyOffset = 0;
+
+        for (final StubRule rule : rules) {
+            final List<RequestPredicate> predicates = rule.getPredicates();
+            ruleOut.writeInt(predicates.size());
+            for (final RequestPredicate predicate : predicates) {
+                writePredicate(ruleOut, predicate);
+            }
+
+            ruleOut.writeInt(rule.getResponsePointer());
+            final List<StubResponse> responses = rule.getStubResponses();
+            ruleOut.writeInt(responses.size());
+            for (final StubResponse response : responses) {
+                ruleOut.writeInt(response.getStatus());
+                ruleOut.writeLong(response.getTimeout());
+                writeString(ruleOut, response.getEncoding().name());
+                final List<String> headers = flatten(response);
+                ruleOut.writeInt(headers.size() / 2);
+                for (final String h : headers) {
+                    writeString(ruleOut, h);
+                }
+                final byte[] body = response.getEncodedBody();
+                ruleOut.writeLong(bodyOffset);
+                ruleOut.writeInt(body.length);
+                bodies.add(body);
+                bodyOffset += body.length;
+            }
+        }
+        ruleOut.flush();
+
+        try (final OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+            final DataOutputStream out = new DataOutputStream(fileOut);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rules.size());
+            out.writeLong(HEADER_SIZE + ruleBytes.size());
+            ruleBytes.writeTo(out);
+            for (final byte[] body : bodies) {
+                out.write(body);
+            }
+            out.flush();
+        }
+    }
+
+
+    /**
+     * Reads rules from the given file in one pass.
+     * @param file file to read the rules from
+     * @param mapBodies if true, the file is memory mapped and the response bodies stay in the mapped file until
+     * they're sent for the first time. Otherwise the file is read to the heap and the bodies are copied, so
+     * the file can be rewritten while the rules are being used.
+     * @return rules read from the given file in the order they've been written in
+     * @throws IOException when the file cannot be read
+     */
+    static List<StubRule> read(final File file, final boolean mapBodies) throws IOException {
+        final ByteBuffer buffer;
+        if (mapBodies) {
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+        }
+        else {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new JadlerException(file + " is not a stub definition file");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new JadlerException("Unsupported version " + version + " of the stub definition file " + file);
+        }
+        final int ruleCount = buffer.getInt();
+        final long bodySection = buffer.getLong();
+
+        final List<StubRule> res = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            final int predicateCount = buffer.getInt();
+            final List<RequestPredicate> predicates = new ArrayList<>(predicateCount);
+            for (int j = 0; j < predicateCount; j++) {
+                predicates.add(readPredicate(buffer));
+            }
+
+            final int responsePointer = buffer.getInt();
+            final int responseCount = buffer.getInt();
+            final List<StubResponse> responses = new ArrayList<>(responseCount);
+            for (int j = 0; j < responseCount; j++) {
+                final StubResponse response = new StubResponse();
+                response.setStatus(buffer.getInt());
+                response.setTimeout(buffer.getLong());
+                response.setEncoding(Charset.forName(readString(buffer)));
+                final int headerCount = buffer.getInt();
+                for (int k = 0; k < headerCount; k++) {
+                    response.addHeader(readString(buffer), readString(buffer));
+                }
+                final long offset = bodySection + buffer.getLong();
+                final ByteBuffer body = slice(buffer, offset, buffer.getInt());
+                if (mapBodies) {
+                    response.setMappedBody(body);
+                }
+                else {
+                      //a slice would keep the whole file on the heap
+                    final byte[] copy = new byte[body.remaining()];
+                    body.get(copy);
+                    response.setEncodedBody(copy);
+                }
+                responses.add(response);
+            }
+
+            final StubRule rule = StubRule.of(predicates, responses);
+            rule.setResponsePointer(responsePointer);
+            res.add(rule);
+        }
+        return res;
+    }
+
+
+    private static byte typeOf(final RequestPredicate predicate) {
+        if (predicate instanceof MethodPredicate) {
+            return METHOD;
+        }
+        if (predicate instanceof URIPredicate) {
+            return URI;
+        }
+        if (predicate instanceof URIPatternPredicate) {
+            return URI_PATTERN;
+        }
+        if (predicate instanceof QueryStringPredicate) {
+            return QUERY_STRING;
+        }
+        if (predicate instanceof HeaderPredicate) {
+            return HEADER;
+        }
+        if (predicate instanceof HeaderPatternPredicate) {
+            return HEADER_PATTERN;
+        }
+        if (predicate instanceof ParameterPredicate) {
+            return PARAMETER;
+        }
+        if (predicate instanceof BodyPredicate) {
+            return BODY;
+        }
+        if (predicate instanceof HostPredicate) {
+            return HOST;
+        }
+        if (predicate instanceof LocalPortPredicate) {
+            return LOCAL_PORT;
+        }
+        return UNKNOWN;
+    }
+
+
+    private static void writePredicate(final DataOutputStream out, final RequestPredicate predicate)
+            throws IOException {
+        final byte type = typeOf(predicate);
+        out.writeByte(type);
+        switch (type) {
+            case METHOD:
+                writeString(out, ((MethodPredicate) predicate).getMethod());
+                break;
+            case URI:
+                writeString(out, ((URIPredicate) predicate).getURI());
+                break;
+            case URI_PATTERN:
+                writeString(out, ((URIPatternPredicate) predicate).getRegex());
+                break;
+            case QUERY_STRING:
+                writeString(out, ((QueryStringPredicate) predicate).getQueryString());
+                break;
+            case HEADER:
+                writeString(out, ((HeaderPredicate) predicate).getName());
+                writeString(out, ((HeaderPredicate) predicate).getValue());
+                break;
+            case HEADER_PATTERN:
+                writeString(out, ((HeaderPatternPredicate) predicate).getHeaderName());
+                writeString(out, ((HeaderPatternPredicate) predicate).getRegex());
+                break;
+            case PARAMETER:
+                writeString(out, ((ParameterPredicate) predicate).getName());
+                writeString(out, ((ParameterPredicate) predicate).getValue());
+                break;
+            case BODY:
+                writeString(out, ((BodyPredicate) predicate).getBody());
+                break;
+            case HOST:
+                writeString(out, ((HostPredicate) predicate).getHost());
+                break;
+            case LOCAL_PORT:
+                out.writeInt(((LocalPortPredicate) predicate).getPort());
+                break;
+            default:
+                throw new IllegalArgumentException("The predicate '" + predicate + "' cannot be stored");
+        }
+    }
+
+
+    private static RequestPredicate readPredicate(final ByteBuffer buffer) {
+        final byte type = buffer.get();
+        switch (type) {
+            case METHOD:
+                return new MethodPredicate(readString(buffer));
+            case URI:
+                return new URIPredicate(readString(buffer));
+            case URI_PATTERN:
+                return new URIPatternPredicate(readString(buffer));
+            case QUERY_STRING:
+                return new QueryStringPredicate(readString(buffer));
+            case HEADER:
+                return new HeaderPredicate(readString(buffer), readString(buffer));
+            case HEADER_PATTERN:
+                return new HeaderPatternPredicate(readString(buffer), readString(buffer));
+            case PARAMETER:
+                return new ParameterPredicate(readString(buffer), readString(buffer));
+            case BODY:
+                return new BodyPredicate(readString(buffer));
+            case HOST:
+                return new HostPredicate(readString(buffer));
+            case LOCAL_PORT:
+                return new LocalPortPredicate(buffer.getInt());
+            default:
+                throw new JadlerException("Unknown predicate type " + type);
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static List<String> flatten(final StubResponse response) {
+        final List<String> res = new ArrayList<>();
+        for (final Iterator<Entry<String, Collection<String>>> it
+                = response.getHeaders().entrySet().iterator(); it.hasNext(); ) {
+            final Entry<String, Collection<String>> e = it.next();
+            for (final String value : e.getValue()) {
+                res.add(e.getKey());
+                res.add(value);
+            }
+        }
+        return res;
+    }
+
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final long offset, final int length) {
+        if (offset + length > buffer.limit()) {
+            throw new JadlerException("Invalid body reference in the stub definition file");
+        }
+        final ByteBuffer res = buffer.duplicate();
+        res.position((int) offset);
+        res.limit((int) offset + length);
+        return res.slice();
+    }
+
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        }
+        else {
+            final byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import net.jadler.exception.JadlerException;
+import net.jadler.predicates.BodyPredicate;
+import net.jadler.predicates.HeaderPatternPredicate;
+import net.jadler.predicates.HeaderPredicate;
+import net.jadler.predicates.HostPredicate;
+import net.jadler.predicates.LocalPortPredicate;
+import net.jadler.predicates.MethodPredicate;
+import net.jadler.predicates.ParameterPredicate;
+import net.jadler.predicates.QueryStringPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.URIPatternPredicate;
+import net.jadler.predicates.URIPredicate;
+import net.jadler.stubbing.JsonTokenizer.Token;
+import org.apache.commons.collections.MultiMap;
+import org.apache.commons.collections.map.MultiValueMap;
+import org.apache.commons.lang.Validate;
+
+
+/**
+ * Reads stub rules in bulk from a definition file, without using the fluent stubbing API. Use it to load
+ * thousands of stubs quickly, the rules are created directly from the parsed definitions.
+ *
+ * Two formats are supported. The JSON format is parsed in a streaming fashion (no document tree is built),
+ * it's an array of stub definitions:
+ * <pre>
+ * [
+ *   {
+ *     "request": {
+ *       "method": "GET",
+ *       "uri": "/accounts/1",
+ *       "queryString": "details=true",
+ *       "headers": {"Accept": "application/json", "X-Present": null},
+ *       "parameters": {"details": "true"}
+ *     },
+ *     "responses": [
+ *       {"status": 200, "headers": {"Content-Type": "application/json"}, "body": "{\"id\": 1}"},
+ *       {"status": 404, "encoding": "UTF-8", "timeout": 100}
+ *     ]
+ *   }
+ * ]
+ * </pre>
+ * Supported request keys are <tt>method</tt>, <tt>uri</tt>, <tt>uriPattern</tt>, <tt>queryString</tt>,
+ * <tt>body</tt>, <tt>host</tt>, <tt>localPort</tt>, <tt>headers</tt>, <tt>headerPatterns</tt> and
+ * <tt>parameters</tt> (header and parameter values can be arrays, <tt>null</tt> means just the presence is
+ * required). Every response starts with the default status, headers and encoding given to the constructor,
+ * the <tt>timeout</tt> is in milliseconds.
+ *
+ * The compact binary format is written by {@link #writeBinary(java.util.List, java.io.File)} (compile a JSON
+ * file once and load the binary file afterwards). The binary file is memory mapped and read in one pass,
+ * the response bodies are already encoded and stay in the mapped file until they're sent for the first time.
+ * The defaults are not applied to binary definitions, they've been applied when the rules were created.
+ *
+ * The binary format is also used for snapshots of running rules (see
+ * {@link #writeSnapshot(java.util.List, java.io.File)}), every rule keeps the index of the response to be
+ * returned next, so restored rules continue where the original ones stopped.
+ */
+public class StubDefinitions {
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+
+    private final Charset defaultEncoding;
+    private final int defaultStatus;
+    private final MultiMap defaultHeaders;
+
+
+    /**
+     * @param defaultEncoding default encoding of every stub response body
+     * @param defaultStatus default http status of every stub response
+     * @param defaultHeaders default response headers of every stub response
+     */
+    @SuppressWarnings("unchecked")
+    public StubDefinitions(final Charset defaultEncoding, final int defaultStatus, final MultiMap defaultHeaders) {
+        Validate.notNull(defaultEncoding, "defaultEncoding cannot be null");
+        Validate.isTrue(defaultStatus >= 0, "defaultStatus mustn't be negative");
+        Validate.notNull(defaultHeaders, "defaultHeaders cannot be null, use an empty map instead");
+
+        this.defaultEncoding = defaultEncoding;
+        this.defaultStatus = defaultStatus;
+        this.defaultHeaders = new MultiValueMap();
+        this.defaultHeaders.putAll(defaultHeaders);
+    }
+
+
+    /**
+     * Reads stub rules from the given file. The format (binary or JSON) is detected automatically. The response
+     * bodies of a binary file stay in the memory mapped file until they're sent for the first time, so the file
+     * must not be rewritten while the rules are being used (use {@link #load(java.io.File, boolean)} otherwise).
+     * @param file definition file (a JSON file must be UTF-8 encoded)
+     * @return rules in the order they've been defined in
+     * @throws JadlerException when the file cannot be read or it's not a valid definition file
+     */
+    public List<StubRule> load(final File file) {
+        return this.load(file, true);
+    }
+
+
+    /**
+     * Reads stub rules from the given file. The format (binary or JSON) is detected automatically.
+     * @param file definition file (a JSON file must be UTF-8 encoded)
+     * @param mapBodies if true, the response bodies of a binary file stay in the memory mapped file until they're
+     * sent for the first time. Rewriting the file in place truncates the mapping, serving such rules would fail
+     * then. Use <tt>false</tt> for files which can be rewritten while the rules are being used, the bodies are
+     * copied to the heap then.
+     * @return rules in the order they've been defined in
+     * @throws JadlerException when the file cannot be read or it's not a valid definition file
+     */
+    public List<StubRule> load(final File file, final boolean mapBodies) {
+        Validate.notNull(file, "file cannot be null");
+
+        try {
+            if (StubDefinitionFormat.isBinary(file)) {
+                try {
+                    return StubDefinitionFormat.read(file, mapBodies);
+                }
+                catch (final JadlerException e) {
+                    throw e;
+                }
+                catch (final RuntimeException e) {
+                      //a truncated (or half-written) file or an invalid value
+                    throw new JadlerException("Invalid stub definition file " + file, e);
+                }
+            }
+            try (final Reader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"), 64 * 1024)) {
+                return this.readJson(reader);
+            }
+        }
+        catch (final IOException e) {
+            throw new JadlerException("Cannot read the stub definitions from " + file, e);
+        }
+    }
+
+
+    /**
+     * Reads stub rules from the given JSON document.
+     * @param reader reader of the JSON document
+     * @return rules in the order they've been defined in
+     * @throws JadlerException when the document cannot be read or it's not a valid definition document
+     */
+    public List<StubRule> readJson(final Reader reader) {
+        Validate.notNull(reader, "reader cannot be null");
+
+        final JsonTokenizer json = new JsonTokenizer(reader);
+        final List<StubRule> res = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            try {
+                res.add(this.readRule(json));
+            }
+            catch (final IllegalArgumentException e) {
+                  //an unknown charset, an invalid regex or a value rejected by a predicate or a response
+                throw json.syntaxError(e.getMessage(), e);
+            }
+        }
+        json.endArray();
+        if (json.peek() != Token.END) {
+            throw json.syntaxError("end of the document expected");
+        }
+        return res;
+    }
+
+
+    /**
+     * Writes the given rules to a file in the compact binary format.
+     * @param rules rules to be written
+     * @param file file to write the rules to (overwritten if it exists)
+     * @throws JadlerException when the file cannot be written
+     * @throws IllegalArgumentException if a rule contains a predicate created from a general hamcrest matcher
+     * (such predicates cannot be stored)
+     */
+    public static void writeBinary(final List<StubRule> rules, final File file) {
+        Validate.notNull(rules, "rules cannot be null");
+        Validate.notNull(file, "file cannot be null");
+
+        try {
+            StubDefinitionFormat.write(rules, file);
+        }
+        catch (final IOException e) {
+            throw new JadlerException("Cannot write the stub definitions to " + file, e);
+        }
+    }
+
+
+    /**
+     * Writes a snapshot of the given rules to a file in the compact binary format. Contrary to
+     * {@link #writeBinary(java.util.List, java.io.File)}, rules containing a predicate created from a general
+     * hamcrest matcher (which cannot be stored) are skipped.
+     * @param rules rules to be written
+     * @param file file to write the rules to (overwritten if it exists)
+     * @return number of rules written
+     * @throws JadlerException when the file cannot be written
+     */
+    public static int writeSnapshot(final List<StubRule> rules, final File file) {
+        Validate.notNull(rules, "rules cannot be null");
+
+        final List<StubRule> storable = new ArrayList<>(rules.size());
+        for (final StubRule rule : rules) {
+            if (StubDefinitionFormat.isStorable(rule)) {
+                storable.add(rule);
+            }
+        }
+        writeBinary(storable, file);
+        return storable.size();
+    }
+
+
+    private StubRule readRule(final JsonTokenizer json) {
+        List<RequestPredicate> predicates = new ArrayList<>();
+        final List<StubResponse> responses = new ArrayList<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if ("request".equals(name)) {
+                predicates = this.readRequest(json);
+            }
+            else if ("responses".equals(name)) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    responses.add(this.readResponse(json));
+                }
+                json.endArray();
+            }
+            else {
+                throw json.syntaxError("unknown stub key " + name);
+            }
+        }
+        json.endObject();
+
+        if (responses.isEmpty()) {
+            throw json.syntaxError("at least one response must be defined");
+        }
+        return StubRule.of(predicates, responses);
+    }
+
+
+    private List<RequestPredicate> readRequest(final JsonTokenizer json) {
+        final List<RequestPredicate> res = new ArrayList<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            switch (name) {
+                case "method":
+                    res.add(new MethodPredicate(json.nextString()));
+                    break;
+                case "uri":
+                    res.add(new URIPredicate(json.nextString()));
+                    break;
+                case "uriPattern":
+                    res.add(new URIPatternPredicate(json.nextString()));
+                    break;
+                case "queryString":
+                    res.add(new QueryStringPredicate(json.nextString()));
+                    break;
+                case "body":
+                    res.add(new BodyPredicate(json.nextString()));
+                    break;
+                case "host":
+                    res.add(new HostPredicate(json.nextString()));
+                    break;
+                case "localPort":
+                    res.add(new LocalPortPredicate(json.nextInt()));
+                    break;
+                case "headers":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        final String header = json.nextName();
+                        for (final String value : readValues(json)) {
+                            res.add(new HeaderPredicate(header, value));
+                        }
+                    }
+                    json.endObject();
+                    break;
+                case "headerPatterns":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        final String header = json.nextName();
+                        for (final String regex : readValues(json)) {
+                            res.add(new HeaderPatternPredicate(header, regex));
+                        }
+                    }
+                    json.endObject();
+                    break;
+                case "parameters":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        final String parameter = json.nextName();
+                        for (final String value : readValues(json)) {
+                            res.add(new ParameterPredicate(parameter, value));
+                        }
+                    }
+                    json.endObject();
+                    break;
+                default:
+                    throw json.syntaxError("unknown request key " + name);
+            }
+        }
+        json.endObject();
+        return res;
+    }
+
+
+    private StubResponse readResponse(final JsonTokenizer json) {
+        final StubResponse res = new StubResponse();
+        res.addHeaders(this.defaultHeaders);
+        res.setStatus(this.defaultStatus);
+        res.setEncoding(this.defaultEncoding);
+        res.setBody("");
+
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            switch (name) {
+                case "status":
+                    res.setStatus(json.nextInt());
+                    break;
+                case "body":
+                    res.setBody(json.nextString());
+                    break;
+                case "encoding":
+                    res.setEncoding(Charset.forName(json.nextString()));
+                    break;
+                case "timeout":
+                    res.setTimeout(json.nextLong());
+                    break;
+                case "headers":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        final String header = json.nextName();
+                        for (final String value : readValues(json)) {
+                            if (CONTENT_TYPE_HEADER.equalsIgnoreCase(header)) {
+                                res.setHeaderCaseInsensitive(header, value);
+                            }
+                            else {
+                                res.addHeader(header, value);
+                            }
+                        }
+                    }
+                    json.endObject();
+                    break;
+                default:
+                    throw json.syntaxError("unknown response key " + name);
+            }
+        }
+        json.endObject();
+        return res;
+    }
+
+
+    /**
+     * Reads a single (possibly null) string value or an array of string values.
+     */
+    private static List<String> readValues(final JsonTokenizer json) {
+        final List<String> res = new ArrayList<>(1);
+        if (json.peek() == Token.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                res.add(json.nextString());
+            }
+            json.endArray();
+        }
+        else {
+            res.add(json.nextString());
+        }
+        return res;
+    }
+}
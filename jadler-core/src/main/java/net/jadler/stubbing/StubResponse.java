@@ -4,6 +4,7 @@
  */
 package net.jadler.stubbing;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Iterator;
@@ -27,6 +28,10 @@ public class StubResponse {
     private Charset encoding;
     private final MultiMap headers;
     private String body;
+      //the body encoded using the encoding, created lazily and shared by all threads sending this response
+    private volatile byte[] encodedBody;
+      //region of a memory mapped stub definition file containing the encoded body, copied on the first use
+    private volatile ByteBuffer mappedBody;
     private int status;
     private long timeout;
 
@@ -52,6 +57,10 @@ public class StubResponse {
      */
     public void setEncoding(final Charset encoding) {
         this.encoding = encoding;
+          //an already encoded body is kept as is
+        if (this.body != null) {
+            this.encodedBody = null;
+        }
     }
 
     
@@ -75,6 +84,10 @@ public class StubResponse {
      * @return stub response body
      */
     public String getBody() {
+        if (this.body == null && (this.encodedBody != null || this.mappedBody != null)) {
+            this.body = new String(this.getEncodedBody(),
+                    this.encoding != null ? this.encoding : Charset.defaultCharset());
+        }
         return this.body;
     }
     
@@ -85,6 +98,54 @@ public class StubResponse {
     public void setBody(final String body) {
         Validate.notNull(body, "body cannot be null, use an empty string instead.");
         this.body = body;
+        this.encodedBody = null;
+        this.mappedBody = null;
+    }
+    
+    
+    /**
+     * Sets the stub response body already encoded (a binary body or a body recorded from a real service).
+     * The body is sent as is, it's not encoded using {@link #getEncoding()}.
+     * @param encodedBody encoded stub response body (cannot be null)
+     */
+    public void setEncodedBody(final byte[] encodedBody) {
+        Validate.notNull(encodedBody, "encodedBody cannot be null, use an empty array instead.");
+        this.body = null;
+        this.encodedBody = encodedBody.clone();
+        this.mappedBody = null;
+    }
+    
+    
+    /**
+     * Sets the stub response body already encoded as a region of a memory mapped file. The region is copied
+     * to the heap once the body is needed for the first time.
+     * @param mappedBody region of a mapped file containing the encoded body
+     */
+    void setMappedBody(final ByteBuffer mappedBody) {
+        this.body = null;
+        this.encodedBody = null;
+        this.mappedBody = mappedBody;
+    }
+    
+    
+    /**
+     * @return the stub response body encoded using {@link #getEncoding()}. The body is encoded just once,
+     * the same array is returned by all subsequent calls, so it must not be modified.
+     */
+    public byte[] getEncodedBody() {
+        byte[] res = this.encodedBody;
+        if (res == null) {
+            final ByteBuffer mapped = this.mappedBody;
+            if (mapped != null) {
+                res = new byte[mapped.remaining()];
+                mapped.duplicate().get(res);
+            }
+            else {
+                res = this.body == null || this.body.isEmpty() ? new byte[0] : this.body.getBytes(this.encoding);
+            }
+            this.encodedBody = res;
+        }
+        return res;
     }
     
     
@@ -166,7 +227,7 @@ public class StubResponse {
                 .append(", status=")
                 .append(this.status)
                 .append(", body=")
-                .append(isBlank(this.body) ? "<empty>" : abbreviate(body, 13))
+                .append(isBlank(this.getBody()) ? "<empty>" : abbreviate(this.getBody(), 13))
                 .append(", headers=(");
         
         for (@SuppressWarnings("unchecked")final Iterator<Entry<String, Collection<String>>> it
@@ -6,22 +6,24 @@ package net.jadler.stubbing;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
+import net.jadler.predicates.MatcherPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.RequestView;
 import org.apache.commons.lang.Validate;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.StringDescription; 
 
-import static org.hamcrest.Matchers.*;
-
 
 /**
  * A stub rule is a <i>WHEN</i>-<i>THEN</i> pair (when a http request with specific properties arrives, then respond
  * with a defined http response).
- * The <i>WHEN<i> part is a list of predicates (in form of Hamcrest matchers) applied to a request. All of these
- * matchers must be evaluated to <tt>true</tt> in order to apply the <i>THEN</i> part.
+ * The <i>WHEN<i> part is a list of predicates (in form of {@link RequestPredicate} instances) applied to a request.
+ * All of these predicates must be evaluated to <tt>true</tt> in order to apply the <i>THEN</i> part.
  * 
  * The <i>THEN</i> part if defined by a non-empty list of stub response definition (in form of {@link StubResponse}
  * instances). These responses are returned in the same order as were defined. (if there is no new stub response 
@@ -33,8 +35,9 @@ import static org.hamcrest.Matchers.*;
  */
 public class StubRule {
 
-    private final Collection<Matcher<? super HttpServletRequest>> predicates;
+    private final RequestPredicate[] predicates;
     private final List<StubResponse> stubResponses;
+    private final RuleMetrics metrics = new RuleMetrics();
     private int responsePointer = 0;
 
     
@@ -45,12 +48,31 @@ public class StubRule {
      */
     public StubRule(final Collection<Matcher<? super HttpServletRequest>> predicates,
             final List<StubResponse> stubResponses) {
-        Validate.notNull(predicates, "predicates cannot be null, use an empty list instead");
-        this.predicates = new ArrayList<>(predicates);
+        this(adapt(predicates), stubResponses);
+    }
+    
+    
+    private StubRule(final RequestPredicate[] predicates, final List<StubResponse> stubResponses) {
+        this.predicates = predicates;
         
         Validate.notEmpty(stubResponses, "at least one stub response must be defined");
         this.stubResponses = new ArrayList<>(stubResponses);
     }
+    
+    
+    /**
+     * @param predicates list of predicates. Cannot be null, however can be empty (which means this rule would
+     * be matched by every request)
+     * @param stubResponses list of stub response definitions. Must contain at least one stub response.
+     * @return new stub rule
+     */
+    public static StubRule of(final Collection<? extends RequestPredicate> predicates,
+            final List<StubResponse> stubResponses) {
+        Validate.notNull(predicates, "predicates cannot be null, use an empty list instead");
+        Validate.noNullElements(predicates, "predicates cannot contain null");
+        
+        return new StubRule(predicates.toArray(new RequestPredicate[predicates.size()]), stubResponses);
+    }
 
     
     /**
@@ -59,7 +81,22 @@ public class StubRule {
      * by the given request.
      */
     public boolean matchedBy(final HttpServletRequest request) {
-        return allOf(this.predicates).matches(request);
+        return this.matchedBy(RequestView.of(request));
+    }
+    
+    
+    /**
+     * @param request a view of an http request to be checked whether it matches this stub rule.
+     * @return true if and only if all predicates defined in this rule were evaluated to <tt>true</tt>
+     * by the given request.
+     */
+    public boolean matchedBy(final RequestView request) {
+        for (int i = 0; i < this.predicates.length; i++) {
+            if (!this.predicates[i].matches(request)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     
@@ -77,6 +114,14 @@ public class StubRule {
     }
     
     
+    /**
+     * @return metrics of this rule (number of matching requests, time spent by matching and writing responses)
+     */
+    public RuleMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    
     /**
      * Returns a reason why the given request doesn't match this rule. This method should be called if
      * and only if {@link  #matchedBy(javax.servlet.http.HttpServletRequest)} would returned <tt>false</tt>.
@@ -86,21 +131,80 @@ public class StubRule {
      */
     public String describeMismatch(final HttpServletRequest request) {
         final Description desc = new StringDescription();
-        
-        boolean first = true;
-        for (final Iterator<Matcher<? super HttpServletRequest>> it = this.predicates.iterator(); it.hasNext();) {
-            final Matcher<? super HttpServletRequest> m = it.next();
-            
-            if (!m.matches(request)) {
-                if (!first) {
-                    desc.appendText(" AND\n");
+        this.countMismatches(RequestView.of(request), desc);
+        return desc.toString();
+    }
+    
+
+    /**
+     * package private method used by the rule set to find the closest rules for an unmatched request
+     * @param request a view of an http request
+     * @param desc description the mismatch reason is appended to (see {@link #describeMismatch(HttpServletRequest)})
+     * or <tt>null</tt> if the reason is not needed
+     * @return number of predicates of this rule not matched by the given request
+     */
+    int countMismatches(final RequestView request, final Description desc) {
+        int res = 0;
+        for (int i = 0; i < this.predicates.length; i++) {
+            if (!this.predicates[i].matches(request)) {
+                if (desc != null) {
+                    if (res > 0) {
+                        desc.appendText(" AND\n");
+                    }
+                    desc.appendText("  ");
+                    this.predicates[i].describeMismatch(request, desc);
                 }
-                desc.appendText("  ");
-                m.describeMismatch(request, desc);
-                first = false;
+                res++;
             }
         }
-        return desc.toString();
+        return res;
+    }
+    
+    
+    /**
+     * package private getter used by the rule set
+     * @return number of predicates of this rule
+     */
+    int getPredicateCount() {
+        return this.predicates.length;
+    }
+    
+    
+    /**
+     * package private getter used by the rule set compiler
+     * @return predicates of this rule
+     */
+    List<RequestPredicate> getPredicates() {
+        return Collections.unmodifiableList(Arrays.asList(this.predicates));
+    }
+    
+    
+    /**
+     * package private getter used by the stub definition writer
+     * @return index of the stub response to be returned next
+     */
+    synchronized int getResponsePointer() {
+        return this.responsePointer;
+    }
+    
+    
+    /**
+     * package private setter used by the stub definition reader to restore a rule from a snapshot
+     * @param responsePointer index of the stub response to be returned next
+     */
+    synchronized void setResponsePointer(final int responsePointer) {
+        Validate.isTrue(responsePointer >= 0 && responsePointer < this.stubResponses.size(),
+                "responsePointer is out of range");
+        this.responsePointer = responsePointer;
+    }
+    
+    
+    /**
+     * package private getter used by the stub definition writer
+     * @return stub responses of this rule
+     */
+    List<StubResponse> getStubResponses() {
+        return Collections.unmodifiableList(this.stubResponses);
     }
     
 
@@ -108,10 +212,10 @@ public class StubRule {
     public String toString() {
         final Description desc = new StringDescription();
         desc.appendText("WHEN request (\n");
-        for(final Iterator<Matcher<? super HttpServletRequest>> it = this.predicates.iterator(); it.hasNext();) {
+        for (int i = 0; i < this.predicates.length; i++) {
             desc.appendText("  ");
-            desc.appendDescriptionOf(it.next());
-            if (it.hasNext()) {
+            desc.appendDescriptionOf(this.predicates[i]);
+            if (i < this.predicates.length - 1) {
                 desc.appendText(" AND\n");
             }
         }
@@ -124,4 +228,16 @@ public class StubRule {
         
         return desc.toString();
     }
-}
\ No newline at end of file
+    
+    
+    private static RequestPredicate[] adapt(final Collection<Matcher<? super HttpServletRequest>> matchers) {
+        Validate.notNull(matchers, "predicates cannot be null, use an empty list instead");
+        
+        final RequestPredicate[] res = new RequestPredicate[matchers.size()];
+        int i = 0;
+        for (final Matcher<? super HttpServletRequest> m : matchers) {
+            res[i++] = new MatcherPredicate(m);
+        }
+        return res;
+    }
+}
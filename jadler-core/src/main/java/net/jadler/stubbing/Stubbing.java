@@ -9,23 +9,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.IOUtils;
-import org.hamcrest.Matcher;
-import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import net.jadler.AbstractRequestMatching;
 import net.jadler.Jadler;
 import org.apache.commons.collections.MultiMap;
 import org.apache.commons.collections.map.MultiValueMap;
-import org.apache.commons.lang.Validate;
 
-import static org.hamcrest.Matchers.*;
-import static net.jadler.matchers.QueryStringRequestMatcher.requestQueryString;
-import static net.jadler.matchers.MethodRequestMatcher.requestMethod;
-import static net.jadler.matchers.BodyRequestMatcher.requestBody;
-import static net.jadler.matchers.URIRequestMatcher.requestURI;
-import static net.jadler.matchers.HeaderRequestMatcher.requestHeader;
-import static net.jadler.matchers.ParameterRequestMatcher.requestParameter;
+import net.jadler.predicates.RequestPredicate;
 
 
 /**
@@ -33,11 +25,11 @@ import static net.jadler.matchers.ParameterRequestMatcher.requestParameter;
  * of this class on your own, please see {@link Jadler#onRequest()}
  * for more information on creating instances of this class.
  */
-public class Stubbing implements RequestStubbing, ResponseStubbing {
+public class Stubbing extends AbstractRequestMatching<RequestStubbing>
+        implements RequestStubbing, ResponseStubbing {
     
     private static final String CONTENT_TYPE_HEADER = "Content-Type";
 
-    private final List<Matcher<? super HttpServletRequest>> predicates;
     private final List<StubResponse> stubResponses;
     private final MultiMap defaultHeaders;
     private final int defaultStatus;
@@ -53,7 +45,6 @@ public class Stubbing implements RequestStubbing, ResponseStubbing {
     @SuppressWarnings("unchecked")
     Stubbing(final Charset defaultEncoding, final int defaultStatus, final MultiMap defaultHeaders) {
         
-        this.predicates = new ArrayList<>();
         this.stubResponses = new ArrayList<>();
         this.defaultHeaders = new MultiValueMap();
         this.defaultHeaders.putAll(defaultHeaders);
@@ -62,172 +53,6 @@ public class Stubbing implements RequestStubbing, ResponseStubbing {
     }
 
     
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public RequestStubbing that(final Matcher<? super HttpServletRequest> predicate) {
-        Validate.notNull(predicate, "predicate cannot be null");
-        
-        this.predicates.add(predicate);
-        return this;
-    }
-    
-    
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public RequestStubbing havingMethodEqualTo(final String method) {
-        return havingMethod(equalToIgnoringCase(method));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingMethod(final Matcher<? super String> predicate) {
-        return that(requestMethod(predicate));
-    }
-    
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingBodyEqualTo(final String requestBody) {
-        return havingBody(equalTo(requestBody));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingBody(final Matcher<? super String> predicate) {
-        return that(requestBody(predicate));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingURIEqualTo(final String uri) {
-        Validate.isTrue(!uri.contains("?"), "URI must not contain query parameters.");
-        return havingURI(equalTo(uri));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingURI(final Matcher<? super String> predicate) {
-        return that(requestURI(predicate));
-    }
-    
-    
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingQueryStringEqualTo(final String queryString) {
-        return havingQueryString(equalTo(queryString));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingQueryString(final Matcher<? super String> predicate) {
-        return that(requestQueryString(predicate));
-    }
-    
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingParameterEqualTo(final String name, final String value) {
-        return havingParameter(name, hasItem(value));
-    }
-    
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingParameter(final String name, final Matcher<? super List<String>> predicate) {
-        return that(requestParameter(name, predicate));
-    }
-    
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingParameter(final String name) {
-        return havingParameter(name, notNullValue());
-    }
-    
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingParameters(String... names) {
-        
-        for (final String name: names) {
-            havingParameter(name);
-        }
-        
-        return this;
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingHeaderEqualTo(final String name, final String value) {
-        return havingHeader(name, hasItem(value));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingHeader(final String name, final Matcher<? super List<String>> predicate) {
-        return that(requestHeader(name, predicate));
-    }
-
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingHeader(final String name) {
-        return havingHeader(name, notNullValue());
-    }
-    
-
-    /**
-     * {@inheritDoc}
-     */    
-    @Override
-    public RequestStubbing havingHeaders(String... names) {
-        for (final String name: names) {
-            havingHeader(name);
-        }
-
-        return this;
-    }
-
-
     /**
      * {@inheritDoc}
      */
@@ -343,7 +168,7 @@ public class Stubbing implements RequestStubbing, ResponseStubbing {
      * @return {@link StubRule} instance configured using values from this stubbing
      */
     public StubRule createRule() {
-        return new StubRule(predicates, stubResponses);
+        return StubRule.of(predicates, stubResponses);
     }
 
     
@@ -351,7 +176,7 @@ public class Stubbing implements RequestStubbing, ResponseStubbing {
      * package private getter for testing purposes
      * @return all registered predicates
      */
-    List<Matcher<? super HttpServletRequest>> getPredicates() {
+    List<RequestPredicate> getPredicates() {
         return new ArrayList<>(this.predicates);
     }
     
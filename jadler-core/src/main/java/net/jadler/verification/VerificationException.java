@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.verification;
+
+import net.jadler.exception.JadlerException;
+
+/**
+ * Thrown when a verification of the received requests fails, see {@link Verifying}.
+ */
+public class VerificationException extends JadlerException {
+
+    /**
+     * {@inheritDoc}
+     */
+    public VerificationException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.verification;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.jadler.AbstractRequestMatching;
+import net.jadler.Jadler;
+import net.jadler.journal.RecordedRequest;
+import net.jadler.journal.RequestJournal;
+import net.jadler.predicates.MethodPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.RequestView;
+import net.jadler.predicates.URIPredicate;
+import org.apache.commons.lang.Validate;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+
+import static org.hamcrest.Matchers.equalTo;
+
+
+/**
+ * Verification of the requests received by the stub server. You shouldn't create instances of this class
+ * on your own, please see {@link Jadler#verifyThatRequest()} instead.
+ *
+ * The requests are predicated using the same vocabulary as stub rules (see {@link net.jadler.RequestMatching})
+ * and looked up in the request journal of the stub server (see {@link RequestJournal}). The method and URI
+ * predicates defined using {@link #havingMethodEqualTo(String)} and {@link #havingURIEqualTo(String)}
+ * and the matched rule predicate are resolved using the journal indexes, the remaining predicates are evaluated
+ * for the requests found in the indexes only. Prefer these predicates when verifying a large number of requests.
+ *
+ * Requests are verified against the journal content, so the verification fails with
+ * an {@link IllegalStateException} once the journal has evicted any request (its counts wouldn't be reliable).
+ */
+public class Verifying extends AbstractRequestMatching<Verifying> {
+
+    private final RequestJournal journal;
+    private Integer matchedRuleId;
+
+
+    /**
+     * @param journal journal of the requests to be verified
+     */
+    public Verifying(final RequestJournal journal) {
+        Validate.notNull(journal, "journal cannot be null");
+        this.journal = journal;
+    }
+
+
+    /**
+     * Adds a matched rule predicate. The request must have matched the given stub rule.
+     * @param ruleId id of the rule (the index of the rule in the order of definition) or <tt>-1</tt>
+     * for requests which didn't match any rule
+     * @return this ongoing verification
+     */
+    public Verifying havingMatchedRuleEqualTo(final int ruleId) {
+        Validate.isTrue(ruleId >= -1, "ruleId must be at least -1");
+        this.matchedRuleId = ruleId;
+        return this;
+    }
+
+
+    /**
+     * @return all recorded requests fulfilling the predicates of this verification
+     * @throws IllegalStateException if the request journal has evicted any request
+     */
+    public List<RecordedRequest> findRequests() {
+        this.checkNoEvictions();
+
+        final List<RecordedRequest> candidates = this.journal.findRequests(
+                this.indexedMethod(), this.indexedURI(), this.matchedRuleId);
+
+        final List<RecordedRequest> res = new ArrayList<>(candidates.size());
+        for (final RecordedRequest req : candidates) {
+            if (this.matches(RequestView.of(req.toHttpServletRequest()))) {
+                res.add(req);
+            }
+        }
+        return res;
+    }
+
+
+    /**
+     * Checks the number of received requests fulfilling the predicates of this verification.
+     * @param predicate predicate the number of requests must fulfill
+     * @throws VerificationException if the number of requests doesn't fulfill the given predicate
+     * @throws IllegalStateException if the request journal has evicted any request
+     */
+    public void receivedTimes(final Matcher<? super Integer> predicate) {
+        Validate.notNull(predicate, "predicate cannot be null");
+
+        final int count = this.findRequests().size();
+        if (!predicate.matches(count)) {
+            final Description desc = new StringDescription();
+            desc.appendText("The number of http requests was expected to be ");
+            desc.appendDescriptionOf(predicate);
+            desc.appendText(", but was " + count + ". Requests:\n");
+            this.describePredicates(desc);
+            throw new VerificationException(desc.toString());
+        }
+    }
+
+
+    /**
+     * Checks the number of received requests fulfilling the predicates of this verification.
+     * @param count expected number of requests
+     * @throws VerificationException if the number of requests differs
+     * @throws IllegalStateException if the request journal has evicted any request
+     */
+    public void receivedTimes(final int count) {
+        Validate.isTrue(count >= 0, "count cannot be negative");
+        this.receivedTimes(equalTo(count));
+    }
+
+
+    /**
+     * Checks exactly one received request fulfills the predicates of this verification.
+     * @throws VerificationException if the number of requests isn't one
+     * @throws IllegalStateException if the request journal has evicted any request
+     */
+    public void receivedOnce() {
+        this.receivedTimes(1);
+    }
+
+
+    /**
+     * Checks no received request fulfills the predicates of this verification.
+     * @throws VerificationException if there is such a request
+     * @throws IllegalStateException if the request journal has evicted any request
+     */
+    public void receivedNever() {
+        this.receivedTimes(0);
+    }
+
+
+    private boolean matches(final RequestView view) {
+        for (final RequestPredicate predicate : this.predicates) {
+            if (!predicate.matches(view)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private String indexedMethod() {
+        for (final RequestPredicate predicate : this.predicates) {
+            if (predicate instanceof MethodPredicate) {
+                return ((MethodPredicate) predicate).getMethod();
+            }
+        }
+        return null;
+    }
+
+
+    private String indexedURI() {
+        for (final RequestPredicate predicate : this.predicates) {
+            if (predicate instanceof URIPredicate) {
+                return ((URIPredicate) predicate).getURI();
+            }
+        }
+        return null;
+    }
+
+
+    private void checkNoEvictions() {
+        final long evicted = this.journal.getEvictedCount();
+        if (evicted > 0) {
+            throw new IllegalStateException("The request journal (capacity " + this.journal.getCapacity()
+                    + ") has evicted " + evicted + " request(s), the verification wouldn't be reliable. "
+                    + "Increase the journal capacity using recordsRequests(capacity, evictionPolicy).");
+        }
+    }
+
+
+    private void describePredicates(final Description desc) {
+        if (this.matchedRuleId != null) {
+            desc.appendText("  matched rule is " + this.matchedRuleId);
+            if (!this.predicates.isEmpty()) {
+                desc.appendText(" AND\n");
+            }
+        }
+        for (int i = 0; i < this.predicates.size(); i++) {
+            desc.appendText("  ");
+            desc.appendDescriptionOf(this.predicates.get(i));
+            if (i < this.predicates.size() - 1) {
+                desc.appendText(" AND\n");
+            }
+        }
+    }
+}
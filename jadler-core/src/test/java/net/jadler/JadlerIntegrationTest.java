@@ -84,6 +84,41 @@ public class JadlerIntegrationTest {
     }
     
     
+    @Test
+    public void verifyThatRequestReceived() throws Exception {
+        onRequest()
+            .havingURIEqualTo("/verified")
+        .respond()
+            .withStatus(201);
+        
+        for (int i = 0; i < 3; i++) {
+            final PostMethod method = new PostMethod("http://localhost:" + PORT + "/verified");
+            method.setRequestEntity(new StringRequestEntity("body" + i, null, null));
+            client.executeMethod(method);
+        }
+        client.executeMethod(new GetMethod("http://localhost:" + PORT + "/unknown"));
+        
+        verifyThatRequest()
+            .havingMethodEqualTo("post")
+            .havingURIEqualTo("/verified")
+        .receivedTimes(3);
+        
+        verifyThatRequest()
+            .havingURIEqualTo("/verified")
+            .havingBodyEqualTo("body1")
+        .receivedOnce();
+        
+        verifyThatRequest()
+            .havingMatchedRuleEqualTo(-1)
+            .havingMethodEqualTo("GET")
+        .receivedOnce();
+        
+        verifyThatRequest()
+            .havingMethodEqualTo("DELETE")
+        .receivedNever();
+    }
+    
+    
     @Test
     public void havingEmptyBody() throws Exception {
         onRequest()
@@ -164,6 +199,33 @@ public class JadlerIntegrationTest {
     }
     
     
+    @Test
+    public void havingHeaderMatching() throws Exception {
+        onRequest()
+            .havingHeaderMatching("hdr1", "h1v\\d")
+            .havingHeaderMatching("HDR2", "h2v[2-9]")
+        .respond()
+            .withStatus(201);
+        
+        onRequest()
+            .havingHeaderMatching("hdr1", "h1v.*")
+        .respond()
+            .withStatus(202);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + PORT);
+        method.addRequestHeader("hdr1", "h1v1");
+        method.addRequestHeader("hdr2", "h2v1");
+        method.addRequestHeader("hdr2", "h2v2");
+        
+        assertThat(client.executeMethod(method), is(201));
+        
+        final GetMethod method2 = new GetMethod("http://localhost:" + PORT);
+        method2.addRequestHeader("hdr1", "h1vx");
+        
+        assertThat(client.executeMethod(method2), is(202));
+    }
+    
+    
     @Test
     public void havingMethod() throws Exception {
         onRequest()
@@ -279,6 +341,24 @@ public class JadlerIntegrationTest {
     }
     
     
+    @Test
+    public void havingURIMatching() throws Exception {
+        onRequest()
+            .havingURIMatching("/a/[0-9]+")
+        .respond()
+            .withStatus(201);
+        
+        onRequest()
+            .havingURIMatching("/a/.*")
+        .respond()
+            .withStatus(202);
+        
+        assertThat(client.executeMethod(new GetMethod("http://localhost:" + PORT + "/a/123")), is(201));
+        assertThat(client.executeMethod(new GetMethod("http://localhost:" + PORT + "/a/b")), is(202));
+        assertThat(client.executeMethod(new GetMethod("http://localhost:" + PORT + "/b")), is(500));
+    }
+    
+    
     @Test
     public void havingURI() throws Exception {
         onRequest()
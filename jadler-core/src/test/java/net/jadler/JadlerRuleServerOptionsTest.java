@@ -0,0 +1,45 @@
+package net.jadler;
+
+import net.jadler.server.jetty.JettyServerTuning;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests of the server related options of {@link JadlerRule}. Kept apart from {@link JadlerRuleTest} since every
+ * rule starts its own server for each test of the class.
+ */
+public class JadlerRuleServerOptionsTest {
+
+    @Rule
+    public JadlerRule tunedJadlerRule = new JadlerRule.Builder().withServerTuning(new JettyServerTuning()
+            .withAcceptors(2)
+            .withMaxThreads(32)
+            .withAcceptQueueSize(1024)).createJadlerRule();
+
+
+    @Rule
+    public JadlerRule sharedJadlerRule = new JadlerRule.Builder().withSharedServer().createJadlerRule();
+
+
+    @Test
+    public void mockersStartedInTestMethod() {
+        checkMockerListeningOnPort(tunedJadlerRule);
+        checkMockerListeningOnPort(sharedJadlerRule);
+    }
+
+
+    private void checkMockerListeningOnPort(JadlerRule jadler) {
+        try {
+            new ServerSocket(jadler.getMockerPort());
+            fail("HttpMocker is not listening on port=" + jadler.getMockerPort());
+        } catch (IOException e) {
+            // port is not free -> it seems that jadler is listening on proper port
+        }
+    }
+}
@@ -60,6 +60,13 @@ public class JadlerRuleTest {
     }
 
 
+    @Test
+    public void randomPortIsBoundPort() {
+        assertThat(jadlerRule.getMockerPort() > 0, is(true));
+        checkMockerListeningOnPort(jadlerRule);
+    }
+
+
     @Test
     public void explicitPortMockerStartedInTestMethod() {
         checkMockerListeningOnPort(jadlerRuleForExplicitPort);
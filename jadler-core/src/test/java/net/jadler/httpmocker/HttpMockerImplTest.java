@@ -4,21 +4,32 @@
  */
 package net.jadler.httpmocker;
 
+import java.io.File;
 import java.nio.charset.Charset;
+import net.jadler.journal.RecordedRequest;
+import net.jadler.journal.RequestJournal;
+import net.jadler.journal.RequestJournal.EvictionPolicy;
+import net.jadler.stubbing.RuleMetrics;
+import net.jadler.stubbing.RuleStatistics;
 import net.jadler.stubbing.Stubbing;
 import net.jadler.stubbing.StubRule;
 import net.jadler.stubbing.StubResponse;
 import net.jadler.stubbing.StubbingFactory;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.StubHttpServer;
 import net.jadler.server.jetty.JettyStubHttpServer;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import net.jadler.exception.JadlerException;
 import org.apache.commons.collections.MultiMap;
 import org.apache.commons.collections.map.MultiValueMap;
 import org.hamcrest.Matcher;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.mock.web.MockHttpServletRequest;
 
 import static org.junit.Assert.assertThat;
@@ -33,9 +44,14 @@ import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
+import static net.jadler.matchers.URIRequestMatcher.requestURI;
+import static org.hamcrest.Matchers.anything;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 
 
@@ -48,6 +64,9 @@ public class HttpMockerImplTest {
     private static final String HEADER_VALUE2 = "v2";
      private static final Charset DEFAULT_ENCODING = Charset.forName("UTF-16");
     
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
     
     @Test(expected=IllegalArgumentException.class)
     public void constructor1() {
@@ -135,6 +154,65 @@ public class HttpMockerImplTest {
     }
     
     
+    @Test
+    public void getStubHttpServerPort() throws Exception {
+        final JettyStubHttpServer server = mock(JettyStubHttpServer.class);
+        when(server.getPort()).thenReturn(45123);
+        final HttpMockerImpl mocker = new HttpMockerImpl(server);
+        
+        mocker.start();
+        assertThat(mocker.getStubHttpServerPort(), is(45123));
+    }
+    
+    
+    @Test(expected=IllegalStateException.class)
+    public void getStubHttpServerPortNotStarted() {
+        new HttpMockerImpl(mock(JettyStubHttpServer.class)).getStubHttpServerPort();
+        fail("the port is known once the mocker has been started");
+    }
+    
+    
+    @Test
+    public void getConnectionStatistics() throws Exception {
+        final JettyStubHttpServer server = mock(JettyStubHttpServer.class);
+        final ConnectionStatistics statistics = new ConnectionStatistics(2, 1, 0, 1, 2, 10, 8);
+        when(server.getConnectionStatistics()).thenReturn(statistics);
+        final HttpMockerImpl mocker = new HttpMockerImpl(server);
+        
+        mocker.start();
+        assertThat(mocker.getConnectionStatistics(), is(sameInstance(statistics)));
+        assertThat(statistics.getRequestsPerConnection(), is(5.0));
+        assertThat(statistics.getReuseRatio(), is(0.8));
+    }
+    
+    
+    @Test(expected=IllegalStateException.class)
+    public void getConnectionStatisticsNotTracked() throws Exception {
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        
+        mocker.start();
+        mocker.getConnectionStatistics();
+        fail("the server doesn't track its connections");
+    }
+    
+    
+    @Test(expected=IllegalStateException.class)
+    public void getConnectionStatisticsNotSupported() throws Exception {
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(StubHttpServer.class));
+        
+        mocker.start();
+        mocker.getConnectionStatistics();
+        fail("the server doesn't implement ConnectionStatisticsAware");
+    }
+    
+    
+    @Test(expected=IllegalStateException.class)
+    public void getConnectionStatisticsNotStarted() {
+        new HttpMockerImpl(mock(JettyStubHttpServer.class)).getConnectionStatistics();
+        fail("the mocker hasn't been started yet");
+    }
+    
+    
     @Test
     public void isStarted() throws Exception {
         final JettyStubHttpServer server = mock(JettyStubHttpServer.class);
@@ -234,6 +312,117 @@ public class HttpMockerImplTest {
     }
     
     
+    @Test
+    public void provideResponseForRecordsRequest() {
+        final StubRule rule = new StubRule(Collections.<Matcher<? super HttpServletRequest>>emptyList(),
+                Arrays.asList(new StubResponse()));
+        final Stubbing stubbing = mock(Stubbing.class);
+        when(stubbing.createRule()).thenReturn(rule);
+        final StubbingFactory sf = mock(StubbingFactory.class);
+        when(sf.createStubbing(any(Charset.class), anyInt(), any(MultiMap.class))).thenReturn(stubbing);
+        
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class), sf);
+        mocker.setRequestJournal(new RequestJournal(10, EvictionPolicy.DROP_NEWEST));
+        mocker.onRequest();
+        mocker.provideResponseFor(new MockHttpServletRequest("GET", "/a"));
+        
+        final List<RecordedRequest> requests = mocker.getRequestJournal().getRequests();
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0).getRequestURI(), is("/a"));
+        assertThat(requests.get(0).getMatchedRuleId(), is(0));
+    }
+    
+    
+    @Test
+    public void exportRules() throws Exception {
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        mocker.onRequest()
+                .havingURIEqualTo("/a")
+            .respond()
+                .withStatus(201)
+            .thenRespond()
+                .withStatus(202);
+        mocker.onRequest()
+                .that(anything())
+            .respond();
+        assertThat(mocker.provideResponseFor(new MockHttpServletRequest("GET", "/a")).getStatus(), is(201));
+        
+        final File snapshot = this.folder.newFile("snapshot.bin");
+          //the rule defined using a general matcher cannot be exported
+        assertThat(mocker.exportRules(snapshot), is(1));
+        
+        final HttpMockerImpl restored = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        restored.loadStubDefinitions(snapshot);
+          //the response sequence continues
+        assertThat(restored.provideResponseFor(new MockHttpServletRequest("GET", "/a")).getStatus(), is(202));
+        assertThat(restored.provideResponseFor(new MockHttpServletRequest("GET", "/b")), is(nullValue()));
+    }
+    
+    
+    @Test
+    public void replaceRules() {
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        mocker.onRequest()
+                .havingURIEqualTo("/a")
+            .respond()
+                .withStatus(201);
+        mocker.addRules(Arrays.asList(new StubRule(
+                Collections.<Matcher<? super HttpServletRequest>>singletonList(requestURI(equalTo("/b"))),
+                Arrays.asList(new StubResponse()))));
+        assertThat(mocker.provideResponseFor(new MockHttpServletRequest("GET", "/b")), is(notNullValue()));
+
+          //replaced while requests are being served, the onRequest() rules are kept
+        final StubResponse replacement = new StubResponse();
+        mocker.replaceRules(Arrays.asList(new StubRule(
+                Collections.<Matcher<? super HttpServletRequest>>singletonList(requestURI(equalTo("/c"))),
+                Arrays.asList(replacement))));
+        assertThat(mocker.provideResponseFor(new MockHttpServletRequest("GET", "/a")).getStatus(), is(201));
+        assertThat(mocker.provideResponseFor(new MockHttpServletRequest("GET", "/b")), is(nullValue()));
+        assertThat(mocker.provideResponseFor(new MockHttpServletRequest("GET", "/c")), is(sameInstance(replacement)));
+    }
+
+
+    @Test
+    public void getRuleStatistics() {
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        mocker.onRequest()
+                .havingURIEqualTo("/a")
+            .respond();
+        mocker.onRequest()
+                .havingMethodEqualTo("POST")
+                .havingURIEqualTo("/b")
+            .respond();
+        mocker.onRequest()
+                .havingMethodEqualTo("DELETE")
+                .havingURIEqualTo("/c")
+            .respond();
+        assertThat(mocker.getRuleStatistics().isEmpty(), is(true));
+        
+        mocker.provideResponseFor(new MockHttpServletRequest("GET", "/a"));
+        mocker.provideResponseFor(new MockHttpServletRequest("GET", "/a"));
+          //the second rule is the closest one (just the method doesn't match), no predicate of the others matches
+        assertThat(mocker.provideResponseFor(new MockHttpServletRequest("GET", "/b")), is(nullValue()));
+        
+        final List<RuleStatistics> statistics = mocker.getRuleStatistics();
+        assertThat(statistics.size(), is(3));
+        assertThat(statistics.get(0).getHits(), is(2L));
+        assertThat(statistics.get(0).getMatchTime().getCount(), is(2L));
+        assertThat(statistics.get(0).getNearMisses(), is(0L));
+        assertThat(statistics.get(1).getHits(), is(0L));
+        assertThat(statistics.get(1).getNearMisses(), is(1L));
+        assertThat(statistics.get(2).getNearMisses(), is(0L));
+    }
+    
+    
+    @Test(expected=IllegalStateException.class)
+    public void setRequestJournalWrongState() {
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        mocker.provideResponseFor(new MockHttpServletRequest());
+        mocker.setRequestJournal(new RequestJournal(1, EvictionPolicy.OVERWRITE_OLDEST));
+        fail("setRequestJournal cannot be called after provideResponseFor");
+    }
+    
+    
     @Test
     public void onRequestWithDefaults() {
         final JettyStubHttpServer server = mock(JettyStubHttpServer.class);
@@ -322,6 +511,7 @@ public class HttpMockerImplTest {
         when(rule1.matchedBy(eq(req))).thenReturn(true);
         final StubResponse resp1 = new StubResponse();
         when(rule1.nextResponse()).thenReturn(resp1);
+        when(rule1.getMetrics()).thenReturn(new RuleMetrics());
         
         final StubRule rule2  = mock(StubRule.class);
         final Stubbing stubbing2 = mock(Stubbing.class);
@@ -343,6 +533,32 @@ public class HttpMockerImplTest {
     }
     
     
+    @Test
+    public void provideMatchedResponseForSharedResponse() {
+          //both rules share the same response, the metrics must be given by the matched rule
+        final StubResponse shared = new StubResponse();
+        final StubRule ruleA = new StubRule(
+                Collections.<Matcher<? super HttpServletRequest>>singletonList(requestURI(equalTo("/a"))),
+                Arrays.asList(shared));
+        final StubRule ruleB = new StubRule(
+                Collections.<Matcher<? super HttpServletRequest>>singletonList(requestURI(equalTo("/b"))),
+                Arrays.asList(shared));
+
+        final HttpMockerImpl mocker = new HttpMockerImpl(mock(JettyStubHttpServer.class));
+        mocker.addRules(Arrays.asList(ruleA, ruleB));
+
+        final MatchedResponse matchedA = mocker.provideMatchedResponseFor(new MockHttpServletRequest("GET", "/a"));
+        assertThat(matchedA.getResponse(), is(sameInstance(shared)));
+        assertThat(matchedA.getRuleMetrics(), is(sameInstance(ruleA.getMetrics())));
+
+        final MatchedResponse matchedB = mocker.provideMatchedResponseFor(new MockHttpServletRequest("GET", "/b"));
+        assertThat(matchedB.getResponse(), is(sameInstance(shared)));
+        assertThat(matchedB.getRuleMetrics(), is(sameInstance(ruleB.getMetrics())));
+
+        assertThat(mocker.provideMatchedResponseFor(new MockHttpServletRequest("GET", "/c")), is(nullValue()));
+    }
+
+
     @Test
     public void provideResponseFor2() {
         final MockHttpServletRequest req = new MockHttpServletRequest();
@@ -385,6 +601,7 @@ public class HttpMockerImplTest {
         when(rule1.matchedBy(eq(req))).thenReturn(true);
         final StubResponse resp1 = new StubResponse();
         when(rule1.nextResponse()).thenReturn(resp1);
+        when(rule1.getMetrics()).thenReturn(new RuleMetrics());
         
         final StubRule rule2  = mock(StubRule.class);
         final Stubbing stubbing2 = mock(Stubbing.class);
@@ -392,6 +609,7 @@ public class HttpMockerImplTest {
         when(rule2.matchedBy(eq(req))).thenReturn(true);
         final StubResponse resp2 = new StubResponse();
         when(rule2.nextResponse()).thenReturn(resp2);
+        when(rule2.getMetrics()).thenReturn(new RuleMetrics());
         
         final StubbingFactory sf = mock(StubbingFactory.class);
         when(sf.createStubbing(any(Charset.class), anyInt(), any(MultiMap.class)))
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.journal.RequestJournal.EvictionPolicy;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+
+public class RequestJournalTest {
+
+    @Test(expected=IllegalArgumentException.class)
+    public void negativeCapacity() {
+        new RequestJournal(-1, EvictionPolicy.OVERWRITE_OLDEST);
+        fail("capacity cannot be negative");
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nullEvictionPolicy() {
+        new RequestJournal(1, null);
+        fail("evictionPolicy cannot be null");
+    }
+
+
+    @Test
+    public void record() throws Exception {
+        final RequestJournal journal = new RequestJournal(4, EvictionPolicy.OVERWRITE_OLDEST);
+        final MockHttpServletRequest req = new MockHttpServletRequest("POST", "/a");
+        req.setQueryString("p=1");
+        req.addHeader("Accept", "text/plain");
+        req.addHeader("Accept", "text/html");
+        req.setCharacterEncoding("UTF-8");
+        req.setContent("body".getBytes("UTF-8"));
+
+        final RecordedRequest recorded = journal.record(req, 2);
+
+        assertThat(journal.getRequests(), contains(recorded));
+        assertThat(recorded.getSequence(), is(0L));
+        assertThat(recorded.getMethod(), is("POST"));
+        assertThat(recorded.getRequestURI(), is("/a"));
+        assertThat(recorded.getQueryString(), is("p=1"));
+        assertThat(recorded.getHeader("accept"), is("text/plain"));
+        assertThat(recorded.getHeaderValues("ACCEPT"), contains("text/plain", "text/html"));
+        assertThat(recorded.getHeader("Content-Type"), is(nullValue()));
+        assertThat(recorded.getBodyAsString(), is("body"));
+        assertThat(recorded.getMatchedRuleId(), is(2));
+        assertThat(recorded.isMatched(), is(true));
+    }
+
+
+    @Test
+    public void overwriteOldest() throws Exception {
+        final RequestJournal journal = new RequestJournal(3, EvictionPolicy.OVERWRITE_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            journal.record(request("/" + i), -1);
+        }
+
+        assertThat(uris(journal.getRequests()), contains("/2", "/3", "/4"));
+        assertThat(journal.getTotalCount(), is(5L));
+        assertThat(journal.getEvictedCount(), is(2L));
+    }
+
+
+    @Test
+    public void dropNewest() throws Exception {
+        final RequestJournal journal = new RequestJournal(3, EvictionPolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            journal.record(request("/" + i), -1);
+        }
+
+        assertThat(uris(journal.getRequests()), contains("/0", "/1", "/2"));
+        assertThat(journal.getTotalCount(), is(5L));
+        assertThat(journal.getEvictedCount(), is(2L));
+    }
+
+
+    @Test
+    public void overwriteOldestAcrossChunks() throws Exception {
+        final RequestJournal journal = new RequestJournal(5000, EvictionPolicy.OVERWRITE_OLDEST);
+        for (int i = 0; i < 6000; i++) {
+            journal.record(request("/" + i), -1);
+        }
+
+        final List<RecordedRequest> requests = journal.getRequests();
+        assertThat(requests.size(), is(5000));
+        assertThat(requests.get(0).getRequestURI(), is("/1000"));
+        assertThat(requests.get(4999).getRequestURI(), is("/5999"));
+        assertThat(journal.findRequests(null, "/5999", null).size(), is(1));
+    }
+
+
+    @Test
+    public void findRequests() throws Exception {
+        final RequestJournal journal = new RequestJournal(4, EvictionPolicy.OVERWRITE_OLDEST);
+        journal.record(request("GET", "/a"), 0);
+        journal.record(request("POST", "/a"), 1);
+
+        assertThat(uris(journal.findRequests("get", null, null)), contains("/a"));
+        assertThat(journal.findRequests(null, "/a", null).size(), is(2));
+
+        journal.record(request("GET", "/b"), -1);
+        journal.record(request("GET", "/a"), 0);
+        journal.record(request("GET", "/c"), -1);
+        journal.record(request("DELETE", "/c"), -1);
+
+          //the first two requests have been evicted
+        assertThat(journal.findRequests("POST", null, null), is(empty()));
+        assertThat(uris(journal.findRequests("GET", null, null)), contains("/b", "/a", "/c"));
+        assertThat(uris(journal.findRequests(null, null, -1)), contains("/b", "/c", "/c"));
+        assertThat(journal.findRequests("GET", "/a", 0).get(0).getSequence(), is(3L));
+        assertThat(journal.findRequests("GET", "/a", 1), is(empty()));
+    }
+
+
+    @Test
+    public void unreadableRequestLeavesNoHole() throws Exception {
+        final RequestJournal journal = new RequestJournal(4, EvictionPolicy.OVERWRITE_OLDEST);
+        journal.record(request("/a"), -1);
+        assertThat(journal.findRequests(null, null, null).size(), is(1));
+
+        final MockHttpServletRequest unreadable = new MockHttpServletRequest("GET", "/b") {
+            @Override
+            public ServletInputStream getInputStream() {
+                throw new IllegalStateException("body cannot be read");
+            }
+        };
+        try {
+            journal.record(unreadable, -1);
+            fail("the request body cannot be read");
+        }
+        catch (final IllegalStateException e) {
+              //expected
+        }
+
+        journal.record(request("/c"), -1);
+        assertThat(journal.getTotalCount(), is(2L));
+        assertThat(uris(journal.findRequests(null, null, null)), contains("/a", "/c"));
+    }
+
+
+    @Test
+    public void disabled() throws Exception {
+        final RequestJournal journal = new RequestJournal(0, EvictionPolicy.OVERWRITE_OLDEST);
+
+        assertThat(journal.record(request("/"), -1), is(nullValue()));
+        assertThat(journal.getRequests(), is(empty()));
+        assertThat(journal.getTotalCount(), is(1L));
+    }
+
+
+    @Test
+    public void concurrentRecording() throws Exception {
+        final int threads = 8;
+        final int requestsPerThread = 1000;
+        final RequestJournal journal = new RequestJournal(100, EvictionPolicy.OVERWRITE_OLDEST);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < requestsPerThread; i++) {
+                            journal.record(request("/"), -1);
+                        }
+                    }
+                    catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+        final List<RecordedRequest> requests = journal.getRequests();
+        assertThat(requests.size(), is(100));
+        for (int i = 0; i < requests.size(); i++) {
+            assertThat(requests.get(i).getSequence(), is(threads * requestsPerThread - 100L + i));
+        }
+    }
+
+
+    private static HttpServletRequest request(final String uri) {
+        return request("GET", uri);
+    }
+
+
+    private static HttpServletRequest request(final String method, final String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+
+
+    private static List<String> uris(final List<RecordedRequest> requests) {
+        final List<String> res = new ArrayList<>();
+        for (final RecordedRequest req : requests) {
+            res.add(req.getRequestURI());
+        }
+        return res;
+    }
+}
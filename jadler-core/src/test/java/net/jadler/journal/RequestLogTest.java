@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.journal;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.stubbing.StubResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+
+public class RequestLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void constructorSegmentTooSmall() throws Exception {
+        new RequestLog(this.folder.getRoot(), 8, 0);
+        fail("segmentSize is too small");
+    }
+
+
+    @Test
+    public void appendAndRead() throws Exception {
+        final StubResponse response = new StubResponse();
+        response.setStatus(201);
+        response.addHeader("Content-Type", "text/plain");
+        response.setEncoding(Charset.forName("UTF-8"));
+        response.setBody("created");
+
+        final MockHttpServletRequest req = new MockHttpServletRequest("POST", "/a");
+        req.setQueryString("p=1");
+        req.addHeader("h1", "v1");
+        req.setContent("body".getBytes("UTF-8"));
+
+        try (final RequestLog log = new RequestLog(this.folder.getRoot())) {
+            log.append(req, 0, response);
+            log.append(new MockHttpServletRequest("GET", "/b"), -1, null);
+        }
+
+        final List<LoggedExchange> exchanges = read(this.folder.getRoot());
+        assertThat(exchanges.size(), is(2));
+
+        final LoggedExchange first = exchanges.get(0);
+        assertThat(first.getRequest().getMethod(), is("POST"));
+        assertThat(first.getRequest().getRequestURI(), is("/a"));
+        assertThat(first.getRequest().getQueryString(), is("p=1"));
+        assertThat(first.getRequest().getHeader("H1"), is("v1"));
+        assertThat(new String(first.getRequest().getBody(), "UTF-8"), is("body"));
+        assertThat(first.getRequest().getMatchedRuleId(), is(0));
+        assertThat(first.getResponseStatus(), is(201));
+        assertThat(first.getResponseHeaderValues("content-type"), contains("text/plain"));
+        assertThat(new String(first.getResponseBody(), "UTF-8"), is("created"));
+
+        final LoggedExchange second = exchanges.get(1);
+        assertThat(second.getRequest().getRequestURI(), is("/b"));
+        assertThat(second.getRequest().getSequence(), is(1L));
+        assertThat(second.hasResponse(), is(false));
+    }
+
+
+    @Test
+    public void rotation() throws Exception {
+        try (final RequestLog log = new RequestLog(this.folder.getRoot(), 256, 0)) {
+            for (int i = 0; i < 20; i++) {
+                log.append(new MockHttpServletRequest("GET", "/" + i), -1, null);
+            }
+              //a request bigger than the segment size
+            final MockHttpServletRequest big = new MockHttpServletRequest("POST", "/big");
+            big.setContent(new byte[1000]);
+            log.append(big, -1, null);
+        }
+
+        assertThat(RequestLogFormat.listSegments(this.folder.getRoot()).size(), is(greaterThan(2)));
+
+        final List<LoggedExchange> exchanges = read(this.folder.getRoot());
+        assertThat(exchanges.size(), is(21));
+        for (int i = 0; i < 20; i++) {
+            assertThat(exchanges.get(i).getRequest().getRequestURI(), is("/" + i));
+        }
+        assertThat(exchanges.get(20).getRequest().getBodyLength(), is(1000));
+    }
+
+
+    @Test
+    public void maxSegments() throws Exception {
+        try (final RequestLog log = new RequestLog(this.folder.getRoot(), 256, 2)) {
+            for (int i = 0; i < 50; i++) {
+                log.append(new MockHttpServletRequest("GET", "/" + i), -1, null);
+            }
+        }
+
+        assertThat(RequestLogFormat.listSegments(this.folder.getRoot()).size(), is(2));
+        final List<LoggedExchange> exchanges = read(this.folder.getRoot());
+        assertThat(exchanges.get(exchanges.size() - 1).getRequest().getRequestURI(), is("/49"));
+    }
+
+
+    @Test
+    public void concurrentAppend() throws Exception {
+        final int threads = 8;
+        final int requestsPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        try (final RequestLog log = new RequestLog(this.folder.getRoot(), 4096, 0)) {
+            for (int t = 0; t < threads; t++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < requestsPerThread; i++) {
+                                log.append(new MockHttpServletRequest("GET", "/"), -1, null);
+                            }
+                        }
+                        catch (final Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        }
+
+        final Set<Long> sequences = new HashSet<>();
+        for (final LoggedExchange exchange : new RequestLogReader(this.folder.getRoot())) {
+            sequences.add(exchange.getRequest().getSequence());
+        }
+        assertThat(sequences.size(), is(threads * requestsPerThread));
+    }
+
+
+    @Test
+    public void replay() throws Exception {
+        try (final RequestLog log = new RequestLog(this.folder.getRoot())) {
+            log.append(new MockHttpServletRequest("GET", "/a"), -1, null);
+            log.append(new MockHttpServletRequest("GET", "/b"), -1, null);
+        }
+
+        final List<String> replayed = new ArrayList<>();
+        final long count = new RequestLogReader(this.folder.getRoot()).replay(new ResponseProvider() {
+            @Override
+            public StubResponse provideResponseFor(final HttpServletRequest req) {
+                replayed.add(req.getRequestURI());
+                return null;
+            }
+        });
+
+        assertThat(count, is(2L));
+        assertThat(replayed, contains("/a", "/b"));
+    }
+
+
+    private static List<LoggedExchange> read(final File directory) {
+        final List<LoggedExchange> res = new ArrayList<>();
+        for (final LoggedExchange exchange : new RequestLogReader(directory)) {
+            res.add(exchange);
+        }
+        return res;
+    }
+}
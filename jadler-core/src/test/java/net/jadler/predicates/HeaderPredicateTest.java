@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+public class HeaderPredicateTest {
+
+    private static final String HEADER_NAME = "header1";
+    private static final String HEADER_VALUE1 = "value1";
+    private static final String HEADER_VALUE2 = "value2";
+    private static final String UNDEFINED_HEADER = "header2";
+    
+    private RequestView request;
+
+
+    @Before
+    public void setUp() throws Exception {
+        final MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HEADER_NAME, HEADER_VALUE1);
+        req.addHeader(HEADER_NAME, HEADER_VALUE2);
+        this.request = RequestView.of(req);
+    }
+    
+    
+    @Test
+    public void matchesValue() {
+        assertThat(new HeaderPredicate(HEADER_NAME, HEADER_VALUE2).matches(request), is(true));
+        assertThat(new HeaderPredicate(HEADER_NAME.toUpperCase(), HEADER_VALUE1).matches(request), is(true));
+        assertThat(new HeaderPredicate(HEADER_NAME, "value3").matches(request), is(false));
+        assertThat(new HeaderPredicate(UNDEFINED_HEADER, HEADER_VALUE1).matches(request), is(false));
+    }
+    
+    
+    @Test
+    public void matchesPresence() {
+        assertThat(new HeaderPredicate(HEADER_NAME, null).matches(request), is(true));
+        assertThat(new HeaderPredicate(UNDEFINED_HEADER, null).matches(request), is(false));
+    }
+    
+    
+    @Test
+    public void describeTo() {
+        assertThat(new HeaderPredicate(HEADER_NAME, HEADER_VALUE1).toString(),
+                is("header " + HEADER_NAME + " contains \"" + HEADER_VALUE1 + "\""));
+        assertThat(new HeaderPredicate(HEADER_NAME, null).toString(), is("header " + HEADER_NAME + " is present"));
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.predicates;
+
+import javax.servlet.http.HttpServletRequest;
+import org.hamcrest.Matcher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+@RunWith(MockitoJUnitRunner.class)
+public class MatcherPredicateTest {
+    
+    @Mock
+    private Matcher<? super HttpServletRequest> matcher;
+    
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void constructor() {
+        new MatcherPredicate(null);
+    }
+    
+    
+    @Test
+    public void matches() {
+        final HttpServletRequest req = new MockHttpServletRequest();
+        when(matcher.matches(req)).thenReturn(true);
+        
+          //the matcher is evaluated against the underlying request
+        assertThat(new MatcherPredicate(matcher).matches(RequestView.of(req)), is(true));
+        verify(matcher).matches(req);
+    }
+}
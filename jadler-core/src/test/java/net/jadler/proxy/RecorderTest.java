@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.proxy;
+
+import java.io.File;
+import java.util.List;
+import net.jadler.Jadler;
+import net.jadler.httpmocker.HttpMocker;
+import net.jadler.journal.RequestLog;
+import net.jadler.portallocator.PortAllocator;
+import net.jadler.stubbing.StubRule;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+
+public class RecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpMocker upstream;
+    private int upstreamPort;
+    private HttpClient client;
+
+
+    @Before
+    public void setUp() {
+        this.upstreamPort = new PortAllocator().allocatePort();
+        this.upstream = new Jadler.OngoingConfiguration().usesStandardServerListeningOn(this.upstreamPort).build();
+
+        this.upstream.onRequest()
+                .havingMethodEqualTo("GET")
+                .havingURIEqualTo("/a")
+            .respond()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain; charset=UTF-8")
+                .withBody("first")
+            .thenRespond()
+                .withStatus(200)
+                .withHeader("Content-Type", "text/plain; charset=UTF-8")
+                .withBody("second");
+        this.upstream.onRequest()
+                .havingMethodEqualTo("POST")
+                .havingBodyEqualTo("data")
+            .respond()
+                .withStatus(201)
+                .withHeader("Location", "/created");
+        this.upstream.start();
+
+        this.client = new HttpClient();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.upstream.stop();
+    }
+
+
+    @Test
+    public void recordAndReplay() throws Exception {
+        final File directory = this.folder.newFolder("recordings");
+
+        try (final RequestLog log = new RequestLog(directory)) {
+            final int port = new PortAllocator().allocatePort();
+            final HttpMocker recording = new Jadler.OngoingConfiguration()
+                    .usesStandardServerListeningOn(port)
+                    .recordsUnmatchedRequests(new Recorder(
+                            new UpstreamClient("http://localhost:" + this.upstreamPort), log))
+                    .build();
+            recording.onRequest()
+                    .havingURIEqualTo("/stubbed")
+                .respond()
+                    .withStatus(204);
+            recording.start();
+            try {
+                assertThat(this.get(port, "/stubbed"), is(204));
+                assertThat(this.get(port, "/a"), is(200));
+                assertThat(this.get(port, "/a"), is(200));
+                assertThat(this.post(port, "/b", "data"), is(201));
+                  //no rule found by the upstream
+                assertThat(this.get(port, "/unknown"), is(500));
+            }
+            finally {
+                recording.stop();
+            }
+        }
+
+          //GET /a, POST /b and GET /unknown
+        final List<StubRule> rules = RecordedRules.load(directory);
+        assertThat(rules.size(), is(3));
+
+        final int port = new PortAllocator().allocatePort();
+        final HttpMocker replaying = new Jadler.OngoingConfiguration()
+                .usesStandardServerListeningOn(port)
+                .replaysRecordingsFrom(directory)
+                .build();
+        replaying.start();
+        try {
+            final GetMethod first = new GetMethod("http://localhost:" + port + "/a");
+            assertThat(this.client.executeMethod(first), is(200));
+            assertThat(first.getResponseBodyAsString(), is("first"));
+            assertThat(first.getResponseHeader("Content-Type").getValue(), is("text/plain; charset=UTF-8"));
+            first.releaseConnection();
+
+            final GetMethod second = new GetMethod("http://localhost:" + port + "/a");
+            assertThat(this.client.executeMethod(second), is(200));
+            assertThat(second.getResponseBodyAsString(), is("second"));
+            second.releaseConnection();
+
+            final PostMethod post = new PostMethod("http://localhost:" + port + "/b");
+            post.setRequestEntity(new StringRequestEntity("data", null, null));
+            assertThat(this.client.executeMethod(post), is(201));
+            assertThat(post.getResponseHeader("Location").getValue(), is("/created"));
+            post.releaseConnection();
+
+              //a different body
+            assertThat(this.post(port, "/b", "other"), is(500));
+        }
+        finally {
+            replaying.stop();
+        }
+    }
+
+
+    @Test
+    public void recordToDirectory() throws Exception {
+        final File directory = this.folder.newFolder("recordings");
+        final int port = new PortAllocator().allocatePort();
+        final HttpMocker recording = new Jadler.OngoingConfiguration()
+                .usesStandardServerListeningOn(port)
+                .recordsUnmatchedRequests("http://localhost:" + this.upstreamPort, directory)
+                .build();
+
+          //the log is closed on stop and opened again on the next start
+        recording.start();
+        try {
+            assertThat(this.get(port, "/a"), is(200));
+        }
+        finally {
+            recording.stop();
+        }
+        recording.start();
+        try {
+            assertThat(this.post(port, "/b", "data"), is(201));
+        }
+        finally {
+            recording.stop();
+        }
+
+        assertThat(RecordedRules.load(directory).size(), is(2));
+    }
+
+
+    private int get(final int port, final String uri) throws Exception {
+        final GetMethod method = new GetMethod("http://localhost:" + port + uri);
+        try {
+            return this.client.executeMethod(method);
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+
+
+    private int post(final int port, final String uri, final String body) throws Exception {
+        final PostMethod method = new PostMethod("http://localhost:" + port + uri);
+        method.setRequestEntity(new StringRequestEntity(body, null, null));
+        try {
+            return this.client.executeMethod(method);
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.is;
+
+
+public class MultiPatternTest {
+    
+    private static final List<String> PATTERNS = Arrays.asList(
+            "/a/b",
+            "/a/.*",
+            "^/a/[0-9]+$",
+            "/a/\\d+/c",
+            "/(users|groups)/\\w+",
+            "/(?:x|y)?z*",
+            "/[^/]+/[a-c-]+",
+            "/a{2,3}b{2}c{1,}",
+            "/.+?\\.(json|xml)",
+            "/\\x41\\u0042[\\-\\]]",
+            "/[\\s\\d]*",
+            "/(a|ab)(c|bcd)(d*)",
+            "/(a*)*b",
+            "",
+            "\\$",
+            "/ář.*",
+            "/[^á]",
+            "/(?i)case",
+            "/(a)\\1",
+            "/a*+b",
+            "/\\bword\\b",
+            "/(?=a)a",
+            "/[a-z&&[^x]]+",
+            "/\\p{Alpha}+",
+            "/\\Qa.b\\E");
+    
+    private static final List<String> INPUTS = Arrays.asList(
+            "",
+            "/",
+            "/a/b",
+            "/a/",
+            "/a/123",
+            "/a/12/c",
+            "/a/x/c",
+            "/users/joe",
+            "/groups/",
+            "/xzzz",
+            "/z",
+            "/",
+            "/foo/abc-",
+            "/foo/abd",
+            "/aabbc",
+            "/aaabbcccc",
+            "/abbc",
+            "/file.json",
+            "/file.xml.txt",
+            "/.json",
+            "/AB-",
+            "/AB]",
+            "/ 1 2",
+            "/abcd",
+            "/abcdddd",
+            "/aaab",
+            "/b",
+            "$",
+            "/ářž",
+            "/á",
+            "/é",
+            "/😀",
+            "/a\nb",
+            "/CASE",
+            "/aa",
+            "/ab",
+            "/word",
+            "/a",
+            "/abc",
+            "/abcx",
+            "/abc",
+            "/a.b");
+    
+
+    @Test
+    public void matchesLikeJavaRegex() {
+        final MultiPattern automaton = MultiPattern.compile(PATTERNS);
+        
+        for (final String input : INPUTS) {
+            final BitSet expected = new BitSet();
+            for (int i = 0; i < PATTERNS.size(); i++) {
+                if (Pattern.compile(PATTERNS.get(i)).matcher(input).matches()) {
+                    expected.set(i);
+                }
+            }
+
+              //twice so both the computed and the cached DFA transitions are used
+            assertThat("input " + input, automaton.match(input), is(expected));
+            assertThat("input " + input, automaton.match(input), is(expected));
+        }
+    }
+    
+    
+    @Test
+    public void unsupportedConstructs() {
+        final MultiPattern automaton = MultiPattern.compile(PATTERNS);
+        
+          //(?i), backreferences, possessive quantifiers, boundaries, lookaheads, intersections, \p and \Q
+        assertThat(automaton.fallbackCount(), is(8));
+        assertThat(automaton.size(), is(PATTERNS.size()));
+    }
+    
+    
+    @Test
+    public void emptyAutomaton() {
+        final MultiPattern automaton = MultiPattern.compile(Collections.<String>emptyList());
+        assertThat(automaton.match("/a").isEmpty(), is(true));
+    }
+    
+    
+    @Test
+    public void manyPatterns() {
+        final List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            patterns.add("/api/v" + (i % 3) + "/resource" + i + "/[0-9]+");
+        }
+        
+        final MultiPattern automaton = MultiPattern.compile(patterns);
+        assertThat(automaton.fallbackCount(), is(0));
+        
+        final BitSet expected = new BitSet();
+        expected.set(1234);
+        assertThat(automaton.match("/api/v1/resource1234/42"), is(expected));
+        assertThat(automaton.match("/api/v1/resource1234/x").isEmpty(), is(true));
+    }
+    
+    
+    @Test
+    public void largePatternFallsBack() {
+        final MultiPattern automaton = MultiPattern.compile(Arrays.asList("(a{1000}){1000}", "b"));
+        
+        assertThat(automaton.fallbackCount(), is(1));
+        assertThat(automaton.match("b").get(1), is(true));
+    }
+    
+    
+    @Test(expected=PatternSyntaxException.class)
+    public void malformedPattern() {
+        MultiPattern.compile(Arrays.asList("/a", "/(b"));
+        fail("malformed pattern must be rejected");
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+public class HeaderIndexTest {
+    
+    private HeaderIndex index;
+    
+    
+    @Before
+    public void setUp() {
+        final MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader("Content-Type", "text/plain");
+        req.addHeader("Accept", "text/html");
+        req.addHeader("Accept", "application/json");
+        
+          //more headers than the minimal capacity of the table
+        for (int i = 0; i < 20; i++) {
+            req.addHeader("X-Header-" + i, String.valueOf(i));
+        }
+        this.index = HeaderIndex.of(req);
+    }
+    
+    
+    @Test
+    public void get() {
+        assertThat(this.index.get("content-type"), contains("text/plain"));
+        assertThat(this.index.get("ACCEPT"), contains("text/html", "application/json"));
+        assertThat(this.index.get("x-header-13"), contains("13"));
+        assertThat(this.index.get("undefined"), is(empty()));
+    }
+    
+    
+    @Test
+    public void getFolded() {
+        assertThat(this.index.getFolded(HeaderIndex.intern("Accept")), contains("text/html", "application/json"));
+        assertThat(this.index.getFolded(HeaderIndex.intern("X-Undefined")), is(empty()));
+    }
+    
+    
+    @Test
+    public void getFirst() {
+        assertThat(this.index.getFirst("accept"), is("text/html"));
+        assertThat(this.index.getFirst("undefined"), is(nullValue()));
+    }
+    
+    
+    @Test
+    public void intern() {
+        assertThat(HeaderIndex.intern("X-Interned"), is(sameInstance(HeaderIndex.intern("x-INTERNED"))));
+        assertThat(HeaderIndex.fold("X-INTERNED"), is(sameInstance(HeaderIndex.intern("x-interned"))));
+    }
+}
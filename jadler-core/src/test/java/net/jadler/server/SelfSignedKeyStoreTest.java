@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+
+public class SelfSignedKeyStoreTest {
+
+    private Path dir;
+    private Path path;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDirectory("jadler-keystore");
+        this.path = this.dir.resolve("stub.jks");
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(this.path);
+        Files.delete(this.dir);
+    }
+
+
+    @Test
+    public void generatedOnceAndCached() throws Exception {
+        final SelfSignedKeyStore generated = SelfSignedKeyStore.load(this.path);
+        assertThat(Files.isRegularFile(this.path), is(true));
+        assertThat(generated.getCertificate().getSubjectX500Principal().getName(), is("CN=localhost"));
+
+        final FileTime modified = Files.getLastModifiedTime(this.path);
+        final SelfSignedKeyStore cached = SelfSignedKeyStore.load(this.path);
+
+        assertThat(Files.getLastModifiedTime(this.path), is(modified));
+        assertThat(cached.getCertificate(), is(generated.getCertificate()));
+    }
+
+
+    @Test
+    public void corruptedCacheRegenerated() throws Exception {
+        Files.write(this.path, new byte[] {1, 2, 3});
+
+        final SelfSignedKeyStore keyStore = SelfSignedKeyStore.load(this.path);
+
+        assertThat(keyStore.getCertificate(), is(notNullValue()));
+        assertThat(Files.size(this.path), is(greaterThan(3L)));
+    }
+
+
+    @Test
+    public void ownerOnly() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        final Path nested = this.dir.resolve("nested");
+        final Path nestedPath = nested.resolve("stub.jks");
+        
+        try {
+            SelfSignedKeyStore.load(nestedPath);
+            
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(nested)), is("rwx------"));
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(nestedPath)), is("rw-------"));
+        }
+        finally {
+            Files.deleteIfExists(nestedPath);
+            Files.deleteIfExists(nested);
+        }
+    }
+
+
+    @Test
+    public void sameInstancePerJvm() {
+        assertThat(SelfSignedKeyStore.get(), is(sameInstance(SelfSignedKeyStore.get())));
+    }
+}
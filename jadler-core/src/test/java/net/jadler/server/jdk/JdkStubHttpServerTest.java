@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jdk;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import net.jadler.portallocator.PortAllocator;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static net.jadler.Jadler.*;
+
+
+public class JdkStubHttpServerTest {
+    
+    private static final int DEFAULT_STATUS = 409;
+    private static final String STRING_WITH_DIACRITICS = "\u00e1\u0159\u017e";
+    private static final byte[] ISO_8859_2_REPRESENTATION = {(byte)0xE1, (byte)0xF8, (byte)0xBE};
+    
+    private int port;
+    private HttpClient client;
+    
+    
+    @Before
+    public void setUp() {
+        this.port = new PortAllocator().allocatePort();
+        
+        initJadlerThat()
+                .usesCustomServer(new JdkStubHttpServer(this.port))
+                .respondsWithDefaultStatus(DEFAULT_STATUS)
+                .respondsWithDefaultHeader("default_header", "value1")
+                .respondsWithDefaultEncoding(Charset.forName("UTF-8"))
+                .respondsWithDefaultContentType("text/html; charset=UTF-8");
+        
+        startStubServer();
+        
+        this.client = new HttpClient();
+    }
+    
+    
+    @After
+    public void tearDown() {
+        stopStubServer();
+    }
+    
+    
+    @Test
+    public void defaults() throws Exception {
+        onRequest().respond().withBody(STRING_WITH_DIACRITICS);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        final int status = client.executeMethod(method);
+        
+        assertThat(status, is(DEFAULT_STATUS));
+        assertThat(method.getResponseHeader("default_header").getValue(), is("value1"));
+        assertThat(method.getResponseCharSet(), is("UTF-8"));
+        assertThat(method.getResponseBodyAsString(), is(STRING_WITH_DIACRITICS));
+    }
+    
+    
+    @Test
+    public void requestMatching() throws Exception {
+        onRequest()
+            .havingMethodEqualTo("POST")
+            .havingURIEqualTo("/a/b")
+            .havingQueryStringEqualTo("p1=v1")
+            .havingParameterEqualTo("p1", "v1")
+            .havingParameterEqualTo("p2", "v2")
+            .havingHeaderEqualTo("X-Custom", "custom")
+            .havingBodyEqualTo("p2=v2")
+        .respond()
+            .withStatus(201);
+        
+        final PostMethod method = new PostMethod("http://localhost:" + this.port + "/a/b?p1=v1");
+        method.addRequestHeader("x-custom", "custom");
+        method.setRequestEntity(new StringRequestEntity("p2=v2", "application/x-www-form-urlencoded", "UTF-8"));
+        
+        assertThat(client.executeMethod(method), is(201));
+    }
+    
+    
+    @Test
+    public void withEncoding() throws Exception {
+        onRequest().respond()
+                .withEncoding(Charset.forName("ISO-8859-2"))
+                .withContentType("text/html; charset=ISO-8859-2")
+                .withBody(STRING_WITH_DIACRITICS);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        client.executeMethod(method);
+        
+        assertThat(IOUtils.toByteArray(method.getResponseBodyAsStream()), is(ISO_8859_2_REPRESENTATION));
+    }
+    
+    
+    @Test
+    public void withTimeout() throws Exception {
+        onRequest().respond().withTimeout(200, TimeUnit.MILLISECONDS).withStatus(201);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        final long start = System.nanoTime();
+        assertThat(client.executeMethod(method), is(201));
+        
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(greaterThanOrEqualTo(200L)));
+    }
+    
+    
+    @Test
+    public void head() throws Exception {
+        onRequest().respond().withBody("body").withStatus(201);
+        
+        final HeadMethod method = new HeadMethod("http://localhost:" + this.port);
+        assertThat(client.executeMethod(method), is(201));
+    }
+    
+    
+    @Test
+    public void noRuleApplicable() throws Exception {
+        onRequest().havingURIEqualTo("/undefined").respond();
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        assertThat(client.executeMethod(method), is(500));
+        assertThat(method.getResponseBodyAsString(), isEmptyOrNullString());
+    }
+}
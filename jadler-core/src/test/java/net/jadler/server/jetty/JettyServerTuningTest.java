@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+
+public class JettyServerTuningTest {
+    
+    @Test
+    public void defaults() {
+        final SelectChannelConnector defaultConnector = new SelectChannelConnector();
+        final SelectChannelConnector connector = new SelectChannelConnector();
+        final JettyServerTuning tuning = new JettyServerTuning();
+        tuning.applyTo(connector);
+        
+        assertThat(connector.getAcceptors(), is(defaultConnector.getAcceptors()));
+        assertThat(connector.getAcceptQueueSize(), is(defaultConnector.getAcceptQueueSize()));
+        assertThat(connector.getMaxIdleTime(), is(defaultConnector.getMaxIdleTime()));
+        assertThat(connector.getRequestHeaderSize(), is(defaultConnector.getRequestHeaderSize()));
+        assertThat(connector.getResponseHeaderSize(), is(defaultConnector.getResponseHeaderSize()));
+        assertThat(tuning.createThreadPool(), is(nullValue()));
+    }
+    
+    
+    @Test
+    public void connector() {
+        final SelectChannelConnector connector = new SelectChannelConnector();
+        new JettyServerTuning()
+                .withAcceptors(2)
+                .withAcceptQueueSize(5000)
+                .withMaxIdleTime(1000)
+                .withHeaderBufferSize(8192)
+                .withRequestBufferSize(16384)
+                .withResponseBufferSize(32768)
+                .applyTo(connector);
+        
+        assertThat(connector.getAcceptors(), is(2));
+        assertThat(connector.getAcceptQueueSize(), is(5000));
+        assertThat(connector.getMaxIdleTime(), is(1000));
+        assertThat(connector.getRequestHeaderSize(), is(8192));
+        assertThat(connector.getResponseHeaderSize(), is(8192));
+        assertThat(connector.getRequestBufferSize(), is(16384));
+        assertThat(connector.getResponseBufferSize(), is(32768));
+    }
+    
+    
+    @Test
+    public void selectorsRaiseAcceptors() {
+        assertThat(new JettyServerTuning().withSelectors(4).getEffectiveAcceptors(), is(4));
+        assertThat(new JettyServerTuning().withSelectors(4).withAcceptors(2).getEffectiveAcceptors(), is(4));
+        assertThat(new JettyServerTuning().withSelectors(1).withAcceptors(2).getEffectiveAcceptors(), is(2));
+    }
+    
+    
+    @Test
+    public void threadPool() {
+        final QueuedThreadPool pool = new JettyServerTuning()
+                .withMinThreads(16)
+                .withMaxThreads(512)
+                .withMaxQueued(100)
+                .createThreadPool();
+        
+        assertThat(pool, is(notNullValue()));
+        assertThat(pool.getMinThreads(), is(16));
+        assertThat(pool.getMaxThreads(), is(512));
+        assertThat(pool.getMaxQueued(), is(100));
+    }
+    
+    
+    @Test
+    public void smallThreadPool() {
+        final QueuedThreadPool pool = new JettyServerTuning().withMaxThreads(4).createThreadPool();
+        
+        assertThat(pool.getMaxThreads(), is(4));
+        assertThat(pool.getMinThreads(), is(4));
+    }
+    
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void inconsistentThreadPool() {
+        new JettyServerTuning().withMinThreads(16).withMaxThreads(8).createThreadPool();
+        fail("minThreads cannot exceed maxThreads");
+    }
+    
+    
+    @Test
+    public void copy() {
+        final JettyServerTuning tuning = new JettyServerTuning().withMaxThreads(4);
+        final JettyServerTuning copy = tuning.copy().withDaemonThreads(true);
+        
+        assertThat(copy.createThreadPool().getMaxThreads(), is(4));
+        assertThat(copy.createThreadPool().isDaemon(), is(true));
+        assertThat(tuning.createThreadPool().isDaemon(), is(false));
+    }
+    
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void invalidAcceptors() {
+        new JettyServerTuning().withAcceptors(0);
+        fail("number of acceptors must be positive");
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.jadler.portallocator.PortAllocator;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ExecutionMode;
+import net.jadler.server.SelfSignedKeyStore;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static net.jadler.Jadler.*;
+
+
+/**
+ * Tests the jetty stub server running the request handlers on virtual threads
+ * (or on a pool of platform threads on older JVMs).
+ */
+public class JettyStubHttpServerTest {
+    
+    private static final int DEFAULT_STATUS = 409;
+    private static final int CONCURRENT_REQUESTS = 40;
+    private static final long DELAY_MILLIS = 500;
+    private static final int IDLE_MILLIS = 300;
+    
+    private int port;
+    
+    
+    @Before
+    public void setUp() {
+        this.port = new PortAllocator().allocatePort();
+        
+          //a tiny jetty worker pool, delayed responses would be serialized if they held the worker threads
+        initJadlerThat()
+                .usesStandardServerListeningOn(this.port, new JettyServerTuning().withMaxThreads(8))
+                .executesRequestsUsing(ExecutionMode.VIRTUAL_THREADS)
+                .respondsWithDefaultStatus(DEFAULT_STATUS)
+                .respondsWithDefaultEncoding(Charset.forName("UTF-8"));
+        
+        startStubServer();
+    }
+    
+    
+    @After
+    public void tearDown() {
+        stopStubServer();
+    }
+    
+    
+    @Test
+    public void defaults() throws Exception {
+        onRequest().havingURIEqualTo("/a").respond().withBody("body");
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port + "/a");
+        
+        assertThat(new HttpClient().executeMethod(method), is(DEFAULT_STATUS));
+        assertThat(method.getResponseBodyAsString(), is("body"));
+    }
+    
+    
+    @Test
+    public void noRuleApplicable() throws Exception {
+        onRequest().havingURIEqualTo("/a").respond();
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port + "/b");
+        
+        assertThat(new HttpClient().executeMethod(method), is(500));
+        assertThat(method.getResponseBodyAsString(), isEmptyOrNullString());
+    }
+    
+    
+    @Test
+    public void concurrentDelayedResponses() throws Exception {
+        onRequest().respond().withTimeout(DELAY_MILLIS, TimeUnit.MILLISECONDS).withStatus(201);
+        
+        final ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            final long start = System.nanoTime();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                results.add(clients.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return new HttpClient().executeMethod(new GetMethod("http://localhost:" + port));
+                    }
+                }));
+            }
+            
+            for (final Future<Integer> result : results) {
+                assertThat(result.get(), is(201));
+            }
+            
+              //the requests would take at least CONCURRENT_REQUESTS / 8 * DELAY_MILLIS if run on the jetty pool
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    is(lessThan(CONCURRENT_REQUESTS / 8 * DELAY_MILLIS)));
+        }
+        finally {
+            clients.shutdownNow();
+        }
+    }
+    
+    
+    @Test
+    public void severalPorts() throws Exception {
+        final JettyStubHttpServer server = new JettyStubHttpServer(new int[] {0, 0}, new JettyServerTuning());
+        initJadlerThat().usesCustomServer(server);
+        startStubServer();
+        
+        final int[] ports = server.getPorts();
+        onRequest().havingLocalPortEqualTo(ports[0]).respond().withStatus(201);
+        onRequest().havingLocalPortEqualTo(ports[1]).respond().withStatus(202);
+        
+        assertThat(new HttpClient().executeMethod(new GetMethod("http://localhost:" + ports[0])), is(201));
+        assertThat(new HttpClient().executeMethod(new GetMethod("http://localhost:" + ports[1])), is(202));
+    }
+    
+    
+    @Test
+    public void connectionStatistics() throws Exception {
+        final JettyStubHttpServer server = new JettyStubHttpServer(new int[] {0},
+                new JettyServerTuning().withMaxIdleTime(IDLE_MILLIS));
+        initJadlerThat().usesCustomServer(server);
+        startStubServer();
+        onRequest().respond().withStatus(204);
+        
+          //three requests over one connection kept alive, then one over a connection of its own
+        final HttpClient client = new HttpClient();
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.executeMethod(new GetMethod("http://localhost:" + server.getPort())), is(204));
+        }
+        final GetMethod close = new GetMethod("http://localhost:" + server.getPort());
+        close.setRequestHeader("Connection", "close");
+        assertThat(new HttpClient().executeMethod(close), is(204));
+        
+          //the first connection is closed by the server once idle for too long
+        Thread.sleep(IDLE_MILLIS * 4);
+        
+        final ConnectionStatistics stats = server.getConnectionStatistics();
+        assertThat(stats.getAcceptedConnections(), is(2L));
+        assertThat(stats.getClosedConnections(), is(2L));
+        assertThat(stats.getIdleClosedConnections(), is(1L));
+        assertThat(stats.getOpenConnections(), is(0));
+        assertThat(stats.getMaxOpenConnections(), is(greaterThanOrEqualTo(1)));
+        assertThat(stats.getRequests(), is(4L));
+        assertThat(stats.getReusedRequests(), is(2L));
+        assertThat(stats.getReuseRatio(), is(0.5));
+    }
+    
+    
+    @Test
+    public void httpsWithSessionResumption() throws Exception {
+        final JettyStubHttpServer server = new JettyStubHttpServer(new int[] {0}, new JettyServerTuning(),
+                SelfSignedKeyStore.get().createServerContext());
+        initJadlerThat().usesCustomServer(server);
+        startStubServer();
+        
+        onRequest().havingURIEqualTo("/secure").respond().withStatus(201).withBody("secure");
+        
+        final SSLSocketFactory factory = SelfSignedKeyStore.get().createClientContext().getSocketFactory();
+        final byte[] firstSession = this.secureRequest(factory, server.getPort());
+        final byte[] secondSession = this.secureRequest(factory, server.getPort());
+        
+          //the second connection resumed the TLS session of the first one
+        assertThat(secondSession, is(firstSession));
+    }
+    
+    
+    private byte[] secureRequest(final SSLSocketFactory factory, final int port) throws Exception {
+        try (final SSLSocket socket = (SSLSocket) factory.createSocket("localhost", port)) {
+              //TLS 1.3 assigns a new id to a resumed session, the session id identifies a resumed session in TLS 1.2
+            socket.setEnabledProtocols(new String[] {"TLSv1.2"});
+            socket.getOutputStream().write(
+                    "GET /secure HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes("US-ASCII"));
+            
+            final String response = IOUtils.toString(socket.getInputStream(), "US-ASCII");
+            assertThat(response, startsWith("HTTP/1.1 201"));
+            assertThat(response, endsWith("secure"));
+            return socket.getSession().getId();
+        }
+    }
+}
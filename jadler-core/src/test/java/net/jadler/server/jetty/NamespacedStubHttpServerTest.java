@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import net.jadler.Jadler;
+import net.jadler.exception.JadlerException;
+import net.jadler.httpmocker.HttpMocker;
+import net.jadler.portallocator.PortAllocator;
+import net.jadler.server.NamespaceResolver;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+
+public class NamespacedStubHttpServerTest {
+
+    private int port;
+    private NamespacedStubHttpServer server;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.port = new PortAllocator().allocatePort();
+        this.server = new NamespacedStubHttpServer(this.port, NamespaceResolver.pathPrefix());
+        this.server.start();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.stop();
+    }
+
+
+    @Test
+    public void isolatedNamespaces() throws Exception {
+        final HttpMocker first = mocker("first");
+        first.onRequest().havingURIEqualTo("/a").respond().withStatus(201);
+        first.start();
+
+        final HttpMocker second = mocker("second");
+        second.onRequest().havingURIEqualTo("/a").respond().withStatus(202);
+        second.start();
+
+        assertThat(status("/first/a"), is(201));
+        assertThat(status("/second/a"), is(202));
+
+          //stopping a namespace doesn't affect the others
+        first.stop();
+        assertThat(status("/first/a"), is(503));
+        assertThat(status("/second/a"), is(202));
+
+        second.stop();
+        assertThat(this.server.getActiveNamespaces(), is(empty()));
+    }
+
+
+    @Test
+    public void namespaceRoot() throws Exception {
+        final HttpMocker mocker = mocker("ns");
+        mocker.onRequest().havingURIEqualTo("/").respond().withStatus(204);
+        mocker.start();
+
+        try {
+            assertThat(status("/ns"), is(204));
+            assertThat(status("/ns/"), is(204));
+        }
+        finally {
+            mocker.stop();
+        }
+    }
+
+
+    @Test
+    public void unknownNamespace() throws Exception {
+        assertThat(status("/unknown/a"), is(503));
+        assertThat(status("/"), is(503));
+    }
+
+
+    @Test
+    public void namespaceInUse() throws Exception {
+        final HttpMocker first = mocker("ns");
+        first.start();
+        try {
+            mocker("ns").start();
+            fail("only one mocker can use a namespace at a time");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+        finally {
+            first.stop();
+        }
+    }
+
+
+    @Test
+    public void headerNamespace() throws Exception {
+        final NamespacedStubHttpServer headerServer = new NamespacedStubHttpServer(
+                new PortAllocator().allocatePort(), NamespaceResolver.header("X-Test-Id"));
+        final HttpMocker mocker = new Jadler.OngoingConfiguration().usesNamespaceOf(headerServer, "42").build();
+        mocker.onRequest().havingURIEqualTo("/a").respond().withStatus(201);
+
+        headerServer.start();
+        mocker.start();
+        try {
+            final GetMethod method = new GetMethod(url(headerServer, "/a"));
+            method.addRequestHeader("X-Test-Id", "42");
+            assertThat(new HttpClient().executeMethod(method), is(201));
+
+            assertThat(new HttpClient().executeMethod(new GetMethod(url(headerServer, "/a"))), is(503));
+        }
+        finally {
+            mocker.stop();
+            headerServer.stop();
+        }
+    }
+
+
+    private HttpMocker mocker(final String namespace) {
+        return new Jadler.OngoingConfiguration().usesNamespaceOf(this.server, namespace).build();
+    }
+
+
+    private int status(final String path) throws Exception {
+        return new HttpClient().executeMethod(new GetMethod("http://localhost:" + this.port + path));
+    }
+
+
+    private static String url(final NamespacedStubHttpServer server, final String path) {
+        return "http://localhost:" + server.getPort() + path;
+    }
+}
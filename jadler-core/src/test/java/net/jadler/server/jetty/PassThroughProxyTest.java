@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.io.IOException;
+import java.util.Arrays;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.jadler.Jadler;
+import net.jadler.httpmocker.HttpMocker;
+import net.jadler.portallocator.PortAllocator;
+import net.jadler.server.ExecutionMode;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.eclipse.jetty.continuation.Continuation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+
+public class PassThroughProxyTest {
+
+    private static final byte[] BIG_BODY = new byte[1024 * 1024];
+
+    static {
+        Arrays.fill(BIG_BODY, (byte) 'x');
+    }
+
+    private HttpMocker upstream;
+    private int upstreamPort;
+    private HttpClient client;
+
+
+    @Before
+    public void setUp() {
+        this.upstreamPort = new PortAllocator().allocatePort();
+        this.upstream = new Jadler.OngoingConfiguration().usesStandardServerListeningOn(this.upstreamPort).build();
+
+        this.upstream.onRequest()
+                .havingURIEqualTo("/upstream")
+                .havingQueryStringEqualTo("p=1")
+                .havingHeaderEqualTo("X-Custom", "value")
+            .respond()
+                .withStatus(202)
+                .withHeader("X-Upstream", "yes")
+                .withBody("from upstream");
+        this.upstream.onRequest()
+                .havingURIEqualTo("/echo")
+                .havingBody(is(new String(BIG_BODY)))
+            .respond()
+                .withBody(new String(BIG_BODY));
+        this.upstream.start();
+
+        this.client = new HttpClient();
+    }
+
+
+    @After
+    public void tearDown() {
+        this.upstream.stop();
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void constructorInvalidUpstream() {
+        new PassThroughProxy("not an url");
+        fail("upstream is not a valid url");
+    }
+
+
+    @Test
+    public void serverThreads() throws Exception {
+        this.proxy(ExecutionMode.SERVER_THREADS);
+    }
+
+
+    @Test
+    public void virtualThreads() throws Exception {
+        this.proxy(ExecutionMode.VIRTUAL_THREADS);
+    }
+
+
+    @Test
+    public void upstreamNotAvailable() throws Exception {
+        final int port = new PortAllocator().allocatePort();
+        final HttpMocker mocker = new Jadler.OngoingConfiguration()
+                .usesStandardServerListeningOn(port)
+                .proxiesUnmatchedRequestsTo("http://localhost:" + new PortAllocator().allocatePort())
+                .build();
+        mocker.start();
+        try {
+            final GetMethod method = new GetMethod("http://localhost:" + port + "/");
+            assertThat(this.client.executeMethod(method), is(502));
+            method.releaseConnection();
+        }
+        finally {
+            mocker.stop();
+        }
+    }
+
+
+    @Test
+    public void forwardingFailedServerThreads() throws Exception {
+        this.forwardingFailed(ExecutionMode.SERVER_THREADS);
+    }
+
+
+    @Test
+    public void forwardingFailedVirtualThreads() throws Exception {
+        this.forwardingFailed(ExecutionMode.VIRTUAL_THREADS);
+    }
+
+
+    private void forwardingFailed(final ExecutionMode mode) throws Exception {
+        final int port = new PortAllocator().allocatePort();
+        final HttpMocker mocker = new Jadler.OngoingConfiguration()
+                .usesStandardServerListeningOn(port)
+                .executesRequestsUsing(mode)
+                .proxiesUnmatchedRequestsTo(new PassThroughProxy("http://localhost:" + this.upstreamPort) {
+                    @Override
+                    void forward(final HttpServletRequest request, final HttpServletResponse response,
+                            final Continuation continuation) throws IOException {
+                        throw new IOException("cannot be sent");
+                    }
+                })
+                .build();
+        mocker.start();
+        try {
+            final GetMethod method = new GetMethod("http://localhost:" + port + "/upstream");
+            assertThat(this.client.executeMethod(method), is(502));
+            method.releaseConnection();
+        }
+        finally {
+            mocker.stop();
+        }
+    }
+
+
+    private void proxy(final ExecutionMode mode) throws Exception {
+        final int port = new PortAllocator().allocatePort();
+        final HttpMocker mocker = new Jadler.OngoingConfiguration()
+                .usesStandardServerListeningOn(port)
+                .executesRequestsUsing(mode)
+                .proxiesUnmatchedRequestsTo(new PassThroughProxy("http://localhost:" + this.upstreamPort, 2, 5000))
+                .build();
+        mocker.onRequest()
+                .havingURIEqualTo("/stubbed")
+            .respond()
+                .withStatus(201)
+                .withBody("stubbed");
+        mocker.start();
+        try {
+            final GetMethod stubbed = new GetMethod("http://localhost:" + port + "/stubbed");
+            assertThat(this.client.executeMethod(stubbed), is(201));
+            assertThat(stubbed.getResponseBodyAsString(), is("stubbed"));
+            stubbed.releaseConnection();
+
+            for (int i = 0; i < 5; i++) {
+                final GetMethod proxied = new GetMethod("http://localhost:" + port + "/upstream?p=1");
+                proxied.addRequestHeader("X-Custom", "value");
+                assertThat(this.client.executeMethod(proxied), is(202));
+                assertThat(proxied.getResponseHeader("X-Upstream").getValue(), is("yes"));
+                assertThat(proxied.getResponseBodyAsString(), is("from upstream"));
+                proxied.releaseConnection();
+            }
+
+            final PostMethod echo = new PostMethod("http://localhost:" + port + "/echo");
+            echo.setRequestEntity(new ByteArrayRequestEntity(BIG_BODY));
+            assertThat(this.client.executeMethod(echo), is(200));
+            assertThat(Arrays.equals(echo.getResponseBody(), BIG_BODY), is(true));
+            echo.releaseConnection();
+
+              //not matched by the upstream either
+            final GetMethod unknown = new GetMethod("http://localhost:" + port + "/unknown");
+            assertThat(this.client.executeMethod(unknown), is(500));
+            unknown.releaseConnection();
+        }
+        finally {
+            mocker.stop();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.jetty;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.jadler.Jadler;
+import net.jadler.exception.JadlerException;
+import net.jadler.httpmocker.HttpMocker;
+import net.jadler.portallocator.PortAllocator;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+
+public class SharedStubHttpServerTest {
+    
+    private int port;
+    
+    
+    @Before
+    public void setUp() {
+        this.port = new PortAllocator().allocatePort();
+    }
+    
+    
+    @Test
+    public void consecutiveMockers() throws Exception {
+        final HttpMocker first = mocker();
+        first.onRequest().respond().withStatus(201);
+        first.start();
+        assertThat(status(), is(201));
+        first.stop();
+        
+          //the shared server keeps running, no rules attached
+        assertThat(status(), is(503));
+        
+        final HttpMocker second = mocker();
+        second.onRequest().respond().withStatus(202);
+        second.start();
+        assertThat(status(), is(202));
+        second.stop();
+    }
+    
+    
+    @Test
+    public void concurrentMockers() throws Exception {
+        final HttpMocker first = mocker();
+        first.start();
+        try {
+            mocker().start();
+            fail("only one mocker can use the shared server at a time");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+        finally {
+            first.stop();
+        }
+    }
+    
+    
+    @Test
+    public void stopDrainsDelayedResponses() throws Exception {
+        final HttpMocker mocker = mocker();
+        mocker.onRequest().respond().withStatus(201).withTimeout(500, TimeUnit.MILLISECONDS);
+        mocker.start();
+        
+        final Future<Integer> status = Executors.newSingleThreadExecutor().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return status();
+            }
+        });
+          //let the request reach the delay
+        Thread.sleep(200);
+        
+        final long start = System.nanoTime();
+        mocker.stop();
+          //the delayed response is still in flight, the stop waits for it
+        assertThat(System.nanoTime() - start, is(greaterThan(TimeUnit.MILLISECONDS.toNanos(200))));
+        assertThat(status.get(), is(201));
+    }
+    
+    
+    @Test(expected=IllegalStateException.class)
+    public void stopNotStarted() throws Exception {
+        new SharedStubHttpServer(this.port).stop();
+    }
+    
+    
+    private HttpMocker mocker() {
+        return new Jadler.OngoingConfiguration().usesSharedServerListeningOn(this.port).build();
+    }
+    
+    
+    private int status() throws Exception {
+        return new HttpClient().executeMethod(new GetMethod("http://localhost:" + this.port));
+    }
+}
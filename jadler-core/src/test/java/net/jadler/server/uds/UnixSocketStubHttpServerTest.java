@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.uds;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.jadler.server.jetty.JettyStubHttpServer;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static net.jadler.Jadler.*;
+
+
+public class UnixSocketStubHttpServerTest {
+
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+    private Path socketDir;
+    private Path socketPath;
+    private JettyStubHttpServer tcpServer;
+
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(UnixDomainSockets.isSupported());
+
+        this.socketDir = Files.createTempDirectory("jadler-uds");
+        this.socketPath = this.socketDir.resolve("stub.sock");
+        this.tcpServer = new JettyStubHttpServer(0);
+
+        initJadlerThat()
+                .usesCustomServer(new UnixSocketStubHttpServer(this.socketPath, this.tcpServer))
+                .respondsWithDefaultEncoding(Charset.forName("UTF-8"));
+        startStubServer();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.socketDir != null) {
+            stopStubServer();
+            assertThat(Files.exists(this.socketPath), is(false));
+            Files.delete(this.socketDir);
+        }
+    }
+
+
+    @Test
+    public void persistentConnection() throws Exception {
+        onRequest().havingMethodEqualTo("POST").havingURIEqualTo("/a").havingQueryStringEqualTo("p=1")
+                .havingBodyEqualTo("body").respond().withStatus(201).withBody("created");
+        onRequest().havingURIEqualTo("/b").respond().withHeader("X-Custom", "custom").withBody("b");
+
+        try (final SocketChannel channel = UnixDomainSockets.connect(this.socketPath)) {
+            final OutputStream out = Channels.newOutputStream(channel);
+            final InputStream in = Channels.newInputStream(channel);
+
+            out.write(("POST /a?p=1 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody").getBytes(ASCII));
+            final String first = readResponse(in);
+            assertThat(first, startsWith("HTTP/1.1 201 "));
+            assertThat(first, endsWith("\r\n\r\ncreated"));
+
+            out.write(("GET /b HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(ASCII));
+            final String second = readResponse(in);
+            assertThat(second, startsWith("HTTP/1.1 200 "));
+            assertThat(second, containsString("X-Custom: custom\r\n"));
+            assertThat(second, endsWith("\r\n\r\nb"));
+        }
+    }
+
+
+    @Test
+    public void chunkedBodyAndNoRule() throws Exception {
+        onRequest().havingBodyEqualTo("abcdef").respond().withStatus(202);
+
+        try (final SocketChannel channel = UnixDomainSockets.connect(this.socketPath)) {
+            final OutputStream out = Channels.newOutputStream(channel);
+            final InputStream in = Channels.newInputStream(channel);
+
+            out.write(("PUT /c HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n3\r\ndef\r\n0\r\n\r\n")
+                    .getBytes(ASCII));
+            assertThat(readResponse(in), startsWith("HTTP/1.1 202 "));
+
+            out.write(("PUT /c HTTP/1.1\r\nConnection: close\r\nContent-Length: 1\r\n\r\nx").getBytes(ASCII));
+            final String noRule = readResponse(in);
+            assertThat(noRule, startsWith("HTTP/1.1 500 "));
+            assertThat(noRule, containsString("Connection: close\r\n"));
+            assertThat(in.read(), is(-1));
+        }
+    }
+
+
+    @Test
+    public void malformedLengths() throws Exception {
+        onRequest().respond().withStatus(204);
+
+        this.assertBadRequest("POST /a HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        this.assertBadRequest("POST /a HTTP/1.1\r\nContent-Length: abc\r\n\r\n");
+        this.assertBadRequest("POST /a HTTP/1.1\r\nContent-Length: 99999999999\r\n\r\n");
+        this.assertBadRequest("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n-1\r\n");
+        this.assertBadRequest("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nxyz\r\n");
+        this.assertBadRequest("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nFFFFFFFF\r\n");
+    }
+
+
+    @Test
+    public void tcpListener() throws Exception {
+        onRequest().respond().withStatus(204);
+
+        final int port = this.tcpServer.getPort();
+        assertThat(new HttpClient().executeMethod(new GetMethod("http://localhost:" + port)), is(204));
+    }
+
+
+    private void assertBadRequest(final String request) throws IOException {
+        try (final SocketChannel channel = UnixDomainSockets.connect(this.socketPath)) {
+            final InputStream in = Channels.newInputStream(channel);
+            Channels.newOutputStream(channel).write(request.getBytes(ASCII));
+
+            final String response = readResponse(in);
+            assertThat(response, startsWith("HTTP/1.1 400 "));
+            assertThat(response, containsString("Connection: close\r\n"));
+            assertThat(in.read(), is(-1));
+        }
+    }
+
+
+    private static String readResponse(final InputStream in) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString("ISO-8859-1").endsWith("\r\n\r\n")) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            head.write(b);
+        }
+
+        final String headString = head.toString("ISO-8859-1");
+        final int idx = headString.indexOf("Content-Length: ");
+        final int length = Integer.parseInt(headString.substring(idx + 16, headString.indexOf('\r', idx)));
+        final byte[] body = new byte[length];
+        int read = 0;
+        while (read < length) {
+            read += in.read(body, read, length - read);
+        }
+        return headString + new String(body, "UTF-8");
+    }
+}
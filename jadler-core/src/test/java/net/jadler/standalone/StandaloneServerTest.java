@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.standalone;
+
+import java.io.File;
+import net.jadler.portallocator.PortAllocator;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+
+public class StandaloneServerTest {
+
+    private static final long RELOAD_TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private StandaloneServer server;
+    private HttpClient client;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = this.folder.newFolder("stubs");
+        write("a.json", stub("/a", "a1"));
+        write("b.json", stub("/b", "b1"));
+        write("ignored.txt", "not a stub definition");
+
+        this.server = new StandaloneServer(new PortAllocator().allocatePort(), this.directory, 0);
+        this.server.start();
+        this.client = new HttpClient();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.close();
+    }
+
+
+    @Test
+    public void serveStubs() throws Exception {
+        assertThat(get("/a"), is("a1"));
+        assertThat(get("/b"), is("b1"));
+    }
+
+
+    @Test
+    public void reloadChangedFile() throws Exception {
+        write("a.json", stub("/a", "a2"));
+        awaitResponse("/a", "a2");
+        assertThat(get("/b"), is("b1"));
+
+        write("c.json", stub("/c", "c1"));
+        awaitResponse("/c", "c1");
+
+        assertThat(new File(this.directory, "b.json").delete(), is(true));
+        awaitStatus("/b", 500);
+        assertThat(get("/a"), is("a2"));
+    }
+
+
+    @Test
+    public void invalidFileKeepsPreviousRules() throws Exception {
+        write("a.json", "[{\"request\": ");
+        write("c.json", stub("/c", "c1"));
+        awaitResponse("/c", "c1");
+
+        assertThat(get("/a"), is("a1"));
+    }
+
+
+    @Test
+    public void invalidDefinitionDoesNotStopWatching() throws Exception {
+        write("a.json", "[{\"request\": {\"uri\": \"/a\"}, \"responses\": [{\"encoding\": \"no-such-charset\"}]}]");
+        write("c.json", stub("/c", "c1"));
+        awaitResponse("/c", "c1");
+        assertThat(get("/a"), is("a1"));
+
+        write("d.json", stub("/d", "d1"));
+        awaitResponse("/d", "d1");
+    }
+
+
+    @Test
+    public void remoteStubbing() throws Exception {
+        assertThat(post("[" + definition("/a", "remote") + ", " + definition("/d", "d1") + "]"), is("[0,1]"));
+        assertThat(get("/a"), is("remote"));
+        assertThat(get("/d"), is("d1"));
+        assertThat(get("/b"), is("b1"));
+        assertThat(post(stub("/e", "e1")), is("[2]"));
+        assertThat(get("/e"), is("e1"));
+
+        this.server.getMocker().verifyThatRequest()
+                .havingURIEqualTo("/d")
+                .havingMatchedRuleEqualTo(1)
+            .receivedOnce();
+
+          //directory reloads don't change the ids of the remote rules
+        write("c.json", stub("/c", "c1"));
+        awaitResponse("/c", "c1");
+        assertThat(get("/a"), is("remote"));
+
+        assertThat(delete(this.adminUri()), is(204));
+        assertThat(get("/a"), is("a1"));
+        assertThat(status("/d"), is(500));
+    }
+
+
+    @Test
+    public void remoteRuleRemoval() throws Exception {
+        assertThat(post("[" + definition("/d", "d1") + ", " + definition("/e", "e1") + "]"), is("[0,1]"));
+        assertThat(this.server.getRuleIndex(1), is(1));
+
+        assertThat(delete(this.adminUri() + "/0"), is(204));
+        assertThat(status("/d"), is(500));
+        assertThat(get("/e"), is("e1"));
+        assertThat(this.server.getRuleIndex(0), is(-1));
+        assertThat(this.server.getRuleIndex(1), is(0));
+        assertThat(delete(this.adminUri() + "/0"), is(404));
+        assertThat(delete(this.adminUri() + "/x"), is(404));
+
+          //ids are not reused, not even once all remote rules have been removed
+        assertThat(delete(this.adminUri()), is(204));
+        assertThat(post(stub("/f", "f1")), is("[2]"));
+        assertThat(this.server.getRuleIndex(2), is(0));
+    }
+
+
+    @Test
+    public void remoteStubbingInvalid() throws Exception {
+        final PostMethod method = new PostMethod(this.adminUri());
+        method.setRequestEntity(new StringRequestEntity(stub("/d", "d1") + "[", "application/json", "UTF-8"));
+        try {
+            assertThat(this.client.executeMethod(method), is(400));
+            assertThat(method.getResponseBodyAsString(), containsString("end of the document expected"));
+        }
+        finally {
+            method.releaseConnection();
+        }
+        assertThat(status("/d"), is(500));
+
+        method.setRequestEntity(new StringRequestEntity(
+                "[{\"request\": {\"uriPattern\": \"[\"}, \"responses\": [{}]}]", "application/json", "UTF-8"));
+        try {
+            assertThat(this.client.executeMethod(method), is(400));
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+
+
+    private String post(final String definitions) throws Exception {
+        final PostMethod method = new PostMethod(this.adminUri());
+        method.setRequestEntity(new StringRequestEntity(definitions, "application/json", "UTF-8"));
+        try {
+            assertThat(this.client.executeMethod(method), is(201));
+            return method.getResponseBodyAsString();
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+
+
+    private int delete(final String uri) throws Exception {
+        final DeleteMethod method = new DeleteMethod(uri);
+        try {
+            return this.client.executeMethod(method);
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+
+
+    private String adminUri() {
+        return "http://localhost:" + this.server.getAdminPort() + "/rules";
+    }
+
+
+    private void write(final String name, final String content) throws Exception {
+        FileUtils.writeStringToFile(new File(this.directory, name), content, "UTF-8");
+    }
+
+
+    private static String stub(final String uri, final String body) {
+        return "[" + definition(uri, body) + "]";
+    }
+
+
+    private static String definition(final String uri, final String body) {
+        return "{\"request\": {\"uri\": \"" + uri + "\"}, \"responses\": [{\"body\": \"" + body + "\"}]}";
+    }
+
+
+    private String get(final String uri) throws Exception {
+        final GetMethod method = new GetMethod("http://localhost:" + this.server.getPort() + uri);
+        try {
+            this.client.executeMethod(method);
+            return method.getResponseBodyAsString();
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+
+
+    private int status(final String uri) throws Exception {
+        final GetMethod method = new GetMethod("http://localhost:" + this.server.getPort() + uri);
+        try {
+            return this.client.executeMethod(method);
+        }
+        finally {
+            method.releaseConnection();
+        }
+    }
+
+
+    private void awaitResponse(final String uri, final String expected) throws Exception {
+        final long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT;
+        while (!expected.equals(this.get(uri)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(this.get(uri), is(expected));
+    }
+
+
+    private void awaitStatus(final String uri, final int expected) throws Exception {
+        final long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT;
+        while (this.status(uri) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(this.status(uri), is(expected));
+    }
+}
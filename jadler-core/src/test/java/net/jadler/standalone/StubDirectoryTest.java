@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.standalone;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import javax.servlet.http.HttpServletResponse;
+import net.jadler.exception.JadlerException;
+import net.jadler.stubbing.StubDefinitions;
+import org.apache.commons.collections.map.MultiValueMap;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.hasSize;
+
+
+public class StubDirectoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private StubDirectory stubs;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = this.folder.newFolder("stubs");
+        this.stubs = new StubDirectory(this.directory, new StubDefinitions(Charset.forName("UTF-8"),
+                HttpServletResponse.SC_OK, new MultiValueMap()));
+    }
+
+
+    @Test
+    public void failedLoadKeepsPreviousRules() throws Exception {
+        write("a.json", "[{\"request\": {\"uri\": \"/a\"}, \"responses\": [{\"body\": \"a\"}]}]");
+        this.stubs.loadAll();
+        assertThat(this.stubs.getRules(), hasSize(1));
+
+        write("b.json", "[{\"request\": ");
+        try {
+            this.stubs.loadAll();
+            fail("b.json is not a valid stub definition file");
+        }
+        catch (final JadlerException e) {
+              //expected
+        }
+        assertThat(this.stubs.getRules(), hasSize(1));
+    }
+
+
+    private void write(final String name, final String content) throws Exception {
+        FileUtils.writeStringToFile(new File(this.directory, name), content, "UTF-8");
+    }
+}
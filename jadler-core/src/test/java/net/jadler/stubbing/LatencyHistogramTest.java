@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import org.hamcrest.Matcher;
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets() {
+        for (int i = 0; i < 32; i++) {
+            assertThat(LatencyHistogram.indexOf(i), is(i));
+        }
+        assertThat(LatencyHistogram.indexOf(32), is(32));
+        assertThat(LatencyHistogram.indexOf(33), is(32));
+        assertThat(LatencyHistogram.indexOf(63), is(47));
+        assertThat(LatencyHistogram.indexOf(64), is(48));
+
+        int previous = -1;
+        for (long value = 1; value <= LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            final int index = LatencyHistogram.indexOf(value);
+            assertThat(index, greaterThanOrEqualTo(previous));
+            assertThat(value, allOf(greaterThanOrEqualTo(LatencyHistogram.lowestValueOf(index)),
+                    lessThanOrEqualTo(LatencyHistogram.highestValueOf(index))));
+              //bucket width is at most 1/16 of the value
+            assertThat((LatencyHistogram.highestValueOf(index) - LatencyHistogram.lowestValueOf(index)) * 16,
+                    lessThanOrEqualTo(value));
+            previous = index;
+        }
+        assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE)),
+                is(LatencyHistogram.MAX_VALUE));
+    }
+
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+        assertThat(histogram.getMax(), is(0L));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.getCount(), is(102L));
+        assertThat(histogram.getValueAtPercentile(0), is(0L));
+        assertThat(histogram.getValueAtPercentile(50), is(closeTo(50000)));
+        assertThat(histogram.getValueAtPercentile(90), is(closeTo(90000)));
+        assertThat(histogram.getMax(), is(LatencyHistogram.MAX_VALUE));
+    }
+
+
+    @Test
+    public void copy() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        final LatencyHistogram copy = histogram.copy();
+        histogram.record(2000);
+
+        assertThat(copy.getCount(), is(1L));
+        assertThat(copy.getMean(), allOf(greaterThanOrEqualTo(1000.0), lessThanOrEqualTo(1000.0 + 1000 / 16)));
+        assertThat(histogram.getCount(), is(2L));
+    }
+
+
+    @Test
+    public void concurrentHits() throws Exception {
+        final RuleMetrics metrics = new RuleMetrics();
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        metrics.recordHit(j);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final RuleStatistics statistics = metrics.snapshot();
+        assertThat(statistics.getHits(), is(80000L));
+        assertThat(statistics.getMatchTime().getCount(), is(80000L));
+    }
+
+
+    private static Matcher<Long> closeTo(final long value) {
+        return allOf(greaterThanOrEqualTo(value), lessThanOrEqualTo(value + value / 16));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.predicates.HeaderPatternPredicate;
+import net.jadler.predicates.HostPredicate;
+import net.jadler.predicates.LocalPortPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.URIPatternPredicate;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+
+public class RuleSetTest {
+    
+    private static final StubResponse RESPONSE = new StubResponse();
+    
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void compileNull() {
+        RuleSet.compile(null);
+        fail("rules cannot be null");
+    }
+    
+    
+    @Test
+    public void findMatchingRule() {
+        final StubRule rule1 = rule(new URIPatternPredicate("/a/[0-9]+"),
+                new HeaderPatternPredicate("h1", "v[12]"));
+        final StubRule rule2 = rule(new URIPatternPredicate("/a/.*"));
+        final StubRule rule3 = rule(new HeaderPatternPredicate("H1", "v.*"));
+        final RuleSet ruleSet = RuleSet.compile(Arrays.asList(rule1, rule2, rule3));
+        
+        assertThat(ruleSet.findMatchingRule(request("/a/1", "v1")), is(rule1));
+        assertThat(ruleSet.findMatchingRule(request("/a/1", "v3")), is(rule2));
+        assertThat(ruleSet.findMatchingRule(request("/a/b", null)), is(rule2));
+        assertThat(ruleSet.findMatchingRule(request("/b", "v3")), is(rule3));
+        assertThat(ruleSet.findMatchingRule(request("/b", null)), is(nullValue()));
+    }
+    
+    
+    @Test
+    public void findMatchingRuleByLocalPortAndHost() {
+        final StubRule rule1 = rule(new LocalPortPredicate(8081), new HostPredicate("a.example.com"));
+        final StubRule rule2 = rule(new LocalPortPredicate(8082));
+        final StubRule rule3 = rule(new URIPatternPredicate("/common"));
+        final StubRule rule4 = rule(new LocalPortPredicate(8081));
+        final RuleSet ruleSet = RuleSet.compile(Arrays.asList(rule1, rule2, rule3, rule4));
+        
+        assertThat(ruleSet.findMatchingRule(request(8081, "a.example.com:8081", "/x")), is(rule1));
+        assertThat(ruleSet.findMatchingRule(request(8081, "b.example.com", "/x")), is(rule4));
+        assertThat(ruleSet.findMatchingRule(request(8081, "b.example.com", "/common")), is(rule3));
+        assertThat(ruleSet.findMatchingRule(request(8082, "a.example.com", "/x")), is(rule2));
+        assertThat(ruleSet.findMatchingRule(request(8083, "a.example.com", "/common")), is(rule3));
+        assertThat(ruleSet.findMatchingRule(request(8083, "a.example.com", "/x")), is(nullValue()));
+    }
+    
+    
+    @Test
+    public void findMatchingRuleIndex() {
+        final StubRule rule1 = rule(new LocalPortPredicate(8081));
+        final StubRule rule2 = rule(new URIPatternPredicate("/common"));
+        final RuleSet ruleSet = RuleSet.compile(Arrays.asList(rule1, rule2));
+        
+        assertThat(ruleSet.findMatchingRuleIndex(request(8081, "localhost", "/common")), is(0));
+        assertThat(ruleSet.findMatchingRuleIndex(request(8082, "localhost", "/common")), is(1));
+        assertThat(ruleSet.findMatchingRuleIndex(request(8082, "localhost", "/x")), is(-1));
+    }
+    
+    
+    @Test
+    public void compiledPredicatesKeepDescriptions() {
+        final StubRule rule = rule(new URIPatternPredicate("/a/[0-9]+"));
+        RuleSet.compile(Collections.singletonList(rule));
+        
+        assertThat(rule.describeMismatch(request("/b", null)),
+                is("  REQUIRED: URI matches pattern \"/a/[0-9]+\" BUT was \"/b\""));
+    }
+    
+    
+    @Test
+    public void recordNearMisses() {
+        final StubRule rule1 = rule(new URIPatternPredicate("/a"), new LocalPortPredicate(8081));
+        final StubRule rule2 = rule(new URIPatternPredicate("/b"), new LocalPortPredicate(8082));
+        final RuleSet ruleSet = RuleSet.compile(Arrays.asList(rule1, rule2));
+
+        final StringBuilder description = new StringBuilder();
+        ruleSet.recordNearMisses(request(8082, "localhost", "/a"), description);
+
+          //each rule has one matching and one mismatching predicate
+        assertThat(rule1.getMetrics().snapshot().getNearMisses(), is(1L));
+        assertThat(rule2.getMetrics().snapshot().getNearMisses(), is(1L));
+        assertThat(description.toString(), is(
+                "The rule '" + rule1 + "' cannot be applied. Mismatch:\n"
+                + rule1.describeMismatch(request(8082, "localhost", "/a")) + "\n"
+                + "The rule '" + rule2 + "' cannot be applied. Mismatch:\n"
+                + rule2.describeMismatch(request(8082, "localhost", "/a")) + "\n"));
+
+        ruleSet.recordNearMisses(request(8083, "localhost", "/c"), null);
+        assertThat(rule1.getMetrics().snapshot().getNearMisses(), is(1L));
+    }
+
+
+    private static StubRule rule(final RequestPredicate... predicates) {
+        return StubRule.of(Arrays.asList(predicates), Arrays.asList(RESPONSE));
+    }
+    
+    
+    private static HttpServletRequest request(final int localPort, final String host, final String uri) {
+        final MockHttpServletRequest req = new MockHttpServletRequest("GET", uri);
+        req.setLocalPort(localPort);
+        req.addHeader("Host", host);
+        return req;
+    }
+    
+    
+    private static HttpServletRequest request(final String uri, final String headerValue) {
+        final MockHttpServletRequest req = new MockHttpServletRequest("GET", uri);
+        if (headerValue != null) {
+            req.addHeader("h1", headerValue);
+        }
+        return req;
+    }
+}
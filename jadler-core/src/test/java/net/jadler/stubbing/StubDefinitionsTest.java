@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.stubbing;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.jadler.exception.JadlerException;
+import net.jadler.predicates.MatcherPredicate;
+import net.jadler.predicates.URIPredicate;
+import org.apache.commons.collections.MultiMap;
+import org.apache.commons.collections.map.MultiValueMap;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.anything;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+
+public class StubDefinitionsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String JSON = "[\n"
+            + "  {\n"
+            + "    \"request\": {\n"
+            + "      \"method\": \"POST\", \"uri\": \"/a\", \"queryString\": \"p=1\",\n"
+            + "      \"headers\": {\"h1\": \"v1\", \"h2\": null}, \"body\": \"\\u00e1bc\"\n"
+            + "    },\n"
+            + "    \"responses\": [\n"
+            + "      {\"status\": 201, \"body\": \"created\", \"headers\": {\"Content-Type\": \"text/plain\","
+            + " \"X-Multi\": [\"1\", \"2\"]}},\n"
+            + "      {\"timeout\": 10, \"encoding\": \"ISO-8859-2\", \"body\": \"\\u0159\"}\n"
+            + "    ]\n"
+            + "  },\n"
+            + "  {\"request\": {\"uriPattern\": \"/b/.*\"}, \"responses\": [{}]}\n"
+            + "]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void readJson() {
+        final List<StubRule> rules = definitions().readJson(new StringReader(JSON));
+        assertThat(rules.size(), is(2));
+
+        final StubRule first = rules.get(0);
+        assertThat(first.getPredicates().size(), is(6));
+        final MockHttpServletRequest req = new MockHttpServletRequest("POST", "/a");
+        req.setQueryString("p=1");
+        req.addHeader("h1", "v1");
+        req.addHeader("h2", "anything");
+        req.setCharacterEncoding("UTF-8");
+        req.setContent("\u00e1bc".getBytes(UTF_8));
+        assertThat(first.matchedBy(req), is(true));
+
+        final StubResponse created = first.nextResponse();
+        assertThat(created.getStatus(), is(201));
+        assertThat(created.getBody(), is("created"));
+        assertThat(created.getHeaders().get("Content-Type"), is((Object) Arrays.asList("text/plain")));
+        assertThat(created.getHeaders().get("X-Multi"), is((Object) Arrays.asList("1", "2")));
+        assertThat(created.getHeaders().get("X-Default"), is((Object) Arrays.asList("d")));
+
+        final StubResponse delayed = first.nextResponse();
+        assertThat(delayed.getStatus(), is(202));
+        assertThat(delayed.getTimeout(), is(10L));
+        assertThat(delayed.getEncoding(), is(Charset.forName("ISO-8859-2")));
+        assertThat(delayed.getEncodedBody(), is(new byte[] {(byte) 0xF8}));
+
+        final StubRule second = rules.get(1);
+        assertThat(second.matchedBy(new MockHttpServletRequest("GET", "/b/c")), is(true));
+        assertThat(second.nextResponse().getBody(), is(""));
+    }
+
+
+    @Test
+    public void readJsonInvalid() {
+        try {
+            definitions().readJson(new StringReader("[\n{\"request\": {\"unknown\": 1}, \"responses\": [{}]}]"));
+            fail("unknown key");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getMessage(), containsString("line 2"));
+        }
+
+        try {
+            definitions().readJson(new StringReader("[{\"request\": {}, \"responses\": []}]"));
+            fail("no response");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getMessage(), containsString("at least one response"));
+        }
+
+        try {
+            definitions().readJson(new StringReader("[{\"request\": {\"uri\": \"/a\"} \"responses\": [{}]}]"));
+            fail("missing comma");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getMessage(), containsString("',' or '}' expected"));
+        }
+
+        try {
+            definitions().readJson(new StringReader("[{\"responses\": [{\"encoding\": \"no-such-charset\"}]}]"));
+            fail("unknown charset");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getMessage(), containsString("no-such-charset"));
+        }
+
+        try {
+            definitions().readJson(new StringReader("[{\"request\": {\"uriPattern\": \"[\"}, \"responses\": [{}]}]"));
+            fail("invalid regex");
+        }
+        catch (final JadlerException e) {
+            assertThat(e.getMessage(), containsString("Invalid stub definitions"));
+        }
+    }
+
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        final File json = this.folder.newFile("stubs.json");
+        FileUtils.writeStringToFile(json, JSON, "UTF-8");
+        final File binary = this.folder.newFile("stubs.bin");
+
+        StubDefinitions.writeBinary(definitions().load(json), binary);
+        final List<StubRule> rules = definitions().load(binary);
+        assertThat(rules.size(), is(2));
+
+        final StubRule first = rules.get(0);
+        assertThat(first.getPredicates().toString(),
+                is(definitions().load(json).get(0).getPredicates().toString()));
+
+        final StubResponse created = first.nextResponse();
+        assertThat(created.getStatus(), is(201));
+        assertThat(created.getBody(), is("created"));
+        assertThat(created.getHeaders().get("X-Multi"), is((Object) Arrays.asList("1", "2")));
+
+        final StubResponse delayed = first.nextResponse();
+        assertThat(delayed.getTimeout(), is(10L));
+        assertThat(delayed.getEncoding(), is(Charset.forName("ISO-8859-2")));
+        assertThat(delayed.getEncodedBody(), is(new byte[] {(byte) 0xF8}));
+        assertThat(delayed.getBody(), is("\u0159"));
+
+        assertThat(rules.get(1).matchedBy(new MockHttpServletRequest("GET", "/b/c")), is(true));
+    }
+
+
+    @Test
+    public void binaryCopiedBodiesSurviveRewrite() throws Exception {
+        final File json = this.folder.newFile("stubs.json");
+        FileUtils.writeStringToFile(json, JSON, "UTF-8");
+        final File binary = this.folder.newFile("stubs.bin");
+        StubDefinitions.writeBinary(definitions().load(json), binary);
+
+        final List<StubRule> rules = definitions().load(binary, false);
+          //rewritten in place, the bodies have been copied already
+        FileUtils.writeStringToFile(binary, "", "UTF-8");
+        assertThat(rules.get(0).nextResponse().getBody(), is("created"));
+        assertThat(rules.get(0).nextResponse().getEncodedBody(), is(new byte[] {(byte) 0xF8}));
+    }
+
+
+    @Test
+    public void writeSnapshot() throws Exception {
+        final StubResponse first = new StubResponse();
+        first.setStatus(201);
+        first.setEncoding(UTF_8);
+        final StubResponse second = new StubResponse();
+        second.setStatus(202);
+        second.setEncoding(UTF_8);
+        final StubRule rule = StubRule.of(Arrays.asList(new URIPredicate("/a")), Arrays.asList(first, second));
+        assertThat(rule.nextResponse().getStatus(), is(201));
+        final StubRule matcherRule = StubRule.of(Arrays.asList(new MatcherPredicate(anything())),
+                Collections.singletonList(first));
+
+        final File snapshot = this.folder.newFile("snapshot.bin");
+        assertThat(StubDefinitions.writeSnapshot(Arrays.asList(rule, matcherRule), snapshot), is(1));
+
+        final List<StubRule> rules = definitions().load(snapshot);
+        assertThat(rules.size(), is(1));
+        assertThat(rules.get(0).getResponsePointer(), is(1));
+        assertThat(rules.get(0).nextResponse().getStatus(), is(202));
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void writeBinaryMatcherPredicate() throws Exception {
+        final StubRule rule = StubRule.of(Arrays.asList(new MatcherPredicate(anything())),
+                Collections.singletonList(new StubResponse()));
+        StubDefinitions.writeBinary(Arrays.asList(rule), this.folder.newFile("stubs.bin"));
+        fail("a matcher predicate cannot be stored");
+    }
+
+
+    private static StubDefinitions definitions() {
+        final MultiMap defaultHeaders = new MultiValueMap();
+        defaultHeaders.put("X-Default", "d");
+        defaultHeaders.put("Content-Type", "application/json");
+        return new StubDefinitions(UTF_8, 202, defaultHeaders);
+    }
+}
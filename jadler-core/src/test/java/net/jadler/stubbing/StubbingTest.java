@@ -11,6 +11,16 @@ import net.jadler.matchers.MethodRequestMatcher;
 import net.jadler.matchers.ParameterRequestMatcher;
 import net.jadler.matchers.QueryStringRequestMatcher;
 import net.jadler.matchers.URIRequestMatcher;
+import net.jadler.predicates.BodyPredicate;
+import net.jadler.predicates.HeaderPatternPredicate;
+import net.jadler.predicates.HeaderPredicate;
+import net.jadler.predicates.MatcherPredicate;
+import net.jadler.predicates.MethodPredicate;
+import net.jadler.predicates.ParameterPredicate;
+import net.jadler.predicates.QueryStringPredicate;
+import net.jadler.predicates.RequestPredicate;
+import net.jadler.predicates.URIPatternPredicate;
+import net.jadler.predicates.URIPredicate;
 import org.apache.commons.collections.MultiMap;
 import org.apache.commons.collections.map.MultiValueMap;
 import org.hamcrest.Matcher;
@@ -54,6 +64,9 @@ public class StubbingTest {
     @Mock
     private Matcher<Object> matcher;
 
+    @Mock
+    private RequestPredicate predicate;
+
 
     @Before
     public void setUp() {
@@ -66,42 +79,49 @@ public class StubbingTest {
         this.stubbing.that(matcher);
 
           //Fuck Java generics. This thing is sick.
-        this.assertOneMatcher(Matchers.<Matcher<? super HttpServletRequest>>equalTo(matcher));
+        this.assertOneAdaptedMatcher(Matchers.<Matcher<? super HttpServletRequest>>equalTo(matcher));
+    }
+
+
+    @Test
+    public void thatPredicate() {
+        this.stubbing.that(predicate);
+        this.assertOnePredicate(Matchers.<RequestPredicate>equalTo(predicate));
     }
 
 
     @Test
     public void havingMethodEqualTo() {
         this.stubbing.havingMethodEqualTo("GET");
-        this.assertOneMatcher(is(instanceOf(MethodRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(MethodPredicate.class)));
     }
 
 
     @Test
     public void havingMethod() {
         this.stubbing.havingMethod(matcher);
-        this.assertOneMatcher(is(instanceOf(MethodRequestMatcher.class)));
+        this.assertOneAdaptedMatcher(is(instanceOf(MethodRequestMatcher.class)));
     }
 
 
     @Test
     public void havingBodyEqualTo() {
         this.stubbing.havingBodyEqualTo("body");
-        this.assertOneMatcher(is(instanceOf(BodyRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(BodyPredicate.class)));
     }
 
 
     @Test
     public void havingBody() {
         this.stubbing.havingBody(matcher);
-        this.assertOneMatcher(is(instanceOf(BodyRequestMatcher.class)));
+        this.assertOneAdaptedMatcher(is(instanceOf(BodyRequestMatcher.class)));
     }
 
 
     @Test
     public void havingURIMatching() {
         this.stubbing.havingURIEqualTo("/**");
-        this.assertOneMatcher(is(instanceOf(URIRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(URIPredicate.class)));
     }
 
 
@@ -114,42 +134,49 @@ public class StubbingTest {
     @Test
     public void havingURI() {
         this.stubbing.havingURI(matcher);
-        this.assertOneMatcher(is(instanceOf(URIRequestMatcher.class)));
+        this.assertOneAdaptedMatcher(is(instanceOf(URIRequestMatcher.class)));
+    }
+
+
+    @Test
+    public void havingURIMatchingPattern() {
+        this.stubbing.havingURIMatching("/a/.*");
+        this.assertOnePredicate(is(instanceOf(URIPatternPredicate.class)));
     }
 
 
     @Test
     public void havingQueryStringEqualTo() {
         this.stubbing.havingQueryStringEqualTo("a=b");
-        this.assertOneMatcher(is(instanceOf(QueryStringRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(QueryStringPredicate.class)));
     }
 
 
     @Test
     public void havingQueryString() {
         this.stubbing.havingQueryString(matcher);
-        this.assertOneMatcher(is(instanceOf(QueryStringRequestMatcher.class)));
+        this.assertOneAdaptedMatcher(is(instanceOf(QueryStringRequestMatcher.class)));
     }
 
 
     @Test
     public void havingParameterEqualTo() {
         this.stubbing.havingParameterEqualTo("name", "value");
-        this.assertOneMatcher(is(instanceOf(ParameterRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(ParameterPredicate.class)));
     }
 
 
     @Test
     public void havingParameter() {
         this.stubbing.havingParameter("name", matcher);
-        this.assertOneMatcher(is(instanceOf(ParameterRequestMatcher.class)));
+        this.assertOneAdaptedMatcher(is(instanceOf(ParameterRequestMatcher.class)));
     }
 
 
     @Test
     public void havingParameterWithoutValue() {
         this.stubbing.havingParameter("name");
-        this.assertOneMatcher(is(instanceOf(ParameterRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(ParameterPredicate.class)));
     }
 
 
@@ -159,29 +186,36 @@ public class StubbingTest {
         assertThat(this.stubbing.getPredicates(), is(notNullValue()));
         assertThat(this.stubbing.getPredicates(), hasSize(2));
 
-        assertThat(this.stubbing.getPredicates().get(0), is(instanceOf(ParameterRequestMatcher.class)));
-        assertThat(this.stubbing.getPredicates().get(1), is(instanceOf(ParameterRequestMatcher.class)));
+        assertThat(this.stubbing.getPredicates().get(0), is(instanceOf(ParameterPredicate.class)));
+        assertThat(this.stubbing.getPredicates().get(1), is(instanceOf(ParameterPredicate.class)));
     }
 
 
     @Test
     public void havingHeaderEqualTo() {
         this.stubbing.havingHeaderEqualTo("name", "value");
-        this.assertOneMatcher(is(instanceOf(HeaderRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(HeaderPredicate.class)));
     }
 
 
     @Test
     public void havingHeader() {
         this.stubbing.havingHeader("name", hasItem("value"));
-        this.assertOneMatcher(is(instanceOf(HeaderRequestMatcher.class)));
+        this.assertOneAdaptedMatcher(is(instanceOf(HeaderRequestMatcher.class)));
+    }
+
+
+    @Test
+    public void havingHeaderMatching() {
+        this.stubbing.havingHeaderMatching("name", "val.*");
+        this.assertOnePredicate(is(instanceOf(HeaderPatternPredicate.class)));
     }
 
 
     @Test
     public void havingHeaderWithoutValue() {
         this.stubbing.havingHeader("name");
-        this.assertOneMatcher(is(instanceOf(HeaderRequestMatcher.class)));
+        this.assertOnePredicate(is(instanceOf(HeaderPredicate.class)));
     }
 
 
@@ -191,8 +225,8 @@ public class StubbingTest {
         assertThat(this.stubbing.getPredicates(), is(notNullValue()));
         assertThat(this.stubbing.getPredicates(), hasSize(2));
 
-        assertThat(this.stubbing.getPredicates().get(0), is(instanceOf(HeaderRequestMatcher.class)));
-        assertThat(this.stubbing.getPredicates().get(1), is(instanceOf(HeaderRequestMatcher.class)));
+        assertThat(this.stubbing.getPredicates().get(0), is(instanceOf(HeaderPredicate.class)));
+        assertThat(this.stubbing.getPredicates().get(1), is(instanceOf(HeaderPredicate.class)));
     }
 
 
@@ -312,10 +346,17 @@ public class StubbingTest {
     }
 
 
-    private void assertOneMatcher(final Matcher<? super Matcher<? super HttpServletRequest>> matcher) {
+    private void assertOnePredicate(final Matcher<? super RequestPredicate> matcher) {
         assertThat(this.stubbing.getPredicates(), is(notNullValue()));
         assertThat(this.stubbing.getPredicates(), hasSize(1));
 
         assertThat(this.stubbing.getPredicates().get(0), matcher);
     }
+
+
+    private void assertOneAdaptedMatcher(final Matcher<? super Matcher<? super HttpServletRequest>> matcher) {
+        this.assertOnePredicate(is(instanceOf(MatcherPredicate.class)));
+
+        assertThat(((MatcherPredicate) this.stubbing.getPredicates().get(0)).getMatcher(), matcher);
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.verification;
+
+import net.jadler.journal.RequestJournal;
+import net.jadler.journal.RequestJournal.EvictionPolicy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+
+public class VerifyingTest {
+
+    private RequestJournal journal;
+
+
+    @Before
+    public void setUp() throws Exception {
+        this.journal = new RequestJournal(10, EvictionPolicy.OVERWRITE_OLDEST);
+        this.journal.record(request("GET", "/a", "h1", "v1"), 0);
+        this.journal.record(request("GET", "/a", "h1", "v2"), 0);
+        this.journal.record(request("POST", "/a", "h1", "v1"), 1);
+        this.journal.record(request("GET", "/b", "h1", "v1"), -1);
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void constructorNullJournal() {
+        new Verifying(null);
+        fail("journal cannot be null");
+    }
+
+
+    @Test
+    public void receivedTimes() {
+        new Verifying(this.journal).havingMethodEqualTo("get").receivedTimes(3);
+        new Verifying(this.journal).havingURIEqualTo("/a").receivedTimes(3);
+        new Verifying(this.journal).havingMethodEqualTo("GET").havingURIEqualTo("/a").receivedTimes(2);
+        new Verifying(this.journal).havingMatchedRuleEqualTo(0).havingHeaderEqualTo("h1", "v2").receivedOnce();
+        new Verifying(this.journal).havingMatchedRuleEqualTo(-1).havingURIEqualTo("/b").receivedOnce();
+        new Verifying(this.journal).havingURIEqualTo("/c").receivedNever();
+        new Verifying(this.journal).havingHeaderEqualTo("h1", "v1").receivedTimes(greaterThan(2));
+    }
+
+
+    @Test
+    public void receivedTimesMismatch() {
+        try {
+            new Verifying(this.journal).havingURIEqualTo("/a").receivedTimes(2);
+            fail("three requests received");
+        }
+        catch (final VerificationException e) {
+            assertThat(e.getMessage(), containsString("but was 3"));
+            assertThat(e.getMessage(), containsString("URI is \"/a\""));
+        }
+    }
+
+
+    @Test(expected=IllegalStateException.class)
+    public void evictedRequests() throws Exception {
+        final RequestJournal small = new RequestJournal(1, EvictionPolicy.OVERWRITE_OLDEST);
+        small.record(request("GET", "/a", "h1", "v1"), 0);
+        small.record(request("GET", "/a", "h1", "v1"), 0);
+
+        new Verifying(small).havingURIEqualTo("/a").receivedOnce();
+        fail("the journal has evicted a request");
+    }
+
+
+    private static MockHttpServletRequest request(final String method, final String uri, final String header,
+            final String value) {
+        final MockHttpServletRequest req = new MockHttpServletRequest(method, uri);
+        req.addHeader(header, value);
+        return req;
+    }
+}
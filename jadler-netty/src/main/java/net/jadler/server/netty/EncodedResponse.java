@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import net.jadler.stubbing.StubResponse;
+
+
+/**
+ * A stub response adapted to Netty. The body is not encoded again, the buffer just wraps the encoded body
+ * kept by the stub response itself (see {@link StubResponse#getEncodedBody()}), so serving a stub response
+ * means neither encoding nor copying the body. Since the encoded body belongs to the stub response, it's
+ * released along with the rule and a changed body is never served stale.
+ */
+final class EncodedResponse {
+
+    private final HttpResponseStatus status;
+    private final HttpHeaders headers;
+    private final ByteBuf body;
+    private final long timeout;
+
+
+    /**
+     * @param stubResponse stub response to be adapted
+     */
+    EncodedResponse(final StubResponse stubResponse) {
+        this.status = HttpResponseStatus.valueOf(stubResponse.getStatus());
+        this.timeout = stubResponse.getTimeout();
+
+        final byte[] bytes = stubResponse.getEncodedBody();
+        this.body = Unpooled.wrappedBuffer(bytes);
+
+        this.headers = new DefaultHttpHeaders();
+        for (@SuppressWarnings("unchecked") final Iterator<Entry<String, Collection<String>>> it
+                = stubResponse.getHeaders().entrySet().iterator(); it.hasNext(); ) {
+
+            final Entry<String, Collection<String>> e = it.next();
+            for (final String value: e.getValue()) {
+                this.headers.add(e.getKey(), value);
+            }
+        }
+
+        if (!this.headers.contains(HttpHeaderNames.CONTENT_LENGTH)) {
+            this.headers.setInt(HttpHeaderNames.CONTENT_LENGTH, bytes.length);
+        }
+    }
+
+
+    /**
+     * Creates a response for an error (no stub response defined for a request or an internal error).
+     * @param status http status of the response
+     */
+    EncodedResponse(final HttpResponseStatus status) {
+        this.status = status;
+        this.timeout = 0;
+        this.body = Unpooled.EMPTY_BUFFER;
+        this.headers = new DefaultHttpHeaders();
+        this.headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+    }
+
+
+    /**
+     * @return a timeout (in millis) this response must be sent after
+     */
+    long getTimeout() {
+        return this.timeout;
+    }
+
+
+    /**
+     * @param version http version of the request
+     * @return a new response sharing the encoded body of this response
+     */
+    FullHttpResponse toResponse(final HttpVersion version) {
+          //headers are copied since keep-alive headers are set per request
+        return new DefaultFullHttpResponse(version, this.status, this.body.retainedDuplicate(),
+                new DefaultHttpHeaders().set(this.headers), new DefaultHttpHeaders());
+    }
+}
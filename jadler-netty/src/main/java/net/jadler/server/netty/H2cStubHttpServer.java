@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodecFactory;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.AsciiString;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.ConnectionMetrics;
+
+
+/**
+ * Netty based stub http server speaking HTTP/2 over cleartext TCP (h2c) next to HTTP/1.x, so HTTP/2 clients
+ * (gRPC-style or multiplexing clients) can be tested against Jadler. Both the prior knowledge connection preface
+ * and the HTTP/1.1 <tt>Upgrade: h2c</tt> handshake are supported, clients not asking for HTTP/2 are served
+ * HTTP/1.x exactly as by {@link NettyStubHttpServer}.
+ *
+ * Every HTTP/2 stream is handled by its own {@link StubRequestHandler} bound to the event loop of the connection,
+ * so a delayed response is scheduled for its stream only and other streams of the same connection are answered
+ * without waiting for it.
+ */
+public class H2cStubHttpServer extends NettyStubHttpServer {
+
+    /**
+     * @param port port the server will be listening on, <tt>0</tt> for an ephemeral port
+     */
+    public H2cStubHttpServer(final int port) {
+        super(port);
+    }
+
+
+    /**
+     * @param port port the server will be listening on
+     * @param workerThreads number of event loop threads handling connections (0 for the Netty default,
+     * twice the number of available processors)
+     */
+    public H2cStubHttpServer(final int port, final int workerThreads) {
+        super(port, workerThreads);
+    }
+
+
+    @Override
+    void initPipeline(final ChannelPipeline pipeline, final ResponseProvider provider, final Executor executor,
+            final ConnectionMetrics metrics) {
+          //every stream of the connection counts as a request of the connection
+        final AtomicInteger connectionRequests = new AtomicInteger();
+        final ChannelInitializer<Channel> streamInitializer = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel ch) {
+                ch.pipeline()
+                        .addLast(new Http2StreamFrameToHttpObjectCodec(true))
+                        .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH))
+                        .addLast(new StubRequestHandler(provider, executor, metrics, connectionRequests));
+            }
+        };
+
+        final HttpServerCodec sourceCodec = new HttpServerCodec();
+        final UpgradeCodecFactory upgradeCodecFactory = new UpgradeCodecFactory() {
+            @Override
+            public UpgradeCodec newUpgradeCodec(final CharSequence protocol) {
+                if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+                    return new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(),
+                            new Http2MultiplexHandler(streamInitializer));
+                }
+                return null;
+            }
+        };
+        final HttpServerUpgradeHandler upgradeHandler =
+                new HttpServerUpgradeHandler(sourceCodec, upgradeCodecFactory, MAX_CONTENT_LENGTH);
+
+        final ChannelInitializer<Channel> priorKnowledgeInitializer = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(final Channel ch) {
+                ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().build(),
+                        new Http2MultiplexHandler(streamInitializer));
+            }
+        };
+
+          //the HTTP/1.x handlers serve connections staying on HTTP/1.x, once a connection switches to HTTP/2
+          //all requests are consumed by the multiplex handler and handed over to the stream pipelines
+        pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler,
+                        priorKnowledgeInitializer))
+                .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH))
+                .addLast(new StubRequestHandler(provider, executor, metrics, connectionRequests));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.ConnectionMetrics;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.server.ConnectionStatisticsAware;
+import net.jadler.server.RequestExecutors;
+import net.jadler.server.StubHttpServer;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Stub http server implementation based on Netty, intended for high-throughput scenarios (using Jadler as
+ * an upstream stand-in in load tests). Use it via
+ * {@link net.jadler.Jadler.OngoingConfiguration#usesCustomServer(net.jadler.server.StubHttpServer)}.
+ *
+ * Connections are kept alive and pipelined requests are supported. Requests are read and responses written
+ * on the event loop, stub response bodies are encoded just once (by the stub responses themselves) and delayed
+ * responses are scheduled on the event loop, so no thread is blocked while waiting. The response provider is called by
+ * a separate executor (see {@link RequestExecutors}), so a provider blocking for a while (forwarding a request
+ * to a recorder upstream, for example) doesn't stall the other connections of the event loop.
+ */
+public class NettyStubHttpServer implements StubHttpServer, ConnectionStatisticsAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyStubHttpServer.class);
+    static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+    private static final int BACKLOG = 1024;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final int MAX_PROVIDER_THREADS = 200;
+
+    private final int port;
+    private final int workerThreads;
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+    private ResponseProvider responseProvider;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ExecutorService providerExecutor;
+    private Channel serverChannel;
+
+
+    /**
+     * @param port port the server will be listening on, <tt>0</tt> for an ephemeral port
+     */
+    public NettyStubHttpServer(final int port) {
+        this(port, 0);
+    }
+
+
+    /**
+     * @param port port the server will be listening on
+     * @param workerThreads number of event loop threads handling connections (0 for the Netty default,
+     * twice the number of available processors)
+     */
+    public NettyStubHttpServer(final int port, final int workerThreads) {
+        Validate.isTrue(port >= 0, "port cannot be negative");
+        Validate.isTrue(workerThreads >= 0, "workerThreads cannot be negative");
+
+        this.port = port;
+        this.workerThreads = workerThreads;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerResponseProvider(final ResponseProvider responseProvider) {
+        Validate.notNull(responseProvider, "responseProvider cannot be null");
+        this.responseProvider = responseProvider;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() throws Exception {
+        if (this.responseProvider == null) {
+            throw new IllegalStateException("No response provider has been registered.");
+        }
+        if (this.serverChannel != null) {
+            throw new IllegalStateException("The server has been started already.");
+        }
+
+        logger.debug("starting netty");
+        this.bossGroup = new NioEventLoopGroup(1);
+        this.workerGroup = new NioEventLoopGroup(this.workerThreads);
+        this.providerExecutor = RequestExecutors.newExecutor("jadler-netty-provider", MAX_PROVIDER_THREADS);
+
+        final ResponseProvider provider = this.responseProvider;
+        final Executor executor = this.providerExecutor;
+        final ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(this.bossGroup, this.workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, BACKLOG)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(final SocketChannel ch) {
+                        connectionMetrics.connectionOpened();
+                        ch.closeFuture().addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(final ChannelFuture future) {
+                                  //there is no idle timeout, connections are closed by clients or after errors only
+                                connectionMetrics.connectionClosed(false);
+                            }
+                        });
+                        initPipeline(ch.pipeline(), provider, executor, connectionMetrics);
+                    }
+                });
+
+        try {
+            this.serverChannel = bootstrap.bind(this.port).sync().channel();
+        }
+        catch (final Exception e) {
+            this.shutdownGroups();
+            throw e;
+        }
+        logger.debug("netty started");
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() throws Exception {
+        if (this.serverChannel == null) {
+            throw new IllegalStateException("The server hasn't been started yet.");
+        }
+
+        logger.debug("stopping netty");
+        this.serverChannel.close().sync();
+        this.serverChannel = null;
+        this.shutdownGroups();
+        logger.debug("netty stopped");
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPort() {
+        final Channel channel = this.serverChannel;
+        return channel != null ? ((InetSocketAddress) channel.localAddress()).getPort() : this.port;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionStatistics getConnectionStatistics() {
+        return this.connectionMetrics.snapshot();
+    }
+
+
+    /**
+     * Adds the handlers serving stub responses to the pipeline of a new connection.
+     * @param pipeline pipeline of the new connection
+     * @param provider response provider
+     * @param executor executor the response provider is called by
+     * @param metrics connection metrics the requests of the connection are reported to
+     */
+    void initPipeline(final ChannelPipeline pipeline, final ResponseProvider provider, final Executor executor,
+            final ConnectionMetrics metrics) {
+        pipeline.addLast(new HttpServerCodec())
+                .addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH))
+                .addLast(new StubRequestHandler(provider, executor, metrics, new AtomicInteger()));
+    }
+
+
+    private void shutdownGroups() throws InterruptedException {
+        this.bossGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS).sync();
+        this.workerGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS).sync();
+        this.providerExecutor.shutdownNow();
+    }
+}
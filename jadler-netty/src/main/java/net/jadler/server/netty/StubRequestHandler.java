@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.netty;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jadler.httpmocker.MatchedResponse;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.server.BasicHttpServletRequest;
+import net.jadler.server.ConnectionMetrics;
+import net.jadler.server.MultipleReadsHttpServletRequest;
+import net.jadler.server.StubResponseWriter;
+import net.jadler.stubbing.RuleMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Handles requests of a single connection of {@link NettyStubHttpServer}. Requests are adapted to
+ * {@link javax.servlet.http.HttpServletRequest} and the response is defined by the registered
+ * {@link ResponseProvider}. If there is no response defined for a request, <tt>500</tt> is returned.
+ *
+ * The handler runs on the event loop of the connection, but the response provider is called by a separate
+ * executor, since it might block (appending to a request log, forwarding a request to a recorder upstream) and
+ * a blocked event loop would stall all its connections. The response is written on the event loop again,
+ * delayed responses are scheduled there, so no thread is blocked while waiting. Since pipelined requests may be
+ * answered out of order (a delayed response followed by an immediate one), responses are written strictly
+ * in the order of requests.
+ *
+ * The time spent by encoding and writing a response (until it's been flushed to the socket, not including the
+ * delay) is reported to the metrics of the rule the response belongs to.
+ */
+class StubRequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubRequestHandler.class);
+    private static final EncodedResponse INTERNAL_SERVER_ERROR =
+            new EncodedResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    private static final EncodedResponse SERVICE_UNAVAILABLE =
+            new EncodedResponse(HttpResponseStatus.SERVICE_UNAVAILABLE);
+
+    private final ResponseProvider ruleProvider;
+    private final Executor executor;
+    private final ConnectionMetrics metrics;
+    private final AtomicInteger connectionRequests;
+
+      //the following fields are accessed by the event loop thread only
+    private int nextRequest;
+    private int nextWrite;
+    private final Map<Integer, PendingResponse> pending = new HashMap<>();
+
+
+    /**
+     * @param ruleProvider response provider
+     * @param executor executor the response provider is called by
+     * @param metrics connection metrics the requests are reported to
+     * @param connectionRequests number of requests received over the connection so far (shared by all handlers
+     * of the connection, one per HTTP/2 stream)
+     */
+    StubRequestHandler(final ResponseProvider ruleProvider, final Executor executor,
+            final ConnectionMetrics metrics, final AtomicInteger connectionRequests) {
+        this.ruleProvider = ruleProvider;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.connectionRequests = connectionRequests;
+    }
+
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request) throws Exception {
+        final int sequence = this.nextRequest++;
+        this.metrics.requestReceived(this.connectionRequests.getAndIncrement() > 0);
+        final boolean keepAlive = HttpUtil.isKeepAlive(request);
+        final HttpVersion version = request.protocolVersion();
+
+          //the request content is copied, the request itself is released once this method returns
+        final MultipleReadsHttpServletRequest req;
+        try {
+            req = new MultipleReadsHttpServletRequest(adapt(ctx, request));
+        }
+        catch (final RuntimeException e) {
+            logger.error("An error occurred while handling a request", e);
+            this.complete(ctx, sequence, new PendingResponse(toResponse(INTERNAL_SERVER_ERROR, version, keepAlive),
+                    keepAlive, null, 0));
+            return;
+        }
+
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    respond(ctx, sequence, req, version, keepAlive);
+                }
+            });
+        }
+        catch (final RejectedExecutionException e) {
+            logger.warn("cannot handle the request, the stub server is shutting down");
+            this.complete(ctx, sequence, new PendingResponse(toResponse(SERVICE_UNAVAILABLE, version, keepAlive),
+                    keepAlive, null, 0));
+        }
+    }
+
+
+    /**
+     * Defines the response of a request. Runs on the provider executor since the response provider may block
+     * (request log, recorder), the response is handed back to the event loop to be written.
+     */
+    private void respond(final ChannelHandlerContext ctx, final int sequence,
+            final MultipleReadsHttpServletRequest req, final HttpVersion version, final boolean keepAlive) {
+        EncodedResponse encoded;
+        RuleMetrics ruleMetrics = null;
+        long encodeStart = 0;
+        try {
+            final MatchedResponse matched = MatchedResponse.provide(this.ruleProvider, req);
+
+            if (matched != null) {
+                encodeStart = System.nanoTime();
+                encoded = new EncodedResponse(matched.getResponse());
+                ruleMetrics = matched.getRuleMetrics();
+            }
+            else {
+                logger.warn(StubResponseWriter.noRuleFoundMessage(req));
+                encoded = INTERNAL_SERVER_ERROR;
+            }
+        }
+        catch (final RuntimeException e) {
+            logger.error("An error occurred while handling a request", e);
+            encoded = INTERNAL_SERVER_ERROR;
+        }
+
+        final FullHttpResponse response = toResponse(encoded, version, keepAlive);
+        final PendingResponse pendingResponse = new PendingResponse(response, keepAlive, ruleMetrics,
+                ruleMetrics != null ? System.nanoTime() - encodeStart : 0);
+
+        final Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                complete(ctx, sequence, pendingResponse);
+            }
+        };
+        try {
+            if (encoded.getTimeout() > 0) {
+                ctx.executor().schedule(completion, encoded.getTimeout(), TimeUnit.MILLISECONDS);
+            }
+            else {
+                ctx.executor().execute(completion);
+            }
+        }
+        catch (final RejectedExecutionException e) {
+              //the event loop has been shut down, the connection is gone
+            ReferenceCountUtil.release(response);
+        }
+    }
+
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+        this.discardPending();
+        super.channelInactive(ctx);
+    }
+
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+        logger.debug("closing a connection after an error", cause);
+        ctx.close();
+    }
+
+
+    private void complete(final ChannelHandlerContext ctx, final int sequence, final PendingResponse response) {
+        if (!ctx.channel().isActive()) {
+            ReferenceCountUtil.release(response.response);
+            return;
+        }
+        this.pending.put(sequence, response);
+
+        boolean written = false;
+        PendingResponse next;
+        while ((next = this.pending.remove(this.nextWrite)) != null) {
+            this.nextWrite++;
+            written = true;
+
+            final ChannelFuture future = ctx.write(next.response);
+            if (next.ruleMetrics != null) {
+                future.addListener(new WriteTimeListener(next.ruleMetrics, next.encodeTime));
+            }
+            if (!next.keepAlive) {
+                future.addListener(ChannelFutureListener.CLOSE);
+                this.discardPending();
+                break;
+            }
+        }
+
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+
+    private static FullHttpResponse toResponse(final EncodedResponse encoded, final HttpVersion version,
+            final boolean keepAlive) {
+        final FullHttpResponse res = encoded.toResponse(version);
+        HttpUtil.setKeepAlive(res, keepAlive);
+        return res;
+    }
+
+
+    private void discardPending() {
+        for (final PendingResponse response : this.pending.values()) {
+            ReferenceCountUtil.release(response.response);
+        }
+        this.pending.clear();
+    }
+
+
+    private static BasicHttpServletRequest adapt(final ChannelHandlerContext ctx, final FullHttpRequest request) {
+        String uri = request.uri();
+          //absolute-form request target
+        if (!uri.startsWith("/") && uri.contains("://")) {
+            final URI parsed = URI.create(uri);
+            uri = parsed.getRawPath() + (parsed.getRawQuery() == null ? "" : "?" + parsed.getRawQuery());
+        }
+
+        final int idx = uri.indexOf('?');
+        final String path = idx < 0 ? uri : uri.substring(0, idx);
+        final String query = idx < 0 ? null : uri.substring(idx + 1);
+
+        final BasicHttpServletRequest res = new BasicHttpServletRequest(request.method().name(), path, query,
+                request.protocolVersion().text(), ByteBufUtil.getBytes(request.content()));
+
+        for (final Entry<String, String> e : request.headers()) {
+            res.addHeader(e.getKey(), e.getValue());
+        }
+
+        final SocketAddress local = ctx.channel().localAddress();
+        if (local instanceof InetSocketAddress) {
+            res.setLocalAddress((InetSocketAddress) local);
+        }
+        final SocketAddress remote = ctx.channel().remoteAddress();
+        if (remote instanceof InetSocketAddress) {
+            res.setRemoteAddress((InetSocketAddress) remote);
+        }
+        return res;
+    }
+
+
+    private static class PendingResponse {
+        private final FullHttpResponse response;
+        private final boolean keepAlive;
+        private final RuleMetrics ruleMetrics;
+        private final long encodeTime;
+
+        PendingResponse(final FullHttpResponse response, final boolean keepAlive, final RuleMetrics ruleMetrics,
+                final long encodeTime) {
+            this.response = response;
+            this.keepAlive = keepAlive;
+            this.ruleMetrics = ruleMetrics;
+            this.encodeTime = encodeTime;
+        }
+    }
+
+
+    /**
+     * Reports the write time of a response once it's been written.
+     */
+    private static class WriteTimeListener implements ChannelFutureListener {
+        private final RuleMetrics ruleMetrics;
+        private final long encodeTime;
+        private final long start = System.nanoTime();
+
+        WriteTimeListener(final RuleMetrics ruleMetrics, final long encodeTime) {
+            this.ruleMetrics = ruleMetrics;
+            this.encodeTime = encodeTime;
+        }
+
+        @Override
+        public void operationComplete(final ChannelFuture future) {
+            if (future.isSuccess()) {
+                this.ruleMetrics.recordWrite(this.encodeTime + System.nanoTime() - this.start);
+            }
+        }
+    }
+}
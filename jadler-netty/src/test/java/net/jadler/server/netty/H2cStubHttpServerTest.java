@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.netty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static net.jadler.Jadler.*;
+
+
+public class H2cStubHttpServerTest {
+
+    private H2cStubHttpServer server;
+    private HttpClient client;
+
+
+    @Before
+    public void setUp() {
+        this.server = new H2cStubHttpServer(0);
+        initJadlerThat().usesCustomServer(this.server);
+        startStubServer();
+
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    }
+
+
+    @After
+    public void tearDown() {
+        stopStubServer();
+    }
+
+
+    @Test
+    public void upgrade() throws Exception {
+        onRequest().havingMethodEqualTo("POST").havingURIEqualTo("/h2").havingBodyEqualTo("body")
+                .respond().withStatus(201).withHeader("X-Custom", "custom").withBody("created");
+        onRequest().havingURIEqualTo("/warmup").respond().withStatus(204);
+
+          //the JDK client upgrades a connection with a bodyless request only
+        this.client.send(this.request("/warmup").build(), BodyHandlers.discarding());
+
+        final HttpResponse<String> response = this.client.send(this.request("/h2")
+                .POST(HttpRequest.BodyPublishers.ofString("body")).build(), BodyHandlers.ofString());
+
+        assertThat(response.version(), is(HttpClient.Version.HTTP_2));
+        assertThat(response.statusCode(), is(201));
+        assertThat(response.headers().firstValue("X-Custom").get(), is("custom"));
+        assertThat(response.body(), is("created"));
+    }
+
+
+    @Test
+    public void delayedStreamDoesNotBlockOthers() throws Exception {
+        onRequest().havingURIEqualTo("/slow").respond().withTimeout(2, TimeUnit.SECONDS).withBody("slow");
+        onRequest().havingURIEqualTo("/fast").respond().withBody("fast");
+
+        this.client.send(this.request("/fast").build(), BodyHandlers.discarding());
+
+        final CompletableFuture<HttpResponse<String>> slow =
+                this.client.sendAsync(this.request("/slow").build(), BodyHandlers.ofString());
+        final long start = System.nanoTime();
+        final HttpResponse<String> fast = this.client.send(this.request("/fast").build(), BodyHandlers.ofString());
+        final long fastMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(fast.version(), is(HttpClient.Version.HTTP_2));
+        assertThat(fast.body(), is("fast"));
+        assertThat(fastMillis, is(lessThan(1000L)));
+        assertThat(slow.isDone(), is(false));
+        assertThat(slow.get(10, TimeUnit.SECONDS).body(), is("slow"));
+    }
+
+
+    @Test
+    public void http1() throws Exception {
+        onRequest().respond().withStatus(202).withBody("http1");
+
+        final GetMethod method = new GetMethod("http://localhost:" + this.server.getPort());
+        final int status = new org.apache.commons.httpclient.HttpClient().executeMethod(method);
+
+        assertThat(status, is(202));
+        assertThat(method.getResponseBodyAsString(), is("http1"));
+    }
+
+
+    private HttpRequest.Builder request(final String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + this.server.getPort() + path));
+    }
+}
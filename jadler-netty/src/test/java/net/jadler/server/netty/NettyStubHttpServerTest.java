@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2012 Jadler contributors
+ * This program is made available under the terms of the MIT License.
+ */
+package net.jadler.server.netty;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import net.jadler.httpmocker.ResponseProvider;
+import net.jadler.portallocator.PortAllocator;
+import net.jadler.server.ConnectionStatistics;
+import net.jadler.stubbing.StubResponse;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static net.jadler.Jadler.*;
+
+
+public class NettyStubHttpServerTest {
+    
+    private static final int DEFAULT_STATUS = 409;
+    private static final String STRING_WITH_DIACRITICS = "\u00e1\u0159\u017e";
+    private static final byte[] ISO_8859_2_REPRESENTATION = {(byte)0xE1, (byte)0xF8, (byte)0xBE};
+    
+    private int port;
+    private NettyStubHttpServer server;
+    private HttpClient client;
+    
+    
+    @Before
+    public void setUp() {
+        this.port = new PortAllocator().allocatePort();
+        this.server = new NettyStubHttpServer(this.port);
+        
+        initJadlerThat()
+                .usesCustomServer(this.server)
+                .respondsWithDefaultStatus(DEFAULT_STATUS)
+                .respondsWithDefaultHeader("default_header", "value1")
+                .respondsWithDefaultEncoding(Charset.forName("UTF-8"))
+                .respondsWithDefaultContentType("text/html; charset=UTF-8");
+        
+        startStubServer();
+        
+        this.client = new HttpClient();
+    }
+    
+    
+    @After
+    public void tearDown() {
+        stopStubServer();
+    }
+    
+    
+    @Test
+    public void defaults() throws Exception {
+        onRequest().respond().withBody(STRING_WITH_DIACRITICS);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        final int status = client.executeMethod(method);
+        
+        assertThat(status, is(DEFAULT_STATUS));
+        assertThat(method.getResponseHeader("default_header").getValue(), is("value1"));
+        assertThat(method.getResponseCharSet(), is("UTF-8"));
+        assertThat(method.getResponseBodyAsString(), is(STRING_WITH_DIACRITICS));
+    }
+    
+    
+    @Test
+    public void requestMatching() throws Exception {
+        onRequest()
+            .havingMethodEqualTo("POST")
+            .havingURIEqualTo("/a/b")
+            .havingQueryStringEqualTo("p1=v1")
+            .havingParameterEqualTo("p1", "v1")
+            .havingParameterEqualTo("p2", "v2")
+            .havingHeaderEqualTo("X-Custom", "custom")
+            .havingBodyEqualTo("p2=v2")
+        .respond()
+            .withStatus(201);
+        
+        final PostMethod method = new PostMethod("http://localhost:" + this.port + "/a/b?p1=v1");
+        method.addRequestHeader("x-custom", "custom");
+        method.setRequestEntity(new StringRequestEntity("p2=v2", "application/x-www-form-urlencoded", "UTF-8"));
+        
+        assertThat(client.executeMethod(method), is(201));
+    }
+    
+    
+    @Test
+    public void withEncoding() throws Exception {
+        onRequest().respond()
+                .withEncoding(Charset.forName("ISO-8859-2"))
+                .withContentType("text/html; charset=ISO-8859-2")
+                .withBody(STRING_WITH_DIACRITICS);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        client.executeMethod(method);
+        
+        assertThat(IOUtils.toByteArray(method.getResponseBodyAsStream()), is(ISO_8859_2_REPRESENTATION));
+    }
+    
+    
+    @Test
+    public void withTimeout() throws Exception {
+        onRequest().respond().withTimeout(200, TimeUnit.MILLISECONDS).withStatus(201);
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        final long start = System.nanoTime();
+        assertThat(client.executeMethod(method), is(201));
+        
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(greaterThanOrEqualTo(200L)));
+    }
+    
+    
+    @Test
+    public void keepAlive() throws Exception {
+        onRequest().respond().withBody("body").withStatus(201);
+        
+          //the same connection is reused by the client
+        for (int i = 0; i < 3; i++) {
+            final GetMethod method = new GetMethod("http://localhost:" + this.port);
+            assertThat(client.executeMethod(method), is(201));
+            assertThat(method.getResponseBodyAsString(), is("body"));
+        }
+    }
+    
+    
+    @Test
+    public void pipelining() throws Exception {
+        onRequest().havingURIEqualTo("/slow").respond().withBody("slow").withTimeout(200, TimeUnit.MILLISECONDS);
+        onRequest().havingURIEqualTo("/fast").respond().withBody("fast");
+        
+        final Socket socket = new Socket("localhost", this.port);
+        try {
+            final OutputStream out = socket.getOutputStream();
+            out.write(("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /fast HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+            out.flush();
+            
+            final InputStream in = socket.getInputStream();
+            final String responses = IOUtils.toString(in, "US-ASCII");
+            
+              //responses must be sent in the order of the requests
+            assertThat(responses.indexOf("slow"), is(greaterThan(0)));
+            assertThat(responses.indexOf("fast"), is(greaterThan(responses.indexOf("slow"))));
+        }
+        finally {
+            socket.close();
+        }
+    }
+    
+    
+    @Test
+    public void noRuleApplicable() throws Exception {
+        onRequest().havingURIEqualTo("/undefined").respond();
+        
+        final GetMethod method = new GetMethod("http://localhost:" + this.port);
+        assertThat(client.executeMethod(method), is(500));
+        assertThat(method.getResponseBodyAsString(), isEmptyOrNullString());
+    }
+    
+    
+    @Test
+    public void connectionStatistics() throws Exception {
+        onRequest().respond().withStatus(204);
+        
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.executeMethod(new GetMethod("http://localhost:" + this.port)), is(204));
+        }
+        
+        final ConnectionStatistics stats = this.server.getConnectionStatistics();
+        assertThat(stats.getAcceptedConnections(), is(1L));
+        assertThat(stats.getOpenConnections(), is(1));
+        assertThat(stats.getRequests(), is(3L));
+        assertThat(stats.getReusedRequests(), is(2L));
+        assertThat(stats.getRequestsPerConnection(), is(3.0));
+    }
+    
+    
+    @Test
+    public void changedBodyIsNotServedStale() throws Exception {
+        final int changingPort = new PortAllocator().allocatePort();
+        final NettyStubHttpServer changing = new NettyStubHttpServer(changingPort);
+          //a custom provider returning the same (changed) stub response for every request
+        final StubResponse response = new StubResponse();
+        response.setStatus(200);
+        response.setEncoding(Charset.forName("UTF-8"));
+        changing.registerResponseProvider(new ResponseProvider() {
+            @Override
+            public StubResponse provideResponseFor(final HttpServletRequest req) {
+                response.setBody(req.getRequestURI());
+                return response;
+            }
+        });
+        changing.start();
+        
+        try {
+            for (final String uri : new String[] {"/first", "/second"}) {
+                final GetMethod method = new GetMethod("http://localhost:" + changingPort + uri);
+                assertThat(this.client.executeMethod(method), is(200));
+                assertThat(method.getResponseBodyAsString(), is(uri));
+                method.releaseConnection();
+            }
+        }
+        finally {
+            changing.stop();
+        }
+    }
+    
+    
+    @Test
+    public void blockingProviderDoesNotStallEventLoop() throws Exception {
+        final int blockingPort = new PortAllocator().allocatePort();
+          //a single event loop serves both connections
+        final NettyStubHttpServer blocking = new NettyStubHttpServer(blockingPort, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        blocking.registerResponseProvider(new ResponseProvider() {
+            @Override
+            public StubResponse provideResponseFor(final HttpServletRequest req) {
+                if ("/slow".equals(req.getRequestURI())) {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                final StubResponse res = new StubResponse();
+                res.setStatus(200);
+                res.setEncoding(Charset.forName("UTF-8"));
+                res.setBody(req.getRequestURI());
+                return res;
+            }
+        });
+        blocking.start();
+        
+        try {
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            final Future<String> slow = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    final GetMethod method = new GetMethod("http://localhost:" + blockingPort + "/slow");
+                    new HttpClient().executeMethod(method);
+                    return method.getResponseBodyAsString();
+                }
+            });
+            
+            final GetMethod fast = new GetMethod("http://localhost:" + blockingPort + "/fast");
+            final long start = System.nanoTime();
+            assertThat(new HttpClient().executeMethod(fast), is(200));
+            assertThat(fast.getResponseBodyAsString(), is("/fast"));
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), is(lessThan(5L)));
+            
+            release.countDown();
+            assertThat(slow.get(10, TimeUnit.SECONDS), is("/slow"));
+            executor.shutdown();
+        }
+        finally {
+            release.countDown();
+            blocking.stop();
+        }
+    }
+}